@@ -1,5 +1,7 @@
 package com.leo.pillpathbackend.config;
 
+import com.leo.pillpathbackend.ws.ClusterFanout;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -8,8 +10,11 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+	private final ClusterFanout clusterFanout;
+
 	@Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
 	// Native WebSocket endpoint (STOMP over WebSocket)
@@ -31,5 +36,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 		registry.enableSimpleBroker("/topic", "/queue");
 		registry.setApplicationDestinationPrefixes("/app");
 		registry.setUserDestinationPrefix("/user");
+		// Each node's simple broker only reaches its own sessions; /topic and /user messages
+		// are relayed to the other nodes through ClusterFanout
+		registry.configureBrokerChannel().interceptors(clusterFanout);
 	}
 }
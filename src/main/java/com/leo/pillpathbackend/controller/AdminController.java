@@ -3,6 +3,10 @@ package com.leo.pillpathbackend.controller;
 import com.leo.pillpathbackend.dto.*;
 import com.leo.pillpathbackend.service.AdminService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -101,8 +105,12 @@ public class AdminController {
     }
 
     @GetMapping("/customers")
-    public ResponseEntity<List<CustomerDTO>> getAllCustomers() {
-        List<CustomerDTO> customers = adminService.getAllCustomers();
+    public ResponseEntity<Page<CustomerDTO>> getAllCustomers(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+        Page<CustomerDTO> customers = adminService.getAllCustomers(pageRequest(page, size, sortBy, sortDir));
         return ResponseEntity.ok(customers);
     }
 
@@ -126,9 +134,15 @@ public class AdminController {
         }
     }
 
+    // Newest first; pass nextCursor from the previous response as cursor to load older ones
     @GetMapping("/prescriptions")
-    public ResponseEntity<List<AdminPrescriptionDTO>> getPrescriptionsForAdmin() {
-        return ResponseEntity.ok(adminService.getAllPrescriptionsForAdmin());
+    public ResponseEntity<KeysetPageDTO<AdminPrescriptionDTO>> getPrescriptionsForAdmin(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long pharmacyId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(adminService.getPrescriptionsForAdmin(status, pharmacyId, q, cursor, limit));
     }
 
     // Overview stat cards (all-time, admin only)
@@ -155,27 +169,55 @@ public class AdminController {
         return ResponseEntity.ok(adminService.getAnalyticsCharts(year));
     }
 
-    // Pharmacy performance (no pagination/sorting)
+    // Pharmacy performance; sortBy: ordersFulfilled (default), rating, name, registrationDate
     @GetMapping("/analytics/pharmacy-performance")
-    public ResponseEntity<List<PharmacyPerformanceResponseDTO>> getPharmacyPerformance() {
-        return ResponseEntity.ok(adminService.getPharmacyPerformance());
+    public ResponseEntity<Page<PharmacyPerformanceResponseDTO>> getPharmacyPerformance(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+        return ResponseEntity.ok(adminService.getPharmacyPerformance(pageRequest(page, size, sortBy, sortDir)));
     }
 
-    // Customer activity (no pagination/sorting)
+    // Customer activity; sortBy: registrationDate (default), name, prescriptionsUploaded, status
     @GetMapping("/analytics/customer-activity")
-    public ResponseEntity<List<CustomerActivityResponseDTO>> getCustomerActivity() {
-        return ResponseEntity.ok(adminService.getCustomerActivity());
+    public ResponseEntity<Page<CustomerActivityResponseDTO>> getCustomerActivity(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+        return ResponseEntity.ok(adminService.getCustomerActivity(pageRequest(page, size, sortBy, sortDir)));
     }
 
-    // Suspended accounts (no pagination/sorting)
+    // Suspended accounts, pharmacies first; sortBy: type, name, id
     @GetMapping("/analytics/suspended-accounts")
-    public ResponseEntity<List<SuspendedAccountDTO>> getSuspendedAccounts() {
-        return ResponseEntity.ok(adminService.getSuspendedAccounts());
+    public ResponseEntity<Page<SuspendedAccountDTO>> getSuspendedAccounts(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+        return ResponseEntity.ok(adminService.getSuspendedAccounts(pageRequest(page, size, sortBy, sortDir)));
+    }
+
+    // No sortBy keeps each report's default order
+    private static Pageable pageRequest(int page, int size, String sortBy, String sortDir) {
+        int p = Math.max(page, 0);
+        int s = Math.min(Math.max(size, 1), 200);
+        if (sortBy == null || sortBy.isBlank()) {
+            return PageRequest.of(p, s);
+        }
+        Sort.Direction direction = sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return PageRequest.of(p, s, Sort.by(direction, sortBy));
     }
 
+    // Newest first; pass nextCursor from the previous response as cursor to load older ones
     @GetMapping("/reviews")
-    public ResponseEntity<List<AdminPharmacyReviewDTO>> getAllPharmacyReviews() {
-        return ResponseEntity.ok(adminService.getAllPharmacyReviews());
+    public ResponseEntity<KeysetPageDTO<AdminPharmacyReviewDTO>> getPharmacyReviews(
+            @RequestParam(required = false) Long pharmacyId,
+            @RequestParam(required = false) Integer rating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(adminService.getPharmacyReviews(pharmacyId, rating, cursor, limit));
     }
 
     @DeleteMapping("/reviews/{reviewId}")
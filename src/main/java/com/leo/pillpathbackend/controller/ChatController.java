@@ -2,6 +2,7 @@ package com.leo.pillpathbackend.controller;
 
 import com.leo.pillpathbackend.dto.ChatMessageHistoryResponse;
 import com.leo.pillpathbackend.dto.ChatRoomDTO;
+import com.leo.pillpathbackend.dto.KeysetPageDTO;
 import com.leo.pillpathbackend.dto.MessageDTO;
 import com.leo.pillpathbackend.dto.StartChatRequest;
 import com.leo.pillpathbackend.service.ChatService;
@@ -96,6 +97,35 @@ public class ChatController {
         return ResponseEntity.ok(chats);
     }
 
+    /**
+     * Inbox page for the authenticated user, most recently active room first. Pass the returned
+     * nextCursor to fetch the following page.
+     */
+    @GetMapping("/inbox")
+    public ResponseEntity<KeysetPageDTO<ChatRoomDTO>> getInbox(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "30") int limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof Long)) {
+            return ResponseEntity.status(401).build();
+        }
+
+        Long userId = (Long) auth.getPrincipal();
+        String userType = auth.getAuthorities().stream()
+                .findFirst()
+                .map(grantedAuthority -> {
+                    String authority = grantedAuthority.getAuthority();
+                    if ("ROLE_USER".equals(authority) || "ROLE_CUSTOMER".equals(authority)) return "CUSTOMER";
+                    if ("ROLE_PHARMACIST".equals(authority)) return "PHARMACIST";
+                    if ("ROLE_PHARMACY_ADMIN".equals(authority)) return "ADMIN";
+                    if ("ROLE_ADMIN".equals(authority)) return "ADMIN";
+                    return "CUSTOMER";
+                })
+                .orElse("CUSTOMER");
+
+        return ResponseEntity.ok(chatService.getInbox(userId, userType, cursor, limit));
+    }
+
     /**
      * Get a specific chat room by ID
      */
@@ -106,44 +136,33 @@ public class ChatController {
     }
 
     /**
-     * Get chat messages with pagination
+     * Get chat messages, newest first. Pass the returned nextBefore as before= to load older
+     * messages; page > 0 without before keeps the old offset paging. Totals are only counted
+     * when includeTotal=true.
      */
     @GetMapping("/{chatId:\\d+}/messages")
     public ResponseEntity<ChatMessageHistoryResponse> getChatMessages(
             @PathVariable Long chatId,
+            @RequestParam(required = false) Long before,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
             HttpServletRequest request) {
 
-        System.out.println("=== GET CHAT MESSAGES DEBUG ===");
-        System.out.println("ChatId: " + chatId + ", Page: " + page + ", Limit: " + limit);
-        System.out.println("Request URI: " + request.getRequestURI());
-        
         try {
-            ChatMessageHistoryResponse messages = chatService.getChatMessages(chatId, page, limit);
-            System.out.println("Returning " + messages.getMessages().size() + " messages");
-            
-            // Debug: print first few messages
-            messages.getMessages().stream().limit(3).forEach(msg -> {
-                System.out.println("  - Message " + msg.getId() + ": ");
-                System.out.println("      Content: '" + msg.getContent() + "'");
-                System.out.println("      SenderType: " + msg.getSenderType());
-                System.out.println("      SenderId: " + msg.getSenderId());
-                System.out.println("      SenderName: " + msg.getSenderName());
-                System.out.println("      Content length: " + (msg.getContent() != null ? msg.getContent().length() : "null"));
-            });
-            
+            ChatMessageHistoryResponse messages = (before != null || page <= 0)
+                    ? chatService.getChatMessagesBefore(chatId, before, limit, includeTotal)
+                    : chatService.getChatMessages(chatId, page, limit);
             return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("ERROR getting messages: " + e.getMessage());
             e.printStackTrace();
-            return ResponseEntity.status(500).body(ChatMessageHistoryResponse.builder
-                            ()
+            return ResponseEntity.status(500).body(ChatMessageHistoryResponse.builder()
                 .chatRoomId(chatId)
                 .messages(java.util.Collections.emptyList())
                 .currentPage(0)
-                .totalPages(0)
-                .totalMessages(0)
                 .hasMore(false)
                 .build());
         }
@@ -345,6 +364,7 @@ public class ChatController {
     @GetMapping("/pharmacy-admin/dashboard/chats/{chatId}/messages")
     public ResponseEntity<ChatMessageHistoryResponse> getPharmacyAdminChatMessages(
             @PathVariable Long chatId,
+            @RequestParam(required = false) Long before,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "50") int limit,
             HttpServletRequest request) {
@@ -364,7 +384,9 @@ public class ChatController {
                 System.out.println("No authentication found - allowing for testing");
             }
             
-            ChatMessageHistoryResponse messages = chatService.getChatMessages(chatId, page, limit);
+            ChatMessageHistoryResponse messages = (before != null || page <= 0)
+                    ? chatService.getChatMessagesBefore(chatId, before, limit, false)
+                    : chatService.getChatMessages(chatId, page, limit);
             System.out.println("Retrieved " + messages.getMessages().size() + " messages");
             System.out.println("Has more: " + messages.isHasMore());
             
@@ -376,8 +398,6 @@ public class ChatController {
                 .chatRoomId(chatId)
                 .messages(java.util.Collections.emptyList())
                 .currentPage(0)
-                .totalPages(0)
-                .totalMessages(0)
                 .hasMore(false)
                 .build());
         }
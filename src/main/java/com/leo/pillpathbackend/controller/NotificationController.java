@@ -1,13 +1,12 @@
 package com.leo.pillpathbackend.controller;
 
-import com.leo.pillpathbackend.dto.NotificationDTO;
+import com.leo.pillpathbackend.dto.NotificationPageDTO;
 import com.leo.pillpathbackend.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,19 +18,24 @@ public class NotificationController {
     private final NotificationService notificationService;
     
     /**
-     * Get all notifications for authenticated user
+     * Get notifications for authenticated user, newest first.
+     * Pass nextCursor from the previous response as cursor to load older ones.
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getNotifications(
             @RequestParam Long userId,
-            @RequestParam String userType) {
+            @RequestParam String userType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         
-        List<NotificationDTO> notifications = notificationService.getNotificationsForUser(userId, userType);
+        NotificationPageDTO page = notificationService.getNotificationsPage(userId, userType, cursor, limit);
         long unreadCount = notificationService.getUnreadCount(userId, userType);
         
         Map<String, Object> response = new HashMap<>();
-        response.put("notifications", notifications);
+        response.put("notifications", page.getNotifications());
         response.put("unreadCount", unreadCount);
+        response.put("nextCursor", page.getNextCursor());
+        response.put("hasMore", page.isHasMore());
         
         return ResponseEntity.ok(response);
     }
@@ -1,5 +1,6 @@
 package com.leo.pillpathbackend.controller;
 
+import com.leo.pillpathbackend.dto.order.BulkUpdatePharmacyOrderStatusRequest;
 import com.leo.pillpathbackend.dto.order.PharmacyOrderDTO;
 import com.leo.pillpathbackend.dto.order.UpdatePharmacyOrderStatusRequest;
 import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
@@ -185,6 +186,67 @@ public class PharmacyOrderController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", msg));
         }
     }
+
+    /**
+     * Move several pharmacy orders to the same status in one transaction
+     * Accessible by both pharmacist and pharmacy admin
+     */
+    @PatchMapping("/status")
+    public ResponseEntity<?> bulkUpdateStatus(
+            @Valid @RequestBody BulkUpdatePharmacyOrderStatusRequest request,
+            HttpServletRequest httpRequest) {
+        try {
+            if (request == null || request.getStatus() == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("error", "status required"));
+            }
+            if (request.getOrderIds() == null || request.getOrderIds().isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("error", "orderIds required"));
+            }
+            
+            Long pharmacistId = null;
+            Long pharmacyAdminId = null;
+            String userType = null;
+            
+            try {
+                pharmacistId = auth.extractPharmacistIdFromRequest(httpRequest);
+                userType = "PHARMACIST";
+                log.info("Pharmacist {} updating {} orders to status {}", pharmacistId, request.getOrderIds().size(), request.getStatus());
+            } catch (IllegalArgumentException e) {
+                try {
+                    pharmacyAdminId = auth.extractPharmacyAdminIdFromRequest(httpRequest);
+                    userType = "PHARMACY_ADMIN";
+                    log.info("Pharmacy Admin {} updating {} orders to status {}", pharmacyAdminId, request.getOrderIds().size(), request.getStatus());
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Unauthorized access attempt to bulk update pharmacy orders");
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of("error", "Unauthorized: Must be pharmacist or pharmacy admin"));
+                }
+            }
+            
+            List<PharmacyOrderDTO> list;
+            
+            if ("PHARMACIST".equals(userType)) {
+                list = orderService.bulkUpdatePharmacyOrderStatus(pharmacistId, request.getOrderIds(), request.getStatus());
+            } else {
+                list = orderService.bulkUpdatePharmacyOrderStatusByAdmin(pharmacyAdminId, request.getOrderIds(), request.getStatus());
+            }
+            
+            return ResponseEntity.ok(list);
+            
+        } catch (IllegalArgumentException e) {
+            String msg = (e.getMessage() == null || e.getMessage().isBlank()) ? "Bad request" : e.getMessage();
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", msg));
+        } catch (IllegalStateException e) {
+            String msg = (e.getMessage() == null || e.getMessage().isBlank()) ? "Invalid status transition" : e.getMessage();
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", msg));
+        } catch (Exception e) {
+            log.error("Unexpected error bulk updating pharmacy order status", e);
+            String msg = (e.getMessage() == null || e.getMessage().isBlank()) ? e.getClass().getSimpleName() : e.getMessage();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", msg));
+        }
+    }
 }
 
 
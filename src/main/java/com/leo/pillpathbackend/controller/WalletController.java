@@ -66,7 +66,7 @@ public class WalletController {
                 .ownerType("PLATFORM")
                 .ownerId(null)
                 .currency(w.getCurrency())
-                .balance(w.getBalance())
+                .balance(walletService.currentBalance(w))
                 .transactions(txns)
                 .build());
     }
@@ -99,7 +99,7 @@ public class WalletController {
                     .ownerType("PHARMACY")
                     .ownerId(pharmacyId)
                     .currency(w.getCurrency())
-                    .balance(w.getBalance())
+                    .balance(walletService.currentBalance(w))
                     .transactions(txns)
                     .build());
         } catch (IllegalArgumentException e) {
@@ -195,7 +195,7 @@ public class WalletController {
                     "ownerId", pharmacyId,
                     "walletId", w.getId(),
                     "currency", w.getCurrency(),
-                    "balance", w.getBalance(),
+                    "balance", walletService.currentBalance(w),
                     "updatedAt", w.getUpdatedAt()
             ));
         } catch (IllegalArgumentException e) {
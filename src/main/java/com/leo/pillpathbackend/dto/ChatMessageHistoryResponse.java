@@ -15,7 +15,10 @@ public class ChatMessageHistoryResponse {
 	private Long chatRoomId;
 	private List<MessageDTO> messages;
 	private int currentPage;
-	private int totalPages;
-	private long totalMessages;
+	// Only filled when the caller asks for totals
+	private Integer totalPages;
+	private Long totalMessages;
 	private boolean hasMore;
+	// Pass as before= to load the next older page; null when there is none
+	private Long nextBefore;
 }
@@ -26,5 +26,7 @@ public class ChatRoomDTO {
     private LocalDateTime lastMessageAt;
     private Integer unreadCount;
     private String lastMessage;
+    private String lastMessageSenderType;
+    private Long lastMessageId;
     private LocalDateTime createdAt;
 }
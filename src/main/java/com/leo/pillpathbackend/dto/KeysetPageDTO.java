@@ -0,0 +1,17 @@
+package com.leo.pillpathbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPageDTO<T> {
+    private List<T> items;
+    // Opaque cursor for the next page; null when there are no more rows
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,17 @@
+package com.leo.pillpathbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationPageDTO {
+    private List<NotificationDTO> notifications;
+    // Opaque cursor for the next page; null when there are no more notifications
+    private String nextCursor;
+    private boolean hasMore;
+}
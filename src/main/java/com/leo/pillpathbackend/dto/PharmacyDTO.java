@@ -40,6 +40,7 @@ public class PharmacyDTO {
     private Integer deliveryRadius;
     private Double averageRating;
     private Integer totalReviews;
+    private Map<Integer, Integer> ratingHistogram; // star (1-5) -> number of reviews
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
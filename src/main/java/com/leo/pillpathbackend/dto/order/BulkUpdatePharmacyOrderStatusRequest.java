@@ -0,0 +1,12 @@
+package com.leo.pillpathbackend.dto.order;
+
+import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkUpdatePharmacyOrderStatusRequest {
+    private List<Long> orderIds;
+    private PharmacyOrderStatus status;
+}
@@ -22,6 +22,8 @@ import java.util.List;
 @Builder
 public class ChatRoom {
 
+    public static final int LAST_MESSAGE_PREVIEW_LENGTH = 200;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -59,6 +61,19 @@ public class ChatRoom {
     @Column(name = "last_message_at")
     private LocalDateTime lastMessageAt;
 
+    /**
+     * Id, start of the content and sender type (CUSTOMER, ADMIN, PHARMACIST) of the latest
+     * message, kept on the room so the inbox needs no per-room message lookup
+     */
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_preview", length = LAST_MESSAGE_PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_sender_type", length = 20)
+    private String lastMessageSenderType;
+
     /**
      * Count of unread messages for customer
      */
@@ -92,6 +107,19 @@ public class ChatRoom {
         this.lastMessageAt = LocalDateTime.now();
     }
 
+    /**
+     * Record a newly saved message as the latest one in this room
+     */
+    public void recordLastMessage(Message message, String senderType) {
+        String content = message.getContent();
+        this.lastMessageId = message.getId();
+        this.lastMessagePreview = content != null && content.length() > LAST_MESSAGE_PREVIEW_LENGTH
+                ? content.substring(0, LAST_MESSAGE_PREVIEW_LENGTH)
+                : content;
+        this.lastMessageSenderType = senderType;
+        this.lastMessageAt = message.getTimestamp() != null ? message.getTimestamp() : LocalDateTime.now();
+    }
+
     /**
      * Increment unread count for the recipient
      */
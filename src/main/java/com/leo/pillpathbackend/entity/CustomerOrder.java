@@ -3,6 +3,8 @@ package com.leo.pillpathbackend.entity;
 import com.leo.pillpathbackend.entity.enums.CustomerOrderStatus;
 import com.leo.pillpathbackend.entity.enums.PaymentMethod;
 import com.leo.pillpathbackend.entity.enums.PaymentStatus;
+import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
+import com.leo.pillpathbackend.service.DailyMetricsListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -15,6 +17,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "customer_orders")
+@EntityListeners(DailyMetricsListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -83,4 +86,49 @@ public class CustomerOrder {
 
     @OneToMany(mappedBy = "customerOrder", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<PharmacyOrder> pharmacyOrders = new ArrayList<>();
+
+    // Number of pharmacy slices in each status, maintained by PharmacyOrderStateMachine
+    @Builder.Default
+    @Column(name = "received_slices", nullable = false, columnDefinition = "integer default 0")
+    private int receivedSlices = 0;
+
+    @Builder.Default
+    @Column(name = "preparing_slices", nullable = false, columnDefinition = "integer default 0")
+    private int preparingSlices = 0;
+
+    @Builder.Default
+    @Column(name = "ready_slices", nullable = false, columnDefinition = "integer default 0")
+    private int readySlices = 0;
+
+    @Builder.Default
+    @Column(name = "handed_over_slices", nullable = false, columnDefinition = "integer default 0")
+    private int handedOverSlices = 0;
+
+    @Builder.Default
+    @Column(name = "cancelled_slices", nullable = false, columnDefinition = "integer default 0")
+    private int cancelledSlices = 0;
+
+    public int getSliceCount(PharmacyOrderStatus status) {
+        return switch (status) {
+            case RECEIVED -> receivedSlices;
+            case PREPARING -> preparingSlices;
+            case READY_FOR_PICKUP -> readySlices;
+            case HANDED_OVER -> handedOverSlices;
+            case CANCELLED -> cancelledSlices;
+        };
+    }
+
+    public void setSliceCount(PharmacyOrderStatus status, int count) {
+        switch (status) {
+            case RECEIVED -> receivedSlices = count;
+            case PREPARING -> preparingSlices = count;
+            case READY_FOR_PICKUP -> readySlices = count;
+            case HANDED_OVER -> handedOverSlices = count;
+            case CANCELLED -> cancelledSlices = count;
+        }
+    }
+
+    public int getTotalSlices() {
+        return receivedSlices + preparingSlices + readySlices + handedOverSlices + cancelledSlices;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.leo.pillpathbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * One counter per calendar day and metric (e.g. "customers.registered", "orders.COMPLETED"),
+ * kept up to date by DailyMetricsService and rebuilt from the source tables by its backfill.
+ * Entity counts are booked on the day the entity was created.
+ */
+@Entity
+@Table(name = "daily_metrics", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_metric", columnNames = {"day", "metric"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyMetric {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, length = 64)
+    private String metric;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long value = 0L;
+}
@@ -0,0 +1,103 @@
+package com.leo.pillpathbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email waiting to be sent. Rows are written in the business transaction and drained
+ * by EmailOutboxDispatcher; the final outcome is recorded in email_logs.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_email_outbox_due", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutbox {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_DEAD = "DEAD";
+
+    @Id
+    // Same pooled id scheme as Notification
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_outbox_seq")
+    @SequenceGenerator(name = "email_outbox_seq", sequenceName = "email_outbox_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "recipient_email", nullable = false)
+    private String recipientEmail;
+
+    @Column(name = "recipient_name")
+    private String recipientName;
+
+    @Column(name = "subject", nullable = false, length = 500)
+    private String subject;
+
+    @Column(name = "preheader", length = 500)
+    private String preheader;
+
+    @Column(name = "html_content", nullable = false, columnDefinition = "TEXT")
+    private String htmlContent;
+
+    @Column(name = "email_type", nullable = false, length = 50)
+    private String emailType;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status; // PENDING, SENDING, SENT, DEAD
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    // When the row is next eligible; for SENDING rows this is the end of the claim lease
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Set on each claim; only the holder of the current lease may record the outcome
+    @Column(name = "lease_token", length = 36)
+    private String leaseToken;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    // Reference fields copied to email_logs
+    @Column(name = "notification_id")
+    private Long notificationId;
+
+    @Column(name = "prescription_id")
+    private Long prescriptionId;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "pharmacy_id")
+    private Long pharmacyId;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "pharmacist_id")
+    private Long pharmacistId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+        if (status == null) {
+            status = STATUS_PENDING;
+        }
+    }
+}
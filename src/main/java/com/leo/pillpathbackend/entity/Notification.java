@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
 public class Notification {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (see V20251104) so fan-out inserts can be JDBC-batched; IDENTITY disables batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_seq")
+    @SequenceGenerator(name = "notification_seq", sequenceName = "notifications_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
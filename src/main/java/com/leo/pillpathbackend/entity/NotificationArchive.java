@@ -0,0 +1,69 @@
+package com.leo.pillpathbackend.entity;
+
+import com.leo.pillpathbackend.enums.NotificationType;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read notifications moved out of the inbox table by NotificationRetentionJob.
+ * Rows keep their original id and are only written by the archive query.
+ */
+@Entity
+@Table(name = "notifications_archive", indexes = {
+        @Index(name = "idx_notifications_archive_recipient", columnList = "recipient_id, recipient_type, created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class NotificationArchive {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(nullable = false, length = 500)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationType type;
+
+    @Column(nullable = false)
+    private boolean read;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "link_url")
+    private String link;
+
+    @Column(name = "recipient_id", nullable = false)
+    private Long recipientId;
+
+    @Column(name = "recipient_type", nullable = false)
+    private String recipientType;
+
+    @Column(name = "prescription_id")
+    private Long prescriptionId;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "order_code")
+    private String orderCode;
+
+    @Column(name = "pharmacy_id")
+    private Long pharmacyId;
+
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,27 @@
+package com.leo.pillpathbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Next unreserved sequence number for the ORD-yyyyMMdd-N pharmacy order codes of one day.
+ * Only advanced by OrderCodeCounterRepository.reserve; one row per day gives the daily reset.
+ */
+@Entity
+@Table(name = "order_code_counters")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrderCodeCounter {
+
+    @Id
+    @Column(name = "code_day")
+    private LocalDate codeDay;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+}
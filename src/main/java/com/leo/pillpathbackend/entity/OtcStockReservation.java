@@ -0,0 +1,53 @@
+package com.leo.pillpathbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock taken by an unpaid OTC order. The stock is already decremented; the row records
+ * what to give back if the order is not paid before expiresAt (see OtcStockService).
+ */
+@Entity
+@Table(name = "otc_stock_reservations", indexes = {
+        @Index(name = "idx_otc_reservation_due", columnList = "status, expires_at"),
+        @Index(name = "idx_otc_reservation_order", columnList = "customer_order_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OtcStockReservation {
+
+    public static final String STATUS_ACTIVE = "ACTIVE";
+    public static final String STATUS_CONFIRMED = "CONFIRMED";
+    public static final String STATUS_RELEASED = "RELEASED";
+
+    @Id
+    // Pooled ids so the reservations of an order are inserted in one batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "otc_stock_reservations_seq")
+    @SequenceGenerator(name = "otc_stock_reservations_seq", sequenceName = "otc_stock_reservations_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "otc_id", nullable = false)
+    private Long otcId;
+
+    @Column(name = "customer_order_id", nullable = false)
+    private Long customerOrderId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(nullable = false, length = 16)
+    private String status; // ACTIVE, CONFIRMED, RELEASED
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,7 @@
 package com.leo.pillpathbackend.entity;
 
+import com.leo.pillpathbackend.util.GeoCell;
+import com.leo.pillpathbackend.service.DailyMetricsListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -16,6 +18,7 @@ import java.util.Map;
 
 @Entity
 @Table(name = "pharmacies")
+@EntityListeners(DailyMetricsListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -37,6 +40,10 @@ public class Pharmacy {
     @Column(precision = 11, scale = 8)
     private BigDecimal longitude;
 
+    // Grid cell derived from latitude/longitude, see GeoCell
+    @Column(name = "geo_cell")
+    private Long geoCell;
+
     @Column(name = "phone_number")
     private String phoneNumber;
 
@@ -84,12 +91,32 @@ public class Pharmacy {
     @Column(name = "delivery_radius")
     private Integer deliveryRadius;
 
-    @Column(name = "average_rating")
+    @Column(name = "average_rating", updatable = false)
     private Double averageRating = 0.0;
 
-    @Column(name = "total_reviews")
+    @Column(name = "total_reviews", updatable = false)
     private Integer totalReviews = 0;
 
+    // Rating aggregates are only changed by PharmacyRepository's atomic review updates, so a
+    // profile save never writes back a stale copy
+    @Column(name = "rating_sum", updatable = false)
+    private Long ratingSum = 0L;
+
+    @Column(name = "rating_1", updatable = false)
+    private Integer rating1Count = 0;
+
+    @Column(name = "rating_2", updatable = false)
+    private Integer rating2Count = 0;
+
+    @Column(name = "rating_3", updatable = false)
+    private Integer rating3Count = 0;
+
+    @Column(name = "rating_4", updatable = false)
+    private Integer rating4Count = 0;
+
+    @Column(name = "rating_5", updatable = false)
+    private Integer rating5Count = 0;
+
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -113,4 +140,10 @@ public class Pharmacy {
     
     @OneToMany(mappedBy = "pharmacy", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<PharmacyOrder> pharmacyOrders = new ArrayList<>();
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    protected void syncGeoCell() {
+        geoCell = GeoCell.cellOf(latitude, longitude);
+    }
+}
@@ -3,6 +3,7 @@ package com.leo.pillpathbackend.entity;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import com.leo.pillpathbackend.entity.enums.UserType;
+import com.leo.pillpathbackend.service.ChatMembershipListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -13,6 +14,7 @@ import java.util.List;
 
 @Entity
 @DiscriminatorValue("PHARMACY_ADMIN")
+@EntityListeners(ChatMembershipListener.class)
 @Setter
 @Getter
 @EqualsAndHashCode(callSuper = true)
@@ -15,7 +15,10 @@ import java.time.LocalDateTime;
 @Table(name = "pharmacy_order_items")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class PharmacyOrderItem {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence ids let the items of an order be inserted as one JDBC batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pharmacy_order_item_seq")
+    @SequenceGenerator(name = "pharmacy_order_item_seq", sequenceName = "pharmacy_order_items_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -2,6 +2,7 @@ package com.leo.pillpathbackend.entity;
 
 import com.leo.pillpathbackend.entity.enums.DeliveryPreference;
 import com.leo.pillpathbackend.entity.enums.PrescriptionStatus;
+import com.leo.pillpathbackend.service.DailyMetricsListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -14,6 +15,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "prescriptions")
+@EntityListeners(DailyMetricsListener.class)
 @Getter
 @Setter
 @Builder
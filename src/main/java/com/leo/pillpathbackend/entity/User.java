@@ -1,5 +1,6 @@
 package com.leo.pillpathbackend.entity;
 import com.leo.pillpathbackend.entity.enums.UserType;
+import com.leo.pillpathbackend.service.DailyMetricsListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -14,6 +15,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(DailyMetricsListener.class)
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "user_type", discriminatorType = DiscriminatorType.STRING)
 @Getter
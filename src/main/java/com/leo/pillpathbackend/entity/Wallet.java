@@ -35,10 +35,16 @@ public class Wallet {
     @Builder.Default
     private String currency = "LKR";
 
+    // Rolled up from wallet_stripes periodically; WalletService.currentBalance is exact
     @Column(nullable = false, precision = 19, scale = 2)
     @Builder.Default
     private BigDecimal balance = BigDecimal.ZERO;
 
+    // Number of wallet_stripes rows postings are spread over
+    @Column(name = "stripe_count", nullable = false, columnDefinition = "integer default 1")
+    @Builder.Default
+    private Integer stripeCount = 1;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 16)
     @Builder.Default
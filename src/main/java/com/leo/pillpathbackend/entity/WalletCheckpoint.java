@@ -0,0 +1,41 @@
+package com.leo.pillpathbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Materialized balance of a wallet in append-only ledger mode: the sum of every
+ * wallet_transactions row whose tx_id is below horizonXid. Rows at or above the horizon are
+ * the tail that readers add on top.
+ */
+@Entity
+@Table(name = "wallet_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletCheckpoint {
+    @Id
+    @Column(name = "wallet_id")
+    private Long walletId;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    // Transaction id horizon: every transaction below it had finished when the rows were folded
+    @Column(name = "horizon_xid", nullable = false)
+    @Builder.Default
+    private Long horizonXid = 0L;
+
+    @Column(name = "row_count", nullable = false)
+    @Builder.Default
+    private Long rowCount = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,41 @@
+package com.leo.pillpathbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One sub-balance of a wallet. Postings add to a single stripe, so concurrent payments only
+ * contend when they land on the same stripe; the wallet balance is the sum of its stripes.
+ */
+@Entity
+@Table(name = "wallet_stripes", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_wallet_stripe", columnNames = {"wallet_id", "stripe"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletStripe {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "wallet_id", nullable = false)
+    private Long walletId;
+
+    @Column(nullable = false)
+    private Integer stripe;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
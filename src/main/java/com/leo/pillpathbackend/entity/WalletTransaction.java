@@ -35,9 +35,14 @@ public class WalletTransaction {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal amount; // signed
 
-    @Column(nullable = false, precision = 19, scale = 2)
+    // Balance of the stripe the posting went to; equals the wallet balance for single-stripe
+    // wallets. Not recorded in append-only ledger mode.
+    @Column(precision = 19, scale = 2)
     private BigDecimal balanceAfter;
 
+    @Column
+    private Integer stripe;
+
     @Column(nullable = false, length = 8)
     private String currency;
 
@@ -58,5 +63,11 @@ public class WalletTransaction {
 
     @CreationTimestamp
     private LocalDateTime createdAt;
+
+    // Writing transaction's id, set by the column default (declared here too, since ddl-auto may
+    // create the column before the migration runs); orders rows for checkpointing
+    @Column(name = "tx_id", insertable = false, updatable = false,
+            columnDefinition = "bigint DEFAULT (CAST(CAST(pg_current_xact_id() AS text) AS bigint))")
+    private Long txId;
 }
 
@@ -0,0 +1,205 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.dto.CustomerActivityResponseDTO;
+import com.leo.pillpathbackend.dto.CustomerDTO;
+import com.leo.pillpathbackend.dto.PharmacyPerformanceResponseDTO;
+import com.leo.pillpathbackend.dto.SuspendedAccountDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Admin report pages. Each page is one SQL statement that joins the listed rows to per-key
+ * counts pre-aggregated with GROUP BY, plus one count query, and maps rows straight into the
+ * response DTOs without loading entities. Sortable fields are whitelisted per report.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AdminReportRepository {
+
+    private static final DateTimeFormatter CUSTOMER_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String CUSTOMER_COUNTS = """
+            FROM users u
+            LEFT JOIN (SELECT customer_id, COUNT(*) AS n FROM prescriptions GROUP BY customer_id) pc ON pc.customer_id = u.id
+            LEFT JOIN (SELECT customer_id, COUNT(*) AS n FROM customer_orders GROUP BY customer_id) oc ON oc.customer_id = u.id
+            WHERE u.user_type = 'CUSTOMER'
+            """;
+
+    private static final Map<String, String> CUSTOMER_SORT = Map.of(
+            "createdAt", "u.created_at",
+            "fullName", "u.full_name",
+            "email", "u.email",
+            "prescriptionCount", "prescription_count",
+            "orderCount", "order_count");
+
+    private static final Map<String, String> ACTIVITY_SORT = Map.of(
+            "registrationDate", "u.created_at",
+            "createdAt", "u.created_at",
+            "name", "name",
+            "prescriptionsUploaded", "prescription_count",
+            "status", "u.is_active");
+
+    private static final Map<String, String> PERFORMANCE_SORT = Map.of(
+            "ordersFulfilled", "orders_fulfilled",
+            "rating", "rating",
+            "name", "p.name",
+            "registrationDate", "p.created_at",
+            "createdAt", "p.created_at");
+
+    private static final Map<String, String> SUSPENDED_SORT = Map.of(
+            "type", "type",
+            "name", "name",
+            "id", "entity_id");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Page<CustomerDTO> customers(Pageable pageable) {
+        String sql = "SELECT u.id, u.email, u.full_name, u.phone_number, u.date_of_birth, u.address, " +
+                "u.profile_picture_url, u.is_active, u.suspend_reason, u.created_at, " +
+                "COALESCE(pc.n, 0) AS prescription_count, COALESCE(oc.n, 0) AS order_count " +
+                CUSTOMER_COUNTS + orderBy(pageable.getSort(), CUSTOMER_SORT, "u.created_at DESC", "u.id") + " LIMIT ? OFFSET ?";
+        RowMapper<CustomerDTO> mapper = (rs, i) -> {
+            CustomerDTO dto = new CustomerDTO();
+            dto.setId(rs.getLong("id"));
+            dto.setUsername(rs.getString("full_name"));
+            dto.setEmail(rs.getString("email"));
+            dto.setFullName(rs.getString("full_name"));
+            dto.setPhoneNumber(rs.getString("phone_number"));
+            Date dob = rs.getDate("date_of_birth");
+            dto.setDateOfBirth(dob != null ? dob.toLocalDate() : null);
+            dto.setAddress(rs.getString("address"));
+            dto.setProfilePictureUrl(rs.getString("profile_picture_url"));
+            dto.setIsActive((Boolean) rs.getObject("is_active"));
+            dto.setSuspendReason(rs.getString("suspend_reason"));
+            Timestamp created = rs.getTimestamp("created_at");
+            dto.setCreatedAt(created != null ? created.toLocalDateTime() : null);
+            dto.setPrescriptionCount(rs.getInt("prescription_count"));
+            dto.setOrderCount(rs.getInt("order_count"));
+            return dto;
+        };
+        List<CustomerDTO> rows = jdbcTemplate.query(sql, mapper, pageable.getPageSize(), pageable.getOffset());
+        return page(rows, pageable, "SELECT COUNT(*) FROM users u WHERE u.user_type = 'CUSTOMER'");
+    }
+
+    public Page<CustomerActivityResponseDTO> customerActivity(Pageable pageable) {
+        String sql = "SELECT u.id, COALESCE(u.full_name, u.username) AS name, u.is_active, u.created_at, " +
+                "COALESCE(pc.n, 0) AS prescription_count " +
+                "FROM users u " +
+                "LEFT JOIN (SELECT customer_id, COUNT(*) AS n FROM prescriptions GROUP BY customer_id) pc ON pc.customer_id = u.id " +
+                "WHERE u.user_type = 'CUSTOMER'" +
+                orderBy(pageable.getSort(), ACTIVITY_SORT, "u.created_at DESC", "u.id") + " LIMIT ? OFFSET ?";
+        RowMapper<CustomerActivityResponseDTO> mapper = (rs, i) -> {
+            Timestamp created = rs.getTimestamp("created_at");
+            return CustomerActivityResponseDTO.builder()
+                    .customerId(prefixedId("cus_", rs.getLong("id")))
+                    .name(rs.getString("name"))
+                    .prescriptionsUploaded(rs.getLong("prescription_count"))
+                    .status(Boolean.TRUE.equals(rs.getObject("is_active")) ? "Active" : "Suspended")
+                    .registrationDate(created != null ? created.toLocalDateTime().format(CUSTOMER_DATE_FORMAT) : null)
+                    .build();
+        };
+        List<CustomerActivityResponseDTO> rows = jdbcTemplate.query(sql, mapper, pageable.getPageSize(), pageable.getOffset());
+        return page(rows, pageable, "SELECT COUNT(*) FROM users u WHERE u.user_type = 'CUSTOMER'");
+    }
+
+    public Page<PharmacyPerformanceResponseDTO> pharmacyPerformance(Pageable pageable) {
+        String sql = "SELECT p.id, p.name, p.is_active, p.is_verified, p.created_at, " +
+                "COALESCE(p.average_rating, 0) AS rating, COALESCE(f.n, 0) AS orders_fulfilled " +
+                "FROM pharmacies p " +
+                "LEFT JOIN (SELECT pharmacy_id, COUNT(*) AS n FROM pharmacy_orders WHERE status = 'HANDED_OVER' " +
+                "GROUP BY pharmacy_id) f ON f.pharmacy_id = p.id" +
+                orderBy(pageable.getSort(), PERFORMANCE_SORT, "orders_fulfilled DESC", "p.id") + " LIMIT ? OFFSET ?";
+        RowMapper<PharmacyPerformanceResponseDTO> mapper = (rs, i) -> {
+            Timestamp created = rs.getTimestamp("created_at");
+            return PharmacyPerformanceResponseDTO.builder()
+                    .pharmacyId(prefixedId("ph_", rs.getLong("id")))
+                    .name(rs.getString("name"))
+                    .ordersFulfilled(rs.getLong("orders_fulfilled"))
+                    .rating(rs.getDouble("rating"))
+                    .status(pharmacyStatus((Boolean) rs.getObject("is_active"), (Boolean) rs.getObject("is_verified")))
+                    .registrationDate(created != null
+                            ? created.toLocalDateTime().atZone(ZoneId.systemDefault()).toInstant().toString()
+                            : null)
+                    .build();
+        };
+        List<PharmacyPerformanceResponseDTO> rows = jdbcTemplate.query(sql, mapper, pageable.getPageSize(), pageable.getOffset());
+        return page(rows, pageable, "SELECT COUNT(*) FROM pharmacies");
+    }
+
+    // Suspended = verified but inactive pharmacies, and inactive customers
+    public Page<SuspendedAccountDTO> suspendedAccounts(Pageable pageable) {
+        String union = "SELECT 'Pharmacy' AS type, 0 AS type_rank, p.id AS entity_id, p.name AS name, '' AS reason " +
+                "FROM pharmacies p WHERE p.is_active = false AND p.is_verified = true " +
+                "UNION ALL " +
+                "SELECT 'Customer', 1, u.id, COALESCE(u.full_name, u.username), COALESCE(u.suspend_reason, '') " +
+                "FROM users u WHERE u.user_type = 'CUSTOMER' AND u.is_active = false";
+        String sql = "SELECT * FROM (" + union + ") s" +
+                orderBy(pageable.getSort(), SUSPENDED_SORT, "type_rank", "entity_id") + " LIMIT ? OFFSET ?";
+        RowMapper<SuspendedAccountDTO> mapper = (rs, i) -> {
+            boolean pharmacy = "Pharmacy".equals(rs.getString("type"));
+            return SuspendedAccountDTO.builder()
+                    .type(rs.getString("type"))
+                    .id(prefixedId(pharmacy ? "ph_" : "usr_", rs.getLong("entity_id")))
+                    .name(rs.getString("name"))
+                    .reason(rs.getString("reason"))
+                    .suspendedAt("") // not tracked
+                    .build();
+        };
+        List<SuspendedAccountDTO> rows = jdbcTemplate.query(sql, mapper, pageable.getPageSize(), pageable.getOffset());
+        return page(rows, pageable, "SELECT COUNT(*) FROM (" + union + ") s");
+    }
+
+    private <T> Page<T> page(List<T> rows, Pageable pageable, String countSql) {
+        // The count is only needed when this page does not already tell the total
+        if (pageable.getOffset() == 0 && rows.size() < pageable.getPageSize()) {
+            return new PageImpl<>(rows, pageable, rows.size());
+        }
+        Long total = jdbcTemplate.queryForObject(countSql, Long.class);
+        return new PageImpl<>(rows, pageable, total != null ? total : 0L);
+    }
+
+    private static String orderBy(Sort sort, Map<String, String> columns, String defaultOrder, String tieBreaker) {
+        List<String> parts = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = columns.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Unsupported sort field: " + order.getProperty());
+            }
+            parts.add(column + (order.isAscending() ? " ASC" : " DESC") + " NULLS LAST");
+        }
+        if (parts.isEmpty()) parts.add(defaultOrder);
+        StringJoiner joiner = new StringJoiner(", ", " ORDER BY ", "");
+        parts.forEach(joiner::add);
+        joiner.add(tieBreaker);
+        return joiner.toString();
+    }
+
+    private static String prefixedId(String prefix, long id) {
+        String s = String.valueOf(id);
+        if (s.length() < 3) s = String.format("%03d", id);
+        return prefix + s;
+    }
+
+    private static String pharmacyStatus(Boolean isActive, Boolean isVerified) {
+        boolean active = Boolean.TRUE.equals(isActive);
+        boolean verified = Boolean.TRUE.equals(isVerified);
+        if (active && verified) return "Active";
+        if (!active && verified) return "Suspended";
+        return "Pending";
+    }
+}
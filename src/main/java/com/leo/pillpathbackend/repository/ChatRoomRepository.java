@@ -1,11 +1,13 @@
 package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.ChatRoom;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,5 +25,58 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
 
     @Query("SELECT cr FROM ChatRoom cr WHERE cr.pharmacy.id = :pharmacyId ORDER BY cr.lastMessageAt DESC")
     List<ChatRoom> findByPharmacyId(@Param("pharmacyId") Long pharmacyId);
+
+    // Inbox row built from the room and its joined parties; the aliases name the InboxRow getters
+    String INBOX = "SELECT cr.id AS id, c.id AS customerId, c.fullName AS customerName, " +
+            "c.profilePictureUrl AS customerPicture, ph.id AS pharmacistId, ph.fullName AS pharmacistName, " +
+            "ph.profilePictureUrl AS pharmacistPicture, p.id AS pharmacyId, p.name AS pharmacyName, " +
+            "p.logoUrl AS pharmacyLogo, cr.isActive AS isActive, cr.lastMessageAt AS lastMessageAt, " +
+            "cr.unreadCountCustomer AS unreadCountCustomer, cr.unreadCountPharmacist AS unreadCountPharmacist, " +
+            "cr.lastMessagePreview AS lastMessagePreview, cr.lastMessageSenderType AS lastMessageSenderType, " +
+            "cr.lastMessageId AS lastMessageId, cr.createdAt AS createdAt " +
+            "FROM ChatRoom cr JOIN cr.customer c JOIN cr.pharmacy p LEFT JOIN cr.pharmacist ph ";
+
+    interface InboxRow {
+        Long getId();
+        Long getCustomerId();
+        String getCustomerName();
+        String getCustomerPicture();
+        Long getPharmacistId();
+        String getPharmacistName();
+        String getPharmacistPicture();
+        Long getPharmacyId();
+        String getPharmacyName();
+        String getPharmacyLogo();
+        Boolean getIsActive();
+        LocalDateTime getLastMessageAt();
+        Integer getUnreadCountCustomer();
+        Integer getUnreadCountPharmacist();
+        String getLastMessagePreview();
+        String getLastMessageSenderType();
+        Long getLastMessageId();
+        LocalDateTime getCreatedAt();
+    }
+
+    // Keyset order (last_message_at DESC, id DESC); a page continues strictly after the cursor row
+    String INBOX_ORDER = "ORDER BY cr.lastMessageAt DESC, cr.id DESC";
+    String INBOX_AFTER = "AND (cr.lastMessageAt < :lastMessageAt OR (cr.lastMessageAt = :lastMessageAt AND cr.id < :id)) ";
+
+    @Query(INBOX + "WHERE c.id = :customerId " + INBOX_ORDER)
+    List<InboxRow> findCustomerInboxFirstPage(@Param("customerId") Long customerId, Pageable pageable);
+
+    @Query(INBOX + "WHERE c.id = :customerId " + INBOX_AFTER + INBOX_ORDER)
+    List<InboxRow> findCustomerInboxPageAfter(@Param("customerId") Long customerId,
+                                              @Param("lastMessageAt") LocalDateTime lastMessageAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+
+    @Query(INBOX + "WHERE p.id = :pharmacyId " + INBOX_ORDER)
+    List<InboxRow> findPharmacyInboxFirstPage(@Param("pharmacyId") Long pharmacyId, Pageable pageable);
+
+    @Query(INBOX + "WHERE p.id = :pharmacyId " + INBOX_AFTER + INBOX_ORDER)
+    List<InboxRow> findPharmacyInboxPageAfter(@Param("pharmacyId") Long pharmacyId,
+                                              @Param("lastMessageAt") LocalDateTime lastMessageAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
 }
 
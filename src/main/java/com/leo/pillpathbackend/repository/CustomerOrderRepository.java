@@ -31,4 +31,10 @@ public interface CustomerOrderRepository extends JpaRepository<CustomerOrder, Lo
     long countByStatusInAndCreatedAtBetween(java.util.Collection<CustomerOrderStatus> statuses, java.time.LocalDateTime start, java.time.LocalDateTime end);
     @Query("SELECT COALESCE(SUM(o.total), 0) FROM CustomerOrder o")
     double sumTotal();
+
+    // Locks the parent orders (in id order, to avoid deadlocks) and returns their current slice counters:
+    // [id, received, preparing, ready, handed_over, cancelled]
+    @Query(value = "SELECT id, received_slices, preparing_slices, ready_slices, handed_over_slices, cancelled_slices " +
+            "FROM customer_orders WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockSliceCounters(@Param("ids") Collection<Long> ids);
 }
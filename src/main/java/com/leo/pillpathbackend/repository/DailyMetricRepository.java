@@ -0,0 +1,62 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.entity.DailyMetric;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyMetricRepository extends JpaRepository<DailyMetric, Long> {
+
+    // [metric, first day of month, total] for from <= day < to
+    @Query(value = "SELECT metric, CAST(date_trunc('month', day) AS date), SUM(value) FROM daily_metrics " +
+            "WHERE day >= :from AND day < :to GROUP BY 1, 2", nativeQuery = true)
+    List<Object[]> sumByMetricAndMonth(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // [metric, all-time total]
+    @Query(value = "SELECT metric, SUM(value) FROM daily_metrics GROUP BY metric", nativeQuery = true)
+    List<Object[]> sumByMetric();
+
+    // Waits for counter updates that already hold a shared lock on the month (see
+    // DailyMetricsService) and holds off new ones until this transaction ends
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:namespace, :month)", nativeQuery = true)
+    int lockMonthForRebuild(@Param("namespace") int namespace, @Param("month") int month);
+
+    @Modifying
+    @Query(value = "DELETE FROM daily_metrics WHERE day >= :from AND day < :to", nativeQuery = true)
+    int deleteRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO daily_metrics (day, metric, value)
+            SELECT CAST(created_at AS date),
+                   CASE user_type WHEN 'CUSTOMER' THEN 'customers.registered'
+                                  WHEN 'PHARMACIST' THEN 'pharmacists.registered'
+                                  WHEN 'PHARMACY_ADMIN' THEN 'pharmacy_admins.registered'
+                                  ELSE 'admins.registered' END,
+                   COUNT(*)
+            FROM users WHERE created_at >= :from AND created_at < :to GROUP BY 1, 2
+            """, nativeQuery = true)
+    int rebuildUsers(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "INSERT INTO daily_metrics (day, metric, value) " +
+            "SELECT CAST(created_at AS date), 'pharmacies.registered', COUNT(*) FROM pharmacies " +
+            "WHERE created_at >= :from AND created_at < :to GROUP BY 1", nativeQuery = true)
+    int rebuildPharmacies(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "INSERT INTO daily_metrics (day, metric, value) " +
+            "SELECT CAST(created_at AS date), 'prescriptions.uploaded', COUNT(*) FROM prescriptions " +
+            "WHERE created_at >= :from AND created_at < :to GROUP BY 1", nativeQuery = true)
+    int rebuildPrescriptions(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "INSERT INTO daily_metrics (day, metric, value) " +
+            "SELECT CAST(created_at AS date), 'orders.' || status, COUNT(*) FROM customer_orders " +
+            "WHERE created_at >= :from AND created_at < :to AND status IS NOT NULL GROUP BY 1, 2", nativeQuery = true)
+    int rebuildOrders(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -2,9 +2,12 @@ package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.EmailLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +21,21 @@ public interface EmailLogRepository extends JpaRepository<EmailLog, Long> {
     Optional<EmailLog> findByRecipientEmailAndEmailTypeAndOrderIdAndStatus(
         String recipientEmail, String emailType, Long orderId, String status);
     
+    // Same checks for a whole fan-out at once: which of these addresses already got the email
+    @Query("SELECT DISTINCT e.recipientEmail FROM EmailLog e WHERE e.recipientEmail IN :emails " +
+           "AND e.emailType = :emailType AND e.prescriptionId = :prescriptionId AND e.status = :status")
+    List<String> findRecipientEmailsForPrescription(@Param("emails") Collection<String> emails,
+                                                    @Param("emailType") String emailType,
+                                                    @Param("prescriptionId") Long prescriptionId,
+                                                    @Param("status") String status);
+    
+    @Query("SELECT DISTINCT e.recipientEmail FROM EmailLog e WHERE e.recipientEmail IN :emails " +
+           "AND e.emailType = :emailType AND e.orderId = :orderId AND e.status = :status")
+    List<String> findRecipientEmailsForOrder(@Param("emails") Collection<String> emails,
+                                             @Param("emailType") String emailType,
+                                             @Param("orderId") Long orderId,
+                                             @Param("status") String status);
+    
     // Get all emails for a specific prescription
     List<EmailLog> findByPrescriptionIdOrderBySentAtDesc(Long prescriptionId);
     
@@ -0,0 +1,60 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.entity.EmailOutbox;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // Due rows, locked for the caller's transaction; rows held by another node are skipped.
+    // SENDING rows whose lease has run out belong to a node that died mid-send and are retried.
+    @Query(value = "SELECT * FROM email_outbox " +
+            "WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at, id " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailOutbox> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM EmailOutbox e WHERE e.id = :id")
+    Optional<EmailOutbox> lockById(@Param("id") Long id);
+
+    // Finished rows past retention, a bounded batch at a time; the outcome stays in email_logs
+    @Modifying
+    @Query(value = "DELETE FROM email_outbox WHERE id IN (SELECT id FROM email_outbox " +
+            "WHERE status IN ('SENT', 'DEAD') AND next_attempt_at < :cutoff LIMIT :limit)", nativeQuery = true)
+    int deleteFinishedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    // Duplicate prevention for emails that are queued but not yet sent
+    boolean existsByRecipientEmailAndEmailTypeAndPrescriptionIdAndStatusIn(
+            String recipientEmail, String emailType, Long prescriptionId, Collection<String> statuses);
+
+    boolean existsByRecipientEmailAndEmailTypeAndOrderIdAndStatusIn(
+            String recipientEmail, String emailType, Long orderId, Collection<String> statuses);
+
+    @Query("SELECT DISTINCT e.recipientEmail FROM EmailOutbox e WHERE e.recipientEmail IN :emails " +
+            "AND e.emailType = :emailType AND e.prescriptionId = :prescriptionId AND e.status IN :statuses")
+    List<String> findRecipientEmailsForPrescription(@Param("emails") Collection<String> emails,
+                                                    @Param("emailType") String emailType,
+                                                    @Param("prescriptionId") Long prescriptionId,
+                                                    @Param("statuses") Collection<String> statuses);
+
+    @Query("SELECT DISTINCT e.recipientEmail FROM EmailOutbox e WHERE e.recipientEmail IN :emails " +
+            "AND e.emailType = :emailType AND e.orderId = :orderId AND e.status IN :statuses")
+    List<String> findRecipientEmailsForOrder(@Param("emails") Collection<String> emails,
+                                             @Param("emailType") String emailType,
+                                             @Param("orderId") Long orderId,
+                                             @Param("statuses") Collection<String> statuses);
+
+    long countByStatus(String status);
+}
@@ -3,12 +3,15 @@ package com.leo.pillpathbackend.repository;
 import com.leo.pillpathbackend.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -21,5 +24,30 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     @Query(value = "SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId ORDER BY m.timestamp DESC")
     List<Message> findTopByChatRoomIdOrderByTimestampDesc(@Param("chatRoomId") Long chatRoomId, Pageable pageable);
+
+    // History in keyset order (timestamp DESC, id DESC) along idx_chat_room_timestamp, senders fetched
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.id = :chatRoomId " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findLatestWithSender(@Param("chatRoomId") Long chatRoomId, Pageable pageable);
+
+    // Messages strictly older than the (timestamp, id) of a message the client already has
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.id = :chatRoomId " +
+            "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findBeforeWithSender(@Param("chatRoomId") Long chatRoomId,
+                                       @Param("timestamp") LocalDateTime timestamp,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+
+    @Query("SELECT m.timestamp FROM Message m WHERE m.id = :id AND m.chatRoom.id = :chatRoomId")
+    Optional<LocalDateTime> findTimestampInRoom(@Param("chatRoomId") Long chatRoomId, @Param("id") Long id);
+
+    // Offset paging for older clients; a Slice reads one extra row instead of counting
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.id = :chatRoomId " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    Slice<Message> findSliceWithSender(@Param("chatRoomId") Long chatRoomId, Pageable pageable);
+
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.chatRoom.id = :chatRoomId")
+    long countByChatRoomId(@Param("chatRoomId") Long chatRoomId);
 }
 
@@ -1,21 +1,56 @@
 package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.Notification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     
-    // Find all notifications for a specific recipient
-    List<Notification> findByRecipientIdAndRecipientTypeOrderByCreatedAtDesc(
-            Long recipientId, String recipientType);
+    // Newest page of a recipient's inbox (keyset order: created_at DESC, id DESC)
+    @Query("SELECT n FROM Notification n WHERE n.recipientId = :recipientId AND n.recipientType = :recipientType " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findInboxFirstPage(@Param("recipientId") Long recipientId,
+                                          @Param("recipientType") String recipientType,
+                                          Pageable pageable);
     
-    // Find unread notifications for a specific recipient
-    List<Notification> findByRecipientIdAndRecipientTypeAndReadFalseOrderByCreatedAtDesc(
-            Long recipientId, String recipientType);
+    // Page strictly after the (createdAt, id) cursor of the previous page's last row
+    @Query("SELECT n FROM Notification n WHERE n.recipientId = :recipientId AND n.recipientType = :recipientType " +
+           "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id)) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findInboxPageAfter(@Param("recipientId") Long recipientId,
+                                          @Param("recipientType") String recipientType,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") Long id,
+                                          Pageable pageable);
+    
+    // Mark every unread notification of a recipient as read in one statement
+    @Modifying
+    @Query("UPDATE Notification n SET n.read = true " +
+           "WHERE n.recipientId = :recipientId AND n.recipientType = :recipientType AND n.read = false")
+    int markAllRead(@Param("recipientId") Long recipientId, @Param("recipientType") String recipientType);
+    
+    // Move up to :limit read notifications older than :cutoff into notifications_archive
+    @Modifying
+    @Query(value = "WITH moved AS (" +
+            "DELETE FROM notifications WHERE id IN (" +
+            "SELECT id FROM notifications WHERE read = TRUE AND created_at < :cutoff " +
+            "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, title, message, type, read, created_at, link_url, recipient_id, recipient_type, " +
+            "prescription_id, order_id, order_code, pharmacy_id, customer_id) " +
+            "INSERT INTO notifications_archive (id, title, message, type, read, created_at, link_url, recipient_id, " +
+            "recipient_type, prescription_id, order_id, order_code, pharmacy_id, customer_id, archived_at) " +
+            "SELECT id, title, message, type, read, created_at, link_url, recipient_id, recipient_type, " +
+            "prescription_id, order_id, order_code, pharmacy_id, customer_id, NOW() FROM moved", nativeQuery = true)
+    int archiveReadBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
     
     // Count unread notifications for a specific recipient
     long countByRecipientIdAndRecipientTypeAndReadFalse(Long recipientId, String recipientType);
@@ -24,6 +59,13 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     List<Notification> findByPrescriptionIdAndRecipientIdAndRecipientType(
             Long prescriptionId, Long recipientId, String recipientType);
     
+    // Of the given recipients, those that already have a notification for this prescription
+    @Query("SELECT DISTINCT n.recipientId FROM Notification n WHERE n.prescriptionId = :prescriptionId " +
+           "AND n.recipientType = :recipientType AND n.recipientId IN :recipientIds")
+    List<Long> findRecipientIdsNotifiedForPrescription(@Param("prescriptionId") Long prescriptionId,
+                                                       @Param("recipientType") String recipientType,
+                                                       @Param("recipientIds") Collection<Long> recipientIds);
+    
     // Find notifications by order ID (to avoid duplicates)
     List<Notification> findByOrderIdAndRecipientIdAndRecipientType(
             Long orderId, Long recipientId, String recipientType);
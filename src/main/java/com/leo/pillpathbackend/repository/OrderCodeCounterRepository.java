@@ -0,0 +1,20 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.entity.OrderCodeCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface OrderCodeCounterRepository extends JpaRepository<OrderCodeCounter, LocalDate> {
+
+    // Atomically reserves [result - blockSize, result - 1] for the day; the row lock is held
+    // only until the caller's (short) transaction commits
+    @Query(value = "INSERT INTO order_code_counters (code_day, next_value) VALUES (:day, :blockSize + 1) " +
+            "ON CONFLICT (code_day) DO UPDATE SET next_value = order_code_counters.next_value + :blockSize " +
+            "RETURNING next_value", nativeQuery = true)
+    long reserve(@Param("day") LocalDate day, @Param("blockSize") long blockSize);
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -38,4 +39,23 @@ public interface OtcRepository extends JpaRepository<Otc, Long> {
     // Count out of stock items
     @Query("SELECT COUNT(o) FROM Otc o WHERE o.pharmacy.id = :pharmacyId AND o.stock = 0")
     Long countOutOfStockByPharmacyId(@Param("pharmacyId") Long pharmacyId);
+
+    // Searchable text only, for building the in-memory trigram index
+    @Query("SELECT o.id, o.name, o.category, o.manufacturer, o.dosage FROM Otc o")
+    List<Object[]> findSearchFields();
+
+    @Query("SELECT o.id, o.name, o.category, o.manufacturer, o.dosage FROM Otc o WHERE o.id = :id")
+    List<Object[]> findSearchFieldsById(@Param("id") Long id);
+
+    @Query("SELECT o FROM Otc o JOIN FETCH o.pharmacy WHERE o.id IN :ids")
+    List<Otc> findWithPharmacyByIdIn(@Param("ids") Collection<Long> ids);
+
+    // The expression must match idx_otc_search_trgm for the GIN index to be used. COALESCE rather
+    // than concat_ws, which is not immutable and so cannot be indexed.
+    @Query(value = "SELECT o.id FROM otc o " +
+            "WHERE lower(COALESCE(o.name, '') || ' ' || COALESCE(o.category, '') || ' ' || COALESCE(o.manufacturer, '') || ' ' || COALESCE(o.dosage, '')) %> :q " +
+            "ORDER BY word_similarity(:q, lower(COALESCE(o.name, '') || ' ' || COALESCE(o.category, '') || ' ' || COALESCE(o.manufacturer, '') || ' ' || COALESCE(o.dosage, ''))) DESC, " +
+            "word_similarity(:q, lower(o.name)) DESC, o.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> searchIdsByTrigram(@Param("q") String query, @Param("limit") int limit);
 }
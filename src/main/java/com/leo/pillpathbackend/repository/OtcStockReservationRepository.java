@@ -0,0 +1,24 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.entity.OtcStockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OtcStockReservationRepository extends JpaRepository<OtcStockReservation, Long> {
+
+    // Claims expired reservations; SKIP LOCKED lets several nodes sweep without blocking each other
+    @Query(value = "SELECT * FROM otc_stock_reservations WHERE status = 'ACTIVE' AND expires_at < :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OtcStockReservation> lockExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OtcStockReservation r SET r.status = 'CONFIRMED' WHERE r.customerOrderId = :orderId AND r.status = 'ACTIVE'")
+    int confirmActive(@Param("orderId") Long customerOrderId);
+
+    boolean existsByCustomerOrderIdAndStatus(Long customerOrderId, String status);
+}
@@ -2,6 +2,8 @@ package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.PharmacyAdmin;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -12,5 +14,8 @@ public interface PharmacyAdminRepository extends JpaRepository<PharmacyAdmin, Lo
     Optional<PharmacyAdmin> findByEmail(String email);
     Optional<PharmacyAdmin> findByUsername(String username);
     List<PharmacyAdmin> findByPharmacyId(Long pharmacyId);
+
+    @Query("SELECT a.id FROM PharmacyAdmin a WHERE a.pharmacy.id = :pharmacyId")
+    List<Long> findIdsByPharmacyId(@Param("pharmacyId") Long pharmacyId);
     Optional<PharmacyAdmin> findByPharmacyIdAndIsPrimaryAdmin(Long pharmacyId, Boolean isPrimaryAdmin);
 }
\ No newline at end of file
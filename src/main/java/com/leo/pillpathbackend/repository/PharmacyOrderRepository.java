@@ -8,7 +8,6 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
-import java.time.LocalDateTime;
 import java.util.Collection; // added
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -24,16 +23,22 @@ public interface PharmacyOrderRepository extends JpaRepository<PharmacyOrder, Lo
     List<PharmacyOrder> findByPharmacyIdAndStatusOrderByCreatedAtDesc(Long pharmacyId, PharmacyOrderStatus status);
     
     Optional<PharmacyOrder> findByIdAndPharmacyId(Long id, Long pharmacyId);
+
+    List<PharmacyOrder> findByIdInAndPharmacyId(Collection<Long> ids, Long pharmacyId);
     
     List<PharmacyOrder> findBySubmissionIdIn(List<Long> submissionIds);
     
     boolean existsBySubmissionIdAndCustomerOrder_StatusIn(Long submissionId, Collection<CustomerOrderStatus> statuses);
 
     List<PharmacyOrder> findByCustomerOrderId(Long customerOrderId);
-    
-    // Count orders created on a specific date (between start and end of day)
-    @Query("SELECT COUNT(po) FROM PharmacyOrder po WHERE po.createdAt >= :startOfDay AND po.createdAt < :endOfDay")
-    long countByCreatedAtBetween(@Param("startOfDay") LocalDateTime startOfDay, @Param("endOfDay") LocalDateTime endOfDay);
+
+    // [status, count] per status for one parent order; used to rebuild its slice counters
+    @Query("SELECT po.status, COUNT(po) FROM PharmacyOrder po WHERE po.customerOrder.id = :customerOrderId GROUP BY po.status")
+    List<Object[]> countStatusesByCustomerOrderId(@Param("customerOrderId") Long customerOrderId);
+
+    // Locks the slices (in id order) and returns their committed status: [id, status]
+    @Query(value = "SELECT id, status FROM pharmacy_orders WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockStatuses(@Param("ids") Collection<Long> ids);
 
     // Dashboard Statistics Queries
     
@@ -1,13 +1,16 @@
 package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.Pharmacy;
+import com.leo.pillpathbackend.util.GeoCell;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -67,13 +70,104 @@ public interface PharmacyRepository extends JpaRepository<Pharmacy, Long> {
             "AND p.latitude IS NOT NULL AND p.longitude IS NOT NULL")
     List<Pharmacy> findByIsActiveTrueAndIsVerifiedTrueAndLatitudeIsNotNullAndLongitudeIsNotNull();
 
-    // Optional: Add distance-based query if needed
-    @Query(value = "SELECT * FROM pharmacies p WHERE p.is_active = true AND p.is_verified = true " +
-            "AND p.latitude IS NOT NULL AND p.longitude IS NOT NULL " +
-            "AND (6371 * acos(cos(radians(?1)) * cos(radians(p.latitude)) * " +
-            "cos(radians(p.longitude) - radians(?2)) + sin(radians(?1)) * " +
-            "sin(radians(p.latitude)))) <= ?3", nativeQuery = true)
-    List<Pharmacy> findActivePharmaciesWithinRadius(Double userLat, Double userLng, Double radiusKm);
+    // Nearby search: geo_cell IN (...) and the bounding box prune via index, exact distance only on survivors.
+    // Results come back nearest first so callers can page with limit/offset.
+    @Query(value = "SELECT p.* FROM pharmacies p " +
+            "CROSS JOIN LATERAL (SELECT 6371 * acos(LEAST(1.0, cos(radians(:lat)) * cos(radians(p.latitude)) * " +
+            "cos(radians(p.longitude) - radians(:lng)) + sin(radians(:lat)) * " +
+            "sin(radians(p.latitude)))) AS distance_km) d " +
+            "WHERE p.is_active = true AND p.is_verified = true " +
+            "AND p.geo_cell IN (:cells) " +
+            "AND p.latitude BETWEEN :minLat AND :maxLat " +
+            "AND p.longitude BETWEEN :minLng AND :maxLng " +
+            "AND p.id <> :excludeId " +
+            "AND d.distance_km <= :radiusKm " +
+            "ORDER BY d.distance_km, p.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Pharmacy> findActivePharmaciesNearbyInCells(@Param("lat") Double lat,
+                                                     @Param("lng") Double lng,
+                                                     @Param("radiusKm") Double radiusKm,
+                                                     @Param("cells") Collection<Long> cells,
+                                                     @Param("minLat") Double minLat,
+                                                     @Param("maxLat") Double maxLat,
+                                                     @Param("minLng") Double minLng,
+                                                     @Param("maxLng") Double maxLng,
+                                                     @Param("excludeId") Long excludeId,
+                                                     @Param("limit") Integer limit,
+                                                     @Param("offset") Integer offset);
+
+    // Same as above for radii that cover too many cells; the bounding box alone does the pruning
+    @Query(value = "SELECT p.* FROM pharmacies p " +
+            "CROSS JOIN LATERAL (SELECT 6371 * acos(LEAST(1.0, cos(radians(:lat)) * cos(radians(p.latitude)) * " +
+            "cos(radians(p.longitude) - radians(:lng)) + sin(radians(:lat)) * " +
+            "sin(radians(p.latitude)))) AS distance_km) d " +
+            "WHERE p.is_active = true AND p.is_verified = true " +
+            "AND p.latitude BETWEEN :minLat AND :maxLat " +
+            "AND p.longitude BETWEEN :minLng AND :maxLng " +
+            "AND p.id <> :excludeId " +
+            "AND d.distance_km <= :radiusKm " +
+            "ORDER BY d.distance_km, p.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Pharmacy> findActivePharmaciesNearbyInBox(@Param("lat") Double lat,
+                                                   @Param("lng") Double lng,
+                                                   @Param("radiusKm") Double radiusKm,
+                                                   @Param("minLat") Double minLat,
+                                                   @Param("maxLat") Double maxLat,
+                                                   @Param("minLng") Double minLng,
+                                                   @Param("maxLng") Double maxLng,
+                                                   @Param("excludeId") Long excludeId,
+                                                   @Param("limit") Integer limit,
+                                                   @Param("offset") Integer offset);
+
+    default List<Pharmacy> findActivePharmaciesNearby(double lat, double lng, double radiusKm,
+                                                      Long excludeId, int limit, int offset) {
+        GeoCell.BoundingBox box = GeoCell.boundingBox(lat, lng, radiusKm);
+        List<Long> cells = box.coveringCells();
+        long exclude = excludeId != null ? excludeId : -1L;
+        if (cells.isEmpty()) {
+            return findActivePharmaciesNearbyInBox(lat, lng, radiusKm,
+                    box.minLat(), box.maxLat(), box.minLng(), box.maxLng(), exclude, limit, offset);
+        }
+        return findActivePharmaciesNearbyInCells(lat, lng, radiusKm, cells,
+                box.minLat(), box.maxLat(), box.minLng(), box.maxLng(), exclude, limit, offset);
+    }
+
+    // Rating aggregates move by one review per statement. Postgres evaluates every SET expression
+    // against the row as it was before the update, so the new average uses the old sum and count.
+    @Modifying
+    @Query(value = """
+            UPDATE pharmacies SET
+                rating_sum = rating_sum + :rating,
+                total_reviews = total_reviews + 1,
+                average_rating = CAST(rating_sum + :rating AS double precision) / (total_reviews + 1),
+                rating_1 = rating_1 + CASE WHEN :rating = 1 THEN 1 ELSE 0 END,
+                rating_2 = rating_2 + CASE WHEN :rating = 2 THEN 1 ELSE 0 END,
+                rating_3 = rating_3 + CASE WHEN :rating = 3 THEN 1 ELSE 0 END,
+                rating_4 = rating_4 + CASE WHEN :rating = 4 THEN 1 ELSE 0 END,
+                rating_5 = rating_5 + CASE WHEN :rating = 5 THEN 1 ELSE 0 END
+            WHERE id = :id
+            """, nativeQuery = true)
+    int addReviewRating(@Param("id") Long pharmacyId, @Param("rating") int rating);
+
+    // Scalar read that bypasses the persistence context, which still holds the pre-update value
+    @Query(value = "SELECT average_rating FROM pharmacies WHERE id = :id", nativeQuery = true)
+    Double findAverageRatingById(@Param("id") Long pharmacyId);
+
+    @Modifying
+    @Query(value = """
+            UPDATE pharmacies SET
+                rating_sum = GREATEST(rating_sum - :rating, 0),
+                total_reviews = GREATEST(total_reviews - 1, 0),
+                average_rating = CASE WHEN total_reviews > 1
+                    THEN CAST(rating_sum - :rating AS double precision) / (total_reviews - 1) ELSE 0 END,
+                rating_1 = GREATEST(rating_1 - CASE WHEN :rating = 1 THEN 1 ELSE 0 END, 0),
+                rating_2 = GREATEST(rating_2 - CASE WHEN :rating = 2 THEN 1 ELSE 0 END, 0),
+                rating_3 = GREATEST(rating_3 - CASE WHEN :rating = 3 THEN 1 ELSE 0 END, 0),
+                rating_4 = GREATEST(rating_4 - CASE WHEN :rating = 4 THEN 1 ELSE 0 END, 0),
+                rating_5 = GREATEST(rating_5 - CASE WHEN :rating = 5 THEN 1 ELSE 0 END, 0)
+            WHERE id = :id
+            """, nativeQuery = true)
+    int removeReviewRating(@Param("id") Long pharmacyId, @Param("rating") int rating);
 
     // New method for pharmacy profile details
     @Query("SELECT p FROM Pharmacy p WHERE p.id = :id AND p.isActive = true")
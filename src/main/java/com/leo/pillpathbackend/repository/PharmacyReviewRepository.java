@@ -2,18 +2,25 @@ package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.PharmacyReview;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface PharmacyReviewRepository extends JpaRepository<PharmacyReview, String> {
+public interface PharmacyReviewRepository extends JpaRepository<PharmacyReview, String>, JpaSpecificationExecutor<PharmacyReview> {
     long countByPharmacyId(Long pharmacyId);
 
     @Query("select coalesce(avg(r.rating), 0) from PharmacyReview r where r.pharmacyId = :pid")
     Double averageRatingByPharmacy(@Param("pid") Long pharmacyId);
 
+    // Returns 0 when a concurrent delete already removed the row, so its rating is only taken off once
+    @Modifying
+    @Query("delete from PharmacyReview r where r.reviewId = :id")
+    int deleteByReviewId(@Param("id") String reviewId);
+
     Optional<PharmacyReview> findByCustomerIdAndPharmacyIdAndOrderCode(Long customerId, Long pharmacyId, String orderCode);
 
     // List reviews for a pharmacy newest first
@@ -8,12 +8,30 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PrescriptionSubmissionRepository extends JpaRepository<PrescriptionSubmission, Long> {
     List<PrescriptionSubmission> findByPrescriptionId(Long prescriptionId);
 
+    // Order placement: every submission of the prescription with its pharmacy and items in one query
+    @Query("select distinct s from PrescriptionSubmission s join fetch s.pharmacy left join fetch s.items where s.prescription.id = :prescriptionId")
+    List<PrescriptionSubmission> findWithPharmacyAndItemsByPrescriptionId(@Param("prescriptionId") Long prescriptionId);
+
+    // Bulk status change; leaves already-matching rows (and their updatedAt) untouched. Clears
+    // the persistence context so no stale submission is served afterwards.
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update PrescriptionSubmission s set s.status = :status, s.updatedAt = CURRENT_TIMESTAMP where s.id in :ids and s.status <> :status")
+    int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("status") PrescriptionStatus status);
+
+    // Bulk delete, which skips JPA cascades: the only child rows (items and the pharmacy orders
+    // that reference a submission) are excluded by the conditions, so none is left dangling
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("delete from PrescriptionSubmission s where s.id in :ids and s.items is empty " +
+            "and not exists (select po.id from PharmacyOrder po where po.submission = s)")
+    int deleteEmptyByIdIn(@Param("ids") Collection<Long> ids);
+
     List<PrescriptionSubmission> findByPrescriptionIdIn(List<Long> prescriptionIds);
 
     @EntityGraph(attributePaths = {"pharmacy"})
@@ -8,7 +8,11 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -66,6 +70,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT p.id FROM PharmacistUser p WHERE p.pharmacy.id = :pharmacyId")
     List<Long> findPharmacistIdsByPharmacyId(@Param("pharmacyId") Long pharmacyId);
 
+    // [pharmacyId, pharmacistId] pairs for several pharmacies at once
+    @Query("SELECT p.pharmacy.id, p.id FROM PharmacistUser p WHERE p.pharmacy.id IN :pharmacyIds")
+    List<Object[]> findPharmacistIdsByPharmacyIdIn(@Param("pharmacyIds") Collection<Long> pharmacyIds);
+
+    default Map<Long, List<Long>> findPharmacistIdsGroupedByPharmacy(Collection<Long> pharmacyIds) {
+        Map<Long, List<Long>> result = new HashMap<>();
+        if (pharmacyIds == null || pharmacyIds.isEmpty()) return result;
+        for (Object[] row : findPharmacistIdsByPharmacyIdIn(pharmacyIds)) {
+            result.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+        }
+        return result;
+    }
+
     @Query("SELECT COUNT(u) FROM User u WHERE TYPE(u) = PharmacistUser")
     Long countPharmacists();
 
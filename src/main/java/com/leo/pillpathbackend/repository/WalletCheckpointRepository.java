@@ -0,0 +1,64 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.entity.WalletCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface WalletCheckpointRepository extends JpaRepository<WalletCheckpoint, Long> {
+
+    // Oldest transaction id still running; everything below it has committed or rolled back
+    @Query(value = "SELECT CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint)", nativeQuery = true)
+    long currentHorizon();
+
+    // One projector at a time across nodes; released when the transaction ends
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryProjectorLock(@Param("key") long key);
+
+    // Adds ledger rows in [checkpoint horizon, :horizon) to each wallet's checkpoint
+    @Modifying
+    @Query(value = """
+            INSERT INTO wallet_checkpoints (wallet_id, balance, horizon_xid, row_count, updated_at)
+            SELECT t.wallet_id, SUM(t.amount), :horizon, COUNT(*), now()
+            FROM wallet_transactions t
+            LEFT JOIN wallet_checkpoints c ON c.wallet_id = t.wallet_id
+            WHERE t.tx_id >= COALESCE(c.horizon_xid, 0) AND t.tx_id < :horizon
+            GROUP BY t.wallet_id
+            ON CONFLICT (wallet_id) DO UPDATE
+            SET balance = wallet_checkpoints.balance + EXCLUDED.balance,
+                horizon_xid = EXCLUDED.horizon_xid,
+                row_count = wallet_checkpoints.row_count + EXCLUDED.row_count,
+                updated_at = now()
+            """, nativeQuery = true)
+    int fold(@Param("horizon") long horizon);
+
+    @Modifying
+    @Query(value = """
+            UPDATE wallets w SET balance = c.balance, updated_at = now()
+            FROM wallet_checkpoints c
+            WHERE w.id = c.wallet_id AND w.balance <> c.balance
+            """, nativeQuery = true)
+    int copyBalancesToWallets();
+
+    // Checkpoint plus tail
+    @Query(value = """
+            SELECT COALESCE(c.balance, 0) + COALESCE((
+                SELECT SUM(t.amount) FROM wallet_transactions t
+                WHERE t.wallet_id = :walletId AND t.tx_id >= COALESCE(c.horizon_xid, 0)), 0)
+            FROM (SELECT 1) one
+            LEFT JOIN wallet_checkpoints c ON c.wallet_id = :walletId
+            """, nativeQuery = true)
+    BigDecimal balance(@Param("walletId") Long walletId);
+
+    // Ledger sum the checkpoint should equal; run in the same snapshot as the checkpoint read
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM wallet_transactions " +
+            "WHERE wallet_id = :walletId AND tx_id < :horizon", nativeQuery = true)
+    BigDecimal ledgerSumBelow(@Param("walletId") Long walletId, @Param("horizon") long horizon);
+
+    @Query("SELECT c.walletId FROM WalletCheckpoint c ORDER BY c.walletId")
+    List<Long> findAllWalletIds();
+}
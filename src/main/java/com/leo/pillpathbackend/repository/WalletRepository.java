@@ -3,11 +3,17 @@ package com.leo.pillpathbackend.repository;
 import com.leo.pillpathbackend.entity.Wallet;
 import com.leo.pillpathbackend.entity.enums.WalletOwnerType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
     Optional<Wallet> findByOwnerTypeAndOwnerId(WalletOwnerType ownerType, Long ownerId);
     Optional<Wallet> findByOwnerTypeAndOwnerIdIsNull(WalletOwnerType ownerType);
+
+    // Postings never write the wallet row, so locking it only serializes balance checks (payouts)
+    @Query(value = "SELECT id FROM wallets WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
 }
 
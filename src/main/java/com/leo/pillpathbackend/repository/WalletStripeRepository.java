@@ -0,0 +1,40 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.entity.WalletStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+
+public interface WalletStripeRepository extends JpaRepository<WalletStripe, Long> {
+
+    // Adds delta to one stripe (creating it on first use) and returns the stripe's new balance.
+    // The row lock taken here is the only one a posting holds until commit.
+    @Query(value = """
+            INSERT INTO wallet_stripes (wallet_id, stripe, balance, updated_at)
+            VALUES (:walletId, :stripe, :delta, now())
+            ON CONFLICT (wallet_id, stripe)
+            DO UPDATE SET balance = wallet_stripes.balance + EXCLUDED.balance, updated_at = now()
+            RETURNING balance
+            """, nativeQuery = true)
+    BigDecimal addToStripe(@Param("walletId") Long walletId, @Param("stripe") int stripe, @Param("delta") BigDecimal delta);
+
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) FROM wallet_stripes WHERE wallet_id = :walletId", nativeQuery = true)
+    BigDecimal sumBalance(@Param("walletId") Long walletId);
+
+    // Same sum with every stripe locked, for checks that must not race with postings (payouts)
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) FROM (SELECT balance FROM wallet_stripes " +
+            "WHERE wallet_id = :walletId ORDER BY stripe FOR UPDATE) s", nativeQuery = true)
+    BigDecimal sumBalanceForUpdate(@Param("walletId") Long walletId);
+
+    // Copies the sum of each wallet's stripes onto wallets.balance where it has drifted
+    @Modifying
+    @Query(value = """
+            UPDATE wallets w SET balance = s.total, updated_at = now()
+            FROM (SELECT wallet_id, SUM(balance) AS total FROM wallet_stripes GROUP BY wallet_id) s
+            WHERE w.id = s.wallet_id AND w.balance <> s.total
+            """, nativeQuery = true)
+    int rollupBalances();
+}
@@ -2,9 +2,12 @@ package com.leo.pillpathbackend.repository;
 
 import com.leo.pillpathbackend.entity.WalletTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 import java.util.List;
 
@@ -12,6 +15,23 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
     Optional<WalletTransaction> findByExternalKey(String externalKey);
     List<WalletTransaction> findByOrderCodeAndPharmacyOrderId(String orderCode, Long pharmacyOrderId);
 
+    // Append-only posting: a repeated externalKey inserts nothing and returns null, without
+    // the error that would abort the surrounding transaction. tx_id is set here rather than left
+    // to the column default, which a column created by ddl-auto does not have.
+    @Query(value = """
+            INSERT INTO wallet_transactions (wallet_id, type, amount, currency, order_code, pharmacy_order_id,
+                                             prescription_id, payment_id, external_key, note, created_at, tx_id)
+            VALUES (:walletId, :type, :amount, :currency, :orderCode, :pharmacyOrderId,
+                    :prescriptionId, :paymentId, :externalKey, :note, now(),
+                    CAST(CAST(pg_current_xact_id() AS text) AS bigint))
+            ON CONFLICT (external_key) DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Long append(@Param("walletId") Long walletId, @Param("type") String type, @Param("amount") BigDecimal amount,
+                @Param("currency") String currency, @Param("orderCode") String orderCode,
+                @Param("pharmacyOrderId") Long pharmacyOrderId, @Param("prescriptionId") Long prescriptionId,
+                @Param("paymentId") String paymentId, @Param("externalKey") String externalKey, @Param("note") String note);
+
     // New paginated queries
     Page<WalletTransaction> findByWallet_IdOrderByCreatedAtDesc(Long walletId, Pageable pageable);
 }
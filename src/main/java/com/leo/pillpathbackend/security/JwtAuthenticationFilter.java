@@ -1,5 +1,6 @@
 package com.leo.pillpathbackend.security;
 
+import com.leo.pillpathbackend.util.JwtPrincipal;
 import com.leo.pillpathbackend.util.JwtService;
 import com.leo.pillpathbackend.util.TokenBlacklistService;
 import jakarta.servlet.FilterChain;
@@ -62,9 +63,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String authHeader = request.getHeader("Authorization");
             if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
-                if (StringUtils.hasText(token) && !tokenBlacklistService.isBlacklisted(token) && jwtService.isTokenValid(token)) {
-                    Long userId = jwtService.getUserId(token);
-                    String role = jwtService.getRole(token);
+                JwtPrincipal principal = StringUtils.hasText(token) && !tokenBlacklistService.isBlacklisted(token)
+                        ? jwtService.parse(token)
+                        : null;
+                if (principal != null) {
+                    // Parsed once here; AuthenticationHelper and later filters read it back from the request
+                    request.setAttribute(JwtPrincipal.REQUEST_ATTRIBUTE, principal);
+                    Long userId = principal.userId();
+                    String role = principal.role();
                     if (role != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                         List<SimpleGrantedAuthority> authorities = mapAuthorities(role);
                         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
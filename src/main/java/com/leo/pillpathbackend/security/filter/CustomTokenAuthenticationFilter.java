@@ -1,7 +1,7 @@
 package com.leo.pillpathbackend.security.filter;
 
 import com.leo.pillpathbackend.util.AuthenticationHelper;
-import com.leo.pillpathbackend.util.JwtService;
+import com.leo.pillpathbackend.util.JwtPrincipal;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,9 +24,6 @@ public class CustomTokenAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private AuthenticationHelper authHelper;
 
-    @Autowired
-    private JwtService jwtService;
-
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getRequestURI();
@@ -70,11 +67,11 @@ public class CustomTokenAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
 
-            String token = authHelper.extractAndValidateToken(request);
-            if (token != null) {
+            JwtPrincipal principal = authHelper.resolvePrincipal(request);
+            if (principal != null) {
                 System.out.println("Valid token found");
-                Long userId = jwtService.getUserId(token);
-                String role = jwtService.getRole(token);
+                Long userId = principal.userId();
+                String role = principal.role();
                 
                 System.out.println("Token - UserId: " + userId + ", Role: " + role);
 
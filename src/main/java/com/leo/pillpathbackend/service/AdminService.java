@@ -6,6 +6,7 @@ import com.leo.pillpathbackend.dto.AdminDashboardResponseDTO;
 import com.leo.pillpathbackend.dto.AdminKpisDTO;
 import com.leo.pillpathbackend.dto.AdminPrescriptionDTO;
 import com.leo.pillpathbackend.dto.CustomerDTO;
+import com.leo.pillpathbackend.dto.KeysetPageDTO;
 import com.leo.pillpathbackend.dto.OverviewChartsResponseDTO;
 import com.leo.pillpathbackend.dto.OverviewSummaryDTO;
 import com.leo.pillpathbackend.entity.Announcement;
@@ -17,6 +18,9 @@ import com.leo.pillpathbackend.dto.ModeratorCreateResponse;
 import com.leo.pillpathbackend.dto.ModeratorListItemDTO;
 import com.leo.pillpathbackend.dto.AdminPharmacyReviewDTO;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
 import java.util.List;
 
 public interface AdminService {
@@ -26,13 +30,14 @@ public interface AdminService {
     Announcement updateAnnouncement(Long id, AddAnnouncementRequest request);
     Announcement toggleAnnouncementStatus(Long id);
     void deleteAnnouncement(Long id);
-    List<CustomerDTO> getAllCustomers();
+    Page<CustomerDTO> getAllCustomers(Pageable pageable);
 
     void suspendCustomer(Long id, String suspendReason);
 
     void activateCustomer(Long id);
 
-    List<AdminPrescriptionDTO> getAllPrescriptionsForAdmin();
+    // Newest first; pass the previous page's nextCursor to continue
+    KeysetPageDTO<AdminPrescriptionDTO> getPrescriptionsForAdmin(String status, Long pharmacyId, String search, String cursor, int limit);
 
     OverviewSummaryDTO getOverviewSummary();
 
@@ -43,9 +48,9 @@ public interface AdminService {
     AdminAnalyticsChartsDTO getAnalyticsCharts(Integer year);
 
     // Analytics
-    List<PharmacyPerformanceResponseDTO> getPharmacyPerformance();
-    List<CustomerActivityResponseDTO> getCustomerActivity();
-    List<SuspendedAccountDTO> getSuspendedAccounts();
+    Page<PharmacyPerformanceResponseDTO> getPharmacyPerformance(Pageable pageable);
+    Page<CustomerActivityResponseDTO> getCustomerActivity(Pageable pageable);
+    Page<SuspendedAccountDTO> getSuspendedAccounts(Pageable pageable);
 
     // Moderators
     ModeratorCreateResponse addModerator(ModeratorCreateRequest request);
@@ -53,7 +58,7 @@ public interface AdminService {
     void deleteModerator(String idOrCode);
 
     // Pharmacy Reviews
-    List<AdminPharmacyReviewDTO> getAllPharmacyReviews();
+    KeysetPageDTO<AdminPharmacyReviewDTO> getPharmacyReviews(Long pharmacyId, Integer rating, String cursor, int limit);
     void deletePharmacyReview(String reviewId);
 
     // Future admin methods can go here:
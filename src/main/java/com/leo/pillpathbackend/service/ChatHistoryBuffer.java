@@ -0,0 +1,239 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.dto.MessageDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Newest messages of recently read chat rooms, so reopening a conversation is answered from
+ * memory. A room is seeded from the database on its first read and then kept current by
+ * appending messages as their transactions commit; appends for rooms that are not buffered are
+ * ignored. Messages saved on other nodes evict the room here (over a NOTIFY channel sent with
+ * the saving transaction), so the next read reseeds it from the database. Each room holds a
+ * fixed-size ring, and rooms past the limit are evicted least recently used first. DTOs are
+ * shared and must be treated as read-only.
+ */
+@Component
+@Slf4j
+public class ChatHistoryBuffer {
+
+    static final String CHANNEL = "chat_history_changed";
+    private static final int STRIPES = 256;
+    private static final Comparator<MessageDTO> NEWEST_FIRST = Comparator
+            .comparing(MessageDTO::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(MessageDTO::getId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .reversed();
+
+    /**
+     * Messages newest first, and whether older ones exist beyond them
+     */
+    public record Slice(List<MessageDTO> messages, boolean hasMore) {}
+
+    private final int capacity;
+    private final PgNotificationHub notificationHub;
+    private final LinkedHashMap<Long, Ring> rooms;
+    // Appends per room stripe; a seed read while its stripe moved may miss a message and is dropped
+    private final long[] appends = new long[STRIPES];
+    private final Counter hits;
+    private final Counter misses;
+
+    public ChatHistoryBuffer(@Value("${app.chat.history-buffer.messages-per-room:50}") int capacity,
+                             @Value("${app.chat.history-buffer.max-rooms:2000}") int maxRooms,
+                             MeterRegistry meterRegistry,
+                             PgNotificationHub notificationHub) {
+        this.capacity = capacity;
+        this.notificationHub = notificationHub;
+        this.rooms = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Ring> eldest) {
+                return size() > maxRooms;
+            }
+        };
+        this.hits = Counter.builder("chat_history_buffer.reads").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat_history_buffer.reads").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("chat_history_buffer.rooms", this, ChatHistoryBuffer::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        notificationHub.subscribe(CHANNEL, this::onNotify, this::clear);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return rooms.size();
+    }
+
+    /**
+     * Up to limit messages older than beforeId (the newest when null), or null when the buffer
+     * cannot answer without the database
+     */
+    public synchronized Slice read(Long chatRoomId, Long beforeId, int limit) {
+        Ring ring = rooms.get(chatRoomId);
+        Slice slice = ring != null ? ring.read(beforeId, limit) : null;
+        (slice != null ? hits : misses).increment();
+        return slice;
+    }
+
+    /**
+     * Stripe version to read before loading a room's newest messages for seed()
+     */
+    public synchronized long version(Long chatRoomId) {
+        return appends[stripe(chatRoomId)];
+    }
+
+    /**
+     * Buffer a room's newest messages (newest first, at most capacity of them) unless a message
+     * was appended to its stripe since version was read
+     */
+    public synchronized void seed(Long chatRoomId, long version, List<MessageDTO> newestFirst, boolean hasOlder) {
+        if (appends[stripe(chatRoomId)] != version) return;
+        Ring ring = new Ring(capacity);
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            ring.add(newestFirst.get(i));
+        }
+        ring.hasOlder = hasOlder;
+        rooms.put(chatRoomId, ring);
+    }
+
+    /**
+     * Add a saved message once the surrounding transaction commits (immediately when there is
+     * none). Other nodes evict the room when the notification, sent in the same transaction,
+     * is delivered on commit.
+     */
+    public void append(MessageDTO message) {
+        notificationHub.publish(CHANNEL, notificationHub.nodeId() + "|" + message.getChatRoomId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appendNow(message);
+                }
+            });
+        } else {
+            appendNow(message);
+        }
+    }
+
+    private synchronized void appendNow(MessageDTO message) {
+        appends[stripe(message.getChatRoomId())]++;
+        Ring ring = rooms.get(message.getChatRoomId());
+        if (ring != null) {
+            ring.add(message);
+        }
+    }
+
+    /**
+     * Drop a room; a seed that read the database before this is discarded as well
+     */
+    public synchronized void evict(Long chatRoomId) {
+        appends[stripe(chatRoomId)]++;
+        rooms.remove(chatRoomId);
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            appends[i]++;
+        }
+        rooms.clear();
+    }
+
+    // nodeId|chatRoomId
+    private void onNotify(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 2 || parts[0].equals(notificationHub.nodeId())) return;
+        evict(Long.valueOf(parts[1]));
+        log.debug("Chat history of room {} invalidated by node {}", parts[1], parts[0]);
+    }
+
+    private static int stripe(Long chatRoomId) {
+        return (int) (chatRoomId & (STRIPES - 1));
+    }
+
+    private static final class Ring {
+        private final MessageDTO[] items;
+        private int newest = -1; // slot of the newest message
+        private int size;
+        // Older messages exist in the database beyond what the ring holds
+        private boolean hasOlder;
+
+        Ring(int capacity) {
+            this.items = new MessageDTO[Math.max(1, capacity)];
+        }
+
+        // i = 0 is the newest message
+        MessageDTO get(int i) {
+            return items[(newest - i + items.length) % items.length];
+        }
+
+        void add(MessageDTO message) {
+            if (size > 0 && NEWEST_FIRST.compare(message, get(0)) >= 0) {
+                // Committed out of order (or already present): rebuild in order, rare
+                List<MessageDTO> all = new ArrayList<>(size + 1);
+                for (int i = 0; i < size; i++) {
+                    if (get(i).getId().equals(message.getId())) return;
+                    all.add(get(i));
+                }
+                all.add(message);
+                all.sort(NEWEST_FIRST);
+                boolean older = hasOlder || all.size() > items.length;
+                newest = -1;
+                size = 0;
+                for (int i = Math.min(all.size(), items.length) - 1; i >= 0; i--) {
+                    push(all.get(i));
+                }
+                hasOlder = older;
+                return;
+            }
+            push(message);
+        }
+
+        private void push(MessageDTO message) {
+            newest = (newest + 1) % items.length;
+            items[newest] = message;
+            if (size < items.length) {
+                size++;
+            } else {
+                hasOlder = true;
+            }
+        }
+
+        Slice read(Long beforeId, int limit) {
+            int start = 0;
+            if (beforeId != null) {
+                start = -1;
+                for (int i = 0; i < size; i++) {
+                    if (get(i).getId().equals(beforeId)) {
+                        start = i + 1;
+                        break;
+                    }
+                }
+                if (start < 0) return null;
+            }
+            int available = size - start;
+            if (available < limit && hasOlder) return null;
+            int n = Math.min(limit, available);
+            List<MessageDTO> out = new ArrayList<>(n);
+            for (int i = start; i < start + n; i++) {
+                out.add(get(i));
+            }
+            return new Slice(out, available > n || hasOlder);
+        }
+    }
+}
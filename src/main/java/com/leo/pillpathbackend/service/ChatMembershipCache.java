@@ -0,0 +1,105 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.PharmacyAdminRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat recipients on the pharmacy side of a room: the STOMP user names ("pharmacy_admin:ID"
+ * and the "admin:ID" alias) of every admin of the room's pharmacy, cached per pharmacy so a
+ * message does not query staff. Staff inserts, updates and deletes evict their pharmacy after
+ * commit, here and on other nodes; a load that races with an eviction is not kept.
+ */
+@Component
+@Slf4j
+public class ChatMembershipCache {
+
+    static final String CHANNEL = "chat_membership_changed";
+
+    private final PharmacyAdminRepository pharmacyAdminRepository;
+    private final PgNotificationHub notificationHub;
+
+    private final Map<Long, List<String>> staffByPharmacy = new ConcurrentHashMap<>();
+    // Bumped on every eviction; a load that started before one is discarded
+    private final AtomicLong generation = new AtomicLong();
+
+    public ChatMembershipCache(PharmacyAdminRepository pharmacyAdminRepository, PgNotificationHub notificationHub) {
+        this.pharmacyAdminRepository = pharmacyAdminRepository;
+        this.notificationHub = notificationHub;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        notificationHub.subscribe(CHANNEL, this::onNotify, this::clearAll);
+    }
+
+    /**
+     * User destination names of the pharmacy's staff; the list is shared and read-only
+     */
+    public List<String> staffDestinations(Long pharmacyId) {
+        List<String> cached = staffByPharmacy.get(pharmacyId);
+        if (cached != null) {
+            return cached;
+        }
+        long gen = generation.get();
+        List<Long> adminIds = pharmacyAdminRepository.findIdsByPharmacyId(pharmacyId);
+        List<String> destinations = new ArrayList<>(adminIds.size() * 2);
+        for (Long adminId : adminIds) {
+            destinations.add("pharmacy_admin:" + adminId);
+            destinations.add("admin:" + adminId); // alias to support clients using 'admin' role
+        }
+        List<String> loaded = Collections.unmodifiableList(destinations);
+        staffByPharmacy.put(pharmacyId, loaded);
+        if (generation.get() != gen) {
+            staffByPharmacy.remove(pharmacyId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Staff of a pharmacy changed: drop its entry once the surrounding transaction completes
+     * (immediately when there is none) and tell the other nodes
+     */
+    public void staffChanged(Long pharmacyId) {
+        if (pharmacyId == null) return;
+        notificationHub.publish(CHANNEL, notificationHub.nodeId() + "|" + pharmacyId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(pharmacyId);
+                }
+            });
+        } else {
+            evict(pharmacyId);
+        }
+    }
+
+    public void clearAll() {
+        generation.incrementAndGet();
+        staffByPharmacy.clear();
+    }
+
+    private void evict(Long pharmacyId) {
+        generation.incrementAndGet();
+        staffByPharmacy.remove(pharmacyId);
+    }
+
+    // nodeId|pharmacyId
+    private void onNotify(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 2 || parts[0].equals(notificationHub.nodeId())) return;
+        evict(Long.valueOf(parts[1]));
+        log.debug("Chat membership of pharmacy {} invalidated by node {}", parts[1], parts[0]);
+    }
+}
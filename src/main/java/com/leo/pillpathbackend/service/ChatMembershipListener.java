@@ -0,0 +1,32 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.PharmacyAdmin;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener evicting a pharmacy's cached chat recipients whenever one of its admins is
+ * created, changed or deleted, whichever service did it.
+ */
+@Component
+public class ChatMembershipListener {
+
+    // Resolved lazily: Hibernate builds its listeners before most beans exist
+    private final ObjectProvider<ChatMembershipCache> membershipCache;
+
+    public ChatMembershipListener(ObjectProvider<ChatMembershipCache> membershipCache) {
+        this.membershipCache = membershipCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(PharmacyAdmin admin) {
+        ChatMembershipCache cache = membershipCache.getIfAvailable();
+        if (cache == null || admin.getPharmacy() == null) return;
+        cache.staffChanged(admin.getPharmacy().getId());
+    }
+}
@@ -2,6 +2,7 @@ package com.leo.pillpathbackend.service;
 
 import com.leo.pillpathbackend.dto.ChatMessageHistoryResponse;
 import com.leo.pillpathbackend.dto.ChatRoomDTO;
+import com.leo.pillpathbackend.dto.KeysetPageDTO;
 import com.leo.pillpathbackend.dto.MessageDTO;
 import com.leo.pillpathbackend.dto.StartChatRequest;
 
@@ -10,8 +11,10 @@ import java.util.List;
 public interface ChatService {
     ChatRoomDTO startChat(Long customerId, StartChatRequest request);
     List<ChatRoomDTO> getMyChats(Long userId, String userType);
+    KeysetPageDTO<ChatRoomDTO> getInbox(Long userId, String userType, String cursor, int limit);
     ChatRoomDTO getChatRoomById(Long chatRoomId);
     ChatMessageHistoryResponse getChatMessages(Long chatRoomId, int page, int size);
+    ChatMessageHistoryResponse getChatMessagesBefore(Long chatRoomId, Long beforeMessageId, int size, boolean includeTotal);
     int getUnreadCount(Long userId, String userType);
     MessageDTO persistAndBroadcastMessage(Long chatRoomId, Long senderId, String userType, String text);
     void markChatAsRead(Long chatRoomId, Long userId, String userType);
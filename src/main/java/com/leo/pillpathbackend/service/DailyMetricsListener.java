@@ -0,0 +1,40 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.CustomerOrder;
+import com.leo.pillpathbackend.entity.Pharmacy;
+import com.leo.pillpathbackend.entity.Prescription;
+import com.leo.pillpathbackend.entity.User;
+import jakarta.persistence.PostPersist;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener turning inserts of users, pharmacies, prescriptions and orders into daily
+ * metric events, whichever service created them. These entities use IDENTITY ids, so the
+ * callback runs at save() time, inside the creating transaction.
+ */
+@Component
+public class DailyMetricsListener {
+
+    // Resolved lazily: Hibernate builds its listeners before most beans exist
+    private final ObjectProvider<DailyMetricsService> dailyMetrics;
+
+    public DailyMetricsListener(ObjectProvider<DailyMetricsService> dailyMetrics) {
+        this.dailyMetrics = dailyMetrics;
+    }
+
+    @PostPersist
+    public void created(Object entity) {
+        DailyMetricsService metrics = dailyMetrics.getIfAvailable();
+        if (metrics == null) return;
+        if (entity instanceof User user) {
+            metrics.userRegistered(user);
+        } else if (entity instanceof Pharmacy pharmacy) {
+            metrics.pharmacyRegistered(pharmacy);
+        } else if (entity instanceof Prescription prescription) {
+            metrics.prescriptionUploaded(prescription);
+        } else if (entity instanceof CustomerOrder order) {
+            metrics.orderPlaced(order);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.*;
+import com.leo.pillpathbackend.entity.enums.CustomerOrderStatus;
+import com.leo.pillpathbackend.repository.DailyMetricRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Per-day counters behind the admin charts and KPIs. Domain events (registrations, pharmacy
+ * onboarding, prescription uploads, order status changes) are summed per transaction and
+ * upserted just before it commits, inside a savepoint so a failed upsert cannot abort the
+ * business transaction. A nightly backfill rebuilds the table from the source tables one
+ * month at a time, which also settles deletions and any write path that bypasses these hooks.
+ * Upserts hold a shared advisory lock on each month they touch and the rebuild an exclusive
+ * one, so a commit only waits while its own month is being rebuilt.
+ */
+@Service
+@Slf4j
+public class DailyMetricsService {
+
+    public static final String CUSTOMERS = "customers.registered";
+    public static final String PHARMACISTS = "pharmacists.registered";
+    public static final String PHARMACY_ADMINS = "pharmacy_admins.registered";
+    public static final String ADMINS = "admins.registered";
+    public static final String PHARMACIES = "pharmacies.registered";
+    public static final String PRESCRIPTIONS = "prescriptions.uploaded";
+    public static final List<String> USERS = List.of(CUSTOMERS, PHARMACISTS, PHARMACY_ADMINS, ADMINS);
+
+    // Advisory lock namespace ("DMET"); the second key is the month, see monthKey
+    private static final int LOCK_NAMESPACE = 0x444d4554;
+    private static final String LOCK_SHARED_SQL = "SELECT pg_advisory_xact_lock_shared(?, ?)";
+    private static final String FIRST_DAY_SQL = "SELECT CAST(MIN(d) AS date) FROM (" +
+            "SELECT MIN(created_at) AS d FROM users UNION ALL " +
+            "SELECT MIN(created_at) FROM pharmacies UNION ALL " +
+            "SELECT MIN(created_at) FROM prescriptions UNION ALL " +
+            "SELECT MIN(created_at) FROM customer_orders UNION ALL " +
+            "SELECT MIN(day) FROM daily_metrics) firsts";
+    private static final String UPSERT_SQL = "INSERT INTO daily_metrics (day, metric, value) VALUES (?, ?, ?) " +
+            "ON CONFLICT (day, metric) DO UPDATE SET value = daily_metrics.value + EXCLUDED.value";
+
+    private final DailyMetricRepository dailyMetricRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Transaction-bound resource key for the deltas collected so far
+    private final Object pendingKey = new Object();
+
+    private record Key(LocalDate day, String metric) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key o) {
+            int c = day.compareTo(o.day);
+            return c != 0 ? c : metric.compareTo(o.metric);
+        }
+    }
+
+    public DailyMetricsService(DailyMetricRepository dailyMetricRepository,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager) {
+        this.dailyMetricRepository = dailyMetricRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public static String orders(CustomerOrderStatus status) {
+        return "orders." + status.name();
+    }
+
+    public void userRegistered(User user) {
+        String metric;
+        if (user instanceof Customer) metric = CUSTOMERS;
+        else if (user instanceof PharmacistUser) metric = PHARMACISTS;
+        else if (user instanceof PharmacyAdmin) metric = PHARMACY_ADMINS;
+        else metric = ADMINS;
+        record(metric, user.getCreatedAt(), 1);
+    }
+
+    public void pharmacyRegistered(Pharmacy pharmacy) {
+        record(PHARMACIES, pharmacy.getCreatedAt(), 1);
+    }
+
+    public void prescriptionUploaded(Prescription prescription) {
+        record(PRESCRIPTIONS, prescription.getCreatedAt(), 1);
+    }
+
+    public void orderPlaced(CustomerOrder order) {
+        if (order.getStatus() != null) {
+            record(orders(order.getStatus()), order.getCreatedAt(), 1);
+        }
+    }
+
+    /**
+     * Orders are counted by status on the day they were placed; a change moves one count between buckets
+     */
+    public void orderStatusChanged(CustomerOrder order, CustomerOrderStatus from, CustomerOrderStatus to) {
+        if (from == to) return;
+        if (from != null) record(orders(from), order.getCreatedAt(), -1);
+        if (to != null) record(orders(to), order.getCreatedAt(), 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void record(String metric, LocalDateTime at, long delta) {
+        Key key = new Key((at != null ? at : LocalDateTime.now()).toLocalDate(), metric);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionTemplate.executeWithoutResult(status -> apply(Map.of(key, delta)));
+            return;
+        }
+        Map<Key, Long> pending = (Map<Key, Long>) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            Map<Key, Long> collected = new TreeMap<>();
+            TransactionSynchronizationManager.bindResource(pendingKey, collected);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    apply(collected);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                }
+            });
+            pending = collected;
+        }
+        pending.merge(key, delta, Long::sum);
+    }
+
+    // Runs on the transaction's connection. Month locks and rows go out in key order so
+    // concurrent commits lock them in the same order.
+    private void apply(Map<Key, Long> deltas) {
+        SortedSet<Integer> months = new TreeSet<>();
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<Key, Long> e : new TreeMap<>(deltas).entrySet()) {
+            if (e.getValue() != 0) {
+                months.add(monthKey(e.getKey().day()));
+                rows.add(new Object[]{Date.valueOf(e.getKey().day()), e.getKey().metric(), e.getValue()});
+            }
+        }
+        if (rows.isEmpty()) return;
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                // A failed statement aborts a Postgres transaction; rolling back to the savepoint
+                // keeps the business write committable
+                Savepoint savepoint = con.setSavepoint();
+                try {
+                    try (PreparedStatement lock = con.prepareStatement(LOCK_SHARED_SQL)) {
+                        for (int month : months) {
+                            lock.setInt(1, LOCK_NAMESPACE);
+                            lock.setInt(2, month);
+                            lock.execute();
+                        }
+                    }
+                    try (PreparedStatement upsert = con.prepareStatement(UPSERT_SQL)) {
+                        for (Object[] row : rows) {
+                            upsert.setDate(1, (Date) row[0]);
+                            upsert.setString(2, (String) row[1]);
+                            upsert.setLong(3, (Long) row[2]);
+                            upsert.addBatch();
+                        }
+                        upsert.executeBatch();
+                    }
+                } catch (SQLException e) {
+                    con.rollback(savepoint);
+                    throw e;
+                }
+                con.releaseSavepoint(savepoint);
+                return null;
+            });
+        } catch (Exception e) {
+            // Never fail the business write over a counter; the backfill will repair it
+            log.warn("Daily metrics update failed: {}", e.getMessage());
+        }
+    }
+
+    private static int monthKey(LocalDate day) {
+        return day.getYear() * 12 + day.getMonthValue() - 1;
+    }
+
+    /**
+     * Monthly totals per metric for the months from..to inclusive, from one range scan
+     */
+    public Monthly monthly(YearMonth from, YearMonth to) {
+        Monthly result = new Monthly();
+        for (Object[] row : dailyMetricRepository.sumByMetricAndMonth(from.atDay(1), to.plusMonths(1).atDay(1))) {
+            LocalDate month = row[1] instanceof Date d ? d.toLocalDate() : (LocalDate) row[1];
+            result.values.computeIfAbsent((String) row[0], m -> new HashMap<>())
+                    .merge(YearMonth.from(month), ((Number) row[2]).longValue(), Long::sum);
+        }
+        return result;
+    }
+
+    /**
+     * All-time total per metric
+     */
+    public Map<String, Long> totals() {
+        Map<String, Long> totals = new HashMap<>();
+        for (Object[] row : dailyMetricRepository.sumByMetric()) {
+            totals.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return totals;
+    }
+
+    public static long sum(Map<String, Long> totals, Collection<String> metrics) {
+        long sum = 0;
+        for (String metric : metrics) {
+            sum += totals.getOrDefault(metric, 0L);
+        }
+        return sum;
+    }
+
+    public static final class Monthly {
+        private final Map<String, Map<YearMonth, Long>> values = new HashMap<>();
+
+        public long get(String metric, YearMonth month) {
+            return values.getOrDefault(metric, Map.of()).getOrDefault(month, 0L);
+        }
+
+        public long get(Collection<String> metrics, YearMonth month) {
+            long sum = 0;
+            for (String metric : metrics) {
+                sum += get(metric, month);
+            }
+            return sum;
+        }
+
+        public long total(String metric) {
+            return values.getOrDefault(metric, Map.of()).values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (dailyMetricRepository.count() == 0) {
+                backfill();
+            }
+        } catch (Exception e) {
+            log.warn("Daily metrics startup check failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild every counter from history, one month per transaction. The month lock makes
+     * concurrent commits to that month wait and add their deltas on top of the rebuilt rows,
+     * which cannot have seen their uncommitted data.
+     */
+    @Scheduled(cron = "${app.daily-metrics.backfill-cron:0 30 3 * * *}")
+    public void backfill() {
+        try {
+            LocalDate first = jdbcTemplate.queryForObject(FIRST_DAY_SQL, LocalDate.class);
+            if (first == null) return;
+            YearMonth last = YearMonth.now().plusMonths(1); // rows dated slightly ahead (clock skew)
+            long rows = 0;
+            for (YearMonth month = YearMonth.from(first); !month.isAfter(last); month = month.plusMonths(1)) {
+                rows += rebuildMonth(month);
+            }
+            log.info("Daily metrics rebuilt with {} rows", rows);
+        } catch (Exception e) {
+            log.warn("Daily metrics backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private int rebuildMonth(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        Integer rows = transactionTemplate.execute(status -> {
+            dailyMetricRepository.lockMonthForRebuild(LOCK_NAMESPACE, monthKey(from));
+            dailyMetricRepository.deleteRange(from, to);
+            return dailyMetricRepository.rebuildUsers(from, to)
+                    + dailyMetricRepository.rebuildPharmacies(from, to)
+                    + dailyMetricRepository.rebuildPrescriptions(from, to)
+                    + dailyMetricRepository.rebuildOrders(from, to);
+        });
+        return rows != null ? rows : 0;
+    }
+}
@@ -0,0 +1,196 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.EmailOutbox;
+import com.leo.pillpathbackend.repository.EmailOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drains the email outbox. Each poll claims a batch of due rows (SKIP LOCKED, so several
+ * nodes can drain the same table), splits it across a fixed worker pool where each worker
+ * sends its share over one SMTP connection, then records the outcome: SENT, retry with
+ * exponential backoff, or DEAD once max-attempts is reached. Each claim stamps a lease
+ * token; a row whose lease ran out before its send started is left for the next claim, and an
+ * outcome is only recorded while the row still carries this claim's token. Finished rows are
+ * deleted after app.mail.outbox.retention-days.
+ */
+@Service
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+
+    private final int workerCount;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long leaseMs;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final int retentionDays;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 EmailService emailService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.mail.outbox.workers:4}") int workerCount,
+                                 @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                                 @Value("${app.mail.outbox.max-attempts:6}") int maxAttempts,
+                                 @Value("${app.mail.outbox.lease-ms:120000}") long leaseMs,
+                                 @Value("${app.mail.outbox.backoff-base-ms:30000}") long backoffBaseMs,
+                                 @Value("${app.mail.outbox.backoff-max-ms:3600000}") long backoffMaxMs,
+                                 @Value("${app.mail.outbox.retention-days:30}") int retentionDays) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workerCount = Math.max(1, workerCount);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.leaseMs = leaseMs;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.retentionDays = Math.max(1, retentionDays);
+        this.workers = Executors.newFixedThreadPool(this.workerCount, r -> {
+            Thread t = new Thread(r, "email-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-ms:1000}")
+    public void drain() {
+        List<EmailOutbox> batch;
+        do {
+            batch = claimBatch();
+            if (batch.isEmpty()) return;
+
+            List<Future<?>> pending = new ArrayList<>();
+            int chunk = (batch.size() + workerCount - 1) / workerCount;
+            for (int from = 0; from < batch.size(); from += chunk) {
+                List<EmailOutbox> slice = batch.subList(from, Math.min(from + chunk, batch.size()));
+                pending.add(workers.submit(() -> send(slice)));
+            }
+            // Wait for the batch so a slow SMTP server throttles polling instead of piling up work
+            for (Future<?> f : pending) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    log.error("Email outbox worker failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    private List<EmailOutbox> claimBatch() {
+        List<EmailOutbox> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            String leaseToken = UUID.randomUUID().toString();
+            List<EmailOutbox> due = emailOutboxRepository.lockDueBatch(now, batchSize);
+            for (EmailOutbox email : due) {
+                email.setStatus(EmailOutbox.STATUS_SENDING);
+                email.setLeaseToken(leaseToken);
+                email.setAttempts(email.getAttempts() + 1);
+                email.setNextAttemptAt(now.plus(Duration.ofMillis(leaseMs)));
+            }
+            return due;
+        });
+        return claimed != null ? claimed : List.of();
+    }
+
+    private void send(List<EmailOutbox> slice) {
+        // A row whose lease has already run out may have been claimed again by another node
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> leased = new ArrayList<>(slice.size());
+        for (EmailOutbox email : slice) {
+            if (email.getNextAttemptAt().isAfter(now)) {
+                leased.add(email);
+            }
+        }
+        if (leased.isEmpty()) return;
+        Map<Long, String> failures = emailService.deliverBatch(leased);
+        for (EmailOutbox email : leased) {
+            try {
+                complete(email.getId(), email.getLeaseToken(), failures.get(email.getId()));
+            } catch (Exception e) {
+                // Row stays SENDING and is retried when its lease expires
+                log.error("Failed to record outcome for outbox email {}: {}", email.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void complete(Long id, String leaseToken, String error) {
+        transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.lockById(id).ifPresent(email -> {
+            if (!EmailOutbox.STATUS_SENDING.equals(email.getStatus()) || !leaseToken.equals(email.getLeaseToken())) {
+                log.warn("Lease on outbox email {} was lost during the send; outcome not recorded", id);
+                return;
+            }
+            if (error == null) {
+                email.setStatus(EmailOutbox.STATUS_SENT);
+                email.setLastError(null);
+                emailService.logOutcome(email, "SENT", null);
+                log.info("Email sent successfully - Type: {}, To: {}, Subject: {}",
+                        email.getEmailType(), email.getRecipientEmail(), email.getSubject());
+            } else if (email.getAttempts() >= maxAttempts) {
+                email.setStatus(EmailOutbox.STATUS_DEAD);
+                email.setLastError(error);
+                emailService.logOutcome(email, "FAILED", error);
+                log.error("Email dead-lettered after {} attempts - Type: {}, To: {}, Error: {}",
+                        email.getAttempts(), email.getEmailType(), email.getRecipientEmail(), error);
+            } else {
+                email.setStatus(EmailOutbox.STATUS_PENDING);
+                email.setLastError(error);
+                email.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMs(email.getAttempts()))));
+                log.warn("Email send failed, will retry - Type: {}, To: {}, Attempt: {}, Error: {}",
+                        email.getEmailType(), email.getRecipientEmail(), email.getAttempts(), error);
+            }
+        }));
+    }
+
+    @Scheduled(cron = "${app.mail.outbox.purge-cron:0 15 4 * * *}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        try {
+            int deleted = 0;
+            Integer n;
+            do {
+                n = transactionTemplate.execute(status -> emailOutboxRepository.deleteFinishedBefore(cutoff, 1000));
+                deleted += n != null ? n : 0;
+            } while (n != null && n == 1000);
+            if (deleted > 0) {
+                log.info("Purged {} finished outbox emails older than {} days", deleted, retentionDays);
+            }
+        } catch (Exception e) {
+            log.warn("Email outbox purge failed: {}", e.getMessage());
+        }
+    }
+
+    private long backoffMs(int attempts) {
+        long delay = backoffBaseMs << Math.min(attempts - 1, 20);
+        return Math.min(delay, backoffMaxMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+}
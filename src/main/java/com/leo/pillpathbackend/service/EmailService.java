@@ -1,20 +1,32 @@
 package com.leo.pillpathbackend.service;
 
 import com.leo.pillpathbackend.entity.EmailLog;
+import com.leo.pillpathbackend.entity.EmailOutbox;
 import com.leo.pillpathbackend.repository.EmailLogRepository;
+import com.leo.pillpathbackend.repository.EmailOutboxRepository;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.UnsupportedEncodingException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Service for sending emails.
@@ -26,6 +38,7 @@ public class EmailService {
 
     private final JavaMailSender mailSender;
     private final EmailLogRepository emailLogRepository;
+    private final EmailOutboxRepository emailOutboxRepository;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
@@ -40,43 +53,33 @@ public class EmailService {
     private boolean emailEnabled;
     
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' hh:mm a");
+    private static final List<String> QUEUED_STATUSES = List.of(EmailOutbox.STATUS_PENDING, EmailOutbox.STATUS_SENDING);
+    
+    /**
+     * Contact details for one recipient of a fan-out email
+     */
+    public record EmailRecipient(Long userId, String email, String name, Long notificationId) { }
     
     // ========================================
     // PRESCRIPTION WORKFLOW NOTIFICATION EMAILS
     // ========================================
     
     /**
-     * Send email for prescription sent to pharmacy
+     * Queue prescription sent emails for every pharmacist of the pharmacy in one pass
      */
     @Transactional
-    public void sendPrescriptionSentEmail(
-            String pharmacistEmail,
-            String pharmacistName,
+    public void sendPrescriptionSentEmails(
+            List<EmailRecipient> pharmacists,
             String customerName,
             Long prescriptionId,
             Long pharmacyId,
             String prescriptionCode,
-            LocalDateTime uploadedAt,
-            Long notificationId) {
-        
-        if (!emailEnabled) {
-            log.info("Email disabled - skipping prescription sent email");
-            return;
-        }
-        
-        // Check for duplicates
-        if (isDuplicate(pharmacistEmail, "PRESCRIPTION_SENT", prescriptionId, null)) {
-            log.info("Duplicate email prevented for pharmacist {} - prescription {}", pharmacistEmail, prescriptionId);
-            return;
-        }
+            LocalDateTime uploadedAt) {
         
         String subject = "New Prescription Awaiting Review";
         String preheader = String.format("New prescription from %s requires your attention", customerName);
-        String htmlContent = buildPrescriptionSentEmail(
-                pharmacistName, customerName, prescriptionCode, uploadedAt, prescriptionId);
-        
-        sendEmailWithLogging(pharmacistEmail, pharmacistName, subject, preheader, htmlContent,
-                "PRESCRIPTION_SENT", prescriptionId, null, pharmacyId, null, null, notificationId);
+        queueFanOut(pharmacists, "PRESCRIPTION_SENT", prescriptionId, null, pharmacyId, subject, preheader,
+                r -> buildPrescriptionSentEmail(r.name(), customerName, prescriptionCode, uploadedAt, prescriptionId));
     }
     
     /**
@@ -109,75 +112,43 @@ public class EmailService {
         String htmlContent = buildOrderPreviewReadyEmail(
                 customerName, pharmacyName, orderCode, estimatedTotal, orderId);
         
-        sendEmailWithLogging(customerEmail, customerName, subject, preheader, htmlContent,
+        queueEmail(customerEmail, customerName, subject, preheader, htmlContent,
                 "ORDER_PREVIEW_READY", prescriptionId, orderId, null, null, null, notificationId);
     }
     
     /**
-     * Send email for order confirmed
+     * Queue order confirmed emails for every pharmacist of the pharmacy in one pass
      */
     @Transactional
-    public void sendOrderConfirmedEmail(
-            String pharmacistEmail,
-            String pharmacistName,
+    public void sendOrderConfirmedEmails(
+            List<EmailRecipient> pharmacists,
             String customerName,
             Long orderId,
             String orderCode,
-            Long pharmacyId,
-            Long notificationId) {
-        
-        if (!emailEnabled) {
-            log.info("Email disabled - skipping order confirmed email");
-            return;
-        }
-        
-        // Check for duplicates
-        if (isDuplicate(pharmacistEmail, "ORDER_CONFIRMED", null, orderId)) {
-            log.info("Duplicate email prevented for pharmacist {} - order {}", pharmacistEmail, orderId);
-            return;
-        }
+            Long pharmacyId) {
         
         String subject = "Order Confirmed - Ready to Prepare";
         String preheader = String.format("%s confirmed their order - begin preparation", customerName);
-        String htmlContent = buildOrderConfirmedEmail(
-                pharmacistName, customerName, orderCode, orderId);
-        
-        sendEmailWithLogging(pharmacistEmail, pharmacistName, subject, preheader, htmlContent,
-                "ORDER_CONFIRMED", null, orderId, pharmacyId, null, null, notificationId);
+        queueFanOut(pharmacists, "ORDER_CONFIRMED", null, orderId, pharmacyId, subject, preheader,
+                r -> buildOrderConfirmedEmail(r.name(), customerName, orderCode, orderId));
     }
     
     /**
-     * Send email for order declined
+     * Queue order declined emails for every pharmacist of the pharmacy in one pass
      */
     @Transactional
-    public void sendOrderDeclinedEmail(
-            String pharmacistEmail,
-            String pharmacistName,
+    public void sendOrderDeclinedEmails(
+            List<EmailRecipient> pharmacists,
             String customerName,
             Long orderId,
             String orderCode,
             String reason,
-            Long pharmacyId,
-            Long notificationId) {
-        
-        if (!emailEnabled) {
-            log.info("Email disabled - skipping order declined email");
-            return;
-        }
-        
-        // Check for duplicates
-        if (isDuplicate(pharmacistEmail, "ORDER_DECLINED", null, orderId)) {
-            log.info("Duplicate email prevented for pharmacist {} - order {}", pharmacistEmail, orderId);
-            return;
-        }
+            Long pharmacyId) {
         
         String subject = "Order Preview Declined";
         String preheader = String.format("%s declined the order preview", customerName);
-        String htmlContent = buildOrderDeclinedEmail(
-                pharmacistName, customerName, orderCode, reason, orderId);
-        
-        sendEmailWithLogging(pharmacistEmail, pharmacistName, subject, preheader, htmlContent,
-                "ORDER_DECLINED", null, orderId, pharmacyId, null, null, notificationId);
+        queueFanOut(pharmacists, "ORDER_DECLINED", null, orderId, pharmacyId, subject, preheader,
+                r -> buildOrderDeclinedEmail(r.name(), customerName, orderCode, reason, orderId));
     }
     
     /**
@@ -211,7 +182,7 @@ public class EmailService {
         String htmlContent = buildOrderReadyEmail(
                 customerName, pharmacyName, orderCode, pickupCode, pickupLocation, orderId);
         
-        sendEmailWithLogging(customerEmail, customerName, subject, preheader, htmlContent,
+        queueEmail(customerEmail, customerName, subject, preheader, htmlContent,
                 "ORDER_READY", null, orderId, null, customerId, null, notificationId);
     }
     
@@ -244,7 +215,7 @@ public class EmailService {
         String htmlContent = buildOrderPreparingEmail(
                 customerName, pharmacyName, orderCode, orderId);
         
-        sendEmailWithLogging(customerEmail, customerName, subject, preheader, htmlContent,
+        queueEmail(customerEmail, customerName, subject, preheader, htmlContent,
                 "ORDER_PREPARING", null, orderId, null, customerId, null, notificationId);
     }
     
@@ -278,7 +249,7 @@ public class EmailService {
         String htmlContent = buildOrderHandedOverEmail(
                 customerName, pharmacyName, orderCode, handoverTime, orderId);
         
-        sendEmailWithLogging(customerEmail, customerName, subject, preheader, htmlContent,
+        queueEmail(customerEmail, customerName, subject, preheader, htmlContent,
                 "ORDER_HANDED_OVER", null, orderId, null, customerId, null, notificationId);
     }
     
@@ -312,35 +283,40 @@ public class EmailService {
         String htmlContent = buildOrderCancelledEmail(
                 customerName, pharmacyName, orderCode, reason, orderId);
         
-        sendEmailWithLogging(customerEmail, customerName, subject, preheader, htmlContent,
+        queueEmail(customerEmail, customerName, subject, preheader, htmlContent,
                 "ORDER_CANCELLED", null, orderId, null, customerId, null, notificationId);
     }
     
     /**
-     * Check if email was already sent (duplicate prevention)
+     * Check if email was already sent or is still queued (duplicate prevention)
      */
     private boolean isDuplicate(String recipientEmail, String emailType, Long prescriptionId, Long orderId) {
         if (prescriptionId != null) {
             Optional<EmailLog> existing = emailLogRepository
                     .findByRecipientEmailAndEmailTypeAndPrescriptionIdAndStatus(
                             recipientEmail, emailType, prescriptionId, "SENT");
-            return existing.isPresent();
+            return existing.isPresent() || emailOutboxRepository
+                    .existsByRecipientEmailAndEmailTypeAndPrescriptionIdAndStatusIn(
+                            recipientEmail, emailType, prescriptionId, QUEUED_STATUSES);
         }
         
         if (orderId != null) {
             Optional<EmailLog> existing = emailLogRepository
                     .findByRecipientEmailAndEmailTypeAndOrderIdAndStatus(
                             recipientEmail, emailType, orderId, "SENT");
-            return existing.isPresent();
+            return existing.isPresent() || emailOutboxRepository
+                    .existsByRecipientEmailAndEmailTypeAndOrderIdAndStatusIn(
+                            recipientEmail, emailType, orderId, QUEUED_STATUSES);
         }
         
         return false;
     }
     
     /**
-     * Core email sending method with logging
+     * Queue an email in the outbox. Runs in the caller's transaction, so the email is only
+     * sent if the business change commits; EmailOutboxDispatcher does the actual SMTP work.
      */
-    private void sendEmailWithLogging(
+    private void queueEmail(
             String toEmail,
             String toName,
             String subject,
@@ -354,37 +330,162 @@ public class EmailService {
             Long pharmacistId,
             Long notificationId) {
         
+        EmailOutbox email = EmailOutbox.builder()
+                .recipientEmail(toEmail)
+                .recipientName(toName)
+                .subject(subject)
+                .preheader(preheader)
+                .htmlContent(htmlContent)
+                .emailType(emailType)
+                .status(EmailOutbox.STATUS_PENDING)
+                .prescriptionId(prescriptionId)
+                .orderId(orderId)
+                .pharmacyId(pharmacyId)
+                .customerId(customerId)
+                .pharmacistId(pharmacistId)
+                .notificationId(notificationId)
+                .build();
+        
+        emailOutboxRepository.save(email);
+        log.info("Email queued - Type: {}, To: {}, Subject: {}", emailType, toEmail, subject);
+    }
+    
+    /**
+     * Queue the same event email for several recipients: one duplicate lookup against
+     * email_logs, one against the outbox, and a single batched insert.
+     */
+    private void queueFanOut(
+            List<EmailRecipient> recipients,
+            String emailType,
+            Long prescriptionId,
+            Long orderId,
+            Long pharmacyId,
+            String subject,
+            String preheader,
+            Function<EmailRecipient, String> htmlContent) {
+        
+        if (!emailEnabled) {
+            log.info("Email disabled - skipping {} emails", emailType);
+            return;
+        }
+        if (recipients == null || recipients.isEmpty()) {
+            return;
+        }
+        
+        List<String> emails = recipients.stream().map(EmailRecipient::email).distinct().toList();
+        Set<String> skipped = findAlreadyEmailed(emails, emailType, prescriptionId, orderId);
+        
+        List<EmailOutbox> batch = new ArrayList<>(recipients.size());
+        for (EmailRecipient recipient : recipients) {
+            // add() also drops repeats of the same address within this batch
+            if (!skipped.add(recipient.email())) {
+                log.info("Duplicate email prevented for {} - type {}", recipient.email(), emailType);
+                continue;
+            }
+            batch.add(EmailOutbox.builder()
+                    .recipientEmail(recipient.email())
+                    .recipientName(recipient.name())
+                    .subject(subject)
+                    .preheader(preheader)
+                    .htmlContent(htmlContent.apply(recipient))
+                    .emailType(emailType)
+                    .status(EmailOutbox.STATUS_PENDING)
+                    .prescriptionId(prescriptionId)
+                    .orderId(orderId)
+                    .pharmacyId(pharmacyId)
+                    .pharmacistId(recipient.userId())
+                    .notificationId(recipient.notificationId())
+                    .build());
+        }
+        
+        emailOutboxRepository.saveAll(batch);
+        log.info("Emails queued - Type: {}, Count: {}, Subject: {}", emailType, batch.size(), subject);
+    }
+    
+    /**
+     * Set-based counterpart of isDuplicate: addresses that were already sent or are still queued
+     */
+    private Set<String> findAlreadyEmailed(List<String> emails, String emailType, Long prescriptionId, Long orderId) {
+        Set<String> result = new HashSet<>();
+        if (prescriptionId != null) {
+            result.addAll(emailLogRepository.findRecipientEmailsForPrescription(
+                    emails, emailType, prescriptionId, "SENT"));
+            result.addAll(emailOutboxRepository.findRecipientEmailsForPrescription(
+                    emails, emailType, prescriptionId, QUEUED_STATUSES));
+        } else if (orderId != null) {
+            result.addAll(emailLogRepository.findRecipientEmailsForOrder(
+                    emails, emailType, orderId, "SENT"));
+            result.addAll(emailOutboxRepository.findRecipientEmailsForOrder(
+                    emails, emailType, orderId, QUEUED_STATUSES));
+        }
+        return result;
+    }
+    
+    /**
+     * Send a batch of queued emails over a single SMTP connection.
+     * Returns the error message for each outbox id that failed; ids not in the map were sent.
+     */
+    public Map<Long, String> deliverBatch(List<EmailOutbox> emails) {
+        Map<Long, String> failures = new HashMap<>();
+        // MimeMessage uses identity equality, so it can key the lookup back to the outbox row
+        Map<MimeMessage, Long> messages = new LinkedHashMap<>();
+        for (EmailOutbox email : emails) {
+            try {
+                messages.put(buildMessage(email), email.getId());
+            } catch (Exception e) {
+                failures.put(email.getId(), describe(e));
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+        
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail, fromName);
-            helper.setTo(toEmail);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-            
-            // Set preheader in email headers
-            if (preheader != null) {
-                message.setHeader("X-Entity-Ref-ID", preheader);
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                messages.values().forEach(id -> failures.put(id, describe(e)));
+            } else {
+                failed.forEach((message, ex) -> {
+                    Long id = messages.get(message);
+                    if (id != null) failures.put(id, describe(ex));
+                });
             }
-            
-            mailSender.send(message);
-            
-            // Log successful send
-            logEmail(toEmail, toName, subject, emailType, "SENT", null,
-                    prescriptionId, orderId, pharmacyId, customerId, pharmacistId, notificationId);
-            
-            log.info("Email sent successfully - Type: {}, To: {}, Subject: {}", emailType, toEmail, subject);
-            
-        } catch (MessagingException e) {
-            log.error("Failed to send email - Type: {}, To: {}, Error: {}", emailType, toEmail, e.getMessage());
-            logEmail(toEmail, toName, subject, emailType, "FAILED", e.getMessage(),
-                    prescriptionId, orderId, pharmacyId, customerId, pharmacistId, notificationId);
         } catch (Exception e) {
-            log.error("Unexpected error sending email - Type: {}, To: {}, Error: {}", emailType, toEmail, e.getMessage());
-            logEmail(toEmail, toName, subject, emailType, "FAILED", e.getMessage(),
-                    prescriptionId, orderId, pharmacyId, customerId, pharmacistId, notificationId);
+            messages.values().forEach(id -> failures.put(id, describe(e)));
         }
+        return failures;
+    }
+    
+    private MimeMessage buildMessage(EmailOutbox email) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        
+        helper.setFrom(fromEmail, fromName);
+        helper.setTo(email.getRecipientEmail());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getHtmlContent(), true);
+        
+        // Set preheader in email headers
+        if (email.getPreheader() != null) {
+            message.setHeader("X-Entity-Ref-ID", email.getPreheader());
+        }
+        return message;
+    }
+    
+    private String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+    
+    /**
+     * Record the final outcome of a queued email in email_logs
+     */
+    @Transactional
+    public void logOutcome(EmailOutbox email, String status, String errorMessage) {
+        logEmail(email.getRecipientEmail(), email.getRecipientName(), email.getSubject(), email.getEmailType(),
+                status, errorMessage, email.getPrescriptionId(), email.getOrderId(), email.getPharmacyId(),
+                email.getCustomerId(), email.getPharmacistId(), email.getNotificationId());
     }
     
     /**
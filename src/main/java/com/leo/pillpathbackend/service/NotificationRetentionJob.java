@@ -0,0 +1,55 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Moves read notifications older than the retention window into notifications_archive.
+ * Works in small batches, each in its own transaction, so the inbox table is never locked for long.
+ * Unread notifications are kept regardless of age.
+ */
+@Service
+@Slf4j
+public class NotificationRetentionJob {
+
+    private final NotificationRepository notificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionDays;
+    private final int batchSize;
+
+    public NotificationRetentionJob(NotificationRepository notificationRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.notifications.retention-days:90}") int retentionDays,
+                                    @Value("${app.notifications.archive-batch-size:1000}") int batchSize) {
+        this.notificationRepository = notificationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionDays = retentionDays;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(cron = "${app.notifications.archive-cron:0 30 3 * * *}")
+    public void archive() {
+        if (retentionDays <= 0) return;
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        long total = 0;
+        try {
+            Integer moved;
+            do {
+                moved = transactionTemplate.execute(status -> notificationRepository.archiveReadBefore(cutoff, batchSize));
+                total += moved != null ? moved : 0;
+            } while (moved != null && moved == batchSize);
+        } catch (Exception e) {
+            log.warn("Notification archive run failed after {} rows: {}", total, e.getMessage());
+        }
+        if (total > 0) {
+            log.info("Archived {} read notifications older than {} days", total, retentionDays);
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.leo.pillpathbackend.service;
 
 import com.leo.pillpathbackend.dto.NotificationDTO;
+import com.leo.pillpathbackend.dto.NotificationPageDTO;
 import com.leo.pillpathbackend.entity.Notification;
+import com.leo.pillpathbackend.entity.User;
 import com.leo.pillpathbackend.enums.NotificationType;
 import com.leo.pillpathbackend.repository.NotificationRepository;
 import com.leo.pillpathbackend.repository.UserRepository;
+import com.leo.pillpathbackend.util.KeysetCursor;
+import com.leo.pillpathbackend.ws.NotificationPushService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,22 +34,47 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final NotificationPushService notificationPushService;
+    
+    private static final int MAX_PAGE_SIZE = 100;
     
     /**
-     * Get all notifications for a user
+     * Get one page of a user's notifications, newest first.
+     * Pass the nextCursor of the previous page to continue; null starts from the newest.
      */
-    public List<NotificationDTO> getNotificationsForUser(Long userId, String userType) {
-        List<Notification> notifications = notificationRepository
-                .findByRecipientIdAndRecipientTypeOrderByCreatedAtDesc(userId, userType);
-        return notifications.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public NotificationPageDTO getNotificationsPage(Long userId, String userType, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists
+        Pageable pageable = PageRequest.of(0, size + 1);
+        List<Notification> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = notificationRepository.findInboxFirstPage(userId, userType, pageable);
+        } else {
+            KeysetCursor c = KeysetCursor.decode(cursor);
+            rows = notificationRepository.findInboxPageAfter(userId, userType, c.createdAt(), c.longId(), pageable);
+        }
+        
+        boolean hasMore = rows.size() > size;
+        List<Notification> page = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Notification last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), String.valueOf(last.getId())).encode();
+        }
+        return new NotificationPageDTO(
+                page.stream().map(this::convertToDTO).collect(Collectors.toList()),
+                nextCursor,
+                hasMore);
     }
     
     /**
-     * Get unread count for a user
+     * Get unread count for a user; connected users are served from the push counter
      */
     public long getUnreadCount(Long userId, String userType) {
+        Long cached = notificationPushService.cachedUnreadCount(userId, userType);
+        if (cached != null) {
+            return cached;
+        }
         return notificationRepository
                 .countByRecipientIdAndRecipientTypeAndReadFalse(userId, userType);
     }
@@ -48,8 +85,12 @@ public class NotificationService {
     @Transactional
     public void markAsRead(Long notificationId) {
         notificationRepository.findById(notificationId).ifPresent(notification -> {
+            if (notification.isRead()) {
+                return;
+            }
             notification.setRead(true);
             notificationRepository.save(notification);
+            notificationPushService.readOne(notification.getRecipientId(), notification.getRecipientType());
         });
     }
     
@@ -58,10 +99,9 @@ public class NotificationService {
      */
     @Transactional
     public void markAllAsRead(Long userId, String userType) {
-        List<Notification> notifications = notificationRepository
-                .findByRecipientIdAndRecipientTypeAndReadFalseOrderByCreatedAtDesc(userId, userType);
-        notifications.forEach(notification -> notification.setRead(true));
-        notificationRepository.saveAll(notifications);
+        int updated = notificationRepository.markAllRead(userId, userType);
+        log.debug("Marked {} notifications as read for {} {}", updated, userType, userId);
+        notificationPushService.readAll(userId, userType);
     }
     
     /**
@@ -69,7 +109,12 @@ public class NotificationService {
      */
     @Transactional
     public void deleteNotification(Long notificationId) {
-        notificationRepository.deleteById(notificationId);
+        notificationRepository.findById(notificationId).ifPresent(notification -> {
+            notificationRepository.delete(notification);
+            if (!notification.isRead()) {
+                notificationPushService.readOne(notification.getRecipientId(), notification.getRecipientType());
+            }
+        });
     }
     
     /**
@@ -83,51 +128,51 @@ public class NotificationService {
             List<Long> pharmacistIds,
             String customerName) {
         
-        for (Long pharmacistId : pharmacistIds) {
-            // Check for duplicates
-            List<Notification> existing = notificationRepository
-                    .findByPrescriptionIdAndRecipientIdAndRecipientType(
-                            prescriptionId, pharmacistId, "PHARMACIST");
-            
-            if (existing.isEmpty()) {
-                Notification notification = new Notification();
-                notification.setTitle("New Prescription");
-                notification.setMessage(String.format(
-                        "New prescription from %s is awaiting review.", customerName));
-                notification.setType(NotificationType.INFO);
-                notification.setRecipientId(pharmacistId);
-                notification.setRecipientType("PHARMACIST");
-                notification.setPrescriptionId(prescriptionId);
-                notification.setPharmacyId(pharmacyId);
-                // Navigate pharmacists to their pharmacy review queue endpoint page
-                // Backend endpoint pattern: GET /api/v1/prescriptions/pharmacy/{pharmacyId}
-                // Include prescriptionId as query for client-side focus when present
-                notification.setLink(String.format("/pharmacist/prescriptions/pharmacy/%d?prescriptionId=%d", pharmacyId, prescriptionId));
-                notification.setCreatedAt(LocalDateTime.now());
-                
-                Notification savedNotification = notificationRepository.save(notification);
-                log.info("Created prescription notification for pharmacist {}", pharmacistId);
-                
-                // Send email notification
-                try {
-                    userRepository.findById(pharmacistId).ifPresent(user -> {
-                        String prescriptionCode = "RX-" + prescriptionId;
-                        emailService.sendPrescriptionSentEmail(
-                                user.getEmail(),
-                                user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                                customerName,
-                                prescriptionId,
-                                pharmacyId,
-                                prescriptionCode,
-                                LocalDateTime.now(),
-                                savedNotification.getId()
-                        );
-                    });
-                } catch (Exception e) {
-                    log.error("Failed to send prescription email to pharmacist {}: {}", pharmacistId, e.getMessage());
-                }
+        List<Long> recipients = distinctIds(pharmacistIds);
+        if (recipients.isEmpty()) {
+            return;
+        }
+        
+        // Check for duplicates across all recipients at once
+        Set<Long> alreadyNotified = new HashSet<>(notificationRepository
+                .findRecipientIdsNotifiedForPrescription(prescriptionId, "PHARMACIST", recipients));
+        
+        List<Notification> batch = new ArrayList<>(recipients.size());
+        for (Long pharmacistId : recipients) {
+            if (alreadyNotified.contains(pharmacistId)) {
+                continue;
             }
+            Notification notification = new Notification();
+            notification.setTitle("New Prescription");
+            notification.setMessage(String.format(
+                    "New prescription from %s is awaiting review.", customerName));
+            notification.setType(NotificationType.INFO);
+            notification.setRecipientId(pharmacistId);
+            notification.setRecipientType("PHARMACIST");
+            notification.setPrescriptionId(prescriptionId);
+            notification.setPharmacyId(pharmacyId);
+            // Navigate pharmacists to their pharmacy review queue endpoint page
+            // Backend endpoint pattern: GET /api/v1/prescriptions/pharmacy/{pharmacyId}
+            // Include prescriptionId as query for client-side focus when present
+            notification.setLink(String.format("/pharmacist/prescriptions/pharmacy/%d?prescriptionId=%d", pharmacyId, prescriptionId));
+            notification.setCreatedAt(LocalDateTime.now());
+            batch.add(notification);
         }
+        
+        List<Notification> saved = notificationRepository.saveAll(batch);
+        saved.forEach(this::push);
+        log.info("Created prescription notification for {} pharmacist(s)", saved.size());
+        
+        // Email notifications: outbox rows written in this transaction, so a failure here
+        // rolls back the notifications with it; SMTP delivery happens later from the outbox
+        emailService.sendPrescriptionSentEmails(
+                emailRecipients(saved),
+                customerName,
+                prescriptionId,
+                pharmacyId,
+                "RX-" + prescriptionId,
+                LocalDateTime.now()
+        );
     }
     
     /**
@@ -160,26 +205,23 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             
             Notification savedNotification = notificationRepository.save(notification);
+            push(savedNotification);
             log.info("Created order preview notification for customer {}", customerId);
             
-            // Send email notification
-            try {
-                userRepository.findById(customerId).ifPresent(user -> {
-                    String orderCode = "ORD-" + orderId;
-                    emailService.sendOrderPreviewReadyEmail(
-                            user.getEmail(),
-                            user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                            pharmacyName,
-                            orderId,
-                            prescriptionId,
-                            orderCode,
-                            null, // estimated total - can be added later if available
-                            savedNotification.getId()
-                    );
-                });
-            } catch (Exception e) {
-                log.error("Failed to send order preview email to customer {}: {}", customerId, e.getMessage());
-            }
+            // Email notification
+            userRepository.findById(customerId).ifPresent(user -> {
+                String orderCode = "ORD-" + orderId;
+                emailService.sendOrderPreviewReadyEmail(
+                        user.getEmail(),
+                        user.getFullName() != null ? user.getFullName() : user.getUsername(),
+                        pharmacyName,
+                        orderId,
+                        prescriptionId,
+                        orderCode,
+                        null, // estimated total - can be added later if available
+                        savedNotification.getId()
+                );
+            });
         }
     }
     
@@ -194,7 +236,8 @@ public class NotificationService {
             List<Long> pharmacistIds,
             String customerName) {
         
-        for (Long pharmacistId : pharmacistIds) {
+        List<Notification> batch = new ArrayList<>();
+        for (Long pharmacistId : distinctIds(pharmacistIds)) {
             Notification notification = new Notification();
             notification.setTitle("Order Confirmed");
             notification.setMessage(String.format(
@@ -206,28 +249,21 @@ public class NotificationService {
             notification.setPharmacyId(pharmacyId);
             notification.setLink(String.format("/pharmacist/orders/%d", orderId));
             notification.setCreatedAt(LocalDateTime.now());
-            
-            Notification savedNotification = notificationRepository.save(notification);
-            log.info("Created order confirmed notification for pharmacist {}", pharmacistId);
-            
-            // Send email notification
-            try {
-                userRepository.findById(pharmacistId).ifPresent(user -> {
-                    String orderCode = "ORD-" + orderId;
-                    emailService.sendOrderConfirmedEmail(
-                            user.getEmail(),
-                            user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                            customerName,
-                            orderId,
-                            orderCode,
-                            pharmacyId,
-                            savedNotification.getId()
-                    );
-                });
-            } catch (Exception e) {
-                log.error("Failed to send order confirmed email to pharmacist {}: {}", pharmacistId, e.getMessage());
-            }
+            batch.add(notification);
         }
+        
+        List<Notification> saved = notificationRepository.saveAll(batch);
+        saved.forEach(this::push);
+        log.info("Created order confirmed notification for {} pharmacist(s)", saved.size());
+        
+        // Email notifications
+        emailService.sendOrderConfirmedEmails(
+                emailRecipients(saved),
+                customerName,
+                orderId,
+                "ORD-" + orderId,
+                pharmacyId
+        );
     }
     
     /**
@@ -242,14 +278,16 @@ public class NotificationService {
             String customerName,
             String reason) {
         
-        for (Long pharmacistId : pharmacistIds) {
+        String message = String.format(
+                "Customer %s declined the order preview.", customerName);
+        if (reason != null && !reason.isEmpty()) {
+            message += " Reason: " + reason;
+        }
+        
+        List<Notification> batch = new ArrayList<>();
+        for (Long pharmacistId : distinctIds(pharmacistIds)) {
             Notification notification = new Notification();
             notification.setTitle("Order Declined");
-            String message = String.format(
-                    "Customer %s declined the order preview.", customerName);
-            if (reason != null && !reason.isEmpty()) {
-                message += " Reason: " + reason;
-            }
             notification.setMessage(message);
             notification.setType(NotificationType.WARNING);
             notification.setRecipientId(pharmacistId);
@@ -258,29 +296,22 @@ public class NotificationService {
             notification.setPharmacyId(pharmacyId);
             notification.setLink(String.format("/pharmacist/orders/%d", orderId));
             notification.setCreatedAt(LocalDateTime.now());
-            
-            Notification savedNotification = notificationRepository.save(notification);
-            log.info("Created order declined notification for pharmacist {}", pharmacistId);
-            
-            // Send email notification
-            try {
-                userRepository.findById(pharmacistId).ifPresent(user -> {
-                    String orderCode = "ORD-" + orderId;
-                    emailService.sendOrderDeclinedEmail(
-                            user.getEmail(),
-                            user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                            customerName,
-                            orderId,
-                            orderCode,
-                            reason,
-                            pharmacyId,
-                            savedNotification.getId()
-                    );
-                });
-            } catch (Exception e) {
-                log.error("Failed to send order declined email to pharmacist {}: {}", pharmacistId, e.getMessage());
-            }
+            batch.add(notification);
         }
+        
+        List<Notification> saved = notificationRepository.saveAll(batch);
+        saved.forEach(this::push);
+        log.info("Created order declined notification for {} pharmacist(s)", saved.size());
+        
+        // Email notifications
+        emailService.sendOrderDeclinedEmails(
+                emailRecipients(saved),
+                customerName,
+                orderId,
+                "ORD-" + orderId,
+                reason,
+                pharmacyId
+        );
     }
     
     /**
@@ -307,27 +338,24 @@ public class NotificationService {
         notification.setCreatedAt(LocalDateTime.now());
         
         Notification savedNotification = notificationRepository.save(notification);
+        push(savedNotification);
         log.info("Created order ready notification for customer {}", customerId);
         
-        // Send email notification
-        try {
-            userRepository.findById(customerId).ifPresent(user -> {
-                String pickupCode = "PU-" + orderId; // Can be customized based on actual pickup code
-                emailService.sendOrderReadyEmail(
-                        user.getEmail(),
-                        user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                        pharmacyName,
-                        orderId,
-                        orderCode,
-                        pickupCode,
-                        pharmacyName, // Location - can be enhanced with actual address
-                        customerId,
-                        savedNotification.getId()
-                );
-            });
-        } catch (Exception e) {
-            log.error("Failed to send order ready email to customer {}: {}", customerId, e.getMessage());
-        }
+        // Email notification
+        userRepository.findById(customerId).ifPresent(user -> {
+            String pickupCode = "PU-" + orderId; // Can be customized based on actual pickup code
+            emailService.sendOrderReadyEmail(
+                    user.getEmail(),
+                    user.getFullName() != null ? user.getFullName() : user.getUsername(),
+                    pharmacyName,
+                    orderId,
+                    orderCode,
+                    pickupCode,
+                    pharmacyName, // Location - can be enhanced with actual address
+                    customerId,
+                    savedNotification.getId()
+            );
+        });
     }
     
     /**
@@ -364,24 +392,21 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             
             Notification savedNotification = notificationRepository.save(notification);
+            push(savedNotification);
             log.info("Created order preparing notification for customer {}", customerId);
             
-            // Send email notification
-            try {
-                userRepository.findById(customerId).ifPresent(user -> {
-                    emailService.sendOrderPreparingEmail(
-                            user.getEmail(),
-                            user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                            pharmacyName,
-                            orderId,
-                            orderCode,
-                            customerId,
-                            savedNotification.getId()
-                    );
-                });
-            } catch (Exception e) {
-                log.error("Failed to send order preparing email to customer {}: {}", customerId, e.getMessage());
-            }
+            // Email notification
+            userRepository.findById(customerId).ifPresent(user -> {
+                emailService.sendOrderPreparingEmail(
+                        user.getEmail(),
+                        user.getFullName() != null ? user.getFullName() : user.getUsername(),
+                        pharmacyName,
+                        orderId,
+                        orderCode,
+                        customerId,
+                        savedNotification.getId()
+                );
+            });
         }
     }
     
@@ -420,25 +445,22 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             
             Notification savedNotification = notificationRepository.save(notification);
+            push(savedNotification);
             log.info("Created order handed over notification for customer {}", customerId);
             
-            // Send email notification
-            try {
-                userRepository.findById(customerId).ifPresent(user -> {
-                    emailService.sendOrderHandedOverEmail(
-                            user.getEmail(),
-                            user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                            pharmacyName,
-                            orderId,
-                            orderCode,
-                            handoverTime,
-                            customerId,
-                            savedNotification.getId()
-                    );
-                });
-            } catch (Exception e) {
-                log.error("Failed to send order handed over email to customer {}: {}", customerId, e.getMessage());
-            }
+            // Email notification
+            userRepository.findById(customerId).ifPresent(user -> {
+                emailService.sendOrderHandedOverEmail(
+                        user.getEmail(),
+                        user.getFullName() != null ? user.getFullName() : user.getUsername(),
+                        pharmacyName,
+                        orderId,
+                        orderCode,
+                        handoverTime,
+                        customerId,
+                        savedNotification.getId()
+                );
+            });
         }
     }
     
@@ -477,27 +499,66 @@ public class NotificationService {
             notification.setCreatedAt(LocalDateTime.now());
             
             Notification savedNotification = notificationRepository.save(notification);
+            push(savedNotification);
             log.info("Created order cancelled notification for customer {}", customerId);
             
-            // Send email notification
-            try {
-                userRepository.findById(customerId).ifPresent(user -> {
-                    String orderCode = "ORD-" + orderId;
-                    emailService.sendOrderCancelledEmail(
-                            user.getEmail(),
-                            user.getFullName() != null ? user.getFullName() : user.getUsername(),
-                            pharmacyName,
-                            orderId,
-                            orderCode,
-                            reason,
-                            customerId,
-                            savedNotification.getId()
-                    );
-                });
-            } catch (Exception e) {
-                log.error("Failed to send order cancelled email to customer {}: {}", customerId, e.getMessage());
+            // Email notification
+            userRepository.findById(customerId).ifPresent(user -> {
+                String orderCode = "ORD-" + orderId;
+                emailService.sendOrderCancelledEmail(
+                        user.getEmail(),
+                        user.getFullName() != null ? user.getFullName() : user.getUsername(),
+                        pharmacyName,
+                        orderId,
+                        orderCode,
+                        reason,
+                        customerId,
+                        savedNotification.getId()
+                );
+            });
+        }
+    }
+    
+    /**
+     * Push the notification to the recipient's socket once the transaction commits
+     */
+    private void push(Notification notification) {
+        notificationPushService.created(
+                notification.getRecipientId(), notification.getRecipientType(), convertToDTO(notification));
+    }
+    
+    private List<Long> distinctIds(List<Long> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+        return ids.stream().filter(Objects::nonNull).distinct().toList();
+    }
+    
+    /**
+     * Contact details for the recipients of freshly saved notifications, loaded with a single query
+     */
+    private List<EmailService.EmailRecipient> emailRecipients(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, User> users = userRepository.findAllById(
+                        notifications.stream().map(Notification::getRecipientId).toList())
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        
+        List<EmailService.EmailRecipient> recipients = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            User user = users.get(notification.getRecipientId());
+            if (user == null || user.getEmail() == null) {
+                continue;
             }
+            recipients.add(new EmailService.EmailRecipient(
+                    user.getId(),
+                    user.getEmail(),
+                    user.getFullName() != null ? user.getFullName() : user.getUsername(),
+                    notification.getId()));
         }
+        return recipients;
     }
     
     /**
@@ -0,0 +1,98 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.OrderCodeCounterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out ORD-yyyyMMdd-N pharmacy order codes and OTC-yyyyMMdd-N OTC order codes without
+ * counting orders; both draw N from the same per-day sequence. Each node reserves a block of
+ * numbers for the current day from order_code_counters in its own short transaction and
+ * serves codes from memory until the block runs out or the day changes. No lock is held
+ * while a block is reserved: callers that find the block exhausted each reserve one, take a
+ * number from it and try to install it, so an order transaction never waits on another for a
+ * pooled connection. Codes are unique across nodes; numbers left in a block at restart,
+ * midnight or a lost install are skipped, so N can have gaps and is only roughly ordered.
+ */
+@Service
+@Slf4j
+public class OrderCodeAllocator {
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final OrderCodeCounterRepository counterRepository;
+    private final TransactionTemplate reserveTransaction;
+    private final int blockSize;
+    private final Clock clock;
+
+    // Numbers [next, limit) of day
+    private record Block(LocalDate day, AtomicLong next, long limit) {}
+
+    private final AtomicReference<Block> current = new AtomicReference<>();
+
+    @Autowired
+    public OrderCodeAllocator(OrderCodeCounterRepository counterRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.order-code.block-size:10}") int blockSize) {
+        this(counterRepository, transactionManager, blockSize, Clock.systemDefaultZone());
+    }
+
+    // The clock decides the code day; tests move it across midnight
+    OrderCodeAllocator(OrderCodeCounterRepository counterRepository,
+                       PlatformTransactionManager transactionManager,
+                       int blockSize,
+                       Clock clock) {
+        this.counterRepository = counterRepository;
+        // Independent of the order transaction: a rolled-back order must not hand its block back
+        this.reserveTransaction = new TransactionTemplate(transactionManager);
+        this.reserveTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+        this.clock = clock;
+    }
+
+    public String nextPharmacyOrderCode() {
+        return nextCode("ORD");
+    }
+
+    public String nextOtcOrderCode() {
+        return nextCode("OTC");
+    }
+
+    private String nextCode(String prefix) {
+        LocalDate today = LocalDate.now(clock);
+        return String.format("%s-%s-%d", prefix, today.format(DAY_FORMAT), nextNumber(today));
+    }
+
+    private long nextNumber(LocalDate today) {
+        Block block = current.get();
+        if (block != null && block.day().equals(today)) {
+            long n = block.next().getAndIncrement();
+            if (n < block.limit()) return n;
+        }
+        Block fresh = reserveBlock(today);
+        long n = fresh.next().getAndIncrement();
+        // Losing the race only skips the rest of this block
+        current.compareAndSet(block, fresh);
+        return n;
+    }
+
+    private Block reserveBlock(LocalDate today) {
+        Long end = reserveTransaction.execute(status -> counterRepository.reserve(today, blockSize));
+        if (end == null) {
+            throw new IllegalStateException("Failed to reserve order code block");
+        }
+        log.debug("Reserved order codes {}..{} for {}", end - blockSize, end - 1, today);
+        return new Block(today, new AtomicLong(end - blockSize), end);
+    }
+}
@@ -17,11 +17,13 @@ public interface OrderService {
     PharmacyOrderDTO getPharmacyOrder(Long pharmacistId, Long pharmacyOrderId);
     List<PharmacyOrderDTO> listPharmacyOrders(Long pharmacistId, PharmacyOrderStatus status);
     PharmacyOrderDTO updatePharmacyOrderStatus(Long pharmacistId, Long pharmacyOrderId, PharmacyOrderStatus status);
+    List<PharmacyOrderDTO> bulkUpdatePharmacyOrderStatus(Long pharmacistId, List<Long> pharmacyOrderIds, PharmacyOrderStatus status);
     
     // ✅ NEW: Pharmacy admin methods
     PharmacyOrderDTO getPharmacyOrderByAdmin(Long pharmacyAdminId, Long pharmacyOrderId);
     List<PharmacyOrderDTO> listPharmacyOrdersByAdmin(Long pharmacyAdminId, PharmacyOrderStatus status);
     PharmacyOrderDTO updatePharmacyOrderStatusByAdmin(Long pharmacyAdminId, Long pharmacyOrderId, PharmacyOrderStatus status);
+    List<PharmacyOrderDTO> bulkUpdatePharmacyOrderStatusByAdmin(Long pharmacyAdminId, List<Long> pharmacyOrderIds, PharmacyOrderStatus status);
     
     CustomerOrderDTO payOrder(Long customerId, String orderCode, PayOrderRequestDTO request);
     void assignOrderToFamilyMember(String orderCode, Long customerId, Long familyMemberId);
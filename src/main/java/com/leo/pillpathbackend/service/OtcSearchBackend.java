@@ -0,0 +1,27 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.Otc;
+
+import java.util.List;
+
+/**
+ * Ranked, typo-tolerant lookup of OTC products by name, category, manufacturer and dosage.
+ * Selected with app.otc-search.backend: "memory" (default) keeps a trigram index in process,
+ * "pg_trgm" asks Postgres through a GIN trigram index.
+ */
+public interface OtcSearchBackend {
+
+    /**
+     * Ids of matching products, best match first, at most limit of them
+     */
+    List<Long> search(String query, int limit);
+
+    /**
+     * A product was created or its searchable fields changed
+     */
+    default void indexed(Otc otc) {
+    }
+
+    default void removed(Long otcId) {
+    }
+}
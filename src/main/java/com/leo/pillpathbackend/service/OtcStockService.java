@@ -0,0 +1,188 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.CustomerOrder;
+import com.leo.pillpathbackend.entity.OtcStockReservation;
+import com.leo.pillpathbackend.entity.PharmacyOrder;
+import com.leo.pillpathbackend.entity.enums.PaymentMethod;
+import com.leo.pillpathbackend.entity.enums.PaymentStatus;
+import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
+import com.leo.pillpathbackend.repository.CustomerOrderRepository;
+import com.leo.pillpathbackend.repository.OtcStockReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * OTC stock changes. Stock is taken with one conditional UPDATE per product
+ * (stock >= quantity), sent as a single JDBC batch in ascending product id so concurrent
+ * orders lock rows in the same order and cannot deadlock; a product that runs short fails the
+ * whole order. Unpaid card orders can additionally hold their stock for a limited time: the
+ * sweeper gives the stock back and cancels the order if payment has not arrived by then.
+ */
+@Service
+@Slf4j
+public class OtcStockService {
+
+    private static final String STATUS_SQL = "CASE WHEN stock - ? <= 0 THEN 'Out of Stock' " +
+            "WHEN stock - ? <= 10 THEN 'Low Stock' ELSE 'In Stock' END";
+    private static final String TAKE_SQL = "UPDATE otc SET stock = stock - ?, status = " + STATUS_SQL +
+            ", updated_at = now() WHERE id = ? AND stock >= ?";
+    private static final String RESTORE_SQL = "UPDATE otc SET stock = stock + ?, status = CASE WHEN stock + ? <= 0 " +
+            "THEN 'Out of Stock' WHEN stock + ? <= 10 THEN 'Low Stock' ELSE 'In Stock' END, updated_at = now() WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OtcStockReservationRepository reservationRepository;
+    private final CustomerOrderRepository customerOrderRepository;
+    private final PharmacyOrderStateMachine pharmacyOrderStateMachine;
+    private final TransactionTemplate transactionTemplate;
+    private final long reservationTtlMinutes;
+    private final int sweepBatchSize;
+
+    public OtcStockService(JdbcTemplate jdbcTemplate,
+                           OtcStockReservationRepository reservationRepository,
+                           CustomerOrderRepository customerOrderRepository,
+                           PharmacyOrderStateMachine pharmacyOrderStateMachine,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.otc.reservation-ttl-minutes:0}") long reservationTtlMinutes,
+                           @Value("${app.otc.reservation-sweep-batch-size:200}") int sweepBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reservationRepository = reservationRepository;
+        this.customerOrderRepository = customerOrderRepository;
+        this.pharmacyOrderStateMachine = pharmacyOrderStateMachine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reservationTtlMinutes = reservationTtlMinutes;
+        this.sweepBatchSize = Math.max(1, sweepBatchSize);
+    }
+
+    /**
+     * Take stock for every product, or throw IllegalStateException naming the first product
+     * that is short. Must run in the order's transaction so a failure rolls back the rest.
+     * quantities: product id -> quantity, already summed per product.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void take(SortedMap<Long, Integer> quantities) {
+        if (quantities.isEmpty()) return;
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        List<Long> ids = new ArrayList<>(quantities.size());
+        quantities.forEach((id, q) -> {
+            args.add(new Object[]{q, q, q, id, q});
+            ids.add(id);
+        });
+        int[] updated = jdbcTemplate.batchUpdate(TAKE_SQL, args);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                throw new IllegalStateException(String.format("Insufficient stock for product %d. Requested: %d",
+                        ids.get(i), quantities.get(ids.get(i))));
+            }
+        }
+    }
+
+    /**
+     * Whether an order paid this way should hold its stock only until the reservation expires
+     */
+    public boolean holdsUntilPaid(CustomerOrder order) {
+        return reservationTtlMinutes > 0 && order.getPaymentMethod() != null
+                && order.getPaymentMethod() != PaymentMethod.CASH
+                && order.getPaymentStatus() != PaymentStatus.PAID;
+    }
+
+    /**
+     * Record the stock an unpaid order took so it can be released on expiry
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void hold(Long customerOrderId, SortedMap<Long, Integer> quantities) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusMinutes(reservationTtlMinutes);
+        List<OtcStockReservation> rows = new ArrayList<>(quantities.size());
+        quantities.forEach((id, q) -> rows.add(OtcStockReservation.builder()
+                .otcId(id)
+                .customerOrderId(customerOrderId)
+                .quantity(q)
+                .status(OtcStockReservation.STATUS_ACTIVE)
+                .expiresAt(expiresAt)
+                .createdAt(now)
+                .build()));
+        reservationRepository.saveAll(rows);
+    }
+
+    /**
+     * Called on payment; fails if the order's reservation already expired and its stock went back
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void confirm(Long customerOrderId) {
+        if (reservationRepository.confirmActive(customerOrderId) == 0
+                && reservationRepository.existsByCustomerOrderIdAndStatus(customerOrderId, OtcStockReservation.STATUS_RELEASED)) {
+            throw new IllegalStateException("Order reservation expired");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.otc.reservation-sweep-ms:60000}")
+    public void releaseExpired() {
+        if (reservationTtlMinutes <= 0) return;
+        int total = 0;
+        try {
+            Integer claimed;
+            do {
+                claimed = transactionTemplate.execute(status -> releaseBatch(LocalDateTime.now()));
+                total += claimed != null ? claimed : 0;
+            } while (claimed != null && claimed == sweepBatchSize);
+        } catch (Exception e) {
+            log.warn("OTC reservation sweep failed after {} rows: {}", total, e.getMessage());
+        }
+        if (total > 0) {
+            log.info("Processed {} expired OTC stock reservations", total);
+        }
+    }
+
+    private int releaseBatch(LocalDateTime now) {
+        List<OtcStockReservation> expired = reservationRepository.lockExpired(now, sweepBatchSize);
+        if (expired.isEmpty()) return 0;
+
+        Set<Long> orderIds = new HashSet<>();
+        expired.forEach(r -> orderIds.add(r.getCustomerOrderId()));
+        Map<Long, CustomerOrder> orders = new HashMap<>();
+        customerOrderRepository.findAllById(orderIds).forEach(o -> orders.put(o.getId(), o));
+
+        SortedMap<Long, Integer> giveBack = new TreeMap<>();
+        Set<CustomerOrder> unpaid = new LinkedHashSet<>();
+        for (OtcStockReservation r : expired) {
+            CustomerOrder order = orders.get(r.getCustomerOrderId());
+            if (order != null && order.getPaymentStatus() == PaymentStatus.PAID) {
+                // Paid without the confirm step reaching this row; the stock stays sold
+                r.setStatus(OtcStockReservation.STATUS_CONFIRMED);
+                continue;
+            }
+            r.setStatus(OtcStockReservation.STATUS_RELEASED);
+            giveBack.merge(r.getOtcId(), r.getQuantity(), Integer::sum);
+            if (order != null) unpaid.add(order);
+        }
+        restore(giveBack);
+
+        for (CustomerOrder order : unpaid) {
+            List<PharmacyOrder> open = Optional.ofNullable(order.getPharmacyOrders()).orElse(List.of()).stream()
+                    .filter(po -> PharmacyOrderStateMachine.isValidTransition(po.getStatus(), PharmacyOrderStatus.CANCELLED))
+                    .toList();
+            if (!open.isEmpty()) {
+                pharmacyOrderStateMachine.transition(open, PharmacyOrderStatus.CANCELLED);
+            }
+            log.info("Released stock of unpaid OTC order {}", order.getOrderCode());
+        }
+        return expired.size();
+    }
+
+    private void restore(SortedMap<Long, Integer> quantities) {
+        if (quantities.isEmpty()) return;
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.forEach((id, q) -> args.add(new Object[]{q, q, q, id}));
+        jdbcTemplate.batchUpdate(RESTORE_SQL, args);
+    }
+}
@@ -0,0 +1,297 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.Otc;
+import com.leo.pillpathbackend.repository.OtcRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Process-local inverted index from trigrams to OTC products. Text is split into words and
+ * each word is padded pg_trgm style ("  word "), so a query scores by the share of its
+ * trigrams a product contains: misspellings and partial words still match, and trigrams found
+ * in the product name rank above those only found in category, manufacturer or dosage.
+ * Posting lists are int arrays of internal doc numbers; an edit retires the old doc and
+ * appends a new one, so lists stay sorted and are only cleaned up by the periodic rebuild.
+ * Edits are also announced over a NOTIFY channel sent with the editing transaction; other
+ * nodes re-read that product after commit.
+ */
+@Service
+@ConditionalOnProperty(name = "app.otc-search.backend", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class OtcTrigramIndex implements OtcSearchBackend {
+
+    static final String CHANNEL = "otc_search_changed";
+
+    private final OtcRepository otcRepository;
+    private final PgNotificationHub notificationHub;
+    private final double minSimilarity;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    // Edits seen while a rebuild reads the table, replayed onto the new index before it is swapped in
+    private List<Consumer<Index>> pendingEdits;
+    private volatile boolean loaded = false;
+
+    // Per-thread score buffer, reused across searches and cleared through the touched list
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[0]);
+
+    public OtcTrigramIndex(OtcRepository otcRepository,
+                           PgNotificationHub notificationHub,
+                           @Value("${app.otc-search.min-similarity:0.5}") double minSimilarity) {
+        this.otcRepository = otcRepository;
+        this.notificationHub = notificationHub;
+        this.minSimilarity = minSimilarity;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        notificationHub.subscribe(CHANNEL, this::onNotify, this::rebuild);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    // Also drops retired docs and picks up changes made outside OtcService (direct SQL, imports)
+    @Scheduled(fixedDelayString = "${app.otc-search.rebuild-ms:3600000}", initialDelayString = "${app.otc-search.rebuild-ms:3600000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingEdits = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Index next = new Index();
+        try {
+            for (Object[] row : otcRepository.findSearchFields()) {
+                next.put((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+            }
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                pendingEdits = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.warn("OTC search index rebuild failed: {}", e.getMessage());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingEdits.forEach(edit -> edit.accept(next));
+            pendingEdits = null;
+            index = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loaded = true;
+        log.info("OTC search index built with {} products and {} trigrams", next.live, next.postings.size());
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public void indexed(Otc otc) {
+        if (otc == null || otc.getId() == null) return;
+        long id = otc.getId();
+        String name = otc.getName();
+        String category = otc.getCategory();
+        String manufacturer = otc.getManufacturer();
+        String dosage = otc.getDosage();
+        announce(id);
+        afterCommit(ix -> ix.put(id, name, category, manufacturer, dosage));
+    }
+
+    @Override
+    public void removed(Long otcId) {
+        if (otcId == null) return;
+        announce(otcId);
+        afterCommit(ix -> ix.remove(otcId));
+    }
+
+    private void announce(long otcId) {
+        notificationHub.publish(CHANNEL, notificationHub.nodeId() + "|" + otcId);
+    }
+
+    // nodeId|otcId: re-read the committed product, or drop it when it is gone
+    private void onNotify(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 2 || parts[0].equals(notificationHub.nodeId())) return;
+        long otcId = Long.parseLong(parts[1]);
+        List<Object[]> rows = otcRepository.findSearchFieldsById(otcId);
+        if (rows.isEmpty()) {
+            apply(ix -> ix.remove(otcId));
+        } else {
+            Object[] row = rows.get(0);
+            apply(ix -> ix.put(otcId, (String) row[1], (String) row[2], (String) row[3], (String) row[4]));
+        }
+    }
+
+    private void afterCommit(Consumer<Index> edit) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(edit);
+                }
+            });
+        } else {
+            apply(edit);
+        }
+    }
+
+    private void apply(Consumer<Index> edit) {
+        lock.writeLock().lock();
+        try {
+            edit.accept(index);
+            if (pendingEdits != null) pendingEdits.add(edit);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> search(String query, int limit) {
+        Set<Long> grams = trigrams(query);
+        if (grams.isEmpty() || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            return index.search(grams, minSimilarity, limit, scratch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Trigrams of every word in the text, lower-cased and padded with two blanks in front and
+     * one behind, each packed as three 16-bit chars into a long.
+     */
+    static Set<Long> trigrams(String text) {
+        Set<Long> out = new HashSet<>();
+        if (text == null) return out;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int n = lower.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(lower.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(lower.charAt(i))) i++;
+            if (start == i) break;
+            char[] word = new char[i - start + 3];
+            word[0] = ' ';
+            word[1] = ' ';
+            lower.getChars(start, i, word, 2);
+            word[word.length - 1] = ' ';
+            for (int k = 0; k + 2 < word.length; k++) {
+                out.add(((long) word[k] << 32) | ((long) word[k + 1] << 16) | word[k + 2]);
+            }
+        }
+        return out;
+    }
+
+    private static final class Index {
+        // trigram -> (doc << 1 | 1 when the trigram occurs in the name), ascending by doc
+        final Map<Long, Postings> postings = new HashMap<>();
+        final Map<Long, Integer> docByOtc = new HashMap<>();
+        final BitSet retired = new BitSet();
+        long[] otcIds = new long[1024];
+        int docs;
+        int live;
+
+        void put(long otcId, String name, String category, String manufacturer, String dosage) {
+            remove(otcId);
+            Set<Long> nameGrams = trigrams(name);
+            Set<Long> all = new HashSet<>(nameGrams);
+            all.addAll(trigrams(category));
+            all.addAll(trigrams(manufacturer));
+            all.addAll(trigrams(dosage));
+            if (all.isEmpty()) return;
+
+            int doc = docs++;
+            if (doc == otcIds.length) {
+                otcIds = Arrays.copyOf(otcIds, otcIds.length * 2);
+            }
+            otcIds[doc] = otcId;
+            for (Long gram : all) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(doc << 1 | (nameGrams.contains(gram) ? 1 : 0));
+            }
+            docByOtc.put(otcId, doc);
+            live++;
+        }
+
+        void remove(long otcId) {
+            Integer doc = docByOtc.remove(otcId);
+            if (doc != null) {
+                retired.set(doc);
+                live--;
+            }
+        }
+
+        List<Long> search(Set<Long> grams, double minSimilarity, int limit, ThreadLocal<int[]> scratch) {
+            int[] scores = scratch.get();
+            if (scores.length < docs) {
+                scores = new int[Math.max(docs, scores.length * 2)];
+                scratch.set(scores);
+            }
+            // Upper 16 bits count shared trigrams, lower 16 those shared with the name
+            Postings touched = new Postings();
+            for (Long gram : grams) {
+                Postings p = postings.get(gram);
+                if (p == null) continue;
+                for (int i = 0; i < p.size; i++) {
+                    int entry = p.entries[i];
+                    int doc = entry >>> 1;
+                    if (retired.get(doc)) continue;
+                    if (scores[doc] == 0) touched.add(doc);
+                    scores[doc] += (1 << 16) + (entry & 1);
+                }
+            }
+
+            int q = grams.size();
+            int minShared = (int) Math.ceil(q * minSimilarity);
+            List<long[]> hits = new ArrayList<>();
+            for (int i = 0; i < touched.size; i++) {
+                int doc = touched.entries[i];
+                int score = scores[doc];
+                scores[doc] = 0;
+                if ((score >>> 16) >= Math.max(1, minShared)) {
+                    // Rank on all shared trigrams, then on those in the name
+                    hits.add(new long[]{score, otcIds[doc]});
+                }
+            }
+            hits.sort(Comparator.<long[]>comparingLong(h -> -h[0]).thenComparingLong(h -> h[1]));
+            List<Long> ids = new ArrayList<>(Math.min(limit, hits.size()));
+            for (int i = 0; i < hits.size() && i < limit; i++) {
+                ids.add(hits.get(i)[1]);
+            }
+            return ids;
+        }
+    }
+
+    private static final class Postings {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.leo.pillpathbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cross-node signalling over Postgres LISTEN/NOTIFY. publish() runs pg_notify on the caller's
+ * connection, so inside a transaction the message is only delivered if and when it commits.
+ * There it runs inside a savepoint: a failed pg_notify is rolled back to the savepoint and
+ * logged, leaving the caller's transaction committable (other nodes then miss one message).
+ * One daemon thread holds a dedicated connection that LISTENs on every subscribed channel and
+ * hands payloads to the handlers; after a lost connection it reconnects and tells each
+ * subscriber, since anything sent in between was missed.
+ */
+@Service
+@Slf4j
+public class PgNotificationHub {
+
+    private static final long RECONNECT_DELAY_MS = 5000L;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int pollMs;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    private record Subscription(Consumer<String> handler, Runnable onReconnect) {}
+
+    public PgNotificationHub(DataSource dataSource,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${app.pg-notify.enabled:true}") boolean enabled,
+                             @Value("${app.pg-notify.poll-ms:500}") int pollMs) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.pollMs = Math.max(50, pollMs);
+    }
+
+    /**
+     * Identifies this JVM; publishers put it in payloads so subscribers can skip their own messages
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void subscribe(String channel, Consumer<String> handler, Runnable onReconnect) {
+        subscriptions.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>())
+                .add(new Subscription(handler, onReconnect));
+    }
+
+    public void publish(String channel, String payload) {
+        if (!enabled) return;
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                if (con.getAutoCommit()) {
+                    pgNotify(con, channel, payload);
+                    return null;
+                }
+                // A failed statement aborts a Postgres transaction; rolling back to the savepoint
+                // keeps the caller's transaction committable
+                Savepoint savepoint = con.setSavepoint();
+                try {
+                    pgNotify(con, channel, payload);
+                } catch (SQLException e) {
+                    con.rollback(savepoint);
+                    throw e;
+                }
+                con.releaseSavepoint(savepoint);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("pg_notify on {} failed: {}", channel, e.getMessage());
+        }
+    }
+
+    private static void pgNotify(Connection con, String channel, String payload) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT pg_notify(?, ?)")) {
+            ps.setString(1, channel);
+            ps.setString(2, payload);
+            ps.execute();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "pg-notify-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (listenerThread != null) listenerThread.interrupt();
+    }
+
+    private void listenLoop() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(true);
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                Set<String> listening = new HashSet<>();
+                if (reconnecting) {
+                    subscriptions.values().forEach(list -> list.forEach(this::reconnected));
+                }
+                reconnecting = true;
+                while (running) {
+                    // Channels subscribed after startup are picked up on the next pass
+                    for (String channel : subscriptions.keySet()) {
+                        if (listening.add(channel)) {
+                            try (Statement st = conn.createStatement()) {
+                                st.execute("LISTEN \"" + channel.replace("\"", "") + "\"");
+                            }
+                        }
+                    }
+                    PGNotification[] received = pg.getNotifications(pollMs);
+                    if (received == null) continue;
+                    for (PGNotification n : received) {
+                        dispatch(n.getName(), n.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) return;
+                log.warn("pg notification listener lost its connection, retrying in {} ms: {}", RECONNECT_DELAY_MS, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        List<Subscription> list = subscriptions.get(channel);
+        if (list == null) return;
+        for (Subscription s : list) {
+            try {
+                s.handler().accept(payload);
+            } catch (Exception e) {
+                log.warn("Handler for channel {} failed: {}", channel, e.getMessage());
+            }
+        }
+    }
+
+    private void reconnected(Subscription s) {
+        if (s.onReconnect() == null) return;
+        try {
+            s.onReconnect().run();
+        } catch (Exception e) {
+            log.warn("Reconnect handler failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.OtcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * OTC search answered by Postgres: word similarity against name, category, manufacturer and
+ * dosage, served by the idx_otc_search_trgm GIN index. Nothing is held in process, so product
+ * edits need no hooks; the match threshold is pg_trgm.word_similarity_threshold (0.6 by default).
+ */
+@Service
+@ConditionalOnProperty(name = "app.otc-search.backend", havingValue = "pg_trgm")
+@RequiredArgsConstructor
+public class PgTrigramOtcSearch implements OtcSearchBackend {
+
+    private final OtcRepository otcRepository;
+
+    @Override
+    public List<Long> search(String query, int limit) {
+        if (query == null || query.isBlank() || limit <= 0) return List.of();
+        return otcRepository.searchIdsByTrigram(query.trim().toLowerCase(), limit);
+    }
+}
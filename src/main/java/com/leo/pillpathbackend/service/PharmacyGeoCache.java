@@ -0,0 +1,265 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.dto.PharmacyMapDTO;
+import com.leo.pillpathbackend.entity.Pharmacy;
+import com.leo.pillpathbackend.repository.PharmacyRepository;
+import com.leo.pillpathbackend.util.GeoCell;
+import com.leo.pillpathbackend.util.Mapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Process-local grid of active, verified pharmacies for the map and reroute endpoints.
+ * Coordinates live in primitive arrays bucketed by GeoCell; readers work on an immutable
+ * snapshot and writers swap in a new one, so lookups never block or touch the database.
+ * Edits that commit while a reload is reading are replayed onto the reloaded snapshot, so a
+ * reload never undoes them. DTOs handed out are shared and must be treated as read-only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PharmacyGeoCache {
+
+    // Below this size a linear scan beats looking up covering cells
+    private static final int SCAN_THRESHOLD = 64;
+
+    private final PharmacyRepository pharmacyRepository;
+    private final Mapper mapper;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean loaded = false;
+    // Edits applied while a reload reads the table, replayed onto its result before it is swapped in
+    private List<Consumer<Map<Long, PharmacyMapDTO>>> pendingEdits;
+
+    public record Hit(PharmacyMapDTO pharmacy, double distanceKm) { }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        reload();
+    }
+
+    // Picks up changes made outside the hooked service methods (ratings, profile edits, direct SQL)
+    @Scheduled(fixedDelayString = "${app.geo-cache.refresh-ms:600000}", initialDelayString = "${app.geo-cache.refresh-ms:600000}")
+    @Transactional(readOnly = true)
+    public void reload() {
+        synchronized (this) {
+            pendingEdits = new ArrayList<>();
+        }
+        try {
+            List<Pharmacy> pharmacies = pharmacyRepository.findByIsActiveTrueAndIsVerifiedTrueAndLatitudeIsNotNullAndLongitudeIsNotNull();
+            Map<Long, PharmacyMapDTO> entries = new LinkedHashMap<>();
+            for (Pharmacy p : pharmacies) {
+                entries.put(p.getId(), mapper.convertToPharmacyMapDTO(p));
+            }
+            synchronized (this) {
+                pendingEdits.forEach(edit -> edit.accept(entries));
+                pendingEdits = null;
+                snapshot = Snapshot.build(entries.values());
+            }
+            loaded = true;
+            log.info("Pharmacy geo cache loaded with {} pharmacies", entries.size());
+        } catch (Exception e) {
+            synchronized (this) {
+                pendingEdits = null;
+            }
+            log.warn("Pharmacy geo cache reload failed: {}", e.getMessage());
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Apply a pharmacy's current state once the surrounding transaction commits
+     * (immediately when there is none). Inactive, unverified or unlocated pharmacies are dropped.
+     */
+    public void refresh(Pharmacy pharmacy) {
+        if (pharmacy == null || pharmacy.getId() == null) return;
+        Long id = pharmacy.getId();
+        PharmacyMapDTO entry = isMappable(pharmacy) ? mapper.convertToPharmacyMapDTO(pharmacy) : null;
+        afterCommit(() -> apply(id, entry));
+    }
+
+    /**
+     * A review was added or removed: pick up the pharmacy's new average once the surrounding
+     * transaction commits. The aggregate is written by SQL, so it is read back from the table
+     * rather than from the (stale) entity.
+     */
+    public void ratingChanged(Long pharmacyId) {
+        if (pharmacyId == null) return;
+        afterCommit(() -> {
+            try {
+                Double rating = pharmacyRepository.findAverageRatingById(pharmacyId);
+                edit(entries -> entries.computeIfPresent(pharmacyId, (id, dto) -> withRating(dto, rating)));
+            } catch (Exception e) {
+                log.warn("Pharmacy geo cache rating refresh failed for {}: {}", pharmacyId, e.getMessage());
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static PharmacyMapDTO withRating(PharmacyMapDTO dto, Double rating) {
+        PharmacyMapDTO copy = new PharmacyMapDTO();
+        copy.setId(dto.getId());
+        copy.setName(dto.getName());
+        copy.setAddress(dto.getAddress());
+        copy.setLatitude(dto.getLatitude());
+        copy.setLongitude(dto.getLongitude());
+        copy.setAverageRating(rating);
+        copy.setPhoneNumber(dto.getPhoneNumber());
+        copy.setDeliveryAvailable(dto.getDeliveryAvailable());
+        copy.setLogoUrl(dto.getLogoUrl());
+        copy.setOperatingHours(dto.getOperatingHours());
+        copy.setIsActive(dto.getIsActive());
+        copy.setIsVerified(dto.getIsVerified());
+        return copy;
+    }
+
+    private boolean isMappable(Pharmacy pharmacy) {
+        return Boolean.TRUE.equals(pharmacy.getIsActive())
+                && Boolean.TRUE.equals(pharmacy.getIsVerified())
+                && pharmacy.getLatitude() != null
+                && pharmacy.getLongitude() != null;
+    }
+
+    private void apply(Long id, PharmacyMapDTO entry) {
+        edit(entries -> {
+            if (entry == null) {
+                entries.remove(id);
+            } else {
+                entries.put(id, entry);
+            }
+        });
+    }
+
+    private synchronized void edit(Consumer<Map<Long, PharmacyMapDTO>> change) {
+        if (pendingEdits != null) pendingEdits.add(change);
+        Map<Long, PharmacyMapDTO> next = new LinkedHashMap<>();
+        for (PharmacyMapDTO dto : snapshot.dtos) {
+            next.put(dto.getId(), dto);
+        }
+        change.accept(next);
+        snapshot = Snapshot.build(next.values());
+    }
+
+    public List<PharmacyMapDTO> all() {
+        return List.of(snapshot.dtos);
+    }
+
+    /**
+     * Pharmacies within radiusKm, nearest first, with excludeId removed and limit/offset applied.
+     */
+    public List<Hit> withinRadius(double lat, double lng, double radiusKm, Long excludeId, int limit, int offset) {
+        Snapshot s = snapshot;
+        GeoCell.BoundingBox box = GeoCell.boundingBox(lat, lng, radiusKm);
+        List<Hit> hits = new ArrayList<>();
+        List<Long> cells = s.size() > SCAN_THRESHOLD ? box.coveringCells() : List.of();
+        if (cells.isEmpty()) {
+            for (int i = 0; i < s.size(); i++) {
+                collect(s, i, lat, lng, radiusKm, box, excludeId, hits);
+            }
+        } else {
+            for (Long cell : cells) {
+                int[] members = s.cells.get(cell);
+                if (members == null) continue;
+                for (int i : members) {
+                    collect(s, i, lat, lng, radiusKm, box, excludeId, hits);
+                }
+            }
+        }
+        hits.sort(HIT_ORDER);
+        return page(hits, limit, offset);
+    }
+
+    private static void collect(Snapshot s, int i, double lat, double lng, double radiusKm,
+                                GeoCell.BoundingBox box, Long excludeId, List<Hit> out) {
+        if (excludeId != null && s.ids[i] == excludeId) return;
+        if (!box.contains(s.lats[i], s.lngs[i])) return;
+        double d = GeoCell.distanceKm(lat, lng, s.lats[i], s.lngs[i]);
+        if (d <= radiusKm) {
+            out.add(new Hit(s.dtos[i], d));
+        }
+    }
+
+    private static List<Hit> page(List<Hit> hits, int limit, int offset) {
+        if (offset >= hits.size()) return List.of();
+        return List.copyOf(hits.subList(offset, (int) Math.min((long) offset + limit, hits.size())));
+    }
+
+    private static final Comparator<Hit> HIT_ORDER = Comparator
+            .comparingDouble(Hit::distanceKm)
+            .thenComparing(h -> h.pharmacy().getId());
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = build(List.of());
+
+        final long[] ids;
+        final double[] lats;
+        final double[] lngs;
+        final PharmacyMapDTO[] dtos;
+        // grid cell -> positions in the arrays above
+        final Map<Long, int[]> cells;
+        // pharmacy id -> position
+        final Map<Long, Integer> positions;
+
+        private Snapshot(int n) {
+            ids = new long[n];
+            lats = new double[n];
+            lngs = new double[n];
+            dtos = new PharmacyMapDTO[n];
+            cells = new HashMap<>();
+            positions = new HashMap<>(n * 2);
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        static Snapshot build(Collection<PharmacyMapDTO> entries) {
+            Snapshot s = new Snapshot(entries.size());
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            int i = 0;
+            for (PharmacyMapDTO dto : entries) {
+                s.ids[i] = dto.getId();
+                s.lats[i] = dto.getLatitude().doubleValue();
+                s.lngs[i] = dto.getLongitude().doubleValue();
+                s.dtos[i] = dto;
+                s.positions.put(dto.getId(), i);
+                buckets.computeIfAbsent(GeoCell.cellOf(dto.getLatitude(), dto.getLongitude()), c -> new ArrayList<>()).add(i);
+                i++;
+            }
+            for (Map.Entry<Long, List<Integer>> e : buckets.entrySet()) {
+                s.cells.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            return s;
+        }
+    }
+}
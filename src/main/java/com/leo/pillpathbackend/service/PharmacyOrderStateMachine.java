@@ -0,0 +1,224 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.*;
+import com.leo.pillpathbackend.entity.enums.CustomerOrderStatus;
+import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
+import com.leo.pillpathbackend.entity.enums.PrescriptionStatus;
+import com.leo.pillpathbackend.repository.CustomerOrderRepository;
+import com.leo.pillpathbackend.repository.PharmacyOrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Single place where pharmacy order slices change status. Each parent CustomerOrder keeps a
+ * count of its slices per status; a transition locks the parent row, moves one count to the
+ * next bucket and derives the parent and prescription status from the counters, writing them
+ * only when they change. Entities are left to dirty checking, so nothing is saved explicitly.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PharmacyOrderStateMachine {
+
+    private final CustomerOrderRepository customerOrderRepository;
+    private final PharmacyOrderRepository pharmacyOrderRepository;
+    private final WalletSettingsService walletSettingsService;
+    private final DailyMetricsService dailyMetricsService;
+
+    public static boolean isValidTransition(PharmacyOrderStatus from, PharmacyOrderStatus to) {
+        if (from == null || to == null) return false;
+        return switch (from) {
+            case RECEIVED -> (to == PharmacyOrderStatus.PREPARING || to == PharmacyOrderStatus.CANCELLED);
+            case PREPARING -> (to == PharmacyOrderStatus.READY_FOR_PICKUP || to == PharmacyOrderStatus.CANCELLED);
+            case READY_FOR_PICKUP -> (to == PharmacyOrderStatus.HANDED_OVER || to == PharmacyOrderStatus.CANCELLED);
+            case HANDED_OVER, CANCELLED -> false;
+        };
+    }
+
+    /**
+     * Move one slice to the given status.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transition(PharmacyOrder slice, PharmacyOrderStatus to) {
+        transition(List.of(slice), to);
+    }
+
+    /**
+     * Move several slices to the same status. Each parent order and then each slice is locked,
+     * all transitions are validated against the locked state before anything changes, and each
+     * parent is re-derived once however many of its slices move.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transition(Collection<PharmacyOrder> slices, PharmacyOrderStatus to) {
+        if (to == null) throw new IllegalArgumentException("status required");
+
+        Map<Long, CustomerOrder> parents = new TreeMap<>();
+        for (PharmacyOrder slice : slices) {
+            CustomerOrder parent = slice.getCustomerOrder();
+            if (parent != null) parents.put(parent.getId(), parent);
+        }
+        lockCounters(parents);
+        lockSlices(slices);
+
+        for (PharmacyOrder slice : slices) {
+            if (!isValidTransition(slice.getStatus(), to)) {
+                throw new IllegalStateException("Invalid status transition for order " + slice.getOrderCode()
+                        + " from " + slice.getStatus() + " to " + to);
+            }
+        }
+
+        for (PharmacyOrder slice : slices) {
+            PharmacyOrderStatus from = slice.getStatus();
+            slice.setStatus(to);
+            if (to == PharmacyOrderStatus.HANDED_OVER) {
+                snapshotFinance(slice);
+            }
+            updateSubmission(slice.getSubmission(), to);
+            CustomerOrder parent = slice.getCustomerOrder();
+            if (parent != null) {
+                parent.setSliceCount(from, Math.max(0, parent.getSliceCount(from) - 1));
+                parent.setSliceCount(to, parent.getSliceCount(to) + 1);
+            }
+        }
+
+        parents.values().forEach(this::deriveParentStatus);
+    }
+
+    /**
+     * Rebuild counters from the slices attached to a new or in-memory order (placement, payment).
+     */
+    public void recount(CustomerOrder order) {
+        for (PharmacyOrderStatus status : PharmacyOrderStatus.values()) {
+            order.setSliceCount(status, 0);
+        }
+        if (order.getPharmacyOrders() == null) return;
+        for (PharmacyOrder slice : order.getPharmacyOrders()) {
+            if (slice.getStatus() != null) {
+                order.setSliceCount(slice.getStatus(), order.getSliceCount(slice.getStatus()) + 1);
+            }
+        }
+    }
+
+    // Row locks serialize concurrent transitions of slices under the same parent; the managed
+    // entities are then synced to the locked values so counters never go backwards
+    private void lockCounters(Map<Long, CustomerOrder> parents) {
+        if (parents.isEmpty()) return;
+        for (Object[] row : customerOrderRepository.lockSliceCounters(parents.keySet())) {
+            CustomerOrder parent = parents.get(((Number) row[0]).longValue());
+            if (parent == null) continue;
+            parent.setReceivedSlices(((Number) row[1]).intValue());
+            parent.setPreparingSlices(((Number) row[2]).intValue());
+            parent.setReadySlices(((Number) row[3]).intValue());
+            parent.setHandedOverSlices(((Number) row[4]).intValue());
+            parent.setCancelledSlices(((Number) row[5]).intValue());
+            if (parent.getTotalSlices() == 0) {
+                // Orders placed before the counters existed
+                rebuildFromDatabase(parent);
+            }
+        }
+    }
+
+    // The slices were loaded before any lock was held; a concurrent transition may have moved
+    // them since, so validation and the counter deltas use the status read under the row lock
+    private void lockSlices(Collection<PharmacyOrder> slices) {
+        Map<Long, PharmacyOrder> byId = new HashMap<>();
+        for (PharmacyOrder slice : slices) {
+            if (slice.getId() != null) byId.put(slice.getId(), slice);
+        }
+        if (byId.isEmpty()) return;
+        for (Object[] row : pharmacyOrderRepository.lockStatuses(byId.keySet())) {
+            PharmacyOrder slice = byId.get(((Number) row[0]).longValue());
+            PharmacyOrderStatus locked = row[1] != null ? PharmacyOrderStatus.valueOf((String) row[1]) : null;
+            if (slice != null && slice.getStatus() != locked) {
+                slice.setStatus(locked);
+            }
+        }
+    }
+
+    private void rebuildFromDatabase(CustomerOrder parent) {
+        for (Object[] row : pharmacyOrderRepository.countStatusesByCustomerOrderId(parent.getId())) {
+            parent.setSliceCount((PharmacyOrderStatus) row[0], ((Number) row[1]).intValue());
+        }
+        log.info("Rebuilt slice counters for customer order {}", parent.getId());
+    }
+
+    private void deriveParentStatus(CustomerOrder parent) {
+        int total = parent.getTotalSlices();
+        if (total == 0) return;
+        boolean allHandedOver = parent.getHandedOverSlices() == total;
+        boolean allCancelled = parent.getCancelledSlices() == total;
+
+        CustomerOrderStatus previous = parent.getStatus();
+        if (allHandedOver && previous != CustomerOrderStatus.COMPLETED) {
+            parent.setStatus(CustomerOrderStatus.COMPLETED);
+        } else if (allCancelled && previous != CustomerOrderStatus.CANCELLED) {
+            parent.setStatus(CustomerOrderStatus.CANCELLED);
+        }
+        dailyMetricsService.orderStatusChanged(parent, previous, parent.getStatus());
+
+        Prescription pres = parent.getPrescription();
+        if (pres == null) return;
+        PrescriptionStatus next = null;
+        if (allHandedOver) {
+            next = PrescriptionStatus.COMPLETED;
+        } else if (allCancelled) {
+            next = PrescriptionStatus.CANCELLED;
+        } else if (parent.getReadySlices() > 0) {
+            next = PrescriptionStatus.READY_FOR_PICKUP;
+        } else if (parent.getPreparingSlices() > 0) {
+            next = PrescriptionStatus.IN_PROGRESS;
+        }
+        if (next != null && pres.getStatus() != next) {
+            pres.setStatus(next);
+        }
+    }
+
+    private void updateSubmission(PrescriptionSubmission sub, PharmacyOrderStatus status) {
+        if (sub == null) return;
+        PrescriptionStatus next = switch (status) {
+            case RECEIVED, PREPARING -> PrescriptionStatus.PREPARING_ORDER;
+            case READY_FOR_PICKUP -> PrescriptionStatus.READY_FOR_PICKUP;
+            case HANDED_OVER -> PrescriptionStatus.COMPLETED;
+            case CANCELLED -> PrescriptionStatus.CANCELLED;
+        };
+        if (sub.getStatus() != next) {
+            sub.setStatus(next);
+        }
+    }
+
+    // Snapshot finance values when finalizing the slice
+    private void snapshotFinance(PharmacyOrder po) {
+        try {
+            Long pharmacyId = po.getPharmacy() != null ? po.getPharmacy().getId() : null;
+            BigDecimal gross = po.getTotal();
+            if (gross == null) {
+                gross = Optional.ofNullable(po.getItems()).orElse(List.of()).stream()
+                        .map(PharmacyOrderItem::getTotalPrice)
+                        .filter(Objects::nonNull)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+            }
+            BigDecimal rate = walletSettingsService.resolveCommissionPercent(pharmacyId);
+            if (rate == null) rate = BigDecimal.ZERO;
+            BigDecimal commission = gross.multiply(rate).divide(new BigDecimal("100"), 2, HALF_UP);
+            BigDecimal convenience = Optional.ofNullable(walletSettingsService.getSettings())
+                    .map(PlatformSettings::getConvenienceFee)
+                    .orElse(BigDecimal.ZERO).setScale(2, HALF_UP);
+            BigDecimal net = gross.subtract(commission).setScale(2, HALF_UP);
+
+            po.setCommissionPercentSnapshot(rate.setScale(2, HALF_UP));
+            po.setCommissionAmountSnapshot(commission);
+            po.setConvenienceFeeSnapshot(convenience);
+            po.setNetAfterCommissionSnapshot(net);
+        } catch (Exception ignore) {
+            // do not block status update on snapshot errors
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.leo.pillpathbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for rarely changing settings rows: platform settings, per-pharmacy
+ * commission rules (including "no rule" answers) and system settings. Entries remember the
+ * row's @Version where it has one. Writers call evict() inside their transaction: the local
+ * entry is dropped after commit and a NOTIFY carrying the new version goes to other nodes,
+ * which drop their entry unless it is already at least that version. A load that races with
+ * an eviction is not kept.
+ */
+@Component
+@Slf4j
+public class SettingsCache {
+
+    static final String CHANNEL = "settings_changed";
+
+    public static final String PLATFORM = "platform";
+    public static final String COMMISSION = "commission";
+    public static final String SYSTEM = "system";
+    public static final String PLATFORM_KEY = "default";
+
+    /**
+     * Cached value (null for "not configured") and the row version it was read at
+     */
+    public record Entry<V>(V value, Long version) {}
+
+    private final PgNotificationHub notificationHub;
+    private final Map<String, Region<Object, Object>> regions = new ConcurrentHashMap<>();
+
+    public SettingsCache(PgNotificationHub notificationHub, MeterRegistry meterRegistry) {
+        this.notificationHub = notificationHub;
+        for (String name : new String[]{PLATFORM, COMMISSION, SYSTEM}) {
+            Region<Object, Object> region = new Region<>(
+                    Counter.builder("settings_cache.lookups").tag("cache", name).tag("result", "hit").register(meterRegistry),
+                    Counter.builder("settings_cache.lookups").tag("cache", name).tag("result", "miss").register(meterRegistry));
+            Gauge.builder("settings_cache.size", region.entries, Map::size).tag("cache", name).register(meterRegistry);
+            regions.put(name, region);
+        }
+    }
+
+    @PostConstruct
+    void subscribe() {
+        notificationHub.subscribe(CHANNEL, this::onNotify, this::clearAll);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K, V> Entry<V> get(String region, K key, Function<K, Entry<V>> loader) {
+        return (Entry<V>) regions.get(region).get(key, k -> (Entry<Object>) loader.apply((K) k));
+    }
+
+    /**
+     * Drop an entry after the surrounding transaction commits and tell the other nodes.
+     * version is the row's new version, or null when the row was deleted or has none.
+     */
+    public void evict(String region, Object key, Long version) {
+        notificationHub.publish(CHANNEL, notificationHub.nodeId() + "|" + region + "|" + key + "|" + (version != null ? version : ""));
+        Region<Object, Object> r = regions.get(region);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Dropping earlier would let a reader re-cache the old row before the write is visible
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    r.evict(key, null);
+                }
+            });
+        } else {
+            r.evict(key, null);
+        }
+    }
+
+    public void clearAll() {
+        regions.values().forEach(Region::clear);
+    }
+
+    // nodeId|region|key|version
+    private void onNotify(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 4 || parts[0].equals(notificationHub.nodeId())) return;
+        Region<Object, Object> region = regions.get(parts[1]);
+        if (region == null) return;
+        Long version = parts[3].isEmpty() ? null : Long.valueOf(parts[3]);
+        Object key = COMMISSION.equals(parts[1]) ? (Object) Long.valueOf(parts[2]) : parts[2];
+        region.evict(key, version);
+        log.debug("Settings cache entry {}:{} invalidated by node {}", parts[1], parts[2], parts[0]);
+    }
+
+    private static final class Region<K, V> {
+        private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+        // Bumped on every eviction; a load that started before one is discarded
+        private final AtomicLong generation = new AtomicLong();
+        private final Counter hits;
+        private final Counter misses;
+
+        Region(Counter hits, Counter misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        Entry<V> get(K key, Function<K, Entry<V>> loader) {
+            Entry<V> cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            long gen = generation.get();
+            Entry<V> loaded = loader.apply(key);
+            entries.put(key, loaded);
+            if (generation.get() != gen) {
+                entries.remove(key, loaded);
+            }
+            return loaded;
+        }
+
+        void evict(K key, Long version) {
+            generation.incrementAndGet();
+            if (version == null) {
+                entries.remove(key);
+            } else {
+                entries.computeIfPresent(key, (k, e) -> e.version() != null && e.version() >= version ? e : null);
+            }
+        }
+
+        void clear() {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.WalletCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Materializes balances for the append-only wallet ledger. Each run takes the current
+ * transaction horizon (the oldest transaction still in progress), adds every ledger row
+ * between a wallet's previous horizon and the new one to its checkpoint, and copies the
+ * checkpoint onto wallets.balance. Rows are never skipped however late their transaction
+ * commits, because nothing at or above the horizon is folded until that transaction has ended.
+ */
+@Service
+@Slf4j
+public class WalletLedgerProjector {
+
+    private static final long PROJECTOR_LOCK_KEY = 0x57414c4c4554L;
+
+    private final WalletCheckpointRepository walletCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean appendOnly;
+
+    public WalletLedgerProjector(WalletCheckpointRepository walletCheckpointRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.wallet.append-only:false}") boolean appendOnly) {
+        this.walletCheckpointRepository = walletCheckpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.appendOnly = appendOnly;
+    }
+
+    @Scheduled(fixedDelayString = "${app.wallet.projector-ms:5000}")
+    public void project() {
+        if (!appendOnly) return;
+        try {
+            Integer wallets = transactionTemplate.execute(status -> {
+                if (!walletCheckpointRepository.tryProjectorLock(PROJECTOR_LOCK_KEY)) return 0;
+                int folded = walletCheckpointRepository.fold(walletCheckpointRepository.currentHorizon());
+                if (folded > 0) {
+                    walletCheckpointRepository.copyBalancesToWallets();
+                }
+                return folded;
+            });
+            if (wallets != null && wallets > 0) {
+                log.debug("Folded ledger rows into {} wallet checkpoints", wallets);
+            }
+        } catch (Exception e) {
+            log.warn("Wallet ledger projection failed: {}", e.getMessage());
+        }
+    }
+}
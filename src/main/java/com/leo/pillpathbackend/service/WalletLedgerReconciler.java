@@ -0,0 +1,100 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.WalletCheckpoint;
+import com.leo.pillpathbackend.repository.WalletCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks every wallet checkpoint against the ledger it summarizes. Wallets are verified in
+ * parallel, each in its own repeatable-read transaction so the checkpoint and the ledger sum
+ * come from the same snapshot even while the projector keeps running. Mismatches are logged
+ * and counted, not repaired.
+ */
+@Service
+@Slf4j
+public class WalletLedgerReconciler {
+
+    private final WalletCheckpointRepository walletCheckpointRepository;
+    private final TransactionTemplate snapshotTransaction;
+    private final ExecutorService workers;
+    private final boolean appendOnly;
+    private final Counter checked;
+    private final Counter mismatches;
+
+    public WalletLedgerReconciler(WalletCheckpointRepository walletCheckpointRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.wallet.append-only:false}") boolean appendOnly,
+                                  @Value("${app.wallet.reconcile-workers:4}") int workerCount) {
+        this.walletCheckpointRepository = walletCheckpointRepository;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.appendOnly = appendOnly;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerCount), r -> {
+            Thread t = new Thread(r, "wallet-reconcile");
+            t.setDaemon(true);
+            return t;
+        });
+        this.checked = Counter.builder("wallet_ledger.reconciled").tag("result", "ok").register(meterRegistry);
+        this.mismatches = Counter.builder("wallet_ledger.reconciled").tag("result", "mismatch").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.wallet.reconcile-cron:0 15 4 * * *}")
+    public void reconcile() {
+        if (!appendOnly) return;
+        List<Future<Boolean>> pending = new ArrayList<>();
+        for (Long walletId : walletCheckpointRepository.findAllWalletIds()) {
+            pending.add(workers.submit(() -> verify(walletId)));
+        }
+        int bad = 0;
+        for (Future<Boolean> f : pending) {
+            try {
+                if (!f.get()) bad++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.warn("Wallet reconciliation task failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        log.info("Reconciled {} wallet checkpoints, {} mismatched", pending.size(), bad);
+    }
+
+    private boolean verify(Long walletId) {
+        Boolean ok = snapshotTransaction.execute(status -> {
+            WalletCheckpoint cp = walletCheckpointRepository.findById(walletId).orElse(null);
+            if (cp == null) return true;
+            BigDecimal ledger = walletCheckpointRepository.ledgerSumBelow(walletId, cp.getHorizonXid());
+            if (ledger.compareTo(cp.getBalance()) == 0) return true;
+            log.error("Wallet {} checkpoint {} does not match ledger sum {} below horizon {}",
+                    walletId, cp.getBalance(), ledger, cp.getHorizonXid());
+            return false;
+        });
+        boolean result = ok == null || ok;
+        (result ? checked : mismatches).increment();
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,45 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.WalletStripeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps wallets.balance close to the sum of the wallet's stripes. Postings never touch the
+ * wallet row, so this is the only writer of that column; exact figures come from
+ * WalletService.currentBalance.
+ */
+@Service
+@Slf4j
+public class WalletRollupJob {
+
+    private final WalletStripeRepository walletStripeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean appendOnly;
+
+    public WalletRollupJob(WalletStripeRepository walletStripeRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.wallet.append-only:false}") boolean appendOnly) {
+        this.walletStripeRepository = walletStripeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.appendOnly = appendOnly;
+    }
+
+    @Scheduled(fixedDelayString = "${app.wallet.rollup-ms:30000}")
+    public void rollup() {
+        // Append-only ledger balances are copied by WalletLedgerProjector instead
+        if (appendOnly) return;
+        try {
+            Integer updated = transactionTemplate.execute(status -> walletStripeRepository.rollupBalances());
+            if (updated != null && updated > 0) {
+                log.debug("Rolled up balances of {} wallets", updated);
+            }
+        } catch (Exception e) {
+            log.warn("Wallet balance rollup failed: {}", e.getMessage());
+        }
+    }
+}
@@ -4,10 +4,11 @@ import com.leo.pillpathbackend.entity.*;
 import com.leo.pillpathbackend.entity.enums.WalletOwnerType;
 import com.leo.pillpathbackend.entity.enums.WalletTransactionType;
 import com.leo.pillpathbackend.repository.*;
-import lombok.RequiredArgsConstructor;
-import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -15,16 +16,52 @@ import org.springframework.data.domain.Pageable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Wallet postings. Each posting adds to one stripe of the wallet (see WalletStripe) and
+ * appends a WalletTransaction; the platform wallet is spread over app.wallet.platform-stripes
+ * stripes so concurrent payments do not queue on a single row. Other wallets use one stripe
+ * unless wallets.stripe_count is raised for them.
+ *
+ * With app.wallet.append-only a posting is a single insert into the ledger: the unique
+ * externalKey makes it idempotent and WalletLedgerProjector folds rows into per-wallet
+ * checkpoints in the background. Stripes are not maintained in that mode, so going back to
+ * striped mode means re-seeding wallet_stripes from the checkpoints.
+ */
 @Service
-@RequiredArgsConstructor
 @Transactional
 public class WalletService {
     private final WalletRepository walletRepository;
     private final WalletTransactionRepository walletTransactionRepository;
     private final WalletSettingsService settingsService;
+    private final WalletStripeRepository walletStripeRepository;
+    private final WalletCheckpointRepository walletCheckpointRepository;
+    private final int platformStripes;
+    private final boolean appendOnly;
+
+    // Transaction resource key for the wallet -> stripe pins of the current transaction
+    private final Object stripePinsKey = new Object();
+
+    public WalletService(WalletRepository walletRepository,
+                         WalletTransactionRepository walletTransactionRepository,
+                         WalletSettingsService settingsService,
+                         WalletStripeRepository walletStripeRepository,
+                         WalletCheckpointRepository walletCheckpointRepository,
+                         @Value("${app.wallet.platform-stripes:16}") int platformStripes,
+                         @Value("${app.wallet.append-only:false}") boolean appendOnly) {
+        this.walletRepository = walletRepository;
+        this.walletTransactionRepository = walletTransactionRepository;
+        this.settingsService = settingsService;
+        this.walletStripeRepository = walletStripeRepository;
+        this.walletCheckpointRepository = walletCheckpointRepository;
+        this.platformStripes = Math.max(1, platformStripes);
+        this.appendOnly = appendOnly;
+    }
 
     private static final RoundingMode RM = RoundingMode.HALF_UP;
 
@@ -33,6 +70,7 @@ public class WalletService {
                 .orElseGet(() -> walletRepository.save(Wallet.builder()
                         .ownerType(WalletOwnerType.PLATFORM)
                         .ownerId(null)
+                        .stripeCount(platformStripes)
                         .currency(settingsService.getSettings().getCurrency())
                         .balance(BigDecimal.ZERO)
                         .build()));
@@ -55,7 +93,7 @@ public class WalletService {
     public void postCustomerCardCaptured(String orderCode, Long pharmacyOrderId, Long prescriptionId, Long pharmacyId,
                                          BigDecimal amount, String paymentId, String externalKey) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount > 0 required");
-        if (externalKey != null && walletTransactionRepository.findByExternalKey(externalKey).isPresent()) {
+        if (isDuplicate(externalKey)) {
             return; // idempotent
         }
         Wallet platform = getOrCreatePlatformWallet();
@@ -66,8 +104,10 @@ public class WalletService {
         BigDecimal pharmacyAccrual = amount.subtract(commission).setScale(2, RM);
 
         // Platform += amount
-        addTransaction(platform, WalletTransactionType.CUSTOMER_CARD_CAPTURE, amount, orderCode, pharmacyOrderId, prescriptionId, paymentId, externalKey,
-                "Card capture for order " + orderCode);
+        if (!addTransaction(platform, WalletTransactionType.CUSTOMER_CARD_CAPTURE, amount, orderCode, pharmacyOrderId, prescriptionId, paymentId, externalKey,
+                "Card capture for order " + orderCode)) {
+            return; // already posted
+        }
         // Pharmacy += amount - commission
         addTransaction(pharmacy, WalletTransactionType.PHARMACY_LIABILITY_ACCRUAL, pharmacyAccrual, orderCode, pharmacyOrderId, prescriptionId, paymentId, null,
                 "Pharmacy accrual net of commission for order " + orderCode);
@@ -76,7 +116,7 @@ public class WalletService {
     public void postCustomerCashCollected(String orderCode, Long pharmacyOrderId, Long prescriptionId, Long pharmacyId,
                                           BigDecimal amount, String externalKey) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount > 0 required");
-        if (externalKey != null && walletTransactionRepository.findByExternalKey(externalKey).isPresent()) {
+        if (isDuplicate(externalKey)) {
             return; // idempotent
         }
         Wallet pharmacy = getOrCreatePharmacyWallet(pharmacyId);
@@ -91,14 +131,16 @@ public class WalletService {
                                            String paymentId, String externalKey) {
         if (commissionAmount == null || commissionAmount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("commissionAmount > 0 required");
         if (convenienceFee == null) convenienceFee = BigDecimal.ZERO;
-        if (externalKey != null && walletTransactionRepository.findByExternalKey(externalKey).isPresent()) {
+        if (isDuplicate(externalKey)) {
             return; // idempotent
         }
         Wallet platform = getOrCreatePlatformWallet();
         Wallet pharmacy = getOrCreatePharmacyWallet(pharmacyId);
         // Platform += commission
-        addTransaction(platform, WalletTransactionType.COMMISSION_CARD_CAPTURE, commissionAmount, orderCode, null, null, paymentId, externalKey,
-                "Commission card capture for " + orderCode);
+        if (!addTransaction(platform, WalletTransactionType.COMMISSION_CARD_CAPTURE, commissionAmount, orderCode, null, null, paymentId, externalKey,
+                "Commission card capture for " + orderCode)) {
+            return; // already posted
+        }
         // Platform += convenience fee if any
         if (convenienceFee.compareTo(BigDecimal.ZERO) > 0) {
             addTransaction(platform, WalletTransactionType.CONVENIENCE_FEE_INCOME, convenienceFee, orderCode, null, null, paymentId, null,
@@ -111,65 +153,136 @@ public class WalletService {
 
     public void postPayout(Long pharmacyId, BigDecimal amount, String reference, String externalKey) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount > 0 required");
+        // Looked up in both modes: a retried payout must not fail the balance check it passed before
         if (externalKey != null && walletTransactionRepository.findByExternalKey(externalKey).isPresent()) {
             return; // idempotent
         }
         Wallet platform = getOrCreatePlatformWallet();
         Wallet pharmacy = getOrCreatePharmacyWallet(pharmacyId);
         // Validate balances: cannot payout more than pharmacy positive balance
-        if (pharmacy.getBalance().compareTo(amount) < 0) {
+        if (lockedBalance(pharmacy).compareTo(amount) < 0) {
             throw new IllegalStateException("Insufficient pharmacy wallet balance for payout");
         }
         // Platform -= amount; Pharmacy -= amount
-        addTransaction(platform, WalletTransactionType.PHARMACY_PAYOUT, amount.negate(), null, null, null, null, externalKey,
-                "Manual payout: " + (reference != null ? reference : ""));
+        if (!addTransaction(platform, WalletTransactionType.PHARMACY_PAYOUT, amount.negate(), null, null, null, null, externalKey,
+                "Manual payout: " + (reference != null ? reference : ""))) {
+            return; // already posted
+        }
         addTransaction(pharmacy, WalletTransactionType.PHARMACY_PAYOUT, amount.negate(), null, null, null, null, null,
                 "Manual payout: " + (reference != null ? reference : ""));
     }
 
     public void postRefundFull(String orderCode, Long pharmacyOrderId, Long pharmacyId, BigDecimal amount, String externalKey) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount > 0 required");
-        if (externalKey != null && walletTransactionRepository.findByExternalKey(externalKey).isPresent()) {
+        if (isDuplicate(externalKey)) {
             return; // idempotent
         }
         Wallet platform = getOrCreatePlatformWallet();
         Wallet pharmacy = getOrCreatePharmacyWallet(pharmacyId);
         // Reverse platform card capture and pharmacy accrual
-        addTransaction(platform, WalletTransactionType.REFUND_FULL, amount.negate(), orderCode, pharmacyOrderId, null, null, externalKey,
-                "Full refund for order " + orderCode);
+        if (!addTransaction(platform, WalletTransactionType.REFUND_FULL, amount.negate(), orderCode, pharmacyOrderId, null, null, externalKey,
+                "Full refund for order " + orderCode)) {
+            return; // already posted
+        }
         addTransaction(pharmacy, WalletTransactionType.REFUND_FULL, amount.negate(), orderCode, pharmacyOrderId, null, null, null,
                 "Full refund for order " + orderCode);
     }
 
-    private void addTransaction(Wallet wallet, WalletTransactionType type, BigDecimal delta, String orderCode,
-                                Long pharmacyOrderId, Long prescriptionId, String paymentId, String externalKey, String note) {
-        int attempts = 0;
-        while (true) {
-            try {
-                BigDecimal newBalance = wallet.getBalance().add(delta).setScale(2, RM);
-                wallet.setBalance(newBalance);
-                wallet = walletRepository.saveAndFlush(wallet);
-                WalletTransaction txn = WalletTransaction.builder()
-                        .wallet(wallet)
-                        .type(type)
-                        .amount(delta.setScale(2, RM))
-                        .balanceAfter(newBalance)
-                        .currency(wallet.getCurrency())
-                        .orderCode(orderCode)
-                        .pharmacyOrderId(pharmacyOrderId)
-                        .prescriptionId(prescriptionId)
-                        .paymentId(paymentId)
-                        .externalKey(externalKey)
-                        .note(note)
-                        .build();
-                walletTransactionRepository.save(txn);
-                return;
-            } catch (OptimisticLockingFailureException e) {
-                if (++attempts >= 2) throw e;
-                // Reload and retry once
-                wallet = walletRepository.findById(wallet.getId()).orElseThrow();
+    /**
+     * Exact balance: checkpoint plus ledger tail in append-only mode, otherwise the sum of the
+     * wallet's stripes (wallet.balance lags by up to one rollup or projection)
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal currentBalance(Wallet wallet) {
+        BigDecimal balance = appendOnly
+                ? walletCheckpointRepository.balance(wallet.getId())
+                : walletStripeRepository.sumBalance(wallet.getId());
+        return balance.setScale(2, RM);
+    }
+
+    public boolean isAppendOnly() {
+        return appendOnly;
+    }
+
+    // Balance that no concurrent posting can change before this transaction ends
+    private BigDecimal lockedBalance(Wallet wallet) {
+        if (!appendOnly) {
+            return walletStripeRepository.sumBalanceForUpdate(wallet.getId());
+        }
+        walletRepository.lockById(wallet.getId());
+        return walletCheckpointRepository.balance(wallet.getId());
+    }
+
+    // Append-only mode relies on the unique externalKey instead of a lookup
+    private boolean isDuplicate(String externalKey) {
+        return !appendOnly && externalKey != null && walletTransactionRepository.findByExternalKey(externalKey).isPresent();
+    }
+
+    /**
+     * Post one ledger entry. Returns false when the externalKey was already posted (append-only mode).
+     */
+    private boolean addTransaction(Wallet wallet, WalletTransactionType type, BigDecimal delta, String orderCode,
+                                   Long pharmacyOrderId, Long prescriptionId, String paymentId, String externalKey, String note) {
+        BigDecimal amount = delta.setScale(2, RM);
+        if (appendOnly) {
+            if (delta.signum() < 0 && wallet.getOwnerType() == WalletOwnerType.PHARMACY) {
+                // Same lock as the payout balance check, so no debit lands between its read and insert
+                walletRepository.lockById(wallet.getId());
             }
+            // A single insert; balances are folded in later by WalletLedgerProjector
+            return walletTransactionRepository.append(wallet.getId(), type.name(), amount, wallet.getCurrency(), orderCode,
+                    pharmacyOrderId, prescriptionId, paymentId, externalKey, note) != null;
+        }
+        int stripe = stripeFor(wallet, orderCode != null ? orderCode : externalKey);
+        // Row-locked increment of one stripe; no read-modify-write of the wallet row
+        BigDecimal stripeBalance = walletStripeRepository.addToStripe(wallet.getId(), stripe, amount).setScale(2, RM);
+        WalletTransaction txn = WalletTransaction.builder()
+                .wallet(wallet)
+                .type(type)
+                .amount(amount)
+                .balanceAfter(stripeBalance)
+                .stripe(stripe)
+                .currency(wallet.getCurrency())
+                .orderCode(orderCode)
+                .pharmacyOrderId(pharmacyOrderId)
+                .prescriptionId(prescriptionId)
+                .paymentId(paymentId)
+                .externalKey(externalKey)
+                .note(note)
+                .build();
+        walletTransactionRepository.save(txn);
+        return true;
+    }
+
+    // Stripe by hash of the order code. Within one transaction a wallet always uses the stripe
+    // picked first, so a multi-order payment holds one stripe lock per wallet, not several.
+    private int stripeFor(Wallet wallet, String key) {
+        int count = wallet.getStripeCount() != null ? wallet.getStripeCount() : 1;
+        if (count <= 1) return 0;
+        Map<Long, Integer> pinned = pinnedStripes();
+        if (pinned != null && pinned.containsKey(wallet.getId())) {
+            return pinned.get(wallet.getId());
+        }
+        int stripe = key != null ? Math.floorMod(key.hashCode(), count) : ThreadLocalRandom.current().nextInt(count);
+        if (pinned != null) pinned.put(wallet.getId(), stripe);
+        return stripe;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Integer> pinnedStripes() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        Map<Long, Integer> pinned = (Map<Long, Integer>) TransactionSynchronizationManager.getResource(stripePinsKey);
+        if (pinned == null) {
+            pinned = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(stripePinsKey, pinned);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(stripePinsKey);
+                }
+            });
         }
+        return pinned;
     }
 
     @Transactional(readOnly = true)
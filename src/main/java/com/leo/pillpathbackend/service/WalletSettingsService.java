@@ -17,21 +17,47 @@ import java.math.BigDecimal;
 public class WalletSettingsService {
     private final PlatformSettingsRepository platformSettingsRepository;
     private final CommissionRuleRepository commissionRuleRepository;
+    private final SettingsCache settingsCache;
 
+    /**
+     * Cached copy of the platform settings; changes to it are not persisted
+     */
     public PlatformSettings getSettings() {
+        PlatformSettings cached = settingsCache.<String, PlatformSettings>get(SettingsCache.PLATFORM, SettingsCache.PLATFORM_KEY, k -> {
+            PlatformSettings s = loadSettings();
+            return new SettingsCache.Entry<>(copyOf(s), s.getVersion());
+        }).value();
+        return copyOf(cached);
+    }
+
+    private PlatformSettings loadSettings() {
         return platformSettingsRepository.findById(1L)
                 .orElseGet(() -> platformSettingsRepository.save(PlatformSettings.builder().id(1L).build()));
     }
 
+    private static PlatformSettings copyOf(PlatformSettings s) {
+        return PlatformSettings.builder()
+                .id(s.getId())
+                .currency(s.getCurrency())
+                .commissionPercent(s.getCommissionPercent())
+                .convenienceFee(s.getConvenienceFee())
+                .version(s.getVersion())
+                .updatedAt(s.getUpdatedAt())
+                .build();
+    }
+
     public PlatformSettings updateSettings(String currency, BigDecimal commissionPercent, BigDecimal convenienceFee, Long version) {
-        PlatformSettings s = getSettings();
+        PlatformSettings s = loadSettings();
         if (version != null && s.getVersion() != null && !s.getVersion().equals(version)) {
             throw new IllegalStateException("Stale settings version");
         }
         if (currency != null && !currency.isBlank()) s.setCurrency(currency);
         if (commissionPercent != null) s.setCommissionPercent(commissionPercent);
         if (convenienceFee != null) s.setConvenienceFee(convenienceFee);
-        return platformSettingsRepository.save(s);
+        // Flush so the bumped version goes out with the invalidation
+        PlatformSettings saved = platformSettingsRepository.saveAndFlush(s);
+        settingsCache.evict(SettingsCache.PLATFORM, SettingsCache.PLATFORM_KEY, saved.getVersion());
+        return saved;
     }
 
     public CommissionRule getCommissionRule(Long pharmacyId) {
@@ -53,16 +79,30 @@ public class WalletSettingsService {
             }
             rule.setCommissionPercent(commissionPercent);
         }
-        return commissionRuleRepository.save(rule);
+        CommissionRule saved = commissionRuleRepository.saveAndFlush(rule);
+        settingsCache.evict(SettingsCache.COMMISSION, pharmacyId, saved.getVersion());
+        return saved;
     }
 
     public void deleteCommissionRule(Long pharmacyId) {
         commissionRuleRepository.deleteByPharmacy_Id(pharmacyId);
+        settingsCache.evict(SettingsCache.COMMISSION, pharmacyId, null);
     }
 
+    /**
+     * Pharmacy's own commission rate, falling back to the platform rate. Both come from the
+     * settings cache; pharmacies without a rule are cached as such.
+     */
     public BigDecimal resolveCommissionPercent(Long pharmacyId) {
-        CommissionRule rule = getCommissionRule(pharmacyId);
-        if (rule != null && rule.getCommissionPercent() != null) return rule.getCommissionPercent();
+        if (pharmacyId != null) {
+            BigDecimal own = settingsCache.<Long, BigDecimal>get(SettingsCache.COMMISSION, pharmacyId, id -> {
+                CommissionRule rule = getCommissionRule(id);
+                return rule != null
+                        ? new SettingsCache.Entry<>(rule.getCommissionPercent(), rule.getVersion())
+                        : new SettingsCache.Entry<>(null, null);
+            }).value();
+            if (own != null) return own;
+        }
         return getSettings().getCommissionPercent();
     }
 }
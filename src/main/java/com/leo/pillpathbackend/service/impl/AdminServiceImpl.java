@@ -2,9 +2,18 @@ package com.leo.pillpathbackend.service.impl;
 
 import com.leo.pillpathbackend.dto.*;
 import com.leo.pillpathbackend.entity.*;
+import com.leo.pillpathbackend.repository.AdminReportRepository;
 import com.leo.pillpathbackend.repository.UserRepository;
 import com.leo.pillpathbackend.service.AdminService;
+import com.leo.pillpathbackend.service.DailyMetricsService;
+import com.leo.pillpathbackend.service.PharmacyGeoCache;
+import com.leo.pillpathbackend.util.KeysetCursor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.leo.pillpathbackend.repository.PrescriptionRepository;
 import com.leo.pillpathbackend.repository.CustomerOrderRepository;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +26,7 @@ import java.time.format.TextStyle;
 import java.util.Locale;
 import com.leo.pillpathbackend.dto.AdminAnalyticsChartsDTO;
 import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import com.leo.pillpathbackend.repository.AnnouncementRepository;
@@ -25,12 +35,18 @@ import com.leo.pillpathbackend.entity.enums.AdminLevel;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Map;
 import java.time.LocalDateTime;
 import java.util.stream.Collectors;
 import com.leo.pillpathbackend.repository.PrescriptionSubmissionRepository;
 import com.leo.pillpathbackend.entity.enums.PrescriptionStatus;
 import com.leo.pillpathbackend.repository.PharmacyReviewRepository;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 
 @Service
 @RequiredArgsConstructor
@@ -41,11 +57,18 @@ public class AdminServiceImpl implements AdminService {
     private final PrescriptionRepository prescriptionRepository;
     private final CustomerOrderRepository customerOrderRepository;
     private final PharmacyRepository pharmacyRepository;
+    private final PharmacyGeoCache pharmacyGeoCache;
     private final com.leo.pillpathbackend.repository.PharmacyOrderRepository pharmacyOrderRepository; // New repository for pharmacy orders
     private final PasswordEncoder passwordEncoder;
     private final PrescriptionSubmissionRepository prescriptionSubmissionRepository;
     private final PharmacyReviewRepository pharmacyReviewRepository;
+    private final DailyMetricsService dailyMetricsService;
+    private final AdminReportRepository adminReportRepository;
 
+    private static final int MAX_LISTING_PAGE_SIZE = 100;
+    // Keyset order of the admin listings: newest first, id breaks ties between equal timestamps
+    private static final Sort LISTING_ORDER = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+    private static final Sort REVIEW_LISTING_ORDER = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("reviewId"));
     private static final DateTimeFormatter CUSTOMER_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     // You can inject other repositories here as needed:
@@ -217,30 +240,8 @@ public class AdminServiceImpl implements AdminService {
     }
 
     @Override
-    public List<CustomerDTO> getAllCustomers() {
-        // Assuming you have a method in UserRepository to fetch all customers
-        List<User> customers = userRepository.findAllCustomers();
-        List<CustomerDTO> dtos = new ArrayList<>();
-        for (User user : customers) {
-            CustomerDTO dto = new CustomerDTO();
-            dto.setId(user.getId());
-            dto.setUsername(user.getFullName());
-            dto.setEmail(user.getEmail());
-            dto.setFullName(user.getFullName());
-            dto.setPhoneNumber(user.getPhoneNumber());
-            dto.setDateOfBirth(user.getDateOfBirth());
-            dto.setAddress(user.getAddress());
-            dto.setProfilePictureUrl(user.getProfilePictureUrl());
-            dto.setIsActive(user.getIsActive());
-            dto.setSuspendReason(user.getSuspendReason());
-            dto.setCreatedAt(user.getCreatedAt());
-            dto.setPrescriptionCount((int) prescriptionRepository.countByCustomerId(user.getId()));
-            dto.setOrderCount((int) customerOrderRepository.countByCustomerId(user.getId()));
-
-            // Set other fields as needed
-            dtos.add(dto);
-        }
-        return dtos;
+    public Page<CustomerDTO> getAllCustomers(Pageable pageable) {
+        return adminReportRepository.customers(pageable);
     }
 
     @Override
@@ -262,39 +263,109 @@ public class AdminServiceImpl implements AdminService {
     }
 
     @Override
-    public List<AdminPrescriptionDTO> getAllPrescriptionsForAdmin() {
-        List<Prescription> prescriptions = prescriptionRepository.findAll();
-        List<AdminPrescriptionDTO> dtos = new ArrayList<>();
-        for (Prescription p : prescriptions) {
+    public KeysetPageDTO<AdminPrescriptionDTO> getPrescriptionsForAdmin(String status, Long pharmacyId, String search,
+                                                                       String cursor, int limit) {
+        PrescriptionStatus statusFilter = (status == null || status.isBlank()) ? null : PrescriptionStatus.valueOf(status.trim().toUpperCase());
+        String pattern = (search == null || search.isBlank()) ? null : "%" + search.trim().toLowerCase() + "%";
+        KeysetCursor after = (cursor == null || cursor.isBlank()) ? null : KeysetCursor.decode(cursor);
+        int size = Math.max(1, Math.min(limit, MAX_LISTING_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists
+        List<Prescription> rows = prescriptionRepository.findBy(
+                prescriptionListing(pharmacyId, statusFilter, pattern, after),
+                q -> q.sortBy(LISTING_ORDER).limit(size + 1).all());
+
+        boolean hasMore = rows.size() > size;
+        List<Prescription> page = hasMore ? rows.subList(0, size) : rows;
+        // Submissions of the whole page in one query, keyed by prescription, for the listed pharmacy only
+        Map<Long, PrescriptionSubmission> submissions = new java.util.HashMap<>();
+        if (!page.isEmpty()) {
+            List<Long> ids = page.stream().map(Prescription::getId).collect(Collectors.toList());
+            Map<Long, Long> pharmacyByPrescription = page.stream()
+                    .collect(Collectors.toMap(Prescription::getId, p -> p.getPharmacy().getId()));
+            for (PrescriptionSubmission sub : prescriptionSubmissionRepository.findByPrescriptionIdIn(ids)) {
+                Long prescriptionId = sub.getPrescription().getId();
+                if (sub.getPharmacy().getId().equals(pharmacyByPrescription.get(prescriptionId))) {
+                    submissions.put(prescriptionId, sub);
+                }
+            }
+        }
+        List<AdminPrescriptionDTO> dtos = new ArrayList<>(page.size());
+        for (Prescription p : page) {
+            PrescriptionSubmission sub = submissions.get(p.getId());
             AdminPrescriptionDTO dto = new AdminPrescriptionDTO();
-            dto.setId(p.getCode()); // or p.getId().toString()
+            dto.setId(p.getCode());
             dto.setPatient(p.getCustomer().getFullName());
             dto.setPharmacy(p.getPharmacy().getName());
-            // Fetch submission for this prescription-pharmacy pair
-            var subOpt = prescriptionSubmissionRepository.findByPrescriptionIdAndPharmacyId(p.getId(), p.getPharmacy().getId());
-            String status = subOpt.map(s -> s.getStatus().name()).orElse(PrescriptionStatus.REJECTED.name());
-            dto.setStatus(status);
-            // total_price from prescription_submission
-            String total = subOpt.map(s -> s.getTotalPrice())
-                    .map(java.math.BigDecimal::toPlainString)
-                    .orElse("0");
-            dto.setTotalPrice(total);
+            dto.setStatus(sub != null ? sub.getStatus().name() : PrescriptionStatus.REJECTED.name());
+            dto.setTotalPrice(sub != null && sub.getTotalPrice() != null ? sub.getTotalPrice().toPlainString() : "0");
             dto.setSubmitted(p.getCreatedAt().toLocalDate().toString());
             dto.setPatientImage(p.getCustomer().getProfilePictureUrl());
             dto.setPharmacyImage(p.getPharmacy().getImageUrl());
             dtos.add(dto);
         }
-        return dtos;
+        String nextCursor = null;
+        if (hasMore) {
+            Prescription last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), String.valueOf(last.getId())).encode();
+        }
+        return new KeysetPageDTO<>(dtos, nextCursor, hasMore);
+    }
+
+    /**
+     * Admin prescription listing, newest first. Only the filters that are set become predicates,
+     * so each combination is planned against the indexes it can actually use.
+     * Status is the status of the submission to the prescription's pharmacy, REJECTED when there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private static Specification<Prescription> prescriptionListing(Long pharmacyId, PrescriptionStatus status,
+                                                                   String pattern, KeysetCursor after) {
+        return (root, query, cb) -> {
+            // Fetched because every row shows the patient and the pharmacy
+            Join<Prescription, User> customer = (Join<Prescription, User>) root.<Prescription, User>fetch("customer");
+            Join<Prescription, Pharmacy> pharmacy = (Join<Prescription, Pharmacy>) root.<Prescription, Pharmacy>fetch("pharmacy");
+            List<Predicate> preds = new ArrayList<>();
+            if (pharmacyId != null) {
+                preds.add(cb.equal(pharmacy.get("id"), pharmacyId));
+            }
+            if (status != null) {
+                Subquery<Long> sub = query.subquery(Long.class);
+                Root<PrescriptionSubmission> s = sub.from(PrescriptionSubmission.class);
+                Predicate sameOrder = cb.and(cb.equal(s.get("prescription"), root), cb.equal(s.get("pharmacy"), pharmacy));
+                if (status == PrescriptionStatus.REJECTED) {
+                    sub.select(s.get("id")).where(sameOrder, cb.notEqual(s.get("status"), PrescriptionStatus.REJECTED));
+                    preds.add(cb.not(cb.exists(sub)));
+                } else {
+                    sub.select(s.get("id")).where(sameOrder, cb.equal(s.get("status"), status));
+                    preds.add(cb.exists(sub));
+                }
+            }
+            if (pattern != null) {
+                preds.add(cb.or(cb.like(cb.lower(customer.get("fullName")), pattern),
+                        cb.like(cb.lower(root.get("code")), pattern)));
+            }
+            if (after != null) {
+                preds.add(keysetAfter(cb, root.get("createdAt"), root.get("id"), after.createdAt(), after.longId()));
+            }
+            return cb.and(preds.toArray(new Predicate[0]));
+        };
+    }
+
+    // Rows strictly after the cursor in (createdAt DESC, id DESC) order
+    private static <T extends Comparable<? super T>> Predicate keysetAfter(CriteriaBuilder cb, Path<LocalDateTime> createdAt,
+                                                                          Path<T> id, LocalDateTime afterCreatedAt, T afterId) {
+        return cb.or(cb.lessThan(createdAt, afterCreatedAt),
+                cb.and(cb.equal(createdAt, afterCreatedAt), cb.lessThan(id, afterId)));
     }
 
     @Override
     public OverviewSummaryDTO getOverviewSummary() {
-        int totalUsers = (int) userRepository.count();
+        Map<String, Long> totals = dailyMetricsService.totals();
+        int totalUsers = (int) DailyMetricsService.sum(totals, DailyMetricsService.USERS);
         int activePharmacies = pharmacyRepository.countActivePharmacies() != null
                 ? pharmacyRepository.countActivePharmacies().intValue()
                 : 0;
-        int prescriptionsUploaded = (int) prescriptionRepository.count();
-        int completedOrders = (int) customerOrderRepository.countByStatus(CustomerOrderStatus.COMPLETED);
+        int prescriptionsUploaded = totals.getOrDefault(DailyMetricsService.PRESCRIPTIONS, 0L).intValue();
+        int completedOrders = totals.getOrDefault(DailyMetricsService.orders(CustomerOrderStatus.COMPLETED), 0L).intValue();
         double totalRevenue = customerOrderRepository.sumTotal(); // placeholder: total of all orders
         double walletBalance = 0.0; // TODO: implement wallet balance source
         return OverviewSummaryDTO.builder()
@@ -312,44 +383,43 @@ public class AdminServiceImpl implements AdminService {
     public OverviewChartsResponseDTO getOverviewCharts() {
         // Use server timezone
         ZoneId zone = ZoneId.systemDefault();
-        LocalDate now = LocalDate.now(zone);
+        YearMonth current = YearMonth.now(zone);
         int months = 6;
+        DailyMetricsService.Monthly monthly = dailyMetricsService.monthly(current.minusMonths(months - 1), current);
 
         // Build last 6 months inclusive of current
         List<OverviewChartsResponseDTO.UserRegistrationTrendItem> userTrend = new ArrayList<>();
         List<OverviewChartsResponseDTO.PharmacyOnboardingItem> pharmacyTrend = new ArrayList<>();
 
         for (int i = months - 1; i >= 0; i--) {
-            LocalDate monthStart = now.minusMonths(i).withDayOfMonth(1);
-            LocalDate monthEnd = monthStart.plusMonths(1).withDayOfMonth(1); // exclusive end
-            String monthLabel = monthStart.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
-            String isoMonth = monthStart.toString().substring(0, 7);
+            YearMonth month = current.minusMonths(i);
+            String monthLabel = month.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+            String isoMonth = month.toString();
 
-            int users = (int) userRepository.countByCreatedAtBetween(monthStart.atStartOfDay(), monthEnd.atStartOfDay());
             userTrend.add(OverviewChartsResponseDTO.UserRegistrationTrendItem.builder()
                     .month(monthLabel)
                     .isoMonth(isoMonth)
-                    .users(users)
+                    .users((int) monthly.get(DailyMetricsService.USERS, month))
                     .build());
 
-            int pharmacies = (int) pharmacyRepository.countByCreatedAtBetween(monthStart.atStartOfDay(), monthEnd.atStartOfDay());
             pharmacyTrend.add(OverviewChartsResponseDTO.PharmacyOnboardingItem.builder()
                     .month(monthLabel)
                     .isoMonth(isoMonth)
-                    .pharmacies(pharmacies)
+                    .pharmacies((int) monthly.get(DailyMetricsService.PHARMACIES, month))
                     .build());
         }
 
         // Role distribution snapshot
+        Map<String, Long> totals = dailyMetricsService.totals();
         List<OverviewChartsResponseDTO.RoleDistributionItem> roles = new ArrayList<>();
         roles.add(OverviewChartsResponseDTO.RoleDistributionItem.builder()
-                .name("Customers").value(userRepository.countCustomers().intValue()).build());
+                .name("Customers").value(totals.getOrDefault(DailyMetricsService.CUSTOMERS, 0L).intValue()).build());
         roles.add(OverviewChartsResponseDTO.RoleDistributionItem.builder()
-                .name("Pharmacists").value(userRepository.countPharmacists().intValue()).build());
+                .name("Pharmacists").value(totals.getOrDefault(DailyMetricsService.PHARMACISTS, 0L).intValue()).build());
         roles.add(OverviewChartsResponseDTO.RoleDistributionItem.builder()
-                .name("Pharmacy Admins").value(userRepository.countPharmacyAdmins().intValue()).build());
+                .name("Pharmacy Admins").value(totals.getOrDefault(DailyMetricsService.PHARMACY_ADMINS, 0L).intValue()).build());
         roles.add(OverviewChartsResponseDTO.RoleDistributionItem.builder()
-                .name("System Admins").value(userRepository.countSystemAdmins().intValue()).build());
+                .name("System Admins").value(totals.getOrDefault(DailyMetricsService.ADMINS, 0L).intValue()).build());
 
         return OverviewChartsResponseDTO.builder()
                 .userRegistrationTrend(userTrend)
@@ -360,14 +430,13 @@ public class AdminServiceImpl implements AdminService {
 
     @Override
     public AdminKpisDTO getKpis() {
-        int totalUsers = (int) userRepository.count();
-        int totalPharmacies = (int) pharmacyRepository.count();
-        int totalPrescriptionsUploaded = (int) prescriptionRepository.count();
+        Map<String, Long> totals = dailyMetricsService.totals();
+        int totalUsers = (int) DailyMetricsService.sum(totals, DailyMetricsService.USERS);
+        int totalPharmacies = totals.getOrDefault(DailyMetricsService.PHARMACIES, 0L).intValue();
+        int totalPrescriptionsUploaded = totals.getOrDefault(DailyMetricsService.PRESCRIPTIONS, 0L).intValue();
 
         // Spec mentions COMPLETED and FULFILLED; enum has no FULFILLED -> count COMPLETED only
-        int ordersProcessed = (int) customerOrderRepository.countByStatusIn(
-                Collections.singletonList(CustomerOrderStatus.COMPLETED)
-        );
+        int ordersProcessed = totals.getOrDefault(DailyMetricsService.orders(CustomerOrderStatus.COMPLETED), 0L).intValue();
 
         int activePharmacies = (int) pharmacyRepository.countByIsActiveTrue();
         int suspendedPharmacies = (int) pharmacyRepository.countByIsActiveFalse();
@@ -388,29 +457,29 @@ public class AdminServiceImpl implements AdminService {
     @Override
     public AdminAnalyticsChartsDTO getAnalyticsCharts(Integer year) {
         int y = (year == null || year <= 0) ? Year.now().getValue() : year;
+        DailyMetricsService.Monthly monthly = dailyMetricsService.monthly(YearMonth.of(y, 1), YearMonth.of(y, 12));
         List<AdminAnalyticsChartsDTO.PrescriptionUploadsItem> prescriptionUploads = new ArrayList<>();
         List<AdminAnalyticsChartsDTO.PharmacyRegistrationsItem> pharmacyRegistrations = new ArrayList<>();
         List<AdminAnalyticsChartsDTO.GrowthRegistrationsItem> growthRegistrations = new ArrayList<>();
 
         // Build 12 calendar months for the requested year
-        for (int month = 1; month <= 12; month++) {
-            LocalDate monthStart = LocalDate.of(y, month, 1);
-            LocalDate monthEnd = monthStart.plusMonths(1); // exclusive end
-            String monthLabel = monthStart.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+        for (int m = 1; m <= 12; m++) {
+            YearMonth month = YearMonth.of(y, m);
+            String monthLabel = month.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
 
-            int uploads = (int) prescriptionRepository.countByCreatedAtBetween(monthStart.atStartOfDay(), monthEnd.atStartOfDay());
+            int uploads = (int) monthly.get(DailyMetricsService.PRESCRIPTIONS, month);
             prescriptionUploads.add(AdminAnalyticsChartsDTO.PrescriptionUploadsItem.builder()
                     .month(monthLabel)
                     .uploads(uploads)
                     .build());
 
-            int registeredPharmacies = (int) pharmacyRepository.countByCreatedAtBetween(monthStart.atStartOfDay(), monthEnd.atStartOfDay());
+            int registeredPharmacies = (int) monthly.get(DailyMetricsService.PHARMACIES, month);
             pharmacyRegistrations.add(AdminAnalyticsChartsDTO.PharmacyRegistrationsItem.builder()
                     .month(monthLabel)
                     .registered(registeredPharmacies)
                     .build());
 
-            int newCustomers = (int) userRepository.countCustomersByCreatedAtBetween(monthStart.atStartOfDay(), monthEnd.atStartOfDay());
+            int newCustomers = (int) monthly.get(DailyMetricsService.CUSTOMERS, month);
             int newPharmacies = registeredPharmacies; // pharmacy registrations in the month
             growthRegistrations.add(AdminAnalyticsChartsDTO.GrowthRegistrationsItem.builder()
                     .month(monthLabel)
@@ -420,14 +489,10 @@ public class AdminServiceImpl implements AdminService {
         }
 
         // Order fulfillment (total counts for the selected year)
-        LocalDate yearStart = LocalDate.of(y, 1, 1);
-        LocalDate yearEnd = yearStart.plusYears(1); // exclusive end
-        int delivered = (int) customerOrderRepository.countByStatusInAndCreatedAtBetween(
-                java.util.List.of(CustomerOrderStatus.COMPLETED), yearStart.atStartOfDay(), yearEnd.atStartOfDay());
-        int pending = (int) customerOrderRepository.countByStatusInAndCreatedAtBetween(
-                java.util.List.of(CustomerOrderStatus.PENDING, CustomerOrderStatus.PAID), yearStart.atStartOfDay(), yearEnd.atStartOfDay());
-        int cancelled = (int) customerOrderRepository.countByStatusInAndCreatedAtBetween(
-                java.util.List.of(CustomerOrderStatus.CANCELLED), yearStart.atStartOfDay(), yearEnd.atStartOfDay());
+        int delivered = (int) monthly.total(DailyMetricsService.orders(CustomerOrderStatus.COMPLETED));
+        int pending = (int) (monthly.total(DailyMetricsService.orders(CustomerOrderStatus.PENDING))
+                + monthly.total(DailyMetricsService.orders(CustomerOrderStatus.PAID)));
+        int cancelled = (int) monthly.total(DailyMetricsService.orders(CustomerOrderStatus.CANCELLED));
 
         List<AdminAnalyticsChartsDTO.OrderFulfillmentItem> orderFulfillment = new ArrayList<>();
         orderFulfillment.add(AdminAnalyticsChartsDTO.OrderFulfillmentItem.builder().status("delivered").count(delivered).build());
@@ -443,106 +508,18 @@ public class AdminServiceImpl implements AdminService {
     }
 
     @Override
-    public List<PharmacyPerformanceResponseDTO> getPharmacyPerformance() {
-        List<com.leo.pillpathbackend.entity.Pharmacy> pharmacies = pharmacyRepository.findAll();
-        List<PharmacyPerformanceResponseDTO> result = new ArrayList<>();
-        for (com.leo.pillpathbackend.entity.Pharmacy p : pharmacies) {
-            long fulfilled = pharmacyOrderRepository.countByPharmacyIdAndStatus(p.getId(), com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus.HANDED_OVER);
-            String status = mapStatus(p.getIsActive(), p.getIsVerified());
-            String regDate = null;
-            if (p.getCreatedAt() != null) {
-                regDate = p.getCreatedAt()
-                        .atZone(ZoneId.systemDefault())
-                        .withZoneSameInstant(ZoneId.of("UTC"))
-                        .toInstant()
-                        .toString();
-            }
-            double rating = p.getAverageRating() != null ? p.getAverageRating() : 0.0;
-            result.add(PharmacyPerformanceResponseDTO.builder()
-                    .pharmacyId(formatPharmacyId(p.getId()))
-                    .name(p.getName())
-                    .ordersFulfilled(fulfilled)
-                    .rating(rating)
-                    .status(status)
-                    .registrationDate(regDate)
-                    .build());
-        }
-        return result;
+    public Page<PharmacyPerformanceResponseDTO> getPharmacyPerformance(Pageable pageable) {
+        return adminReportRepository.pharmacyPerformance(pageable);
     }
 
     @Override
-    public List<CustomerActivityResponseDTO> getCustomerActivity() {
-        List<User> customers = userRepository.findAllCustomers();
-        List<CustomerActivityResponseDTO> result = new ArrayList<>();
-        for (User u : customers) {
-            long uploads = prescriptionRepository.countByCustomerId(u.getId());
-            String status = Boolean.TRUE.equals(u.getIsActive()) ? "Active" : "Suspended";
-            String regDate = u.getCreatedAt() != null ? u.getCreatedAt().format(CUSTOMER_DATE_FORMAT) : null;
-            result.add(CustomerActivityResponseDTO.builder()
-                    .customerId(formatCustomerId(u.getId()))
-                    .name(u.getFullName() != null ? u.getFullName() : u.getUsername())
-                    .prescriptionsUploaded(uploads)
-                    .status(status)
-                    .registrationDate(regDate)
-                    .build());
-        }
-        return result;
+    public Page<CustomerActivityResponseDTO> getCustomerActivity(Pageable pageable) {
+        return adminReportRepository.customerActivity(pageable);
     }
 
     @Override
-    public List<SuspendedAccountDTO> getSuspendedAccounts() {
-        List<SuspendedAccountDTO> result = new ArrayList<>();
-
-        // Pharmacies: suspended = isActive=false AND isVerified=true
-        List<com.leo.pillpathbackend.entity.Pharmacy> suspendedPharmacies = pharmacyRepository.findSuspendedPharmacies();
-        for (com.leo.pillpathbackend.entity.Pharmacy p : suspendedPharmacies) {
-            result.add(SuspendedAccountDTO.builder()
-                    .type("Pharmacy")
-                    .id(formatPharmacyId(p.getId()))
-                    .name(p.getName())
-                    .reason("") // no field available in entity
-                    .suspendedAt("") // not tracked
-                    .build());
-        }
-
-        // Customers: suspended if isActive=false
-        List<User> customers = userRepository.findAllCustomers();
-        for (User u : customers) {
-            if (Boolean.FALSE.equals(u.getIsActive())) {
-                result.add(SuspendedAccountDTO.builder()
-                        .type("Customer")
-                        .id(formatUserId(u.getId()))
-                        .name(u.getFullName() != null ? u.getFullName() : u.getUsername())
-                        .reason(u.getSuspendReason() != null ? u.getSuspendReason() : "")
-                        .suspendedAt("") // not tracked
-                        .build());
-            }
-        }
-
-        return result;
-    }
-
-    private String formatUserId(Long id) {
-        if (id == null) return null;
-        String s = String.valueOf(id);
-        if (s.length() < 3) s = String.format("%03d", id);
-        return "usr_" + s;
-    }
-
-    private String formatCustomerId(Long id) {
-        if (id == null) return null;
-        String s = String.valueOf(id);
-        if (s.length() < 3) s = String.format("%03d", id);
-        return "cus_" + s;
-    }
-
-    private String formatPharmacyId(Long id) {
-        if (id == null) return null;
-        String s = String.valueOf(id);
-        if (s.length() < 3) {
-            s = String.format("%03d", id);
-        }
-        return "ph_" + s;
+    public Page<SuspendedAccountDTO> getSuspendedAccounts(Pageable pageable) {
+        return adminReportRepository.suspendedAccounts(pageable);
     }
 
     private String formatModeratorId(Long id) {
@@ -552,15 +529,6 @@ public class AdminServiceImpl implements AdminService {
         return "mod_" + s;
     }
 
-    private String mapStatus(Boolean isActive, Boolean isVerified) {
-        boolean active = Boolean.TRUE.equals(isActive);
-        boolean verified = Boolean.TRUE.equals(isVerified);
-        if (active && verified) return "Active";
-        if (!active && verified) return "Suspended";
-        // When not verified, treat as Pending (includes inactive+unverified which may be Rejected elsewhere)
-        return "Pending";
-    }
-
     @Override
     public ModeratorCreateResponse addModerator(ModeratorCreateRequest request) {
         if (request == null || request.getUsername() == null || request.getUsername().trim().isEmpty() ||
@@ -624,48 +592,75 @@ public class AdminServiceImpl implements AdminService {
     }
 
     @Override
-    public List<AdminPharmacyReviewDTO> getAllPharmacyReviews() {
-        List<PharmacyReview> reviews = pharmacyReviewRepository.findAllByOrderByCreatedAtDesc();
-        java.util.Map<Long, String> customerNames = new java.util.HashMap<>();
-        java.util.Map<Long, String> pharmacyNames = new java.util.HashMap<>();
+    public KeysetPageDTO<AdminPharmacyReviewDTO> getPharmacyReviews(Long pharmacyId, Integer rating, String cursor, int limit) {
+        KeysetCursor after = (cursor == null || cursor.isBlank()) ? null : KeysetCursor.decode(cursor);
+        int size = Math.max(1, Math.min(limit, MAX_LISTING_PAGE_SIZE));
+        List<PharmacyReview> rows = pharmacyReviewRepository.findBy(
+                reviewListing(pharmacyId, rating, after),
+                q -> q.sortBy(REVIEW_LISTING_ORDER).limit(size + 1).all());
+
+        boolean hasMore = rows.size() > size;
+        List<PharmacyReview> page = hasMore ? rows.subList(0, size) : rows;
+        // Names for the whole page in two queries instead of two lookups per review
+        Map<Long, String> customerNames = userRepository.findAllById(page.stream()
+                        .map(PharmacyReview::getCustomerId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(User::getId,
+                        u -> u.getFullName() != null && !u.getFullName().isBlank() ? u.getFullName() : (u.getUsername() != null ? u.getUsername() : "")));
+        Map<Long, String> pharmacyNames = pharmacyRepository.findAllById(page.stream()
+                        .map(PharmacyReview::getPharmacyId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Pharmacy::getId, ph -> ph.getName() != null ? ph.getName() : ""));
         java.time.ZoneId sys = java.time.ZoneId.systemDefault();
-        java.time.ZoneId utc = java.time.ZoneId.of("UTC");
-        List<AdminPharmacyReviewDTO> result = new java.util.ArrayList<>();
-        for (PharmacyReview r : reviews) {
-            Long cid = r.getCustomerId();
-            Long pid = r.getPharmacyId();
-            String customerName = customerNames.computeIfAbsent(cid != null ? cid : -1L, k -> {
-                if (cid == null) return "";
-                return userRepository.findById(cid)
-                        .map(u -> u.getFullName() != null && !u.getFullName().isBlank() ? u.getFullName() : u.getUsername())
-                        .orElse("");
-            });
-            String pharmacyName = pharmacyNames.computeIfAbsent(pid != null ? pid : -1L, k -> {
-                if (pid == null) return "";
-                return pharmacyRepository.findById(pid).map(Pharmacy::getName).orElse("");
-            });
-            String createdAtIso = r.getCreatedAt() != null ? r.getCreatedAt().atZone(sys).withZoneSameInstant(utc).toInstant().toString() : null;
+        List<AdminPharmacyReviewDTO> result = new ArrayList<>(page.size());
+        for (PharmacyReview r : page) {
+            LocalDateTime createdAt = r.getCreatedAt();
             result.add(AdminPharmacyReviewDTO.builder()
                     .id(r.getReviewId())
-                    .customerName(customerName)
-                    .pharmacyName(pharmacyName)
+                    .customerName(customerNames.getOrDefault(r.getCustomerId(), ""))
+                    .pharmacyName(pharmacyNames.getOrDefault(r.getPharmacyId(), ""))
                     .review(r.getReview())
                     .rating(r.getRating())
-                    .createdAt(createdAtIso)
+                    .createdAt(createdAt != null ? createdAt.atZone(sys).toInstant().toString() : null)
                     .build());
         }
-        return result;
+        String nextCursor = null;
+        if (hasMore) {
+            PharmacyReview last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getReviewId()).encode();
+        }
+        return new KeysetPageDTO<>(result, nextCursor, hasMore);
+    }
+
+    /**
+     * Admin review listing, newest first; like the prescription listing only set filters become predicates
+     */
+    private static Specification<PharmacyReview> reviewListing(Long pharmacyId, Integer rating, KeysetCursor after) {
+        return (root, query, cb) -> {
+            List<Predicate> preds = new ArrayList<>();
+            if (pharmacyId != null) {
+                preds.add(cb.equal(root.get("pharmacyId"), pharmacyId));
+            }
+            if (rating != null) {
+                preds.add(cb.equal(root.get("rating"), rating));
+            }
+            if (after != null) {
+                preds.add(keysetAfter(cb, root.get("createdAt"), root.get("reviewId"), after.createdAt(), after.id()));
+            }
+            return cb.and(preds.toArray(new Predicate[0]));
+        };
     }
 
     @Override
+    @Transactional
     public void deletePharmacyReview(String reviewId) {
         if (reviewId == null || reviewId.isBlank()) {
             throw new IllegalArgumentException("reviewId is required");
         }
-        boolean exists = pharmacyReviewRepository.existsById(reviewId);
-        if (!exists) {
+        PharmacyReview review = pharmacyReviewRepository.findById(reviewId)
+                .orElseThrow(() -> new RuntimeException("Review not found"));
+        if (pharmacyReviewRepository.deleteByReviewId(reviewId) == 0) {
             throw new RuntimeException("Review not found");
         }
-        pharmacyReviewRepository.deleteById(reviewId);
+        pharmacyRepository.removeReviewRating(review.getPharmacyId(), review.getRating());
+        pharmacyGeoCache.ratingChanged(review.getPharmacyId());
     }
 }
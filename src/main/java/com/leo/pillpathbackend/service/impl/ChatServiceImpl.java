@@ -1,7 +1,10 @@
 package com.leo.pillpathbackend.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.leo.pillpathbackend.dto.ChatMessageHistoryResponse;
 import com.leo.pillpathbackend.dto.ChatRoomDTO;
+import com.leo.pillpathbackend.dto.KeysetPageDTO;
 import com.leo.pillpathbackend.dto.MessageDTO;
 import com.leo.pillpathbackend.dto.StartChatRequest;
 import com.leo.pillpathbackend.entity.*;
@@ -11,23 +14,37 @@ import com.leo.pillpathbackend.repository.MessageRepository;
 import com.leo.pillpathbackend.repository.PharmacyRepository;
 import com.leo.pillpathbackend.repository.PharmacyAdminRepository;
 import com.leo.pillpathbackend.repository.PharmacistUserRepository;
+import com.leo.pillpathbackend.service.ChatHistoryBuffer;
+import com.leo.pillpathbackend.service.ChatMembershipCache;
 import com.leo.pillpathbackend.service.ChatService;
+import com.leo.pillpathbackend.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.MimeTypeUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class ChatServiceImpl implements ChatService {
 
+    private static final int MAX_INBOX_PAGE_SIZE = 100;
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+
     private final ChatRoomRepository chatRoomRepository;
     private final CustomerRepository customerRepository;
     private final PharmacyRepository pharmacyRepository;
@@ -35,6 +52,9 @@ public class ChatServiceImpl implements ChatService {
     private final SimpMessagingTemplate messagingTemplate;
     private final PharmacyAdminRepository pharmacyAdminRepository;
     private final PharmacistUserRepository pharmacistUserRepository;
+    private final ChatMembershipCache membershipCache;
+    private final ChatHistoryBuffer historyBuffer;
+    private final ObjectMapper objectMapper;
 
     @Override
     @Transactional
@@ -71,56 +91,48 @@ public class ChatServiceImpl implements ChatService {
                     .isRead(false)
                     .timestamp(LocalDateTime.now())
                     .build();
-            messageRepository.save(message);
+            message = messageRepository.save(message);
+            historyBuffer.append(convertMessageToDTO(message));
 
-            chatRoom.updateLastMessageTime();
+            chatRoom.recordLastMessage(message, senderType(customer));
             chatRoom.incrementUnreadCount(true);
             chatRoomRepository.save(chatRoom);
         }
 
-        return convertToDTO(chatRoom, request.getInitialMessage());
+        return convertToDTO(chatRoom);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ChatRoomDTO> getMyChats(Long userId, String userType) {
-        List<ChatRoom> chatRooms;
-
-        if ("CUSTOMER".equalsIgnoreCase(userType)) {
-            chatRooms = chatRoomRepository.findByCustomerId(userId);
-        } else if ("PHARMACIST".equalsIgnoreCase(userType)) {
-            // Show all chats for the pharmacist's pharmacy, not only those already assigned
-            PharmacistUser ph = pharmacistUserRepository.findById(userId).orElse(null);
-            if (ph != null && ph.getPharmacy() != null) {
-                chatRooms = chatRoomRepository.findByPharmacyId(ph.getPharmacy().getId());
-            } else {
-                chatRooms = java.util.Collections.emptyList();
-            }
-        } else if ("ADMIN".equalsIgnoreCase(userType)) {
-            // Treat ADMIN here as Pharmacy Admin listing their pharmacy chats
-            PharmacyAdmin admin = pharmacyAdminRepository.findById(userId)
-                    .orElse(null);
-            if (admin != null && admin.getPharmacy() != null) {
-                chatRooms = chatRoomRepository.findByPharmacyId(admin.getPharmacy().getId());
-            } else {
-                chatRooms = java.util.Collections.emptyList();
-            }
-        } else {
-            throw new RuntimeException("Invalid user type");
+        List<ChatRoomRepository.InboxRow> rows = inboxRows(userId, userType, null, Pageable.unpaged());
+        List<ChatRoomDTO> chats = new ArrayList<>(rows.size());
+        for (ChatRoomRepository.InboxRow row : rows) {
+            chats.add(inboxRowToDTO(row, userType));
         }
+        return chats;
+    }
 
-        return chatRooms.stream()
-                .map(chatRoom -> {
-                    String lastMessage = getLastMessage(chatRoom.getId());
-                    ChatRoomDTO dto = convertToDTO(chatRoom, lastMessage);
-                    // Set unread count depending on who is viewing
-                    if ("CUSTOMER".equalsIgnoreCase(userType)) {
-                        dto.setUnreadCount(chatRoom.getUnreadCountCustomer());
-                    } else {
-                        dto.setUnreadCount(chatRoom.getUnreadCountPharmacist());
-                    }
-                    return dto;
-                })
-                .collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPageDTO<ChatRoomDTO> getInbox(Long userId, String userType, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_INBOX_PAGE_SIZE));
+        KeysetCursor after = (cursor == null || cursor.isBlank()) ? null : KeysetCursor.decode(cursor);
+        // Fetch one extra row to know whether another page exists
+        List<ChatRoomRepository.InboxRow> rows = inboxRows(userId, userType, after, PageRequest.of(0, size + 1));
+
+        boolean hasMore = rows.size() > size;
+        List<ChatRoomRepository.InboxRow> page = hasMore ? rows.subList(0, size) : rows;
+        List<ChatRoomDTO> chats = new ArrayList<>(page.size());
+        for (ChatRoomRepository.InboxRow row : page) {
+            chats.add(inboxRowToDTO(row, userType));
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            ChatRoomRepository.InboxRow last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getLastMessageAt(), String.valueOf(last.getId())).encode();
+        }
+        return new KeysetPageDTO<>(chats, nextCursor, hasMore);
     }
 
     @Override
@@ -128,27 +140,82 @@ public class ChatServiceImpl implements ChatService {
         ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
                 .orElseThrow(() -> new RuntimeException("Chat room not found"));
 
-        String lastMessage = getLastMessage(chatRoomId);
-        return convertToDTO(chatRoom, lastMessage);
+        return convertToDTO(chatRoom);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ChatMessageHistoryResponse getChatMessages(Long chatRoomId, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Message> messagePage = messageRepository.findByChatRoomIdOrderByTimestampDesc(chatRoomId, pageable);
+        if (page <= 0) {
+            return getChatMessagesBefore(chatRoomId, null, size, false);
+        }
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        Slice<Message> messageSlice = messageRepository.findSliceWithSender(chatRoomId, PageRequest.of(page, limit));
+        List<MessageDTO> messageDTOs = new ArrayList<>(messageSlice.getNumberOfElements());
+        for (Message message : messageSlice.getContent()) {
+            messageDTOs.add(convertMessageToDTO(message));
+        }
+        return historyResponse(chatRoomId, page, limit, messageDTOs, messageSlice.hasNext(), false);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ChatMessageHistoryResponse getChatMessagesBefore(Long chatRoomId, Long beforeMessageId, int size, boolean includeTotal) {
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        ChatHistoryBuffer.Slice slice = historyBuffer.read(chatRoomId, beforeMessageId, limit);
+        if (slice == null && beforeMessageId == null && limit <= historyBuffer.capacity()) {
+            slice = seedHistory(chatRoomId, limit);
+        }
+        if (slice == null) {
+            // Fetch one extra row to know whether older messages exist
+            Pageable pageable = PageRequest.of(0, limit + 1);
+            List<Message> rows;
+            if (beforeMessageId == null) {
+                rows = messageRepository.findLatestWithSender(chatRoomId, pageable);
+            } else {
+                LocalDateTime timestamp = messageRepository.findTimestampInRoom(chatRoomId, beforeMessageId)
+                        .orElseThrow(() -> new IllegalArgumentException("Message " + beforeMessageId + " not found in this chat"));
+                rows = messageRepository.findBeforeWithSender(chatRoomId, timestamp, beforeMessageId, pageable);
+            }
+            boolean hasMore = rows.size() > limit;
+            List<MessageDTO> messageDTOs = new ArrayList<>(Math.min(rows.size(), limit));
+            for (int i = 0; i < rows.size() && i < limit; i++) {
+                messageDTOs.add(convertMessageToDTO(rows.get(i)));
+            }
+            slice = new ChatHistoryBuffer.Slice(messageDTOs, hasMore);
+        }
+        return historyResponse(chatRoomId, 0, limit, slice.messages(), slice.hasMore(), includeTotal);
+    }
 
-        List<MessageDTO> messageDTOs = messagePage.getContent().stream()
-                .map(this::convertMessageToDTO)
-                .collect(Collectors.toList());
+    // Loads the room's newest messages into the history buffer and answers the first page from them
+    private ChatHistoryBuffer.Slice seedHistory(Long chatRoomId, int limit) {
+        int capacity = historyBuffer.capacity();
+        long version = historyBuffer.version(chatRoomId);
+        List<Message> rows = messageRepository.findLatestWithSender(chatRoomId, PageRequest.of(0, capacity + 1));
+        boolean hasOlder = rows.size() > capacity;
+        List<MessageDTO> newest = new ArrayList<>(Math.min(rows.size(), capacity));
+        for (int i = 0; i < rows.size() && i < capacity; i++) {
+            newest.add(convertMessageToDTO(rows.get(i)));
+        }
+        historyBuffer.seed(chatRoomId, version, newest, hasOlder);
+        List<MessageDTO> page = newest.size() > limit ? newest.subList(0, limit) : newest;
+        return new ChatHistoryBuffer.Slice(new ArrayList<>(page), newest.size() > limit || hasOlder);
+    }
 
-        return ChatMessageHistoryResponse.builder()
+    private ChatMessageHistoryResponse historyResponse(Long chatRoomId, int page, int pageSize, List<MessageDTO> messages,
+                                                       boolean hasMore, boolean includeTotal) {
+        ChatMessageHistoryResponse.ChatMessageHistoryResponseBuilder response = ChatMessageHistoryResponse.builder()
                 .chatRoomId(chatRoomId)
-                .messages(messageDTOs)
+                .messages(messages)
                 .currentPage(page)
-                .totalPages(messagePage.getTotalPages())
-                .totalMessages(messagePage.getTotalElements())
-                .hasMore(messagePage.hasNext())
-                .build();
+                .hasMore(hasMore)
+                .nextBefore(hasMore && !messages.isEmpty() ? messages.get(messages.size() - 1).getId() : null);
+        if (includeTotal) {
+            long total = messageRepository.countByChatRoomId(chatRoomId);
+            response.totalMessages(total)
+                    .totalPages((int) ((total + pageSize - 1) / pageSize));
+        }
+        return response.build();
     }
 
     @Override
@@ -179,23 +246,15 @@ public class ChatServiceImpl implements ChatService {
     @Override
     @Transactional
     public MessageDTO persistAndBroadcastMessage(Long chatRoomId, Long senderId, String userType, String text) {
-        System.out.println("\n========== PERSIST AND BROADCAST MESSAGE ==========");
-        System.out.println("ChatRoomId: " + chatRoomId);
-        System.out.println("SenderId: " + senderId);
-        System.out.println("UserType: " + userType);
-        System.out.println("Text: " + text);
-        
         // STEP 1: Validate chat room exists
         ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
                 .orElseThrow(() -> new IllegalArgumentException("Chat room not found"));
-        System.out.println("✅ Chat room found: " + chatRoom.getId());
-        System.out.println("   Customer ID: " + chatRoom.getCustomer().getId());
-        System.out.println("   Pharmacy ID: " + chatRoom.getPharmacy().getId());
+        Long pharmacyId = chatRoom.getPharmacy().getId();
 
         // STEP 2: Identify and validate the sender
         User sender;
         boolean isCustomerSender;
-        
+
         if ("CUSTOMER".equalsIgnoreCase(userType)) {
             // Customer sending message
             sender = chatRoom.getCustomer();
@@ -203,51 +262,33 @@ public class ChatServiceImpl implements ChatService {
                 throw new IllegalArgumentException("You are not authorized to send messages in this chat");
             }
             isCustomerSender = true;
-            System.out.println("✅ Sender validated as CUSTOMER: " + sender.getId() + " - " + sender.getFullName());
         } else if ("ADMIN".equalsIgnoreCase(userType) || "PHARMACY_ADMIN".equalsIgnoreCase(userType)) {
             // Pharmacy admin sending message
             PharmacyAdmin admin = pharmacyAdminRepository.findById(senderId).orElse(null);
-            System.out.println("Looking for pharmacy admin with ID: " + senderId);
             if (admin == null) {
-                System.out.println("❌ Pharmacy admin not found!");
                 throw new IllegalArgumentException("Pharmacy admin not found");
             }
-            System.out.println("Found pharmacy admin: " + admin.getId() + " - " + admin.getFullName());
-            System.out.println("Admin's pharmacy ID: " + (admin.getPharmacy() != null ? admin.getPharmacy().getId() : "null"));
-            System.out.println("Chat room pharmacy ID: " + chatRoom.getPharmacy().getId());
-            
-            if (admin.getPharmacy() == null 
-                || !admin.getPharmacy().getId().equals(chatRoom.getPharmacy().getId())) {
-                System.out.println("❌ Pharmacy admin not authorized - pharmacy mismatch!");
+            if (admin.getPharmacy() == null || !admin.getPharmacy().getId().equals(pharmacyId)) {
+                log.debug("Pharmacy admin {} rejected from chat room {} of pharmacy {}", senderId, chatRoomId, pharmacyId);
                 throw new IllegalArgumentException("You are not authorized to send messages in this chat. " +
                     "Only pharmacy admins from the pharmacy associated with this chat can respond.");
             }
             sender = admin;
             isCustomerSender = false;
-            System.out.println("✅ Sender validated as PHARMACY_ADMIN: " + sender.getId() + " - " + sender.getFullName());
         } else if ("PHARMACIST".equalsIgnoreCase(userType)) {
             // Pharmacist sending message
             PharmacistUser pharmacist = pharmacistUserRepository.findById(senderId).orElse(null);
-            System.out.println("Looking for pharmacist with ID: " + senderId);
             if (pharmacist == null) {
-                System.out.println("❌ Pharmacist not found!");
                 throw new IllegalArgumentException("Pharmacist not found");
             }
-            System.out.println("Found pharmacist: " + pharmacist.getId() + " - " + pharmacist.getFullName());
-            System.out.println("Pharmacist's pharmacy ID: " + (pharmacist.getPharmacy() != null ? pharmacist.getPharmacy().getId() : "null"));
-            System.out.println("Chat room pharmacy ID: " + chatRoom.getPharmacy().getId());
-            
-            if (pharmacist.getPharmacy() == null 
-                || !pharmacist.getPharmacy().getId().equals(chatRoom.getPharmacy().getId())) {
-                System.out.println("❌ Pharmacist not authorized - pharmacy mismatch!");
+            if (pharmacist.getPharmacy() == null || !pharmacist.getPharmacy().getId().equals(pharmacyId)) {
+                log.debug("Pharmacist {} rejected from chat room {} of pharmacy {}", senderId, chatRoomId, pharmacyId);
                 throw new IllegalArgumentException("You are not authorized to send messages in this chat. " +
                     "Only pharmacy staff from the pharmacy associated with this chat can respond.");
             }
             sender = pharmacist;
             isCustomerSender = false;
-            System.out.println("✅ Sender validated as PHARMACIST: " + sender.getId() + " - " + sender.getFullName());
         } else {
-            System.out.println("❌ Invalid sender type: " + userType);
             throw new IllegalArgumentException("Invalid sender type. Only 'CUSTOMER', 'PHARMACY_ADMIN', and 'PHARMACIST' roles are allowed.");
         }
 
@@ -260,18 +301,15 @@ public class ChatServiceImpl implements ChatService {
                 .timestamp(LocalDateTime.now())
                 .build();
         message = messageRepository.save(message);
-        System.out.println("✅ Message saved to database with ID: " + message.getId());
 
         // STEP 4: Update chat room metadata
-        chatRoom.updateLastMessageTime();
+        chatRoom.recordLastMessage(message, senderType(sender));
         chatRoom.incrementUnreadCount(isCustomerSender);
         chatRoomRepository.save(chatRoom);
-        System.out.println("✅ Chat room metadata updated");
 
-        // STEP 5: Build message payload for WebSocket delivery
-        // Create a comprehensive payload with all needed info
+        // STEP 5: Serialize the WebSocket payload once; every send below shares its bytes
         String senderTypeStr = isCustomerSender ? "CUSTOMER" : "ADMIN";
-        java.util.Map<String, Object> payload = java.util.Map.of(
+        Map<String, Object> payload = Map.of(
                 "id", message.getId(),
                 "chatRoomId", chatRoomId,
                 "senderId", sender.getId(),
@@ -281,76 +319,119 @@ public class ChatServiceImpl implements ChatService {
                 "timestamp", message.getTimestamp().toString(),
                 "isRead", false
         );
-        System.out.println("✅ WebSocket payload created: " + payload);
-
-        // STEP 6: Broadcast to ONLY the participants of this specific chat room
-        System.out.println("\n--- Broadcasting to participants ---");
-        
-        // Always deliver to the customer in this chat
-        Long customerId = chatRoom.getCustomer().getId();
-        String customerDestination = "customer:" + customerId;
-        System.out.println("📤 Sending to customer: " + customerDestination + " -> /queue/chat/" + chatRoomId);
-        messagingTemplate.convertAndSendToUser(customerDestination, "/queue/chat/" + chatRoomId, payload);
-        // Also send to generic per-user queue for backward-compatible clients
-        System.out.println("📤 Sending to customer generic queue: " + customerDestination + " -> /queue/chat");
-        messagingTemplate.convertAndSendToUser(customerDestination, "/queue/chat", payload);
-
-        // Deliver to all pharmacy admins for this pharmacy
-        List<PharmacyAdmin> pharmacyAdmins = pharmacyAdminRepository.findByPharmacyId(chatRoom.getPharmacy().getId());
-        System.out.println("📤 Found " + pharmacyAdmins.size() + " pharmacy admins for pharmacy " + chatRoom.getPharmacy().getId());
-        for (PharmacyAdmin admin : pharmacyAdmins) {
-            String adminDestination1 = "pharmacy_admin:" + admin.getId();
-            String adminDestination2 = "admin:" + admin.getId(); // alias to support clients using 'admin' role
-            System.out.println("   📤 Sending to pharmacy admin: " + adminDestination1 + " -> /queue/chat/" + chatRoomId);
-            messagingTemplate.convertAndSendToUser(adminDestination1, "/queue/chat/" + chatRoomId, payload);
-            System.out.println("   📤 Sending to pharmacy admin alias: " + adminDestination2 + " -> /queue/chat/" + chatRoomId);
-            messagingTemplate.convertAndSendToUser(adminDestination2, "/queue/chat/" + chatRoomId, payload);
-            // Generic per-user queue for backward-compatible clients
-            System.out.println("   📤 Sending to pharmacy admin generic: " + adminDestination1 + " -> /queue/chat");
-            messagingTemplate.convertAndSendToUser(adminDestination1, "/queue/chat", payload);
-            System.out.println("   📤 Sending to pharmacy admin alias generic: " + adminDestination2 + " -> /queue/chat");
-            messagingTemplate.convertAndSendToUser(adminDestination2, "/queue/chat", payload);
+        org.springframework.messaging.Message<byte[]> wsMessage = toWebSocketMessage(payload);
+
+        // STEP 6: Broadcast to ONLY the participants of this specific chat room, on the room
+        // queue and on the generic per-user queue kept for backward-compatible clients
+        String roomQueue = "/queue/chat/" + chatRoomId;
+        String customerDestination = "customer:" + chatRoom.getCustomer().getId();
+        sendToUser(customerDestination, roomQueue, wsMessage);
+        sendToUser(customerDestination, "/queue/chat", wsMessage);
+        List<String> staffDestinations = membershipCache.staffDestinations(pharmacyId);
+        for (String staffDestination : staffDestinations) {
+            sendToUser(staffDestination, roomQueue, wsMessage);
+            sendToUser(staffDestination, "/queue/chat", wsMessage);
         }
-        
         // Also send to room-based topic for anyone subscribed to this specific chat room
-        System.out.println("📤 Broadcasting to room topic: /topic/chat/room/" + chatRoomId);
-        messagingTemplate.convertAndSend("/topic/chat/room/" + chatRoomId, payload);
-        
-        System.out.println("========== MESSAGE BROADCAST COMPLETE ==========\n");
-        
+        messagingTemplate.send("/topic/chat/room/" + chatRoomId, wsMessage);
+
+        log.debug("Chat message {} in room {} from {} {} sent to {} users", message.getId(), chatRoomId,
+                senderTypeStr, sender.getId(), staffDestinations.size() + 1);
+
         // STEP 7: Convert and return the message as DTO
         MessageDTO messageDTO = convertMessageToDTO(message);
-        System.out.println("✅ Returning MessageDTO with content: '" + messageDTO.getContent() + "'");
+        historyBuffer.append(messageDTO);
         return messageDTO;
     }
 
     @Override
     @Transactional
     public void markChatAsRead(Long chatRoomId, Long userId, String userType) {
-        System.out.println("Marking chat " + chatRoomId + " as read for user " + userId + " (type: " + userType + ")");
-        
         ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
                 .orElseThrow(() -> new IllegalArgumentException("Chat room not found"));
-        
+
         // Reset unread count for the appropriate side
         if ("CUSTOMER".equalsIgnoreCase(userType)) {
             chatRoom.resetUnreadCount(true);
         } else if ("ADMIN".equalsIgnoreCase(userType) || "PHARMACY_ADMIN".equalsIgnoreCase(userType) || "PHARMACIST".equalsIgnoreCase(userType)) {
             chatRoom.resetUnreadCount(false);
         }
-        
+
         chatRoomRepository.save(chatRoom);
-        System.out.println("✅ Chat marked as read, unread count reset");
+        log.debug("Chat room {} marked as read for {} {}", chatRoomId, userType, userId);
+    }
+
+    private org.springframework.messaging.Message<byte[]> toWebSocketMessage(Object payload) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize chat payload", e);
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        // Immutable headers: the template copies them per destination and keeps the payload as is
+        headers.setImmutable();
+        return MessageBuilder.createMessage(json, headers.getMessageHeaders());
+    }
+
+    // Same destination convertAndSendToUser builds, without converting the payload again
+    private void sendToUser(String user, String destination, org.springframework.messaging.Message<byte[]> wsMessage) {
+        messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + user.replace("/", "%2F") + destination, wsMessage);
     }
 
-    
+    private List<ChatRoomRepository.InboxRow> inboxRows(Long userId, String userType, KeysetCursor after, Pageable pageable) {
+        if ("CUSTOMER".equalsIgnoreCase(userType)) {
+            return after == null
+                    ? chatRoomRepository.findCustomerInboxFirstPage(userId, pageable)
+                    : chatRoomRepository.findCustomerInboxPageAfter(userId, after.createdAt(), after.longId(), pageable);
+        }
+        Long pharmacyId;
+        if ("PHARMACIST".equalsIgnoreCase(userType)) {
+            // Show all chats for the pharmacist's pharmacy, not only those already assigned
+            PharmacistUser ph = pharmacistUserRepository.findById(userId).orElse(null);
+            pharmacyId = ph != null && ph.getPharmacy() != null ? ph.getPharmacy().getId() : null;
+        } else if ("ADMIN".equalsIgnoreCase(userType)) {
+            // Treat ADMIN here as Pharmacy Admin listing their pharmacy chats
+            PharmacyAdmin admin = pharmacyAdminRepository.findById(userId).orElse(null);
+            pharmacyId = admin != null && admin.getPharmacy() != null ? admin.getPharmacy().getId() : null;
+        } else {
+            throw new RuntimeException("Invalid user type");
+        }
+        if (pharmacyId == null) {
+            return Collections.emptyList();
+        }
+        return after == null
+                ? chatRoomRepository.findPharmacyInboxFirstPage(pharmacyId, pageable)
+                : chatRoomRepository.findPharmacyInboxPageAfter(pharmacyId, after.createdAt(), after.longId(), pageable);
+    }
 
-    private String getLastMessage(Long chatRoomId) {
-        List<Message> messages = messageRepository.findTopByChatRoomIdOrderByTimestampDesc(chatRoomId, PageRequest.of(0,1));
-        return (messages == null || messages.isEmpty()) ? null : messages.get(0).getContent();
+    // Maps a ChatRoomRepository.INBOX row; the unread count is the viewer's side of the room
+    private ChatRoomDTO inboxRowToDTO(ChatRoomRepository.InboxRow row, String userType) {
+        Long pharmacistId = row.getPharmacistId();
+        return ChatRoomDTO.builder()
+                .id(row.getId())
+                .customerId(row.getCustomerId())
+                .customerName(row.getCustomerName())
+                .customerProfilePicture(row.getCustomerPicture())
+                .pharmacistId(pharmacistId)
+                // Fallback to pharmacy name/logo when pharmacist is not assigned to avoid 'unknown user'
+                .pharmacistName(pharmacistId != null ? row.getPharmacistName() : row.getPharmacyName())
+                .pharmacistProfilePicture(pharmacistId != null ? row.getPharmacistPicture() : row.getPharmacyLogo())
+                .pharmacyId(row.getPharmacyId())
+                .pharmacyName(row.getPharmacyName())
+                .pharmacyLogoUrl(row.getPharmacyLogo())
+                .isActive(row.getIsActive())
+                .lastMessageAt(row.getLastMessageAt())
+                .unreadCount("CUSTOMER".equalsIgnoreCase(userType) ? row.getUnreadCountCustomer() : row.getUnreadCountPharmacist())
+                .lastMessage(row.getLastMessagePreview())
+                .lastMessageSenderType(row.getLastMessageSenderType())
+                .lastMessageId(row.getLastMessageId())
+                .createdAt(row.getCreatedAt())
+                .build();
     }
 
-    private ChatRoomDTO convertToDTO(ChatRoom chatRoom, String lastMessage) {
+    private ChatRoomDTO convertToDTO(ChatRoom chatRoom) {
         Customer customer = chatRoom.getCustomer();
         PharmacistUser pharmacist = chatRoom.getPharmacist();
         Pharmacy pharmacy = chatRoom.getPharmacy();
@@ -370,24 +451,27 @@ public class ChatServiceImpl implements ChatService {
                 .isActive(chatRoom.getIsActive())
                 .lastMessageAt(chatRoom.getLastMessageAt())
                 .unreadCount(chatRoom.getUnreadCountCustomer())
-                .lastMessage(lastMessage)
+                .lastMessage(chatRoom.getLastMessagePreview())
+                .lastMessageSenderType(chatRoom.getLastMessageSenderType())
+                .lastMessageId(chatRoom.getLastMessageId())
                 .createdAt(chatRoom.getCreatedAt())
                 .build();
     }
 
-    private MessageDTO convertMessageToDTO(Message message) {
-        User sender = message.getSender();
-        String senderType;
-        
+    private static String senderType(User sender) {
         if (sender instanceof Customer) {
-            senderType = "CUSTOMER";
+            return "CUSTOMER";
         } else if (sender instanceof PharmacyAdmin) {
-            senderType = "ADMIN";
+            return "ADMIN";
         } else if (sender instanceof PharmacistUser) {
-            senderType = "PHARMACIST";
-        } else {
-            senderType = "UNKNOWN";
+            return "PHARMACIST";
         }
+        return "UNKNOWN";
+    }
+
+    private MessageDTO convertMessageToDTO(Message message) {
+        User sender = message.getSender();
+        String senderType = senderType(sender);
 
         return MessageDTO.builder()
                 .id(message.getId())
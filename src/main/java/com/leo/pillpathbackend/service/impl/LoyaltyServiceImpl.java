@@ -10,6 +10,7 @@ import com.leo.pillpathbackend.repository.CustomerRepository;
 import com.leo.pillpathbackend.repository.LoyaltyTransactionRepository;
 import com.leo.pillpathbackend.repository.SystemSettingsRepository;
 import com.leo.pillpathbackend.service.LoyaltyService;
+import com.leo.pillpathbackend.service.SettingsCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -26,6 +27,7 @@ public class LoyaltyServiceImpl implements LoyaltyService {
     private final CustomerRepository customerRepository;
     private final SystemSettingsRepository systemSettingsRepository;
     private final LoyaltyTransactionRepository loyaltyTransactionRepository;
+    private final SettingsCache settingsCache;
 
     @Override
     @Transactional
@@ -82,10 +84,11 @@ public class LoyaltyServiceImpl implements LoyaltyService {
 
     @Override
     public BigDecimal getLoyaltyPointsRate() {
-        return systemSettingsRepository
-                .findBySettingKey(SystemSettings.LOYALTY_POINTS_RATE_KEY)
-                .map(setting -> new BigDecimal(setting.getSettingValue()))
-                .orElse(new BigDecimal(SystemSettings.DEFAULT_LOYALTY_RATE));
+        String value = settingsCache.<String, String>get(SettingsCache.SYSTEM, SystemSettings.LOYALTY_POINTS_RATE_KEY,
+                key -> new SettingsCache.Entry<>(systemSettingsRepository.findBySettingKey(key)
+                        .map(SystemSettings::getSettingValue)
+                        .orElse(null), null)).value();
+        return new BigDecimal(value != null ? value : SystemSettings.DEFAULT_LOYALTY_RATE);
     }
 
     @Override
@@ -104,6 +107,8 @@ public class LoyaltyServiceImpl implements LoyaltyService {
 
         setting.setSettingValue(rate.toString());
         systemSettingsRepository.save(setting);
+        // system_settings has no version column, so other nodes always drop their copy
+        settingsCache.evict(SettingsCache.SYSTEM, SystemSettings.LOYALTY_POINTS_RATE_KEY, null);
         
         log.info("Updated loyalty points rate to: {}", rate);
     }
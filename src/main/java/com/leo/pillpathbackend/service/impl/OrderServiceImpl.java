@@ -5,6 +5,11 @@ import com.leo.pillpathbackend.entity.*;
 import com.leo.pillpathbackend.entity.enums.*;
 import com.leo.pillpathbackend.repository.*;
 import com.leo.pillpathbackend.service.NotificationService;
+import com.leo.pillpathbackend.service.OrderCodeAllocator;
+import com.leo.pillpathbackend.service.DailyMetricsService;
+import com.leo.pillpathbackend.service.PharmacyGeoCache;
+import com.leo.pillpathbackend.service.OtcStockService;
+import com.leo.pillpathbackend.service.PharmacyOrderStateMachine;
 import com.leo.pillpathbackend.service.OrderService;
 import com.leo.pillpathbackend.service.WalletService;
 import com.leo.pillpathbackend.service.WalletSettingsService;
@@ -45,6 +50,11 @@ public class OrderServiceImpl implements OrderService {
     private final PharmacyAdminRepository pharmacyAdminRepository; // ✅ ADDED
     private final PharmacyReviewRepository pharmacyReviewRepository;
     private final PharmacyRepository pharmacyRepository;
+    private final PharmacyGeoCache pharmacyGeoCache;
+    private final OrderCodeAllocator orderCodeAllocator;
+    private final PharmacyOrderStateMachine pharmacyOrderStateMachine;
+    private final OtcStockService otcStockService;
+    private final DailyMetricsService dailyMetricsService;
 
     @Override
     public CustomerOrderDTO placeOrder(Long customerId, PlaceOrderRequestDTO request) {
@@ -85,7 +95,7 @@ public class OrderServiceImpl implements OrderService {
         if (order.getPharmacyOrders() == null) order.setPharmacyOrders(new ArrayList<>());
 
         // Load all submissions for this prescription and index by pharmacyId
-        List<PrescriptionSubmission> allSubs = submissionRepository.findByPrescriptionId(prescription.getId());
+        List<PrescriptionSubmission> allSubs = submissionRepository.findWithPharmacyAndItemsByPrescriptionId(prescription.getId());
         Map<Long, PrescriptionSubmission> subByPharmacy = allSubs.stream()
                 .collect(Collectors.toMap(s -> s.getPharmacy().getId(), s -> s));
 
@@ -113,7 +123,7 @@ public class OrderServiceImpl implements OrderService {
                     .pharmacy(submission.getPharmacy())
                     .submission(submission)
                     .status(PharmacyOrderStatus.RECEIVED)
-                    .orderCode(generatePharmacyOrderCode(submission.getPharmacy().getId()))
+                    .orderCode(orderCodeAllocator.nextPharmacyOrderCode())
                     .pickupCode(generatePickupCode(submission.getPharmacy().getId()))
                     .pickupLocation(submission.getPharmacy().getAddress())
                     .customerNote(sel.getNote())
@@ -160,38 +170,33 @@ public class OrderServiceImpl implements OrderService {
             pOrder.setTotal(subSubtotal);
             overallSubtotal = overallSubtotal.add(subSubtotal);
             order.getPharmacyOrders().add(pOrder);
-
-            PrescriptionStatus current = submission.getStatus();
-            if (current == PrescriptionStatus.PENDING_REVIEW || current == PrescriptionStatus.PENDING) {
-                submission.setStatus(PrescriptionStatus.PREPARING_ORDER);
-                submissionRepository.save(submission);
-            }
         }
 
         Set<Long> selectedPharmacyIds = request.getPharmacies().stream()
                 .map(PharmacyOrderSelectionDTO::getPharmacyId)
                 .filter(Objects::nonNull)
                 .collect(java.util.stream.Collectors.toSet());
-        java.util.List<PrescriptionSubmission> toDelete = new java.util.ArrayList<>();
-        java.util.List<PrescriptionSubmission> toNotifyDecline = new java.util.ArrayList<>();
+        List<Long> toDelete = new ArrayList<>();
+        List<PrescriptionSubmission> toNotifyDecline = new ArrayList<>();
         for (PrescriptionSubmission sub : allSubs) {
             Long pid = sub.getPharmacy().getId();
             if (!selectedPharmacyIds.contains(pid)) {
                 if (sub.getItems() == null || sub.getItems().isEmpty()) {
-                    toDelete.add(sub);
+                    toDelete.add(sub.getId());
                 } else {
                     toNotifyDecline.add(sub);
                 }
             }
         }
-        if (!toDelete.isEmpty()) {
-            submissionRepository.deleteAll(toDelete);
-        }
+        // Pharmacists of every selected and declined pharmacy in one query
+        Set<Long> involvedPharmacyIds = new HashSet<>(selectedPharmacyIds);
+        toNotifyDecline.forEach(sub -> involvedPharmacyIds.add(sub.getPharmacy().getId()));
+        Map<Long, List<Long>> pharmacistsByPharmacy = userRepository.findPharmacistIdsGroupedByPharmacy(involvedPharmacyIds);
         
         for (PrescriptionSubmission declinedSub : toNotifyDecline) {
             Long pharmacyId = declinedSub.getPharmacy().getId();
             try {
-                List<Long> pharmacistIds = userRepository.findPharmacistIdsByPharmacyId(pharmacyId);
+                List<Long> pharmacistIds = pharmacistsByPharmacy.getOrDefault(pharmacyId, List.of());
                 if (!pharmacistIds.isEmpty()) {
                     notificationService.createOrderDeclinedNotification(
                         declinedSub.getId(),
@@ -206,32 +211,34 @@ public class OrderServiceImpl implements OrderService {
             }
         }
 
-        if (order.getPharmacyOrders() != null) {
-            for (PharmacyOrder po : order.getPharmacyOrders()) {
-                PrescriptionSubmission sub = po.getSubmission();
-                if (sub != null && sub.getStatus() != PrescriptionStatus.ORDER_PLACED) {
-                    sub.setStatus(PrescriptionStatus.ORDER_PLACED);
-                    submissionRepository.save(sub);
-                }
-            }
-        }
-
         PrescriptionStatus ps = prescription.getStatus();
         if (ps == PrescriptionStatus.PENDING_REVIEW || ps == PrescriptionStatus.PENDING) {
+            // Managed entity; flushed with the order
             prescription.setStatus(PrescriptionStatus.ORDER_PLACED);
-            prescriptionRepository.save(prescription);
         }
 
         order.setSubtotal(overallSubtotal);
         order.setTotal(overallSubtotal);
+        pharmacyOrderStateMachine.recount(order);
 
         CustomerOrder saved = customerOrderRepository.save(order);
+
+        // Bulk statements last: they flush the order above and then clear the persistence
+        // context, so nothing below may rely on managed state (only ids and loaded fields)
+        if (!toDelete.isEmpty()) {
+            submissionRepository.deleteEmptyByIdIn(toDelete);
+        }
+        // Selected submissions go straight to ORDER_PLACED in one statement
+        List<Long> selectedSubmissionIds = saved.getPharmacyOrders().stream()
+                .map(po -> po.getSubmission().getId())
+                .toList();
+        submissionRepository.updateStatusByIdIn(selectedSubmissionIds, PrescriptionStatus.ORDER_PLACED);
         
         Customer customer = cust;
         for (PharmacyOrder pOrder : saved.getPharmacyOrders()) {
             Long pharmacyId = pOrder.getPharmacy().getId();
             try {
-                List<Long> pharmacistIds = userRepository.findPharmacistIdsByPharmacyId(pharmacyId);
+                List<Long> pharmacistIds = pharmacistsByPharmacy.getOrDefault(pharmacyId, List.of());
                 if (!pharmacistIds.isEmpty()) {
                     notificationService.createOrderConfirmedNotification(
                         pOrder.getId(),
@@ -289,19 +296,57 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public PharmacyOrderDTO updatePharmacyOrderStatus(Long pharmacistId, Long pharmacyOrderId, PharmacyOrderStatus status) {
         if (status == null) throw new IllegalArgumentException("status required");
+        Long pharmacyId = requirePharmacistPharmacyId(pharmacistId);
+        PharmacyOrder po = pharmacyOrderRepository.findByIdAndPharmacyId(pharmacyOrderId, pharmacyId)
+                .orElseThrow(() -> new IllegalArgumentException("Pharmacy order not found"));
+        if (!PharmacyOrderStateMachine.isValidTransition(po.getStatus(), status)) {
+            throw new IllegalStateException("Invalid status transition");
+        }
+
+        pharmacyOrderStateMachine.transition(po, status);
+        afterPharmacistTransition(po, status);
+        return toPharmacyDTO(po, true);
+    }
+
+    @Override
+    public List<PharmacyOrderDTO> bulkUpdatePharmacyOrderStatus(Long pharmacistId, List<Long> pharmacyOrderIds, PharmacyOrderStatus status) {
+        if (status == null) throw new IllegalArgumentException("status required");
+        Long pharmacyId = requirePharmacistPharmacyId(pharmacistId);
+        List<PharmacyOrder> slices = loadSlicesForBulk(pharmacyOrderIds, pharmacyId);
+
+        pharmacyOrderStateMachine.transition(slices, status);
+        for (PharmacyOrder po : slices) {
+            afterPharmacistTransition(po, status);
+        }
+        return slices.stream().map(po -> toPharmacyDTO(po, false)).toList();
+    }
+
+    private Long requirePharmacistPharmacyId(Long pharmacistId) {
         User user = userRepository.findById(pharmacistId)
                 .orElseThrow(() -> new IllegalArgumentException("Pharmacist not found"));
         if (!(user instanceof PharmacistUser phUser) || phUser.getPharmacy() == null) {
             throw new IllegalArgumentException("Pharmacist not assigned to pharmacy");
         }
-        PharmacyOrder po = pharmacyOrderRepository.findByIdAndPharmacyId(pharmacyOrderId, phUser.getPharmacy().getId())
-                .orElseThrow(() -> new IllegalArgumentException("Pharmacy order not found"));
-        if (!isValidTransition(po.getStatus(), status)) {
-            throw new IllegalStateException("Invalid status transition");
+        return phUser.getPharmacy().getId();
+    }
+
+    private List<PharmacyOrder> loadSlicesForBulk(List<Long> pharmacyOrderIds, Long pharmacyId) {
+        if (pharmacyOrderIds == null || pharmacyOrderIds.isEmpty()) {
+            throw new IllegalArgumentException("orderIds required");
+        }
+        Set<Long> ids = new LinkedHashSet<>(pharmacyOrderIds);
+        List<PharmacyOrder> slices = pharmacyOrderRepository.findByIdInAndPharmacyId(ids, pharmacyId);
+        if (slices.size() != ids.size()) {
+            throw new IllegalArgumentException("Pharmacy order not found");
         }
+        return slices;
+    }
 
-        po.setStatus(status);
-        
+    /**
+     * Customer notifications and finance records that follow a pharmacist status change
+     */
+    private void afterPharmacistTransition(PharmacyOrder po, PharmacyOrderStatus status) {
+        Long pharmacyOrderId = po.getId();
         // Get customer and pharmacy info for notifications
         CustomerOrder customerOrder = po.getCustomerOrder();
         Long customerId = (customerOrder != null && customerOrder.getCustomer() != null) 
@@ -355,78 +400,6 @@ public class OrderServiceImpl implements OrderService {
                 log.error("Failed to send order status notification: {}", e.getMessage());
             }
         }
-        // Snapshot finance values when finalizing the slice
-        if (status == PharmacyOrderStatus.HANDED_OVER) {
-            try {
-                Long pharmacyId = po.getPharmacy() != null ? po.getPharmacy().getId() : null;
-                BigDecimal gross = po.getTotal();
-                if (gross == null) {
-                    gross = java.util.Optional.ofNullable(po.getItems()).orElse(java.util.List.of()).stream()
-                            .map(PharmacyOrderItem::getTotalPrice)
-                            .filter(java.util.Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                }
-                BigDecimal rate = walletSettingsService.resolveCommissionPercent(pharmacyId);
-                if (rate == null) rate = BigDecimal.ZERO;
-                BigDecimal commission = gross.multiply(rate).divide(new BigDecimal("100"), 2, HALF_UP);
-                BigDecimal convenience = java.util.Optional.ofNullable(walletSettingsService.getSettings())
-                        .map(com.leo.pillpathbackend.entity.PlatformSettings::getConvenienceFee)
-                        .orElse(BigDecimal.ZERO).setScale(2, HALF_UP);
-                BigDecimal net = gross.subtract(commission).setScale(2, HALF_UP);
-
-                po.setCommissionPercentSnapshot(rate.setScale(2, HALF_UP));
-                po.setCommissionAmountSnapshot(commission);
-                po.setConvenienceFeeSnapshot(convenience);
-                po.setNetAfterCommissionSnapshot(net);
-            } catch (Exception ignore) {
-                // do not block status update on snapshot errors
-            }
-        }
-        
-        po = pharmacyOrderRepository.save(po);
-
-        PrescriptionSubmission sub = po.getSubmission();
-        if (sub != null) {
-            switch (status) {
-                case RECEIVED, PREPARING -> sub.setStatus(PrescriptionStatus.PREPARING_ORDER);
-                case READY_FOR_PICKUP -> sub.setStatus(PrescriptionStatus.READY_FOR_PICKUP);
-                case HANDED_OVER -> sub.setStatus(PrescriptionStatus.COMPLETED);
-                case CANCELLED -> sub.setStatus(PrescriptionStatus.CANCELLED);
-            }
-            submissionRepository.save(sub);
-        }
-
-        CustomerOrder parent = po.getCustomerOrder();
-        if (parent != null) {
-            List<PharmacyOrder> slices = pharmacyOrderRepository.findByCustomerOrderId(parent.getId());
-            boolean hasSlices = !slices.isEmpty();
-            boolean allHandedOver = hasSlices && slices.stream().allMatch(s -> s.getStatus() == PharmacyOrderStatus.HANDED_OVER);
-            boolean allCancelled = hasSlices && slices.stream().allMatch(s -> s.getStatus() == PharmacyOrderStatus.CANCELLED);
-            boolean anyReady = slices.stream().anyMatch(s -> s.getStatus() == PharmacyOrderStatus.READY_FOR_PICKUP);
-            boolean anyPreparing = slices.stream().anyMatch(s -> s.getStatus() == PharmacyOrderStatus.PREPARING);
-
-            if (allHandedOver) {
-                parent.setStatus(CustomerOrderStatus.COMPLETED);
-            } else if (allCancelled) {
-                parent.setStatus(CustomerOrderStatus.CANCELLED);
-            }
-            customerOrderRepository.save(parent);
-
-            Prescription pres = parent.getPrescription();
-            if (pres != null) {
-                if (allHandedOver) {
-                    pres.setStatus(PrescriptionStatus.COMPLETED);
-                } else if (allCancelled) {
-                    pres.setStatus(PrescriptionStatus.CANCELLED);
-                } else if (anyReady) {
-                    pres.setStatus(PrescriptionStatus.READY_FOR_PICKUP);
-                } else if (anyPreparing) {
-                    pres.setStatus(PrescriptionStatus.IN_PROGRESS);
-                }
-                prescriptionRepository.save(pres);
-            }
-        }
-
         // 4) Finance bookkeeping: on slice completion create commission/payout records if missing
         if (status == PharmacyOrderStatus.HANDED_OVER) {
             try {
@@ -490,8 +463,6 @@ public class OrderServiceImpl implements OrderService {
                 log.warn("Finance bookkeeping failed for order {}: {}", pharmacyOrderId, e.getMessage());
             }
         }
-
-        return toPharmacyDTO(po, true);
     }
 
     // ========== ✅ PHARMACY ADMIN METHODS ==========
@@ -541,99 +512,44 @@ public class OrderServiceImpl implements OrderService {
         
         if (status == null) throw new IllegalArgumentException("status required");
         
-        PharmacyAdmin admin = pharmacyAdminRepository.findById(pharmacyAdminId)
-                .orElseThrow(() -> new IllegalArgumentException("Pharmacy admin not found: " + pharmacyAdminId));
-        
-        if (admin.getPharmacy() == null) {
-            throw new IllegalArgumentException("Pharmacy admin not assigned to pharmacy");
-        }
-        
-        PharmacyOrder po = pharmacyOrderRepository.findByIdAndPharmacyId(pharmacyOrderId, admin.getPharmacy().getId())
+        Long pharmacyId = requireAdminPharmacyId(pharmacyAdminId);
+        PharmacyOrder po = pharmacyOrderRepository.findByIdAndPharmacyId(pharmacyOrderId, pharmacyId)
                 .orElseThrow(() -> new IllegalArgumentException("Pharmacy order not found"));
         
-        if (!isValidTransition(po.getStatus(), status)) {
+        if (!PharmacyOrderStateMachine.isValidTransition(po.getStatus(), status)) {
             throw new IllegalStateException("Invalid status transition from " + po.getStatus() + " to " + status);
         }
 
-        po.setStatus(status);
-        
-        // Snapshot finance values when finalizing the slice (admin path)
-        if (status == PharmacyOrderStatus.HANDED_OVER) {
-            try {
-                Long pharmacyId = po.getPharmacy() != null ? po.getPharmacy().getId() : null;
-                BigDecimal gross = po.getTotal();
-                if (gross == null) {
-                    gross = java.util.Optional.ofNullable(po.getItems()).orElse(java.util.List.of()).stream()
-                            .map(PharmacyOrderItem::getTotalPrice)
-                            .filter(java.util.Objects::nonNull)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                }
-                BigDecimal rate = walletSettingsService.resolveCommissionPercent(pharmacyId);
-                if (rate == null) rate = BigDecimal.ZERO;
-                BigDecimal commission = gross.multiply(rate).divide(new BigDecimal("100"), 2, HALF_UP);
-                BigDecimal convenience = java.util.Optional.ofNullable(walletSettingsService.getSettings())
-                        .map(com.leo.pillpathbackend.entity.PlatformSettings::getConvenienceFee)
-                        .orElse(BigDecimal.ZERO).setScale(2, HALF_UP);
-                BigDecimal net = gross.subtract(commission).setScale(2, HALF_UP);
-
-                po.setCommissionPercentSnapshot(rate.setScale(2, HALF_UP));
-                po.setCommissionAmountSnapshot(commission);
-                po.setConvenienceFeeSnapshot(convenience);
-                po.setNetAfterCommissionSnapshot(net);
-            } catch (Exception ignore) {
-                // do not block status update on snapshot errors
-            }
-        }
-        
-        po = pharmacyOrderRepository.save(po);
-
-        PrescriptionSubmission sub = po.getSubmission();
-        if (sub != null) {
-            switch (status) {
-                case RECEIVED, PREPARING -> sub.setStatus(PrescriptionStatus.PREPARING_ORDER);
-                case READY_FOR_PICKUP -> sub.setStatus(PrescriptionStatus.READY_FOR_PICKUP);
-                case HANDED_OVER -> sub.setStatus(PrescriptionStatus.COMPLETED);
-                case CANCELLED -> sub.setStatus(PrescriptionStatus.CANCELLED);
-            }
-            submissionRepository.save(sub);
-        }
-
-        CustomerOrder parent = po.getCustomerOrder();
-        if (parent != null) {
-            List<PharmacyOrder> slices = pharmacyOrderRepository.findByCustomerOrderId(parent.getId());
-            boolean hasSlices = !slices.isEmpty();
-            boolean allHandedOver = hasSlices && slices.stream().allMatch(s -> s.getStatus() == PharmacyOrderStatus.HANDED_OVER);
-            boolean allCancelled = hasSlices && slices.stream().allMatch(s -> s.getStatus() == PharmacyOrderStatus.CANCELLED);
-            boolean anyReady = slices.stream().anyMatch(s -> s.getStatus() == PharmacyOrderStatus.READY_FOR_PICKUP);
-            boolean anyPreparing = slices.stream().anyMatch(s -> s.getStatus() == PharmacyOrderStatus.PREPARING);
-
-            if (allHandedOver) {
-                parent.setStatus(CustomerOrderStatus.COMPLETED);
-            } else if (allCancelled) {
-                parent.setStatus(CustomerOrderStatus.CANCELLED);
-            }
-            customerOrderRepository.save(parent);
-
-            Prescription pres = parent.getPrescription();
-            if (pres != null) {
-                if (allHandedOver) {
-                    pres.setStatus(PrescriptionStatus.COMPLETED);
-                } else if (allCancelled) {
-                    pres.setStatus(PrescriptionStatus.CANCELLED);
-                } else if (anyReady) {
-                    pres.setStatus(PrescriptionStatus.READY_FOR_PICKUP);
-                } else if (anyPreparing) {
-                    pres.setStatus(PrescriptionStatus.IN_PROGRESS);
-                }
-                prescriptionRepository.save(pres);
-            }
-        }
+        pharmacyOrderStateMachine.transition(po, status);
 
         log.info("Order {} status updated to {} by pharmacy admin {}", pharmacyOrderId, status, pharmacyAdminId);
         
         return toPharmacyDTO(po, true);
     }
 
+    @Override
+    public List<PharmacyOrderDTO> bulkUpdatePharmacyOrderStatusByAdmin(Long pharmacyAdminId, List<Long> pharmacyOrderIds, PharmacyOrderStatus status) {
+        log.info("Pharmacy admin {} updating {} orders to status {}", pharmacyAdminId,
+                pharmacyOrderIds != null ? pharmacyOrderIds.size() : 0, status);
+        
+        if (status == null) throw new IllegalArgumentException("status required");
+        
+        Long pharmacyId = requireAdminPharmacyId(pharmacyAdminId);
+        List<PharmacyOrder> slices = loadSlicesForBulk(pharmacyOrderIds, pharmacyId);
+        pharmacyOrderStateMachine.transition(slices, status);
+        return slices.stream().map(po -> toPharmacyDTO(po, false)).toList();
+    }
+
+    private Long requireAdminPharmacyId(Long pharmacyAdminId) {
+        PharmacyAdmin admin = pharmacyAdminRepository.findById(pharmacyAdminId)
+                .orElseThrow(() -> new IllegalArgumentException("Pharmacy admin not found: " + pharmacyAdminId));
+        
+        if (admin.getPharmacy() == null) {
+            throw new IllegalArgumentException("Pharmacy admin not assigned to pharmacy");
+        }
+        return admin.getPharmacy().getId();
+    }
+
     // ========== OTHER METHODS ==========
 
     @Override
@@ -646,6 +562,8 @@ public class OrderServiceImpl implements OrderService {
         if (order.getStatus() == CustomerOrderStatus.CANCELLED) {
             throw new IllegalStateException("Order is cancelled");
         }
+        // Unpaid OTC orders may hold stock only until their reservation expires
+        otcStockService.confirm(order.getId());
 
         if (request != null) {
             if (request.getPaymentMethod() != null) {
@@ -657,6 +575,7 @@ public class OrderServiceImpl implements OrderService {
         }
 
         order.setPaymentStatus(PaymentStatus.PAID);
+        dailyMetricsService.orderStatusChanged(order, order.getStatus(), CustomerOrderStatus.PAID);
         order.setStatus(CustomerOrderStatus.PAID);
 
         // Award loyalty points for card payments
@@ -676,6 +595,7 @@ public class OrderServiceImpl implements OrderService {
                     po.setStatus(PharmacyOrderStatus.PREPARING);
                 }
             }
+            pharmacyOrderStateMachine.recount(order);
         }
 
         // Wallet events per PharmacyOrder
@@ -787,18 +707,11 @@ public class OrderServiceImpl implements OrderService {
                 .build();
         PharmacyReview saved = pharmacyReviewRepository.save(review);
 
-        // Update pharmacy aggregates
-        pharmacyRepository.findById(pharmacyId).ifPresent(ph -> {
-            try {
-                Double avg = pharmacyReviewRepository.averageRatingByPharmacy(pharmacyId);
-                long count = pharmacyReviewRepository.countByPharmacyId(pharmacyId);
-                ph.setAverageRating(avg != null ? avg : 0.0);
-                ph.setTotalReviews((int) count);
-                pharmacyRepository.save(ph);
-            } catch (Exception ex) {
-                log.warn("Failed to update pharmacy rating aggregates for pharmacy {}: {}", pharmacyId, ex.getMessage());
-            }
-        });
+        // Update pharmacy aggregates in the same transaction as the review row
+        if (pharmacyRepository.addReviewRating(pharmacyId, rating) == 0) {
+            throw new IllegalArgumentException("Pharmacy not found");
+        }
+        pharmacyGeoCache.ratingChanged(pharmacyId);
 
         return PharmacyReviewResponse.builder()
                 .id(saved.getReviewId())
@@ -810,15 +723,6 @@ public class OrderServiceImpl implements OrderService {
                 .build();
     }
 
-    private boolean isValidTransition(PharmacyOrderStatus from, PharmacyOrderStatus to) {
-        return switch (from) {
-            case RECEIVED -> (to == PharmacyOrderStatus.PREPARING || to == PharmacyOrderStatus.CANCELLED);
-            case PREPARING -> (to == PharmacyOrderStatus.READY_FOR_PICKUP || to == PharmacyOrderStatus.CANCELLED);
-            case READY_FOR_PICKUP -> (to == PharmacyOrderStatus.HANDED_OVER || to == PharmacyOrderStatus.CANCELLED);
-            case HANDED_OVER, CANCELLED -> false;
-        };
-    }
-
     private CustomerOrderDTO toCustomerDTO(CustomerOrder order, boolean includeItems) {
         List<PharmacyOrder> poList = order.getPharmacyOrders() != null ? order.getPharmacyOrders() : Collections.emptyList();
         List<PharmacyOrderDTO> slices = poList.stream()
@@ -932,21 +836,6 @@ public class OrderServiceImpl implements OrderService {
         return "PU-" + pharmacyId + "-" + UUID.randomUUID().toString().substring(0, 4).toUpperCase();
     }
 
-    private String generatePharmacyOrderCode(Long pharmacyId) {
-        LocalDateTime now = LocalDateTime.now();
-        String dateStr = now.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        
-        // Get start and end of today
-        LocalDateTime startOfDay = now.toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-        
-        // Count existing orders for today and increment by 1
-        long todayCount = pharmacyOrderRepository.countByCreatedAtBetween(startOfDay, endOfDay);
-        long sequenceNumber = todayCount + 1;
-        
-        return String.format("ORD-%s-%d", dateStr, sequenceNumber);
-    }
-
     private Customer resolveCustomer(User user) {
         if (user == null) throw new IllegalStateException("User null");
         if (user instanceof Customer c) return c;
@@ -6,7 +6,11 @@ import com.leo.pillpathbackend.entity.enums.CustomerOrderStatus;
 import com.leo.pillpathbackend.entity.enums.PaymentStatus;
 import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
 import com.leo.pillpathbackend.repository.*;
+import com.leo.pillpathbackend.service.OrderCodeAllocator;
 import com.leo.pillpathbackend.service.OtcOrderService;
+import com.leo.pillpathbackend.service.DailyMetricsService;
+import com.leo.pillpathbackend.service.OtcStockService;
+import com.leo.pillpathbackend.service.PharmacyOrderStateMachine;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,6 +31,10 @@ public class OtcOrderServiceImpl implements OtcOrderService {
     private final CustomerRepository customerRepository;
     private final PharmacyRepository pharmacyRepository;
     private final OtcRepository otcRepository;
+    private final PharmacyOrderStateMachine pharmacyOrderStateMachine;
+    private final OtcStockService otcStockService;
+    private final DailyMetricsService dailyMetricsService;
+    private final OrderCodeAllocator orderCodeAllocator;
 
     @Override
     @Transactional
@@ -38,7 +46,7 @@ public class OtcOrderServiceImpl implements OtcOrderService {
                 .orElseThrow(() -> new EntityNotFoundException("Customer not found"));
 
         // Generate order code
-        String orderCode = generateOrderCode();
+        String orderCode = orderCodeAllocator.nextOtcOrderCode();
 
         // Group items by pharmacy
         Map<Long, List<OrderItemDTO>> itemsByPharmacy = orderRequest.getItems().stream()
@@ -67,6 +75,28 @@ public class OtcOrderServiceImpl implements OtcOrderService {
 
         BigDecimal grandTotal = BigDecimal.ZERO;
 
+        // Load all products at once and take their stock in one batch, ascending product id
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItemDTO itemDTO : orderRequest.getItems()) {
+            quantities.merge(itemDTO.getOtcProductId(), itemDTO.getQuantity(), Integer::sum);
+        }
+        Map<Long, Otc> products = new HashMap<>();
+        otcRepository.findAllById(quantities.keySet()).forEach(o -> products.put(o.getId(), o));
+        for (Map.Entry<Long, Integer> q : quantities.entrySet()) {
+            Otc otcProduct = products.get(q.getKey());
+            if (otcProduct == null) {
+                throw new EntityNotFoundException("Product not found: " + q.getKey());
+            }
+            // Fast path for an obvious shortfall; the conditional update below is the real check
+            if (otcProduct.getStock() < q.getValue()) {
+                throw new IllegalStateException(
+                    String.format("Insufficient stock for %s. Available: %d, Requested: %d",
+                        otcProduct.getName(), otcProduct.getStock(), q.getValue())
+                );
+            }
+        }
+        otcStockService.take(quantities);
+
         // Create pharmacy orders
         for (Map.Entry<Long, List<OrderItemDTO>> entry : itemsByPharmacy.entrySet()) {
             Long pharmacyId = entry.getKey();
@@ -96,16 +126,7 @@ public class OtcOrderServiceImpl implements OtcOrderService {
 
             // Create order items
             for (OrderItemDTO itemDTO : pharmacyItems) {
-                Otc otcProduct = otcRepository.findById(itemDTO.getOtcProductId())
-                        .orElseThrow(() -> new EntityNotFoundException("Product not found: " + itemDTO.getOtcProductId()));
-
-                // Validate stock
-                if (otcProduct.getStock() < itemDTO.getQuantity()) {
-                    throw new IllegalStateException(
-                        String.format("Insufficient stock for %s. Available: %d, Requested: %d",
-                            otcProduct.getName(), otcProduct.getStock(), itemDTO.getQuantity())
-                    );
-                }
+                Otc otcProduct = products.get(itemDTO.getOtcProductId());
 
                 BigDecimal unitPrice = BigDecimal.valueOf(otcProduct.getPrice());
                 BigDecimal totalPrice = unitPrice.multiply(BigDecimal.valueOf(itemDTO.getQuantity()));
@@ -124,10 +145,6 @@ public class OtcOrderServiceImpl implements OtcOrderService {
                 pharmacyOrder.getItems().add(orderItem);
                 pharmacySubtotal = pharmacySubtotal.add(totalPrice);
 
-                // Update stock
-                otcProduct.setStock(otcProduct.getStock() - itemDTO.getQuantity());
-                otcRepository.save(otcProduct);
-
                 log.info("Added: {} x{} = Rs.{}", otcProduct.getName(), itemDTO.getQuantity(), totalPrice);
             }
 
@@ -139,8 +156,12 @@ public class OtcOrderServiceImpl implements OtcOrderService {
 
         customerOrder.setSubtotal(grandTotal);
         customerOrder.setTotal(grandTotal);
+        pharmacyOrderStateMachine.recount(customerOrder);
 
         CustomerOrder savedOrder = customerOrderRepository.save(customerOrder);
+        if (otcStockService.holdsUntilPaid(savedOrder)) {
+            otcStockService.hold(savedOrder.getId(), quantities);
+        }
         log.info("OTC Order created: {}, Total: Rs.{}", orderCode, grandTotal);
 
         return mapToOrderResponse(savedOrder);
@@ -197,7 +218,9 @@ public class OtcOrderServiceImpl implements OtcOrderService {
             throw new IllegalStateException("Cannot update prescription order through OTC endpoint");
         }
         
-        order.setStatus(CustomerOrderStatus.valueOf(status));
+        CustomerOrderStatus next = CustomerOrderStatus.valueOf(status);
+        dailyMetricsService.orderStatusChanged(order, order.getStatus(), next);
+        order.setStatus(next);
         CustomerOrder updatedOrder = customerOrderRepository.save(order);
         
         log.info("OTC Order {} status updated to {}", orderId, status);
@@ -206,10 +229,6 @@ public class OtcOrderServiceImpl implements OtcOrderService {
 
     // ==================== HELPER METHODS ====================
 
-    private String generateOrderCode() {
-        return "OTC-" + System.currentTimeMillis() + String.format("%04d", new Random().nextInt(10000));
-    }
-
     private String generatePharmacyOrderCode(String orderCode, Long pharmacyId) {
         return orderCode + "-P" + pharmacyId;
     }
@@ -7,22 +7,32 @@ import com.leo.pillpathbackend.entity.Otc;
 import com.leo.pillpathbackend.entity.Pharmacy;
 import com.leo.pillpathbackend.repository.OtcRepository;
 import com.leo.pillpathbackend.repository.PharmacyRepository;
+import com.leo.pillpathbackend.service.OtcSearchBackend;
 import com.leo.pillpathbackend.service.OtcService;
 import jakarta.persistence.EntityNotFoundException;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
 public class OtcServiceImpl implements OtcService {
 
     private final OtcRepository otcRepository;
     private final PharmacyRepository pharmacyRepository;
+    private final OtcSearchBackend otcSearch;
+    private final int maxSearchResults;
+
+    public OtcServiceImpl(OtcRepository otcRepository,
+                          PharmacyRepository pharmacyRepository,
+                          OtcSearchBackend otcSearch,
+                          @Value("${app.otc-search.max-results:500}") int maxSearchResults) {
+        this.otcRepository = otcRepository;
+        this.pharmacyRepository = pharmacyRepository;
+        this.otcSearch = otcSearch;
+        this.maxSearchResults = maxSearchResults;
+    }
 
     @Override
     public OtcDTO createOtcForPharmacy(Long pharmacyId, OtcDTO otcDTO) {
@@ -45,6 +55,7 @@ public class OtcServiceImpl implements OtcService {
         otc.setStatus(calculateStatus(otcDTO.getStock()));
 
         Otc savedOtc = otcRepository.save(otc);
+        otcSearch.indexed(savedOtc);
         return mapToOtcDTO(savedOtc);
     }
 
@@ -91,6 +102,7 @@ public class OtcServiceImpl implements OtcService {
         existingOtc.setStatus(calculateStatus(updatedOtcDto.getStock()));
 
         Otc updatedOtc = otcRepository.save(existingOtc);
+        otcSearch.indexed(updatedOtc);
         return mapToOtcDTO(updatedOtc);
     }
 
@@ -100,45 +112,41 @@ public class OtcServiceImpl implements OtcService {
             throw new EntityNotFoundException("OTC item not found with id: " + otcId);
         }
         otcRepository.deleteById(otcId);
+        otcSearch.removed(otcId);
     }
 
     @Override
     public List<PharmacyWithProductDTO> getPharmaciesByProductName(String productName) {
-        List<Otc> matchingProducts = otcRepository.findByNameContainingIgnoreCase(productName);
-        
-        if (matchingProducts.isEmpty()) {
+        List<Long> rankedIds = otcSearch.search(productName, maxSearchResults);
+
+        if (rankedIds.isEmpty()) {
             return new ArrayList<>();
         }
 
-        Map<Long, List<Otc>> productsByPharmacy = matchingProducts.stream()
-                .collect(Collectors.groupingBy(Otc::getPharmacyId));
-
-        List<PharmacyWithProductDTO> result = new ArrayList<>();
-        
-        for (Map.Entry<Long, List<Otc>> entry : productsByPharmacy.entrySet()) {
-            Long pharmacyId = entry.getKey();
-            List<Otc> products = entry.getValue();
-            
-            Pharmacy pharmacy = pharmacyRepository.findById(pharmacyId).orElse(null);
-            
-            if (pharmacy != null) {
-                PharmacyWithProductDTO dto = new PharmacyWithProductDTO();
-                dto.setPharmacyId(pharmacyId);
-                dto.setPharmacyName(pharmacy.getName());
-                dto.setAddress(pharmacy.getAddress());
-                dto.setPhoneNumber(pharmacy.getPhoneNumber());
-                dto.setEmail(pharmacy.getEmail());
-                
-                List<OtcDTO> productDTOs = products.stream()
-                        .map(this::mapToOtcDTO)
-                        .collect(Collectors.toList());
-                dto.setProducts(productDTOs);
-                
-                result.add(dto);
-            }
+        // One query for the products and their pharmacies, then back into rank order
+        Map<Long, Otc> byId = otcRepository.findWithPharmacyByIdIn(rankedIds).stream()
+                .collect(Collectors.toMap(Otc::getId, o -> o));
+
+        // Pharmacies are listed in the order of their best matching product
+        Map<Long, PharmacyWithProductDTO> byPharmacy = new LinkedHashMap<>();
+        for (Long id : rankedIds) {
+            Otc otc = byId.get(id);
+            if (otc == null || otc.getPharmacy() == null) continue;
+            Pharmacy pharmacy = otc.getPharmacy();
+            PharmacyWithProductDTO dto = byPharmacy.computeIfAbsent(pharmacy.getId(), pid -> {
+                PharmacyWithProductDTO p = new PharmacyWithProductDTO();
+                p.setPharmacyId(pid);
+                p.setPharmacyName(pharmacy.getName());
+                p.setAddress(pharmacy.getAddress());
+                p.setPhoneNumber(pharmacy.getPhoneNumber());
+                p.setEmail(pharmacy.getEmail());
+                p.setProducts(new ArrayList<>());
+                return p;
+            });
+            dto.getProducts().add(mapToOtcDTO(otc));
         }
-        
-        return result;
+
+        return new ArrayList<>(byPharmacy.values());
     }
 
     @Override
@@ -5,6 +5,7 @@ import com.leo.pillpathbackend.entity.Pharmacy;
 import com.leo.pillpathbackend.entity.PharmacyAdmin;
 import com.leo.pillpathbackend.repository.PharmacyRepository;
 import com.leo.pillpathbackend.repository.PharmacyAdminRepository;
+import com.leo.pillpathbackend.service.PharmacyGeoCache;
 import com.leo.pillpathbackend.service.PharmacyService;
 import com.leo.pillpathbackend.util.Mapper;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -30,6 +32,10 @@ public class PharmacyServiceImpl implements PharmacyService {
     private final PharmacyAdminRepository pharmacyAdminRepository;
     private final Mapper mapper;
     private final PasswordEncoder passwordEncoder;
+    private final PharmacyGeoCache pharmacyGeoCache;
+
+    private static final double DEFAULT_MAP_RADIUS_KM = 10.0;
+    private static final int MAP_RESULT_LIMIT = 500;
 
     @Override
     @Transactional
@@ -111,6 +117,7 @@ public class PharmacyServiceImpl implements PharmacyService {
         }
 
         pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return approved;
     }
 
@@ -172,6 +179,7 @@ public class PharmacyServiceImpl implements PharmacyService {
         // Clear any previous rejection reason
 
         pharmacy = pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return mapper.convertToPharmacyDTO(pharmacy);
     }
 
@@ -189,6 +197,7 @@ public class PharmacyServiceImpl implements PharmacyService {
         pharmacy.setIsActive(false);
 
         pharmacy = pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return mapper.convertToPharmacyDTO(pharmacy);
     }
 
@@ -208,6 +217,7 @@ public class PharmacyServiceImpl implements PharmacyService {
 
         pharmacy.setIsActive(false);
         pharmacy = pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return mapper.convertToPharmacyDTO(pharmacy);
     }
 
@@ -228,6 +238,7 @@ public class PharmacyServiceImpl implements PharmacyService {
         pharmacy.setIsActive(true);// Clear suspension reason
 
         pharmacy = pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return mapper.convertToPharmacyDTO(pharmacy);
     }
 
@@ -255,44 +266,38 @@ public class PharmacyServiceImpl implements PharmacyService {
         mapper.updatePharmacyFromDTO(pharmacy, pharmacyDTO);
 
         pharmacy = pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return mapper.convertToPharmacyDTO(pharmacy);
     }
 
     @Override
     public List<PharmacyMapDTO> getPharmaciesForMap(Double userLat, Double userLng, Double radiusKm) {
-        List<Pharmacy> pharmacies;
+        double radius = radiusKm != null && radiusKm > 0 ? radiusKm : DEFAULT_MAP_RADIUS_KM;
+
+        // Served from the in-memory grid once it has loaded; the database is only a startup fallback
+        if (pharmacyGeoCache.isLoaded()) {
+            if (userLat == null || userLng == null) {
+                return pharmacyGeoCache.all();
+            }
+            return pharmacyGeoCache.withinRadius(userLat, userLng, radius, null, MAP_RESULT_LIMIT, 0).stream()
+                    .map(PharmacyGeoCache.Hit::pharmacy)
+                    .collect(Collectors.toList());
+        }
 
+        List<Pharmacy> pharmacies;
         if (userLat != null && userLng != null) {
-            // Get pharmacies within radius (you'll need to implement this query)
-            pharmacies = pharmacyRepository.findActivePharmaciesWithinRadius(userLat, userLng, radiusKm);
+            // Nearest first, capped so a wide radius cannot pull the whole table onto the map
+            pharmacies = pharmacyRepository.findActivePharmaciesNearby(userLat, userLng, radius, null, MAP_RESULT_LIMIT, 0);
         } else {
             // Get all active pharmacies with location data
             pharmacies = pharmacyRepository.findByIsActiveTrueAndIsVerifiedTrueAndLatitudeIsNotNullAndLongitudeIsNotNull();
         }
 
         return pharmacies.stream()
-                .map(this::mapToPharmacyMapDTO)
+                .map(mapper::convertToPharmacyMapDTO)
                 .collect(Collectors.toList());
     }
 
-    private PharmacyMapDTO mapToPharmacyMapDTO(Pharmacy pharmacy) {
-        PharmacyMapDTO dto = new PharmacyMapDTO();
-        dto.setId(pharmacy.getId());
-        dto.setName(pharmacy.getName());
-        dto.setAddress(pharmacy.getAddress());
-        dto.setLatitude(pharmacy.getLatitude());
-        dto.setLongitude(pharmacy.getLongitude());
-        dto.setAverageRating(pharmacy.getAverageRating());
-        dto.setPhoneNumber(pharmacy.getPhoneNumber());
-        dto.setDeliveryAvailable(pharmacy.getDeliveryAvailable());
-        dto.setLogoUrl(pharmacy.getLogoUrl());
-        // Ensure operatingHours is never null
-        dto.setOperatingHours(pharmacy.getOperatingHours() != null ? pharmacy.getOperatingHours() : new java.util.HashMap<>());
-        dto.setIsActive(pharmacy.getIsActive());
-        dto.setIsVerified(pharmacy.getIsVerified());
-        return dto;
-    }
-
     @Override
     public PharmacyDTO getPharmacyProfileByAdminId(Long adminId) {
         PharmacyAdmin admin = pharmacyAdminRepository.findById(adminId)
@@ -335,6 +340,7 @@ public class PharmacyServiceImpl implements PharmacyService {
         mapper.updatePharmacyFromDTO(pharmacy, pharmacyDTO);
 
         pharmacy = pharmacyRepository.save(pharmacy);
+        pharmacyGeoCache.refresh(pharmacy);
         return mapper.convertToPharmacyDTO(pharmacy);
     }
 
@@ -382,6 +388,7 @@ public class PharmacyServiceImpl implements PharmacyService {
         profileDTO.setDeliveryRadius(pharmacy.getDeliveryRadius());
         profileDTO.setAverageRating(pharmacy.getAverageRating());
         profileDTO.setTotalReviews(pharmacy.getTotalReviews());
+        profileDTO.setRatingHistogram(ratingHistogram(pharmacy));
         profileDTO.setCreatedAt(pharmacy.getCreatedAt());
         profileDTO.setUpdatedAt(pharmacy.getUpdatedAt());
 
@@ -448,6 +455,20 @@ public class PharmacyServiceImpl implements PharmacyService {
             .collect(Collectors.toList());
     }
 
+    private Map<Integer, Integer> ratingHistogram(Pharmacy pharmacy) {
+        Map<Integer, Integer> histogram = new LinkedHashMap<>();
+        histogram.put(1, orZero(pharmacy.getRating1Count()));
+        histogram.put(2, orZero(pharmacy.getRating2Count()));
+        histogram.put(3, orZero(pharmacy.getRating3Count()));
+        histogram.put(4, orZero(pharmacy.getRating4Count()));
+        histogram.put(5, orZero(pharmacy.getRating5Count()));
+        return histogram;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
     private String getPharmacyStatus(Pharmacy pharmacy) {
         if (!pharmacy.getIsActive() && !pharmacy.getIsVerified()) {
             return "Rejected";
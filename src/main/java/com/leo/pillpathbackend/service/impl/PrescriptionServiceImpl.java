@@ -16,6 +16,7 @@ import com.leo.pillpathbackend.entity.enums.SubmissionSource;
 import com.leo.pillpathbackend.repository.*;
 import com.leo.pillpathbackend.service.CloudinaryService;
 import com.leo.pillpathbackend.service.NotificationService;
+import com.leo.pillpathbackend.service.PharmacyGeoCache;
 import com.leo.pillpathbackend.service.PrescriptionService;
 import com.leo.pillpathbackend.util.Mapper;
 import lombok.RequiredArgsConstructor;
@@ -49,6 +50,7 @@ public class PrescriptionServiceImpl implements PrescriptionService {
     private final PharmacyOrderRepository pharmacyOrderRepository;
     private final CustomerOrderRepository customerOrderRepository;
     private final NotificationService notificationService;
+    private final PharmacyGeoCache pharmacyGeoCache;
 
     private static final DateTimeFormatter ISO_SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
@@ -759,9 +761,27 @@ public class PrescriptionServiceImpl implements PrescriptionService {
         }
 
         double rad = radiusKm != null && radiusKm > 0 ? radiusKm : 10.0; // default 10km
-        List<Pharmacy> nearby = pharmacyRepository.findActivePharmaciesWithinRadius(useLat, useLng, rad);
+        if (pharmacyGeoCache.isLoaded()) {
+            List<com.leo.pillpathbackend.dto.reroute.RerouteCandidateDTO> items = pharmacyGeoCache
+                    .withinRadius(useLat, useLng, rad, excludePharmacyId, normalizeLimit(limit), normalizeOffset(offset))
+                    .stream()
+                    .map(hit -> com.leo.pillpathbackend.dto.reroute.RerouteCandidateDTO.builder()
+                            .pharmacyId(hit.pharmacy().getId())
+                            .name(hit.pharmacy().getName())
+                            .address(hit.pharmacy().getAddress())
+                            .distanceKm(hit.distanceKm())
+                            .rating(hit.pharmacy().getAverageRating())
+                            .deliveryEtaMinutes(etaFromDistance(hit.distanceKm()))
+                            .acceptingReroute(Boolean.TRUE)
+                            .build())
+                    .toList();
+            return RerouteCandidatesResponse.builder().items(items).build();
+        }
+
+        // Cache not loaded yet: exclusion, distance ordering and paging are all done by the query
+        List<Pharmacy> nearby = pharmacyRepository.findActivePharmaciesNearby(useLat, useLng, rad,
+                excludePharmacyId, normalizeLimit(limit), normalizeOffset(offset));
         List<com.leo.pillpathbackend.dto.reroute.RerouteCandidateDTO> items = nearby.stream()
-                .filter(ph -> excludePharmacyId == null || !ph.getId().equals(excludePharmacyId))
                 .map(ph -> {
                     Double dist = null;
                     if (ph.getLatitude() != null && ph.getLongitude() != null) {
@@ -777,20 +797,27 @@ public class PrescriptionServiceImpl implements PrescriptionService {
                             .acceptingReroute(Boolean.TRUE)
                             .build();
                 })
-                .sorted(Comparator.comparing(d -> Optional.ofNullable(d.getDistanceKm()).orElse(Double.MAX_VALUE)))
                 .toList();
 
-        return RerouteCandidatesResponse.builder().items(paginate(items, limit, offset)).build();
+        return RerouteCandidatesResponse.builder().items(items).build();
     }
 
     private <T> List<T> paginate(List<T> list, Integer limit, Integer offset) {
-        int off = offset != null && offset > 0 ? offset : 0;
-        int lim = limit != null && limit > 0 ? Math.min(limit, 100) : 20;
+        int off = normalizeOffset(offset);
+        int lim = normalizeLimit(limit);
         if (off >= list.size()) return List.of();
         int toIndex = Math.min(off + lim, list.size());
         return list.subList(off, toIndex);
     }
 
+    private int normalizeOffset(Integer offset) {
+        return offset != null && offset > 0 ? offset : 0;
+    }
+
+    private int normalizeLimit(Integer limit) {
+        return limit != null && limit > 0 ? Math.min(limit, 100) : 20;
+    }
+
     private String etaFromDistance(Double distKm) {
         if (distKm == null) return "30-45";
         if (distKm < 2) return "20-30";
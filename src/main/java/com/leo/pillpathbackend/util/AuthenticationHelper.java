@@ -16,119 +16,111 @@ public class AuthenticationHelper {
      * Returns the token if valid, otherwise null.
      */
     public String extractAndValidateToken(HttpServletRequest request) {
+        String token = extractBearerToken(request);
+        return token != null && resolvePrincipal(request) != null ? token : null;
+    }
+
+    /**
+     * Verified claims for the request's Bearer token, or null if it is missing, blacklisted or invalid.
+     * Reuses the principal stored by JwtAuthenticationFilter when present; otherwise parses once and stores it.
+     */
+    public JwtPrincipal resolvePrincipal(HttpServletRequest request) {
+        Object stored = request.getAttribute(JwtPrincipal.REQUEST_ATTRIBUTE);
+        if (stored instanceof JwtPrincipal principal && !principal.isExpired(System.currentTimeMillis())) {
+            return principal;
+        }
+        String token = extractBearerToken(request);
+        if (token == null) return null;
+        if (tokenBlacklistService.isBlacklisted(token)) return null;
+        JwtPrincipal principal = jwtService.parse(token);
+        if (principal != null) {
+            request.setAttribute(JwtPrincipal.REQUEST_ATTRIBUTE, principal);
+        }
+        return principal;
+    }
+
+    private String extractBearerToken(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             return null;
         }
         String token = authHeader.substring(7);
-        if (token == null || token.isBlank()) return null;
-        if (tokenBlacklistService.isBlacklisted(token)) return null;
-        return jwtService.isTokenValid(token) ? token : null;
+        return token.isBlank() ? null : token;
     }
 
     /**
      * Extract customer ID from JWT; requires role CUSTOMER
      */
     public Long extractCustomerIdFromToken(String token) {
-        if (token == null) {
-            throw new IllegalArgumentException("Missing token");
-        }
-        if (!jwtService.isTokenValid(token)) {
-            throw new IllegalArgumentException("Invalid token");
-        }
-        String role = jwtService.getRole(token);
-        if (role == null || !role.equalsIgnoreCase("CUSTOMER")) {
-            throw new IllegalArgumentException("Invalid role for this resource");
-        }
-        return jwtService.getUserId(token);
+        return requireRole(parseToken(token), "CUSTOMER");
     }
 
     /**
      * Extract pharmacy admin ID from JWT; requires role PHARMACY_ADMIN
      */
     public Long extractPharmacyAdminIdFromToken(String token) {
-        if (token == null) {
-            throw new IllegalArgumentException("Missing token");
-        }
-        if (!jwtService.isTokenValid(token)) {
-            throw new IllegalArgumentException("Invalid token");
-        }
-        String role = jwtService.getRole(token);
-        if (role == null || !role.equalsIgnoreCase("PHARMACY_ADMIN")) {
-            throw new IllegalArgumentException("Invalid role for this resource");
-        }
-        return jwtService.getUserId(token);
+        return requireRole(parseToken(token), "PHARMACY_ADMIN");
     }
 
     /** Extract pharmacist ID from JWT; requires role PHARMACIST */
     public Long extractPharmacistIdFromToken(String token) {
-        if (token == null) {
-            throw new IllegalArgumentException("Missing token");
-        }
-        if (!jwtService.isTokenValid(token)) {
-            throw new IllegalArgumentException("Invalid token");
-        }
-        String role = jwtService.getRole(token);
-        if (role == null || !role.equalsIgnoreCase("PHARMACIST")) {
-            throw new IllegalArgumentException("Invalid role for this resource");
-        }
-        return jwtService.getUserId(token);
+        return requireRole(parseToken(token), "PHARMACIST");
     }
 
     /**
      * Extract system admin ID from JWT; requires role ADMIN
      */
     public Long extractAdminIdFromToken(String token) {
-        if (token == null) {
-            throw new IllegalArgumentException("Missing token");
-        }
-        if (!jwtService.isTokenValid(token)) {
-            throw new IllegalArgumentException("Invalid token");
-        }
-        String role = jwtService.getRole(token);
-        if (role == null || !role.equalsIgnoreCase("ADMIN")) {
-            throw new IllegalArgumentException("Invalid role for this resource");
-        }
-        return jwtService.getUserId(token);
+        return requireRole(parseToken(token), "ADMIN");
     }
 
     /**
      * Extract customer ID from request header via JWT
      */
     public Long extractCustomerIdFromRequest(HttpServletRequest request) {
-        String token = extractAndValidateToken(request);
-        if (token == null) {
-            throw new IllegalArgumentException("Missing or invalid authorization header");
-        }
-        return extractCustomerIdFromToken(token);
+        return requireRole(requirePrincipal(request), "CUSTOMER");
     }
 
     /**
      * Extract pharmacy admin ID from request header via JWT
      */
     public Long extractPharmacyAdminIdFromRequest(HttpServletRequest request) {
-        String token = extractAndValidateToken(request);
-        if (token == null) {
-            throw new IllegalArgumentException("Missing or invalid authorization header");
-        }
-        return extractPharmacyAdminIdFromToken(token);
+        return requireRole(requirePrincipal(request), "PHARMACY_ADMIN");
     }
 
     /** Extract pharmacist ID from request header via JWT */
     public Long extractPharmacistIdFromRequest(HttpServletRequest request) {
-        String token = extractAndValidateToken(request);
-        if (token == null) {
-            throw new IllegalArgumentException("Missing or invalid authorization header");
-        }
-        return extractPharmacistIdFromToken(token);
+        return requireRole(requirePrincipal(request), "PHARMACIST");
     }
 
     /** Extract system admin ID from request header via JWT */
     public Long extractAdminIdFromRequest(HttpServletRequest request) {
-        String token = extractAndValidateToken(request);
+        return requireRole(requirePrincipal(request), "ADMIN");
+    }
+
+    private JwtPrincipal parseToken(String token) {
         if (token == null) {
+            throw new IllegalArgumentException("Missing token");
+        }
+        JwtPrincipal principal = jwtService.parse(token);
+        if (principal == null) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+        return principal;
+    }
+
+    private JwtPrincipal requirePrincipal(HttpServletRequest request) {
+        JwtPrincipal principal = resolvePrincipal(request);
+        if (principal == null) {
             throw new IllegalArgumentException("Missing or invalid authorization header");
         }
-        return extractAdminIdFromToken(token);
+        return principal;
+    }
+
+    private Long requireRole(JwtPrincipal principal, String role) {
+        if (!principal.hasRole(role)) {
+            throw new IllegalArgumentException("Invalid role for this resource");
+        }
+        return principal.userId();
     }
-}
\ No newline at end of file
+}
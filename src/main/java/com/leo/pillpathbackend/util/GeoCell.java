@@ -0,0 +1,131 @@
+package com.leo.pillpathbackend.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed 0.1 degree lat/lng grid used to pre-filter pharmacies by location.
+ * A cell id is latIndex * LNG_CELLS + lngIndex, and it must stay in sync with
+ * the backfill in V20251101__add_pharmacy_geo_cell.sql.
+ */
+public final class GeoCell {
+
+    public static final int CELLS_PER_DEGREE = 10;
+    public static final int LAT_CELLS = 180 * CELLS_PER_DEGREE;
+    public static final int LNG_CELLS = 360 * CELLS_PER_DEGREE;
+
+    // Above this many cells the IN list stops paying off; callers fall back to the bounding box alone
+    public static final int MAX_COVER_CELLS = 256;
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180.0;
+    // North-south extent of one cell; east-west extent shrinks with cos(latitude)
+    public static final double CELL_HEIGHT_KM = KM_PER_DEGREE / CELLS_PER_DEGREE;
+    private static final BigDecimal CELLS_PER_DEGREE_DECIMAL = BigDecimal.valueOf(CELLS_PER_DEGREE);
+
+    private GeoCell() {
+    }
+
+    /**
+     * Cell id for a stored coordinate. Uses exact decimal arithmetic so the result
+     * matches the SQL backfill for points that sit on a cell boundary.
+     */
+    public static Long cellOf(BigDecimal latitude, BigDecimal longitude) {
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+        int latIdx = index(latitude.add(BigDecimal.valueOf(90)), LAT_CELLS);
+        int lngIdx = index(longitude.add(BigDecimal.valueOf(180)), LNG_CELLS);
+        return cellId(latIdx, lngIdx);
+    }
+
+    public static int latIndex(double latitude) {
+        return index(latitude + 90.0, LAT_CELLS);
+    }
+
+    public static int lngIndex(double longitude) {
+        return index(longitude + 180.0, LNG_CELLS);
+    }
+
+    public static long cellId(int latIndex, int lngIndex) {
+        return (long) latIndex * LNG_CELLS + lngIndex;
+    }
+
+    /**
+     * Great-circle distance in kilometres.
+     */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static int index(BigDecimal shifted, int cells) {
+        int idx = shifted.multiply(CELLS_PER_DEGREE_DECIMAL).setScale(0, RoundingMode.FLOOR).intValue();
+        return clamp(idx, cells - 1);
+    }
+
+    private static int index(double shifted, int cells) {
+        return clamp((int) Math.floor(shifted * CELLS_PER_DEGREE), cells - 1);
+    }
+
+    private static int clamp(int idx, int max) {
+        return Math.max(0, Math.min(max, idx));
+    }
+
+    /**
+     * Smallest lat/lng box that contains every point within radiusKm of the center.
+     */
+    public static BoundingBox boundingBox(double latitude, double longitude, double radiusKm) {
+        double dLat = radiusKm / KM_PER_DEGREE;
+        double minLat = Math.max(-90.0, latitude - dLat);
+        double maxLat = Math.min(90.0, latitude + dLat);
+
+        double cosLat = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        if (cosLat <= 1e-6 || maxLat >= 90.0 || minLat <= -90.0) {
+            // Box touches a pole: every longitude is in range
+            return new BoundingBox(minLat, maxLat, -180.0, 180.0);
+        }
+        double dLng = dLat / cosLat;
+        // Boxes that wrap the antimeridian are widened to the full range rather than split in two
+        if (longitude - dLng < -180.0 || longitude + dLng > 180.0) {
+            return new BoundingBox(minLat, maxLat, -180.0, 180.0);
+        }
+        return new BoundingBox(minLat, maxLat, longitude - dLng, longitude + dLng);
+    }
+
+    public record BoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+
+        /**
+         * Grid cells overlapping this box, or an empty list when there are more than
+         * MAX_COVER_CELLS of them.
+         */
+        public List<Long> coveringCells() {
+            int latFrom = latIndex(minLat);
+            int latTo = latIndex(maxLat);
+            int lngFrom = lngIndex(minLng);
+            int lngTo = lngIndex(maxLng);
+
+            long count = (long) (latTo - latFrom + 1) * (lngTo - lngFrom + 1);
+            if (count > MAX_COVER_CELLS) {
+                return List.of();
+            }
+            List<Long> cells = new ArrayList<>((int) count);
+            for (int lat = latFrom; lat <= latTo; lat++) {
+                for (int lng = lngFrom; lng <= lngTo; lng++) {
+                    cells.add(cellId(lat, lng));
+                }
+            }
+            return cells;
+        }
+
+        public boolean contains(double latitude, double longitude) {
+            return latitude >= minLat && latitude <= maxLat && longitude >= minLng && longitude <= maxLng;
+        }
+    }
+}
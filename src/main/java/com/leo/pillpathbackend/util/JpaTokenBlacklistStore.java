@@ -0,0 +1,49 @@
+package com.leo.pillpathbackend.util;
+
+import com.leo.pillpathbackend.entity.RevokedToken;
+import com.leo.pillpathbackend.repository.RevokedTokenRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.token-blacklist.persistent", havingValue = "true", matchIfMissing = true)
+public class JpaTokenBlacklistStore implements TokenBlacklistStore {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    @Override
+    @Transactional
+    public void save(String digest, long expiresAtMs) {
+        revokedTokenRepository.save(new RevokedToken(digest, Instant.ofEpochMilli(expiresAtMs), Instant.now()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean contains(String digest, long nowMs) {
+        return revokedTokenRepository.existsByTokenDigestAndExpiresAtAfter(digest, Instant.ofEpochMilli(nowMs));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Long> findRevokedSince(long sinceMs, long nowMs) {
+        Map<String, Long> result = new HashMap<>();
+        for (RevokedToken t : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(
+                Instant.ofEpochMilli(sinceMs), Instant.ofEpochMilli(nowMs))) {
+            result.put(t.getTokenDigest(), t.getExpiresAt().toEpochMilli());
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public int deleteExpired(long nowMs) {
+        return revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(nowMs));
+    }
+}
@@ -0,0 +1,21 @@
+package com.leo.pillpathbackend.util;
+
+/**
+ * Verified claims of a JWT. Produced once per token by JwtService and stored on the
+ * request under REQUEST_ATTRIBUTE so later filters and controllers do not re-parse it.
+ */
+public record JwtPrincipal(
+        Long userId,
+        String role,
+        long expiresAtMs
+) {
+    public static final String REQUEST_ATTRIBUTE = JwtPrincipal.class.getName();
+
+    public boolean isExpired(long nowMs) {
+        return expiresAtMs <= nowMs;
+    }
+
+    public boolean hasRole(String expected) {
+        return role != null && role.equalsIgnoreCase(expected);
+    }
+}
@@ -1,5 +1,6 @@
 package com.leo.pillpathbackend.util;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -9,7 +10,9 @@ import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class JwtService {
@@ -23,8 +26,14 @@ public class JwtService {
     @Value("${jwt.issuer:pillpath}")
     private String issuer;
 
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
     private SecretKey key;
 
+    // token digest -> verified claims
+    private final Map<String, JwtPrincipal> verifiedCache = new ConcurrentHashMap<>();
+
     @PostConstruct
     void init() {
         // Ensure key is at least 32 bytes for HS256
@@ -53,17 +62,39 @@ public class JwtService {
                 .compact();
     }
 
-    public boolean isTokenValid(String token) {
+    /**
+     * Verify the token once and return its claims, or null if it is malformed, tampered or expired.
+     * Verified tokens are cached by digest until they expire, so repeat requests skip the HMAC check.
+     */
+    public JwtPrincipal parse(String token) {
+        if (token == null || token.isBlank()) return null;
+        long now = System.currentTimeMillis();
+        String cacheKey = TokenDigest.of(token);
+        JwtPrincipal cached = verifiedCache.get(cacheKey);
+        if (cached != null) {
+            if (!cached.isExpired(now)) return cached;
+            verifiedCache.remove(cacheKey, cached);
+            return null;
+        }
+
+        JwtPrincipal principal;
         try {
-            Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
-            return true;
+            Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+            Object role = claims.get("role");
+            Date exp = claims.getExpiration();
+            principal = new JwtPrincipal(
+                    extractUserId(claims),
+                    role != null ? role.toString() : null,
+                    exp != null ? exp.getTime() : now + expirationMs
+            );
         } catch (Exception e) {
-            return false;
+            return null;
         }
+        cache(cacheKey, principal, now);
+        return principal;
     }
 
-    public Long getUserId(String token) {
-        var claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+    private Long extractUserId(Claims claims) {
         Object uid = claims.get("uid");
         if (uid instanceof Number) return ((Number) uid).longValue();
         if (uid instanceof String) return Long.parseLong((String) uid);
@@ -71,13 +102,40 @@ public class JwtService {
         return Long.parseLong(claims.getSubject());
     }
 
+    private void cache(String cacheKey, JwtPrincipal principal, long now) {
+        if (verifiedCache.size() >= cacheMaxEntries) {
+            verifiedCache.values().removeIf(p -> p.isExpired(now));
+            // Still full of live tokens: drop an arbitrary slice rather than grow past the cap
+            Iterator<String> it = verifiedCache.keySet().iterator();
+            while (verifiedCache.size() >= cacheMaxEntries * 9L / 10 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        verifiedCache.put(cacheKey, principal);
+    }
+
+    public boolean isTokenValid(String token) {
+        return parse(token) != null;
+    }
+
+    public Long getUserId(String token) {
+        return requirePrincipal(token).userId();
+    }
+
     public String getRole(String token) {
-        var claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
-        Object role = claims.get("role");
-        return role != null ? role.toString() : null;
+        return requirePrincipal(token).role();
     }
 
     public Date getExpiration(String token) {
-        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload().getExpiration();
+        return new Date(requirePrincipal(token).expiresAtMs());
+    }
+
+    private JwtPrincipal requirePrincipal(String token) {
+        JwtPrincipal principal = parse(token);
+        if (principal == null) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+        return principal;
     }
 }
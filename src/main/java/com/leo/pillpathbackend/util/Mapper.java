@@ -384,6 +384,24 @@ public class Mapper {
         return dto;
     }
 
+    public PharmacyMapDTO convertToPharmacyMapDTO(Pharmacy pharmacy) {
+        PharmacyMapDTO dto = new PharmacyMapDTO();
+        dto.setId(pharmacy.getId());
+        dto.setName(pharmacy.getName());
+        dto.setAddress(pharmacy.getAddress());
+        dto.setLatitude(pharmacy.getLatitude());
+        dto.setLongitude(pharmacy.getLongitude());
+        dto.setAverageRating(pharmacy.getAverageRating());
+        dto.setPhoneNumber(pharmacy.getPhoneNumber());
+        dto.setDeliveryAvailable(pharmacy.getDeliveryAvailable());
+        dto.setLogoUrl(pharmacy.getLogoUrl());
+        // Ensure operatingHours is never null
+        dto.setOperatingHours(pharmacy.getOperatingHours() != null ? pharmacy.getOperatingHours() : new java.util.HashMap<>());
+        dto.setIsActive(pharmacy.getIsActive());
+        dto.setIsVerified(pharmacy.getIsVerified());
+        return dto;
+    }
+
     public void updatePharmacyFromDTO(Pharmacy pharmacy, PharmacyDTO pharmacyDTO) {
         if (pharmacyDTO.getName() != null) {
             pharmacy.setName(pharmacyDTO.getName());
@@ -1,37 +1,276 @@
 package com.leo.pillpathbackend.util;
 
+import com.leo.pillpathbackend.service.PgNotificationHub;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Blacklist of logged-out tokens keyed by 128-bit digest. Entries are grouped into one-minute
+ * expiry buckets so the sweeper drops a whole bucket at a time, and the map never holds more
+ * than max-entries digests. When a TokenBlacklistStore is configured every revocation is also
+ * written there and announced over a NOTIFY channel, so other nodes add it at once; the
+ * periodic pull covers notifications missed while disconnected. Digests evicted by the cap are
+ * remembered in a Bloom filter, and only a miss the filter cannot rule out goes to the store.
+ */
 @Service
+@Slf4j
 public class TokenBlacklistServiceImpl implements TokenBlacklistService {
 
-    // token -> expiration epoch ms
-    private final Map<String, Long> blacklist = new ConcurrentHashMap<>();
+    private static final long DEFAULT_TTL_MS = 24 * 60 * 60 * 1000L;
+    private static final long BUCKET_MS = 60 * 1000L;
+    // Re-read a little before the last sync so clock skew between nodes cannot hide a revocation
+    private static final long SYNC_OVERLAP_MS = 10 * 1000L;
+    static final String CHANNEL = "token_revoked";
+
+    // digest -> expiration epoch ms
+    private final Map<String, Long> entries = new ConcurrentHashMap<>();
+    // bucket end epoch ms -> digests expiring within that bucket
+    private final ConcurrentSkipListMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+    private final int maxEntries;
+    private final TokenBlacklistStore store;
+    private final PgNotificationHub notificationHub;
+    // Digests dropped by the cap that have not expired yet (until overflowUntil)
+    private final BloomFilter evicted;
+    private final Counter expiredEvictions;
+    private final Counter capEvictions;
+
+    // Until this time, digests may have been dropped by the cap and the store must be checked on a miss
+    private volatile long overflowUntil = 0L;
+    private volatile long lastSyncMs = 0L;
+
+    public TokenBlacklistServiceImpl(@Value("${app.token-blacklist.max-entries:100000}") int maxEntries,
+                                     ObjectProvider<TokenBlacklistStore> storeProvider,
+                                     ObjectProvider<PgNotificationHub> notificationHub,
+                                     MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.store = storeProvider.getIfAvailable();
+        this.notificationHub = notificationHub.getIfAvailable();
+        this.evicted = new BloomFilter(Math.max(1024, maxEntries) * 10L);
+        Gauge.builder("token_blacklist.size", entries, Map::size).register(meterRegistry);
+        Gauge.builder("token_blacklist.buckets", buckets, Map::size).register(meterRegistry);
+        this.expiredEvictions = Counter.builder("token_blacklist.evictions").tag("reason", "expired").register(meterRegistry);
+        this.capEvictions = Counter.builder("token_blacklist.evictions").tag("reason", "capacity").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        if (store == null || notificationHub == null) return;
+        notificationHub.subscribe(CHANNEL, this::onNotify, () -> {
+            try {
+                pull(System.currentTimeMillis());
+            } catch (Exception e) {
+                log.warn("Token blacklist sync after reconnect failed: {}", e.getMessage());
+            }
+        });
+    }
 
     @Override
     public void blacklist(String token) {
         // default to 24h if unknown
-        blacklist.put(token, System.currentTimeMillis() + 24 * 60 * 60 * 1000);
+        blacklist(token, null);
     }
 
     @Override
     public void blacklist(String token, Date expiresAt) {
-        blacklist.put(token, expiresAt != null ? expiresAt.getTime() : System.currentTimeMillis() + 24 * 60 * 60 * 1000);
+        if (token == null) return;
+        long now = System.currentTimeMillis();
+        long exp = expiresAt != null ? expiresAt.getTime() : now + DEFAULT_TTL_MS;
+        if (exp <= now) return;
+        String digest = TokenDigest.of(token);
+        add(digest, exp);
+        if (store != null) {
+            try {
+                store.save(digest, exp);
+            } catch (Exception e) {
+                log.warn("Failed to persist revoked token: {}", e.getMessage());
+            }
+            if (notificationHub != null) {
+                notificationHub.publish(CHANNEL, notificationHub.nodeId() + "|" + digest + "|" + exp);
+            }
+        }
     }
 
     @Override
     public boolean isBlacklisted(String token) {
-        Long exp = blacklist.get(token);
-        if (exp == null) return false;
-        if (exp < System.currentTimeMillis()) {
-            blacklist.remove(token);
-            return false;
+        if (token == null) return false;
+        long now = System.currentTimeMillis();
+        String digest = TokenDigest.of(token);
+        Long exp = entries.get(digest);
+        if (exp != null) {
+            return exp > now;
+        }
+        if (store != null && now < overflowUntil && evicted.mightContain(digest)) {
+            try {
+                return store.contains(digest, now);
+            } catch (Exception e) {
+                log.warn("Revoked token lookup failed: {}", e.getMessage());
+            }
         }
-        return true;
+        return false;
     }
-}
 
+    // Writers (add, sweep, cap eviction) are serialized so a digest is never left in entries
+    // without a bucket; readers stay lock-free
+    private synchronized void add(String digest, long exp) {
+        Long current = entries.get(digest);
+        if (current != null && current >= exp) return;
+        entries.put(digest, exp);
+        buckets.computeIfAbsent(bucketOf(exp), b -> ConcurrentHashMap.newKeySet()).add(digest);
+        if (entries.size() > maxEntries) {
+            evictForCapacity();
+        }
+    }
+
+    // nodeId|digest|expiration epoch ms
+    private void onNotify(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 3 || parts[0].equals(notificationHub.nodeId())) return;
+        long exp = Long.parseLong(parts[2]);
+        if (exp > System.currentTimeMillis()) {
+            add(parts[1], exp);
+        }
+    }
+
+    private static long bucketOf(long exp) {
+        return (exp / BUCKET_MS + 1) * BUCKET_MS;
+    }
+
+    // Drop the soonest-expiring buckets first; they are the cheapest to lose
+    private synchronized void evictForCapacity() {
+        while (entries.size() > maxEntries) {
+            Map.Entry<Long, Set<String>> bucket = buckets.pollFirstEntry();
+            if (bucket == null) break;
+            for (String digest : bucket.getValue()) {
+                if (removeIfIn(digest, bucket.getKey())) {
+                    evicted.add(digest);
+                    capEvictions.increment();
+                }
+            }
+            overflowUntil = Math.max(overflowUntil, bucket.getKey());
+        }
+        if (store == null) {
+            log.warn("Token blacklist reached {} entries without a persistent store; oldest revocations were dropped", maxEntries);
+        }
+    }
+
+    // A digest re-added with a later expiration also sits in a later bucket; only that one drops it
+    private boolean removeIfIn(String digest, long bucket) {
+        Long exp = entries.get(digest);
+        return exp != null && bucketOf(exp) <= bucket && entries.remove(digest, exp);
+    }
+
+    @Scheduled(fixedDelayString = "${app.token-blacklist.sweep-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Map.Entry<Long, Set<String>> bucket;
+            while ((bucket = buckets.firstEntry()) != null && bucket.getKey() <= now) {
+                buckets.remove(bucket.getKey());
+                for (String digest : bucket.getValue()) {
+                    if (removeIfIn(digest, bucket.getKey())) expiredEvictions.increment();
+                }
+            }
+            if (overflowUntil != 0L && now >= overflowUntil) {
+                // Everything the cap dropped has expired
+                evicted.clear();
+                overflowUntil = 0L;
+            }
+        }
+        if (store != null) {
+            try {
+                store.deleteExpired(now);
+                pull(now);
+            } catch (Exception e) {
+                log.warn("Token blacklist sync failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromStore() {
+        if (store == null) return;
+        try {
+            pull(System.currentTimeMillis());
+            log.info("Token blacklist loaded {} revoked tokens", entries.size());
+        } catch (Exception e) {
+            log.warn("Token blacklist load failed: {}", e.getMessage());
+        }
+    }
+
+    // Picks up revocations made on other nodes since the previous pull
+    private void pull(long now) {
+        long since = Math.max(0L, lastSyncMs - SYNC_OVERLAP_MS);
+        store.findRevokedSince(since, now).forEach(this::add);
+        lastSyncMs = now;
+    }
+
+    /**
+     * Bloom filter over digests; the digest is already 128 random bits, so its two halves serve
+     * as the two base hashes for double hashing
+     */
+    static final class BloomFilter {
+        private static final int HASHES = 7;
+        private final AtomicLongArray bits;
+        private final long size;
+
+        BloomFilter(long bitCount) {
+            int words = (int) Math.min(Integer.MAX_VALUE, (bitCount + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.size = (long) words * 64;
+        }
+
+        void add(String digest) {
+            long[] h = hashes(digest);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], size);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << (bit & 63);
+                long old;
+                do {
+                    old = bits.get(word);
+                } while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+            }
+        }
+
+        boolean mightContain(String digest) {
+            long[] h = hashes(digest);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], size);
+                if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) return false;
+            }
+            return true;
+        }
+
+        void clear() {
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0L);
+            }
+        }
+
+        private static long[] hashes(String digest) {
+            ByteBuffer buf = ByteBuffer.wrap(Base64.getUrlDecoder().decode(digest));
+            long h1 = buf.getLong();
+            long h2 = buf.remaining() >= 8 ? buf.getLong() : h1 * 0x9E3779B97F4A7C15L;
+            return new long[]{h1, h2 | 1};
+        }
+    }
+}
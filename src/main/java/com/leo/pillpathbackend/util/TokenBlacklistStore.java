@@ -0,0 +1,15 @@
+package com.leo.pillpathbackend.util;
+
+import java.util.Map;
+
+/**
+ * Durable backend for the token blacklist. Keys are token digests (see TokenDigest),
+ * expiry times are epoch milliseconds.
+ */
+public interface TokenBlacklistStore {
+    void save(String digest, long expiresAtMs);
+    boolean contains(String digest, long nowMs);
+    /** Unexpired revocations recorded since sinceMs, by this or any other node. */
+    Map<String, Long> findRevokedSince(long sinceMs, long nowMs);
+    int deleteExpired(long nowMs);
+}
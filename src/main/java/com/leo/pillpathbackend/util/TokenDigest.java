@@ -0,0 +1,29 @@
+package com.leo.pillpathbackend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compact 128-bit fingerprint of a token (truncated SHA-256, base64url), used as a
+ * cache/blacklist key so full JWT strings are not kept in memory.
+ */
+public final class TokenDigest {
+
+    private static final int DIGEST_BYTES = 16;
+
+    private TokenDigest() {
+    }
+
+    public static String of(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, DIGEST_BYTES));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+}
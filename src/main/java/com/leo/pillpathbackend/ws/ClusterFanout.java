@@ -0,0 +1,273 @@
+package com.leo.pillpathbackend.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans STOMP messages out across backend nodes. Each node's simple broker and user registry
+ * only know its own sessions, so every /topic and /user message sent through this node's
+ * broker channel is also queued for the ClusterTransport. A background thread encodes queued
+ * sends in batches, and sends that share one payload instance (one message broadcast to
+ * several destinations) travel as one envelope. Other nodes put each destination back on
+ * their broker channel, which delivers it to the sessions connected there. Relayed copies
+ * carry ORIGIN_HEADER so they are not published again, and each node drops envelope ids it
+ * has already handled.
+ */
+@Component
+@Slf4j
+public class ClusterFanout implements ChannelInterceptor {
+
+    static final String ORIGIN_HEADER = "wsClusterOrigin";
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String USER_PREFIX = "/user/";
+    private static final int SEEN_IDS = 10_000;
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * What crosses the transport; body is the payload as UTF-8 text, or Base64 when base64 is set
+     */
+    record Envelope(String node, String id, List<String> destinations, String contentType, String body, boolean base64) {}
+
+    private record Outgoing(String destination, MimeType contentType, Object payload) {}
+
+    private final ClusterTransport transport; // null when app.ws-cluster.transport=none
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final ObjectProvider<SimpUserRegistry> userRegistry;
+    private final ObjectMapper objectMapper;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final BlockingQueue<Outgoing> outbox;
+    private final Map<String, Boolean> seen = new LinkedHashMap<>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_IDS;
+        }
+    };
+    private volatile boolean running;
+    private Thread publisherThread;
+
+    private final Counter published;
+    private final Counter received;
+    private final Counter delivered;
+    private final Counter duplicates;
+    private final Counter noLocalSession;
+    private final Counter dropped;
+
+    public ClusterFanout(ObjectProvider<ClusterTransport> transport,
+                         ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                         ObjectProvider<SimpUserRegistry> userRegistry,
+                         ObjectMapper objectMapper,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.ws-cluster.outbox-capacity:10000}") int outboxCapacity) {
+        this.transport = transport.getIfAvailable();
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.objectMapper = objectMapper;
+        this.outbox = new ArrayBlockingQueue<>(Math.max(1, outboxCapacity));
+        this.published = counter(meterRegistry, "published");
+        this.received = counter(meterRegistry, "received");
+        this.delivered = counter(meterRegistry, "delivered");
+        this.duplicates = counter(meterRegistry, "duplicate");
+        this.noLocalSession = counter(meterRegistry, "no_local_session");
+        this.dropped = counter(meterRegistry, "dropped");
+        Gauge.builder("ws_cluster.outbox", outbox, Collection::size).register(meterRegistry);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String event) {
+        return Counter.builder("ws_cluster.messages").tag("event", event).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (transport == null) return;
+        transport.subscribe(this::onEnvelope,
+                () -> log.warn("WebSocket cluster transport reconnected; messages from other nodes may have been missed"));
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "ws-cluster-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (publisherThread != null) publisherThread.interrupt();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (transport == null || message.getHeaders().get(ORIGIN_HEADER) != null) return message;
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) return message;
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !(destination.startsWith(TOPIC_PREFIX) || destination.startsWith(USER_PREFIX))) {
+            return message;
+        }
+        Outgoing outgoing = new Outgoing(destination, SimpMessageHeaderAccessor.getContentType(message.getHeaders()),
+                message.getPayload());
+        if (!outbox.offer(outgoing)) {
+            dropped.increment();
+            log.debug("WebSocket cluster outbox full, message to {} not fanned out", destination);
+        }
+        return message;
+    }
+
+    // One envelope per distinct payload instance in the batch, in order of first appearance
+    private List<String> toEnvelopes(List<Outgoing> batch) {
+        Map<Object, List<Outgoing>> byPayload = new IdentityHashMap<>();
+        List<List<Outgoing>> groups = new ArrayList<>();
+        for (Outgoing outgoing : batch) {
+            List<Outgoing> group = byPayload.get(outgoing.payload());
+            if (group == null || !Objects.equals(group.get(0).contentType(), outgoing.contentType())) {
+                group = new ArrayList<>(2);
+                byPayload.put(outgoing.payload(), group);
+                groups.add(group);
+            }
+            group.add(outgoing);
+        }
+        List<String> envelopes = new ArrayList<>(groups.size());
+        for (List<Outgoing> group : groups) {
+            List<String> destinations = new ArrayList<>(group.size());
+            for (Outgoing outgoing : group) {
+                destinations.add(outgoing.destination());
+            }
+            String envelope = toEnvelope(destinations, group.get(0).contentType(), group.get(0).payload());
+            if (envelope != null) {
+                envelopes.add(envelope);
+            } else {
+                dropped.increment(group.size());
+            }
+        }
+        return envelopes;
+    }
+
+    private String toEnvelope(List<String> destinations, MimeType contentType, Object payload) {
+        String body;
+        boolean base64 = false;
+        if (payload instanceof String s) {
+            body = s;
+        } else if (payload instanceof byte[] bytes) {
+            if (isText(contentType)) {
+                body = new String(bytes, StandardCharsets.UTF_8);
+            } else {
+                body = Base64.getEncoder().encodeToString(bytes);
+                base64 = true;
+            }
+        } else {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(new Envelope(nodeId, nodeId + ":" + sequence.incrementAndGet(),
+                    destinations, contentType != null ? contentType.toString() : null, body, base64));
+        } catch (Exception e) {
+            log.warn("Could not encode WebSocket message to {}: {}", destinations, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isText(MimeType contentType) {
+        if (contentType == null) return false;
+        String subtype = contentType.getSubtype();
+        return "text".equals(contentType.getType()) || "json".equals(subtype) || subtype.endsWith("+json");
+    }
+
+    private void publishLoop() {
+        List<Outgoing> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                batch.add(outbox.take());
+                outbox.drainTo(batch, BATCH_SIZE - 1);
+                List<String> envelopes = toEnvelopes(batch);
+                int sent = transport.publish(envelopes);
+                published.increment(sent);
+                dropped.increment(envelopes.size() - sent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                dropped.increment(batch.size());
+                log.warn("Publishing {} WebSocket messages to other nodes failed: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void onEnvelope(String json) {
+        Envelope envelope;
+        try {
+            envelope = objectMapper.readValue(json, Envelope.class);
+        } catch (Exception e) {
+            log.warn("Unreadable WebSocket cluster envelope: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(envelope.node())) return;
+        received.increment();
+        if (!firstSeen(envelope.id())) {
+            duplicates.increment();
+            return;
+        }
+        Message<byte[]> message = null;
+        for (String destination : envelope.destinations()) {
+            if (destination.startsWith(USER_PREFIX) && !hasLocalSession(destination)) {
+                noLocalSession.increment();
+                continue;
+            }
+            if (message == null) {
+                message = toMessage(envelope);
+            }
+            messagingTemplate.getObject().send(destination, message);
+            delivered.increment();
+        }
+    }
+
+    private static Message<byte[]> toMessage(Envelope envelope) {
+        byte[] payload = envelope.base64()
+                ? Base64.getDecoder().decode(envelope.body())
+                : envelope.body().getBytes(StandardCharsets.UTF_8);
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (envelope.contentType() != null) {
+            headers.setContentType(MimeType.valueOf(envelope.contentType()));
+        }
+        headers.setHeader(ORIGIN_HEADER, envelope.node());
+        // Immutable, so SimpMessagingTemplate copies the headers per destination instead of
+        // setting the destination on the shared message
+        headers.setImmutable();
+        return MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+    }
+
+    private synchronized boolean firstSeen(String id) {
+        return seen.put(id, Boolean.TRUE) == null;
+    }
+
+    // /user/{name}/... where name is the principal name with '/' sent as %2F
+    private boolean hasLocalSession(String destination) {
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        if (end < 0) return false;
+        String user = destination.substring(USER_PREFIX.length(), end).replace("%2F", "/");
+        SimpUserRegistry registry = userRegistry.getIfAvailable();
+        return registry == null || registry.getUser(user) != null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.leo.pillpathbackend.ws;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries STOMP fan-out envelopes between backend nodes for ClusterFanout. Selected with
+ * app.ws-cluster.transport: "pg-notify" (default) uses Postgres LISTEN/NOTIFY, "none" keeps
+ * every message on the node that sent it.
+ */
+public interface ClusterTransport {
+
+    /**
+     * Send envelopes to every node (including this one, which skips its own), in order.
+     * Returns how many were sent; envelopes that could not be sent are skipped
+     */
+    int publish(List<String> envelopes);
+
+    /**
+     * onReconnect runs when the transport may have missed envelopes
+     */
+    void subscribe(Consumer<String> handler, Runnable onReconnect);
+}
@@ -0,0 +1,211 @@
+package com.leo.pillpathbackend.ws;
+
+import com.leo.pillpathbackend.config.ws.WsUserPrincipal;
+import com.leo.pillpathbackend.dto.NotificationDTO;
+import com.leo.pillpathbackend.repository.NotificationRepository;
+import com.leo.pillpathbackend.service.PgNotificationHub;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes notification events to /user/{role}:{id}/queue/notifications and keeps an unread
+ * counter per locally connected user, so clients can drop polling. Events are always sent:
+ * the recipient may be connected to another node, and ClusterFanout relays the message there.
+ * Counters are seeded from the database when the user subscribes on this node (which also
+ * sends the initial snapshot) and dropped when the user's last local session disconnects.
+ * Every change is announced over PgNotificationHub with the changing transaction, and other
+ * nodes drop their counter for that user, so a cached count is never served stale; a missing
+ * counter is read from the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationPushService {
+
+    public static final String DESTINATION = "/queue/notifications";
+    static final String CHANNEL = "notification_unread_changed";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final NotificationRepository notificationRepository;
+    private final PgNotificationHub notificationHub;
+
+    // "role:userId" -> unread count, for users subscribed on this node
+    private final Map<String, AtomicLong> unreadCounts = new ConcurrentHashMap<>();
+    // Bumped on every change; a counter loaded from the database before one is not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void subscribe() {
+        notificationHub.subscribe(CHANNEL, this::onNotify, this::clear);
+    }
+
+    /**
+     * Principal name used by CustomPrincipalHandshakeHandler for this recipient
+     */
+    public static String userKey(String recipientType, Long recipientId) {
+        return recipientType.toLowerCase() + ":" + recipientId;
+    }
+
+    /**
+     * Unread count from the in-memory counter, or null when the user has none loaded
+     */
+    public Long cachedUnreadCount(Long recipientId, String recipientType) {
+        AtomicLong count = unreadCounts.get(userKey(recipientType, recipientId));
+        return count != null ? count.get() : null;
+    }
+
+    /**
+     * Push a new notification and the incremented counter once the transaction commits
+     */
+    public void created(Long recipientId, String recipientType, NotificationDTO notification) {
+        String user = userKey(recipientType, recipientId);
+        changed(user);
+        afterCommit(() -> {
+            AtomicLong count = unreadCounts.get(user);
+            long unread = count != null ? count.incrementAndGet() : countUnread(recipientId, recipientType);
+            send(user, "NOTIFICATION", notification, unread);
+        });
+    }
+
+    /**
+     * One notification went from unread to read (or an unread one was deleted)
+     */
+    public void readOne(Long recipientId, String recipientType) {
+        String user = userKey(recipientType, recipientId);
+        changed(user);
+        afterCommit(() -> {
+            AtomicLong count = unreadCounts.get(user);
+            long unread = count != null ? count.updateAndGet(v -> Math.max(0, v - 1)) : countUnread(recipientId, recipientType);
+            send(user, "UNREAD_COUNT", null, unread);
+        });
+    }
+
+    public void readAll(Long recipientId, String recipientType) {
+        String user = userKey(recipientType, recipientId);
+        changed(user);
+        afterCommit(() -> {
+            AtomicLong count = unreadCounts.get(user);
+            if (count != null) {
+                count.set(0);
+            }
+            send(user, "UNREAD_COUNT", null, 0);
+        });
+    }
+
+    /**
+     * Initial snapshot: re-read the count from the database, which also corrects any drift
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor sha = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = sha.getDestination();
+        if (destination == null || !destination.endsWith(DESTINATION)) return;
+        Principal principal = sha.getUser();
+        if (!(principal instanceof WsUserPrincipal p) || p.getUserId() == null || p.getRole() == null) return;
+        try {
+            long unread = reload(p.getName(), p.getUserId(), p.getRole().toUpperCase());
+            send(p.getName(), "SNAPSHOT", null, unread);
+        } catch (Exception e) {
+            log.warn("Failed to send notification snapshot to {}: {}", p.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the counter only with the user's last session; the registry may or may not have
+     * removed the closing session yet, so it is ignored when counting what is left
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Principal principal = event.getUser();
+        if (principal == null) return;
+        SimpUser user = userRegistry.getUser(principal.getName());
+        boolean otherSessions = user != null && user.getSessions().stream()
+                .anyMatch(session -> !session.getId().equals(event.getSessionId()));
+        if (!otherSessions) {
+            unreadCounts.remove(principal.getName());
+        }
+    }
+
+    private long reload(String user, Long recipientId, String recipientType) {
+        long gen = generation.get();
+        long unread = countUnread(recipientId, recipientType);
+        AtomicLong loaded = new AtomicLong(unread);
+        unreadCounts.put(user, loaded);
+        if (generation.get() != gen) {
+            unreadCounts.remove(user, loaded);
+        }
+        return unread;
+    }
+
+    private long countUnread(Long recipientId, String recipientType) {
+        return notificationRepository.countByRecipientIdAndRecipientTypeAndReadFalse(recipientId, recipientType);
+    }
+
+    // Sent with the changing transaction, so other nodes drop their counter only once it commits
+    private void changed(String user) {
+        generation.incrementAndGet();
+        notificationHub.publish(CHANNEL, notificationHub.nodeId() + "|" + user);
+    }
+
+    // nodeId|role:userId
+    private void onNotify(String payload) {
+        int sep = payload.indexOf('|');
+        if (sep < 0 || payload.substring(0, sep).equals(notificationHub.nodeId())) return;
+        generation.incrementAndGet();
+        unreadCounts.remove(payload.substring(sep + 1));
+    }
+
+    // Invalidations may have been missed while the listener reconnected
+    private void clear() {
+        generation.incrementAndGet();
+        unreadCounts.clear();
+    }
+
+    private void send(String user, String type, NotificationDTO notification, long unread) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", type);
+        if (notification != null) {
+            payload.put("notification", notification);
+        }
+        payload.put("unreadCount", unread);
+        messagingTemplate.convertAndSendToUser(user, DESTINATION, payload);
+    }
+
+    private void afterCommit(Runnable action) {
+        Runnable safe = () -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.warn("Notification push failed: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safe.run();
+                }
+            });
+        } else {
+            safe.run();
+        }
+    }
+}
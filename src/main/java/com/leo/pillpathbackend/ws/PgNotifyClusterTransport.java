@@ -0,0 +1,115 @@
+package com.leo.pillpathbackend.ws;
+
+import com.leo.pillpathbackend.service.PgNotificationHub;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ClusterTransport over the shared Postgres: a batch of envelopes goes out as one pg_notify
+ * statement on the ws_cluster channel. NOTIFY payloads must stay under 8000 bytes, so larger
+ * envelopes are stored in ws_cluster_spill and only "@<row id>" is notified; receivers read
+ * the row, and rows are purged after a few minutes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ws-cluster.transport", havingValue = "pg-notify", matchIfMissing = true)
+@Slf4j
+public class PgNotifyClusterTransport implements ClusterTransport {
+
+    static final String CHANNEL = "ws_cluster";
+    private static final int MAX_NOTIFY_BYTES = 7900;
+    private static final String SPILL_PREFIX = "@";
+
+    private final PgNotificationHub notificationHub;
+    private final JdbcTemplate jdbcTemplate;
+
+    public PgNotifyClusterTransport(PgNotificationHub notificationHub, JdbcTemplate jdbcTemplate) {
+        this.notificationHub = notificationHub;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Called from ClusterFanout's publisher thread, outside any transaction, so each statement
+    // commits (and its notifications are delivered) on its own
+    // A spill failure only loses that envelope; the rest of the batch is still notified
+    @Override
+    public int publish(List<String> envelopes) {
+        if (!notificationHub.isEnabled() || envelopes.isEmpty()) return 0;
+        List<String> payloads = new ArrayList<>(envelopes.size());
+        for (String envelope : envelopes) {
+            if (envelope.getBytes(StandardCharsets.UTF_8).length > MAX_NOTIFY_BYTES) {
+                String spilled = spill(envelope);
+                if (spilled != null) {
+                    payloads.add(spilled);
+                }
+            } else {
+                payloads.add(envelope);
+            }
+        }
+        if (payloads.isEmpty()) return 0;
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            Array array = con.createArrayOf("text", payloads.toArray());
+            try (PreparedStatement ps = con.prepareStatement(
+                    "SELECT pg_notify(?, t.p) FROM unnest(?) WITH ORDINALITY AS t(p, n) ORDER BY t.n")) {
+                ps.setString(1, CHANNEL);
+                ps.setArray(2, array);
+                try (ResultSet ignored = ps.executeQuery()) {
+                    return null;
+                }
+            } finally {
+                array.free();
+            }
+        });
+        return payloads.size();
+    }
+
+    private String spill(String envelope) {
+        try {
+            Long id = jdbcTemplate.queryForObject(
+                    "INSERT INTO ws_cluster_spill (body) VALUES (?) RETURNING id", Long.class, envelope);
+            return SPILL_PREFIX + id;
+        } catch (Exception e) {
+            log.warn("Could not spill a {} byte WebSocket envelope: {}", envelope.length(), e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<String> handler, Runnable onReconnect) {
+        notificationHub.subscribe(CHANNEL, payload -> {
+            String envelope = payload.startsWith(SPILL_PREFIX) ? readSpill(payload.substring(SPILL_PREFIX.length())) : payload;
+            if (envelope != null) {
+                handler.accept(envelope);
+            }
+        }, onReconnect);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ws-cluster.spill-purge-ms:60000}")
+    public void purgeSpill() {
+        if (!notificationHub.isEnabled()) return;
+        try {
+            jdbcTemplate.update("DELETE FROM ws_cluster_spill WHERE created_at < now() - interval '10 minutes'");
+        } catch (Exception e) {
+            log.warn("ws_cluster_spill purge failed: {}", e.getMessage());
+        }
+    }
+
+    private String readSpill(String id) {
+        List<String> rows = jdbcTemplate.queryForList("SELECT body FROM ws_cluster_spill WHERE id = ?", String.class, Long.valueOf(id));
+        if (rows.isEmpty()) {
+            log.warn("ws_cluster_spill row {} is gone, envelope dropped", id);
+            return null;
+        }
+        return rows.get(0);
+    }
+}
@@ -1,49 +1,139 @@
 package com.leo.pillpathbackend.ws;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Which staff users are watching which customers, per WebSocket session. Each session keeps
+ * the customers it watches, so a disconnect only touches those entries. A watcher is counted
+ * once per session, so a user with several tabs keeps watching until the last of them
+ * closes. Customers without watchers and users without sessions are removed.
+ */
 @Component
 public class WatchRegistry {
-    // customerId -> set of watchers (role + userId)
-    private final Map<Long, Set<Watcher>> watchers = new ConcurrentHashMap<>();
-    // session -> role/user for cleanup
-    private final Map<String, String> sessionRoles = new ConcurrentHashMap<>();
-    private final Map<String, Long> sessionUsers = new ConcurrentHashMap<>();
+    // customerId -> watcher -> number of sessions of that watcher watching the customer
+    private final Map<Long, Map<Watcher, Integer>> watchers = new ConcurrentHashMap<>();
+    // session -> its watcher and watched customers, for cleanup
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // watcher -> its live sessions
+    private final Map<Watcher, Set<String>> sessionsByWatcher = new ConcurrentHashMap<>();
+    // Sum of all session watch counts
+    private final AtomicLong watches = new AtomicLong();
 
     public static record Watcher(String role, Long userId) { }
 
+    private static final class Session {
+        final Watcher watcher;
+        final Set<Long> watched = new HashSet<>();
+        boolean closed;
+
+        Session(Watcher watcher) {
+            this.watcher = watcher;
+        }
+    }
+
+    public WatchRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("ws_watch.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("ws_watch.watched_customers", watchers, Map::size).register(meterRegistry);
+        Gauge.builder("ws_watch.watches", watches, AtomicLong::get).register(meterRegistry);
+    }
+
     public void registerSession(String sessionId, String role, Long userId) {
-        if (sessionId == null) return;
-        sessionRoles.put(sessionId, role != null ? role.toLowerCase() : null);
-        sessionUsers.put(sessionId, userId);
+        if (sessionId == null || role == null || userId == null) return;
+        Watcher w = new Watcher(role.toLowerCase(), userId);
+        Session previous = sessions.put(sessionId, new Session(w));
+        if (previous != null) {
+            close(sessionId, previous);
+        }
+        sessionsByWatcher.compute(w, (k, ids) -> {
+            Set<String> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            set.add(sessionId);
+            return set;
+        });
     }
 
     public void unregisterSession(String sessionId) {
         if (sessionId == null) return;
-        String role = sessionRoles.remove(sessionId);
-        Long userId = sessionUsers.remove(sessionId);
-        if (role != null && userId != null) {
-            Watcher w = new Watcher(role.toLowerCase(), userId);
-            for (Set<Watcher> set : watchers.values()) {
-                set.remove(w);
-            }
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            close(sessionId, session);
+        }
+    }
+
+    /**
+     * Watch a customer from one session; repeated calls from the same session count once
+     */
+    public void watch(String sessionId, Long customerId) {
+        if (sessionId == null || customerId == null) return;
+        Session session = sessions.get(sessionId);
+        if (session == null) return;
+        synchronized (session) {
+            if (session.closed || !session.watched.add(customerId)) return;
+            increment(customerId, session.watcher);
+        }
+    }
+
+    public void unwatch(String sessionId, Long customerId) {
+        if (sessionId == null || customerId == null) return;
+        Session session = sessions.get(sessionId);
+        if (session == null) return;
+        synchronized (session) {
+            if (session.closed || !session.watched.remove(customerId)) return;
+            decrement(customerId, session.watcher);
         }
     }
 
+    /**
+     * Watch a customer from every live session of the user
+     */
     public void watch(String role, Long userId, Long customerId) {
         if (role == null || userId == null || customerId == null) return;
-        Watcher w = new Watcher(role.toLowerCase(), userId);
-        watchers.computeIfAbsent(customerId, WatchRegistry::newSet).add(w);
+        Set<String> ids = sessionsByWatcher.get(new Watcher(role.toLowerCase(), userId));
+        if (ids == null) return;
+        for (String sessionId : ids) {
+            watch(sessionId, customerId);
+        }
     }
 
     public Set<Watcher> getWatchers(Long customerId) {
-        return watchers.getOrDefault(customerId, Collections.emptySet());
+        Map<Watcher, Integer> counts = watchers.get(customerId);
+        return counts != null ? Collections.unmodifiableSet(counts.keySet()) : Collections.emptySet();
+    }
+
+    private void close(String sessionId, Session session) {
+        synchronized (session) {
+            session.closed = true;
+            for (Long customerId : session.watched) {
+                decrement(customerId, session.watcher);
+            }
+            session.watched.clear();
+        }
+        sessionsByWatcher.computeIfPresent(session.watcher, (k, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    // Both run under the customer's map bin lock, so counts and empty-entry removal are atomic
+    private void increment(Long customerId, Watcher w) {
+        watchers.compute(customerId, (k, counts) -> {
+            Map<Watcher, Integer> map = counts != null ? counts : new ConcurrentHashMap<>();
+            map.merge(w, 1, Integer::sum);
+            return map;
+        });
+        watches.incrementAndGet();
     }
 
-    private static Set<Watcher> newSet(Long ignored) {
-        return ConcurrentHashMap.newKeySet();
+    private void decrement(Long customerId, Watcher w) {
+        watchers.computeIfPresent(customerId, (k, counts) -> {
+            counts.computeIfPresent(w, (x, n) -> n > 1 ? n - 1 : null);
+            return counts.isEmpty() ? null : counts;
+        });
+        watches.decrementAndGet();
     }
 }
@@ -0,0 +1,21 @@
+-- Grid cell column for nearby-pharmacy search
+-- Cell size is 0.1 degree; id = lat_index * 3600 + lng_index (must match util/GeoCell.java)
+ALTER TABLE pharmacies
+    ADD COLUMN IF NOT EXISTS geo_cell BIGINT;
+
+-- Backfill existing rows; new and updated rows are maintained by the entity
+UPDATE pharmacies
+SET geo_cell = LEAST(GREATEST(FLOOR((latitude + 90) * 10), 0), 1799)::BIGINT * 3600
+             + LEAST(GREATEST(FLOOR((longitude + 180) * 10), 0), 3599)::BIGINT
+WHERE latitude IS NOT NULL AND longitude IS NOT NULL;
+
+-- Only active, verified pharmacies are ever searched by location
+CREATE INDEX IF NOT EXISTS idx_pharmacies_geo_cell
+    ON pharmacies (geo_cell, latitude, longitude)
+    WHERE is_active = TRUE AND is_verified = TRUE;
+
+CREATE INDEX IF NOT EXISTS idx_pharmacies_lat_lng
+    ON pharmacies (latitude, longitude)
+    WHERE is_active = TRUE AND is_verified = TRUE;
+
+COMMENT ON COLUMN pharmacies.geo_cell IS '0.1 degree grid cell derived from latitude/longitude, used to prune nearby searches';
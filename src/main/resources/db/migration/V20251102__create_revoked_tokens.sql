@@ -0,0 +1,12 @@
+-- Shared JWT blacklist: logged-out tokens stored by 128-bit digest until they expire
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    token_digest VARCHAR(32) PRIMARY KEY,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    revoked_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Sweeper deletes by expiry; nodes pull new revocations by revoked_at
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens(expires_at);
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens(revoked_at);
+
+COMMENT ON TABLE revoked_tokens IS 'Digests of logged-out JWTs; rows are removed once the token would have expired anyway';
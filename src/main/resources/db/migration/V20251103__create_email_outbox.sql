@@ -0,0 +1,43 @@
+-- ============================================
+-- Email Outbox
+-- Purpose: emails are queued here inside the business transaction and sent
+-- asynchronously; the final outcome is written to email_logs
+-- ============================================
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    recipient_email VARCHAR(255) NOT NULL,
+    recipient_name VARCHAR(255),
+    subject VARCHAR(500) NOT NULL,
+    preheader VARCHAR(500),
+    html_content TEXT NOT NULL,
+    email_type VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error TEXT,
+
+    notification_id BIGINT,
+    prescription_id BIGINT,
+    order_id BIGINT,
+    pharmacy_id BIGINT,
+    customer_id BIGINT,
+    pharmacist_id BIGINT,
+
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT email_outbox_status_check CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'DEAD'))
+);
+
+-- Dispatcher polls due rows
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due
+    ON email_outbox(status, next_attempt_at)
+    WHERE status IN ('PENDING', 'SENDING');
+
+-- Duplicate prevention while an email is still queued
+CREATE INDEX IF NOT EXISTS idx_email_outbox_duplicate_check
+    ON email_outbox(recipient_email, email_type, prescription_id, order_id, status);
+
+COMMENT ON TABLE email_outbox IS 'Queued notification emails; drained by the outbox dispatcher with retries';
+COMMENT ON COLUMN email_outbox.status IS 'PENDING (waiting), SENDING (claimed by a node), SENT (delivered), DEAD (gave up after max attempts)';
+COMMENT ON COLUMN email_outbox.next_attempt_at IS 'Earliest time the row may be picked up; for SENDING rows, the end of the claim lease';
@@ -0,0 +1,5 @@
+-- Notification and email outbox ids come from pooled sequences (allocationSize = 50) so that
+-- fan-out inserts can be sent as one JDBC batch. The sequences already exist as the BIGSERIAL
+-- defaults; only the increment changes, and Hibernate hands out the values in between.
+ALTER SEQUENCE IF EXISTS notifications_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS email_outbox_id_seq INCREMENT BY 50;
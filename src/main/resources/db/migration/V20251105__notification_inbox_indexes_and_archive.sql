@@ -0,0 +1,41 @@
+-- The archive query copies order_code, which older installs may not have yet
+ALTER TABLE notifications ADD COLUMN IF NOT EXISTS order_code VARCHAR(255);
+
+-- Keyset pagination of the inbox orders by (created_at DESC, id DESC) within a recipient
+CREATE INDEX IF NOT EXISTS idx_notifications_inbox
+    ON notifications (recipient_id, recipient_type, created_at DESC, id DESC);
+
+-- Unread counts and mark-all-read only touch unread rows
+CREATE INDEX IF NOT EXISTS idx_notifications_unread_recipient
+    ON notifications (recipient_id, recipient_type)
+    WHERE read = FALSE;
+
+-- Retention job scans read rows by age
+CREATE INDEX IF NOT EXISTS idx_notifications_read_created
+    ON notifications (created_at)
+    WHERE read = TRUE;
+
+-- Superseded by idx_notifications_inbox
+DROP INDEX IF EXISTS idx_notifications_recipient;
+
+-- Read notifications past the retention window (app.notifications.retention-days)
+CREATE TABLE IF NOT EXISTS notifications_archive (
+    id BIGINT PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    message VARCHAR(500) NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    read BOOLEAN NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    link_url VARCHAR(500),
+    recipient_id BIGINT NOT NULL,
+    recipient_type VARCHAR(20) NOT NULL,
+    prescription_id BIGINT,
+    order_id BIGINT,
+    order_code VARCHAR(255),
+    pharmacy_id BIGINT,
+    customer_id BIGINT,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_notifications_archive_recipient
+    ON notifications_archive (recipient_id, recipient_type, created_at);
@@ -0,0 +1,14 @@
+-- Per-day counter behind the ORD-yyyyMMdd-N pharmacy order codes (see OrderCodeAllocator).
+-- next_value is the first number not yet reserved by any node.
+CREATE TABLE IF NOT EXISTS order_code_counters (
+    code_day DATE PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
+-- Continue after codes already issued today by the old count-based generator
+INSERT INTO order_code_counters (code_day, next_value)
+SELECT CURRENT_DATE,
+       COALESCE(MAX(CAST(substring(order_code FROM 14) AS BIGINT)), 0) + 1
+FROM pharmacy_orders
+WHERE order_code ~ ('^ORD-' || to_char(CURRENT_DATE, 'YYYYMMDD') || '-[0-9]+$')
+ON CONFLICT (code_day) DO NOTHING;
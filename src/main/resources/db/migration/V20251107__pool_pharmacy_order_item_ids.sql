@@ -0,0 +1,12 @@
+-- pharmacy_order_items ids now come from a pooled sequence (allocationSize = 50) so the items
+-- of an order are inserted in one JDBC batch. The column may be an identity column (created
+-- by Hibernate) or a serial; either way only the increment of its sequence changes.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'pharmacy_order_items' AND column_name = 'id' AND is_identity = 'YES') THEN
+        ALTER TABLE pharmacy_order_items ALTER COLUMN id SET INCREMENT BY 50;
+    ELSE
+        ALTER SEQUENCE IF EXISTS pharmacy_order_items_id_seq INCREMENT BY 50;
+    END IF;
+END $$;
@@ -0,0 +1,26 @@
+-- Per-status counts of each customer order's pharmacy order slices. The state machine moves
+-- one count per transition and derives the order and prescription status from them instead
+-- of scanning every sibling slice.
+ALTER TABLE customer_orders ADD COLUMN IF NOT EXISTS received_slices INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE customer_orders ADD COLUMN IF NOT EXISTS preparing_slices INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE customer_orders ADD COLUMN IF NOT EXISTS ready_slices INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE customer_orders ADD COLUMN IF NOT EXISTS handed_over_slices INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE customer_orders ADD COLUMN IF NOT EXISTS cancelled_slices INTEGER NOT NULL DEFAULT 0;
+
+UPDATE customer_orders co
+SET received_slices    = c.received,
+    preparing_slices   = c.preparing,
+    ready_slices       = c.ready,
+    handed_over_slices = c.handed_over,
+    cancelled_slices   = c.cancelled
+FROM (
+    SELECT customer_order_id,
+           COUNT(*) FILTER (WHERE status = 'RECEIVED')         AS received,
+           COUNT(*) FILTER (WHERE status = 'PREPARING')        AS preparing,
+           COUNT(*) FILTER (WHERE status = 'READY_FOR_PICKUP') AS ready,
+           COUNT(*) FILTER (WHERE status = 'HANDED_OVER')      AS handed_over,
+           COUNT(*) FILTER (WHERE status = 'CANCELLED')        AS cancelled
+    FROM pharmacy_orders
+    GROUP BY customer_order_id
+) c
+WHERE co.id = c.customer_order_id;
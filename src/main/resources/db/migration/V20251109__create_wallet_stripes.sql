@@ -0,0 +1,20 @@
+-- Wallet balances are split into stripes; a posting updates one stripe row instead of the
+-- wallet row, and wallets.balance becomes a periodic rollup of the stripe sum.
+CREATE TABLE IF NOT EXISTS wallet_stripes (
+    id         BIGSERIAL PRIMARY KEY,
+    wallet_id  BIGINT         NOT NULL REFERENCES wallets (id),
+    stripe     INTEGER        NOT NULL,
+    balance    NUMERIC(19, 2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP,
+    CONSTRAINT uk_wallet_stripe UNIQUE (wallet_id, stripe)
+);
+
+ALTER TABLE wallets ADD COLUMN IF NOT EXISTS stripe_count INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE wallet_transactions ADD COLUMN IF NOT EXISTS stripe INTEGER;
+
+-- Existing balances move to stripe 0
+INSERT INTO wallet_stripes (wallet_id, stripe, balance, updated_at)
+SELECT id, 0, balance, now() FROM wallets
+ON CONFLICT (wallet_id, stripe) DO NOTHING;
+
+UPDATE wallets SET stripe_count = 16 WHERE owner_type = 'PLATFORM';
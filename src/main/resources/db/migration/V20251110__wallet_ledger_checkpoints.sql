@@ -0,0 +1,17 @@
+-- Append-only wallet ledger. Every ledger row records the id of the transaction that wrote
+-- it; the projector folds rows below the oldest running transaction into per-wallet
+-- checkpoints, and readers add the rows at or above a checkpoint's horizon.
+ALTER TABLE wallet_transactions
+    ADD COLUMN IF NOT EXISTS tx_id BIGINT NOT NULL DEFAULT (CAST(CAST(pg_current_xact_id() AS text) AS bigint));
+ALTER TABLE wallet_transactions ALTER COLUMN balance_after DROP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_wtxn_wallet_txid ON wallet_transactions (wallet_id, tx_id);
+CREATE INDEX IF NOT EXISTS idx_wtxn_txid ON wallet_transactions (tx_id);
+
+CREATE TABLE IF NOT EXISTS wallet_checkpoints (
+    wallet_id   BIGINT PRIMARY KEY REFERENCES wallets (id),
+    balance     NUMERIC(19, 2) NOT NULL DEFAULT 0,
+    horizon_xid BIGINT         NOT NULL DEFAULT 0,
+    row_count   BIGINT         NOT NULL DEFAULT 0,
+    updated_at  TIMESTAMP
+);
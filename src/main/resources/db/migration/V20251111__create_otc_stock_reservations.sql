@@ -0,0 +1,15 @@
+-- Stock held by unpaid OTC card orders until they are paid or the reservation expires
+CREATE SEQUENCE IF NOT EXISTS otc_stock_reservations_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS otc_stock_reservations (
+    id                BIGINT PRIMARY KEY DEFAULT nextval('otc_stock_reservations_id_seq'),
+    otc_id            BIGINT      NOT NULL REFERENCES otc (id),
+    customer_order_id BIGINT      NOT NULL,
+    quantity          INTEGER     NOT NULL,
+    status            VARCHAR(16) NOT NULL,
+    expires_at        TIMESTAMP   NOT NULL,
+    created_at        TIMESTAMP   NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_otc_reservation_due ON otc_stock_reservations (status, expires_at);
+CREATE INDEX IF NOT EXISTS idx_otc_reservation_order ON otc_stock_reservations (customer_order_id);
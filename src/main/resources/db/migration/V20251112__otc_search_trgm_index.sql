@@ -0,0 +1,6 @@
+-- Trigram index behind the pg_trgm OTC search backend (app.otc-search.backend=pg_trgm).
+-- The indexed expression must stay identical to the one in OtcRepository.searchIdsByTrigram.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_otc_search_trgm
+    ON otc USING gin (lower(name || ' ' || category || ' ' || manufacturer || ' ' || dosage) gin_trgm_ops);
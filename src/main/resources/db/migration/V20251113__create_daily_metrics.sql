@@ -0,0 +1,9 @@
+-- Per-day counters behind the admin charts; DailyMetricsService keeps them current and
+-- rebuilds them from users, pharmacies, prescriptions and customer_orders on an empty table
+CREATE TABLE IF NOT EXISTS daily_metrics (
+    id     BIGSERIAL PRIMARY KEY,
+    day    DATE        NOT NULL,
+    metric VARCHAR(64) NOT NULL,
+    value  BIGINT      NOT NULL DEFAULT 0,
+    CONSTRAINT uk_daily_metric UNIQUE (day, metric)
+);
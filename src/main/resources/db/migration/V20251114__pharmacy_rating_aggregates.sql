@@ -0,0 +1,30 @@
+-- Running rating aggregates on pharmacies, kept current by one atomic UPDATE per review
+-- insert or delete (PharmacyRepository.addReviewRating / removeReviewRating)
+ALTER TABLE pharmacies ADD COLUMN IF NOT EXISTS rating_sum BIGINT  NOT NULL DEFAULT 0;
+ALTER TABLE pharmacies ADD COLUMN IF NOT EXISTS rating_1   INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE pharmacies ADD COLUMN IF NOT EXISTS rating_2   INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE pharmacies ADD COLUMN IF NOT EXISTS rating_3   INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE pharmacies ADD COLUMN IF NOT EXISTS rating_4   INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE pharmacies ADD COLUMN IF NOT EXISTS rating_5   INTEGER NOT NULL DEFAULT 0;
+
+-- Rebuild every pharmacy's aggregates from the reviews that exist today
+UPDATE pharmacies p SET
+    rating_sum     = COALESCE(r.total, 0),
+    total_reviews  = COALESCE(r.n, 0),
+    average_rating = CASE WHEN COALESCE(r.n, 0) > 0 THEN CAST(r.total AS double precision) / r.n ELSE 0 END,
+    rating_1       = COALESCE(r.r1, 0),
+    rating_2       = COALESCE(r.r2, 0),
+    rating_3       = COALESCE(r.r3, 0),
+    rating_4       = COALESCE(r.r4, 0),
+    rating_5       = COALESCE(r.r5, 0)
+FROM pharmacies p2
+LEFT JOIN (SELECT pharmacy_id,
+                  COUNT(*) AS n,
+                  SUM(rating) AS total,
+                  COUNT(*) FILTER (WHERE rating = 1) AS r1,
+                  COUNT(*) FILTER (WHERE rating = 2) AS r2,
+                  COUNT(*) FILTER (WHERE rating = 3) AS r3,
+                  COUNT(*) FILTER (WHERE rating = 4) AS r4,
+                  COUNT(*) FILTER (WHERE rating = 5) AS r5
+           FROM pharmacy_reviews GROUP BY pharmacy_id) r ON r.pharmacy_id = p2.id
+WHERE p2.id = p.id;
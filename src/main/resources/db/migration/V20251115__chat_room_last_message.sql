@@ -0,0 +1,24 @@
+-- Latest message of each chat room, denormalized onto chat_rooms so the inbox is one query
+ALTER TABLE chat_rooms ADD COLUMN IF NOT EXISTS last_message_id          BIGINT;
+ALTER TABLE chat_rooms ADD COLUMN IF NOT EXISTS last_message_preview     VARCHAR(200);
+ALTER TABLE chat_rooms ADD COLUMN IF NOT EXISTS last_message_sender_type VARCHAR(20);
+
+UPDATE chat_rooms cr SET
+    last_message_id          = m.id,
+    last_message_preview     = LEFT(m.content, 200),
+    last_message_sender_type = CASE u.user_type WHEN 'CUSTOMER' THEN 'CUSTOMER'
+                                                WHEN 'PHARMACIST' THEN 'PHARMACIST'
+                                                WHEN 'PHARMACY_ADMIN' THEN 'ADMIN'
+                                                ELSE 'UNKNOWN' END,
+    last_message_at          = m.timestamp
+FROM (SELECT DISTINCT ON (chat_room_id) id, chat_room_id, sender_id, content, timestamp
+      FROM messages
+      ORDER BY chat_room_id, timestamp DESC, id DESC) m
+JOIN users u ON u.id = m.sender_id
+WHERE m.chat_room_id = cr.id;
+
+-- Keyset pagination needs a non-null sort key
+UPDATE chat_rooms SET last_message_at = created_at WHERE last_message_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_chat_rooms_customer_inbox ON chat_rooms (customer_id, last_message_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_chat_rooms_pharmacy_inbox ON chat_rooms (pharmacy_id, last_message_at DESC, id DESC);
@@ -0,0 +1,9 @@
+-- WebSocket fan-out envelopes too large for a NOTIFY payload (8000 bytes); the notification
+-- carries only the row id. PgNotifyClusterTransport purges rows after ten minutes.
+CREATE TABLE IF NOT EXISTS ws_cluster_spill (
+    id         BIGSERIAL PRIMARY KEY,
+    body       TEXT      NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_ws_cluster_spill_created_at ON ws_cluster_spill (created_at);
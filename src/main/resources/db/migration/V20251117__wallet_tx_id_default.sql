@@ -0,0 +1,12 @@
+-- tx_id may have been created by ddl-auto before V20251110 ran, in which case its
+-- ADD COLUMN IF NOT EXISTS was skipped and the column has no default. Rows posted since then
+-- have a NULL tx_id and are invisible to checkpoints and balances; stamp them with this
+-- transaction's id so the projector folds them in on its next run.
+ALTER TABLE wallet_transactions
+    ALTER COLUMN tx_id SET DEFAULT (CAST(CAST(pg_current_xact_id() AS text) AS bigint));
+
+UPDATE wallet_transactions
+SET tx_id = CAST(CAST(pg_current_xact_id() AS text) AS bigint)
+WHERE tx_id IS NULL;
+
+ALTER TABLE wallet_transactions ALTER COLUMN tx_id SET NOT NULL;
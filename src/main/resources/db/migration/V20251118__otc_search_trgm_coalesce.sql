@@ -0,0 +1,8 @@
+-- A NULL category, manufacturer or dosage made the whole indexed document NULL, so those
+-- products never matched the pg_trgm search. The expression must stay identical to the one
+-- in OtcRepository.searchIdsByTrigram.
+DROP INDEX IF EXISTS idx_otc_search_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_otc_search_trgm
+    ON otc USING gin (lower(COALESCE(name, '') || ' ' || COALESCE(category, '') || ' ' ||
+                            COALESCE(manufacturer, '') || ' ' || COALESCE(dosage, '')) gin_trgm_ops);
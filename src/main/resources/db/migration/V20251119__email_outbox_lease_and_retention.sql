@@ -0,0 +1,8 @@
+-- Lease token stamped on each claim; the dispatcher only records an outcome while the row
+-- still carries its own token, so a node whose lease ran out cannot overwrite a newer claim
+ALTER TABLE email_outbox ADD COLUMN IF NOT EXISTS lease_token VARCHAR(36);
+
+-- Retention purge of finished rows
+CREATE INDEX IF NOT EXISTS idx_email_outbox_finished
+    ON email_outbox(next_attempt_at)
+    WHERE status IN ('SENT', 'DEAD');
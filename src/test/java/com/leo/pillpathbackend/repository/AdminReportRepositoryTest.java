@@ -0,0 +1,128 @@
+package com.leo.pillpathbackend.repository;
+
+import com.leo.pillpathbackend.dto.CustomerDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AdminReportRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private AdminReportRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new AdminReportRepository(jdbcTemplate);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(42L);
+    }
+
+    @Test
+    void sortFieldOutsideTheWhitelistIsRejectedBeforeAnyQuery() {
+        for (String field : List.of("u.password", "createdAt; DROP TABLE users", "1", "prescription_count")) {
+            PageRequest page = PageRequest.of(0, 10, Sort.by(field));
+            assertThrows(IllegalArgumentException.class, () -> repository.customers(page), field);
+            assertThrows(IllegalArgumentException.class, () -> repository.customerActivity(page), field);
+            assertThrows(IllegalArgumentException.class, () -> repository.pharmacyPerformance(page), field);
+            assertThrows(IllegalArgumentException.class, () -> repository.suspendedAccounts(page), field);
+        }
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void whitelistedFieldsBecomeTheirColumnsWithTheTieBreakerLast() {
+        rows(0);
+
+        repository.customers(PageRequest.of(0, 10, Sort.by(Sort.Order.asc("fullName"), Sort.Order.desc("orderCount"))));
+
+        assertTrue(lastSql().endsWith(" ORDER BY u.full_name ASC NULLS LAST, order_count DESC NULLS LAST, u.id LIMIT ? OFFSET ?"),
+                lastSql());
+    }
+
+    @Test
+    void unsortedPageUsesTheDefaultOrder() {
+        rows(0);
+
+        repository.pharmacyPerformance(PageRequest.of(0, 10));
+
+        assertTrue(lastSql().endsWith(" ORDER BY orders_fulfilled DESC, p.id LIMIT ? OFFSET ?"), lastSql());
+    }
+
+    @Test
+    void shortFirstPageSkipsTheCountQuery() {
+        rows(3);
+
+        Page<CustomerDTO> page = repository.customers(PageRequest.of(0, 10));
+
+        assertEquals(3, page.getTotalElements());
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    void fullFirstPageRunsTheCountQuery() {
+        rows(10);
+
+        Page<CustomerDTO> page = repository.customers(PageRequest.of(0, 10));
+
+        assertEquals(42, page.getTotalElements());
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    void laterPageRunsTheCountQueryEvenWhenShort() {
+        rows(3);
+
+        Page<CustomerDTO> page = repository.customers(PageRequest.of(2, 10));
+
+        assertEquals(42, page.getTotalElements());
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    void eachReportIsOnePageQueryPlusAtMostOneCount() {
+        rows(10);
+        PageRequest full = PageRequest.of(0, 10);
+
+        repository.customers(full);
+        repository.customerActivity(full);
+        repository.pharmacyPerformance(full);
+        repository.suspendedAccounts(full);
+
+        verify(jdbcTemplate, times(4)).query(anyString(), any(RowMapper.class), any(Object[].class));
+        verify(jdbcTemplate, times(4)).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rows(int n) {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Collections.nCopies(n, new CustomerDTO()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private String lastSql() {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), any(Object[].class));
+        return sql.getValue();
+    }
+}
@@ -0,0 +1,146 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.dto.MessageDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatHistoryBufferTest {
+
+    private static final Long ROOM = 1L;
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private ChatHistoryBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        PgNotificationHub hub = mock(PgNotificationHub.class);
+        when(hub.nodeId()).thenReturn("node-a");
+        buffer = new ChatHistoryBuffer(3, 2, new SimpleMeterRegistry(), hub);
+    }
+
+    @Test
+    void unseededRoomIsAMiss() {
+        assertNull(buffer.read(ROOM, null, 10));
+    }
+
+    @Test
+    void readsNewestFirstAndPagesBeforeAnId() {
+        seed(ROOM, false, message(3), message(2), message(1));
+
+        ChatHistoryBuffer.Slice first = buffer.read(ROOM, null, 2);
+        assertEquals(List.of(3L, 2L), ids(first));
+        assertTrue(first.hasMore());
+
+        ChatHistoryBuffer.Slice second = buffer.read(ROOM, 2L, 2);
+        assertEquals(List.of(1L), ids(second));
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    void appendOverwritesOldestAndMarksOlderHistory() {
+        seed(ROOM, false, message(3), message(2), message(1));
+
+        buffer.append(message(4));
+
+        ChatHistoryBuffer.Slice slice = buffer.read(ROOM, null, 3);
+        assertEquals(List.of(4L, 3L, 2L), ids(slice));
+        assertTrue(slice.hasMore());
+        // Message 1 fell out of the ring, so reading past the ring needs the database
+        assertNull(buffer.read(ROOM, 2L, 1));
+    }
+
+    @Test
+    void outOfOrderAppendIsSortedAndDuplicatesIgnored() {
+        seed(ROOM, false, message(4), message(2));
+
+        buffer.append(message(3));
+        buffer.append(message(3));
+
+        assertEquals(List.of(4L, 3L, 2L), ids(buffer.read(ROOM, null, 3)));
+    }
+
+    @Test
+    void outOfOrderAppendIntoFullRingDropsOldest() {
+        seed(ROOM, false, message(5), message(3), message(2));
+
+        buffer.append(message(4));
+
+        ChatHistoryBuffer.Slice slice = buffer.read(ROOM, null, 3);
+        assertEquals(List.of(5L, 4L, 3L), ids(slice));
+        assertTrue(slice.hasMore());
+    }
+
+    @Test
+    void shortReadWithOlderHistoryFallsBackToDatabase() {
+        seed(ROOM, true, message(2), message(1));
+
+        assertNull(buffer.read(ROOM, null, 5));
+        assertEquals(List.of(2L, 1L), ids(buffer.read(ROOM, null, 2)));
+    }
+
+    @Test
+    void seedIsDroppedWhenAnAppendRacedIt() {
+        long version = buffer.version(ROOM);
+        buffer.append(message(2));
+
+        buffer.seed(ROOM, version, List.of(message(1)), false);
+
+        assertNull(buffer.read(ROOM, null, 1));
+    }
+
+    @Test
+    void seedIsDroppedWhenTheRoomWasEvicted() {
+        long version = buffer.version(ROOM);
+        buffer.evict(ROOM);
+
+        buffer.seed(ROOM, version, List.of(message(1)), false);
+
+        assertNull(buffer.read(ROOM, null, 1));
+    }
+
+    @Test
+    void leastRecentlyReadRoomIsEvicted() {
+        seed(1L, false, message(1L, 1));
+        seed(2L, false, message(2L, 2));
+        buffer.read(1L, null, 1);
+
+        seed(3L, false, message(3L, 3));
+
+        assertEquals(2, buffer.size());
+        assertNotNull(buffer.read(1L, null, 1));
+        assertNull(buffer.read(2L, null, 1));
+    }
+
+    private void seed(Long room, boolean hasOlder, MessageDTO... newestFirst) {
+        buffer.seed(room, buffer.version(room), List.of(newestFirst), hasOlder);
+    }
+
+    private static MessageDTO message(long id) {
+        return message(ROOM, id);
+    }
+
+    private static MessageDTO message(Long room, long id) {
+        return MessageDTO.builder()
+                .id(id)
+                .chatRoomId(room)
+                .timestamp(T0.plusSeconds(id))
+                .build();
+    }
+
+    private static List<Long> ids(ChatHistoryBuffer.Slice slice) {
+        return slice.messages().stream().map(MessageDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,106 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.PharmacyAdminRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMembershipCacheTest {
+
+    private static final Long PHARMACY = 5L;
+
+    @Mock
+    private PharmacyAdminRepository pharmacyAdminRepository;
+    @Mock
+    private PgNotificationHub notificationHub;
+
+    private ChatMembershipCache cache;
+    private Consumer<String> onNotify;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        lenient().when(notificationHub.nodeId()).thenReturn("node-a");
+        cache = new ChatMembershipCache(pharmacyAdminRepository, notificationHub);
+        cache.subscribe();
+        ArgumentCaptor<Consumer<String>> handler = ArgumentCaptor.forClass(Consumer.class);
+        verify(notificationHub).subscribe(eq(ChatMembershipCache.CHANNEL), handler.capture(), any());
+        onNotify = handler.getValue();
+    }
+
+    @Test
+    void loadsEachPharmacyOnce() {
+        when(pharmacyAdminRepository.findIdsByPharmacyId(PHARMACY)).thenReturn(List.of(1L, 2L));
+
+        List<String> first = cache.staffDestinations(PHARMACY);
+        List<String> second = cache.staffDestinations(PHARMACY);
+
+        assertEquals(List.of("pharmacy_admin:1", "admin:1", "pharmacy_admin:2", "admin:2"), first);
+        assertEquals(first, second);
+        verify(pharmacyAdminRepository, times(1)).findIdsByPharmacyId(PHARMACY);
+    }
+
+    @Test
+    void staffChangeEvictsAndNotifiesOtherNodes() {
+        when(pharmacyAdminRepository.findIdsByPharmacyId(PHARMACY)).thenReturn(List.of(1L), List.of(1L, 3L));
+        cache.staffDestinations(PHARMACY);
+
+        cache.staffChanged(PHARMACY);
+
+        verify(notificationHub).publish(ChatMembershipCache.CHANNEL, "node-a|" + PHARMACY);
+        assertEquals(List.of("pharmacy_admin:1", "admin:1", "pharmacy_admin:3", "admin:3"),
+                cache.staffDestinations(PHARMACY));
+    }
+
+    @Test
+    void notificationFromAnotherNodeEvicts() {
+        when(pharmacyAdminRepository.findIdsByPharmacyId(PHARMACY)).thenReturn(List.of(1L));
+        cache.staffDestinations(PHARMACY);
+
+        onNotify.accept("node-b|" + PHARMACY);
+        cache.staffDestinations(PHARMACY);
+
+        verify(pharmacyAdminRepository, times(2)).findIdsByPharmacyId(PHARMACY);
+    }
+
+    @Test
+    void ownNotificationIsIgnored() {
+        when(pharmacyAdminRepository.findIdsByPharmacyId(PHARMACY)).thenReturn(List.of(1L));
+        cache.staffDestinations(PHARMACY);
+
+        onNotify.accept("node-a|" + PHARMACY);
+        cache.staffDestinations(PHARMACY);
+
+        verify(pharmacyAdminRepository, times(1)).findIdsByPharmacyId(PHARMACY);
+    }
+
+    @Test
+    void loadRacingAnEvictionIsNotKept() {
+        when(pharmacyAdminRepository.findIdsByPharmacyId(PHARMACY))
+                .thenAnswer(invocation -> {
+                    // Staff changed on another node while the ids were being read
+                    onNotify.accept("node-b|" + PHARMACY);
+                    return List.of(1L);
+                })
+                .thenReturn(List.of(1L, 2L));
+
+        assertEquals(List.of("pharmacy_admin:1", "admin:1"), cache.staffDestinations(PHARMACY));
+        assertEquals(4, cache.staffDestinations(PHARMACY).size());
+        verify(pharmacyAdminRepository, times(2)).findIdsByPharmacyId(PHARMACY);
+    }
+}
@@ -0,0 +1,205 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.repository.OrderCodeCounterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderCodeAllocatorTest {
+
+    private static final Instant DAY_ONE = Instant.parse("2025-06-30T23:59:00Z");
+    private static final Instant DAY_TWO = Instant.parse("2025-07-01T00:01:00Z");
+
+    private OrderCodeCounterRepository counterRepository;
+    private MutableClock clock;
+    // What order_code_counters would hold: code day -> next_value
+    private final Map<LocalDate, Long> counters = new HashMap<>();
+    private final AtomicInteger reservations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(DAY_ONE);
+        counterRepository = mock(OrderCodeCounterRepository.class);
+        // Same arithmetic as the upsert: first block is [1, blockSize], later ones follow on
+        when(counterRepository.reserve(any(), anyLong())).thenAnswer(invocation -> {
+            LocalDate day = invocation.getArgument(0);
+            long blockSize = invocation.getArgument(1);
+            reservations.incrementAndGet();
+            synchronized (counters) {
+                return counters.merge(day, blockSize + 1, (current, ignored) -> current + blockSize);
+            }
+        });
+    }
+
+    @Test
+    void numbersContinueAcrossBlockBoundaries() {
+        OrderCodeAllocator allocator = allocator(3);
+
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            codes.add(allocator.nextPharmacyOrderCode());
+        }
+
+        assertEquals(List.of("ORD-20250630-1", "ORD-20250630-2", "ORD-20250630-3", "ORD-20250630-4",
+                "ORD-20250630-5", "ORD-20250630-6", "ORD-20250630-7"), codes);
+        assertEquals(3, reservations.get());
+    }
+
+    @Test
+    void pharmacyAndOtcCodesShareTheDailySequence() {
+        OrderCodeAllocator allocator = allocator(10);
+
+        assertEquals("ORD-20250630-1", allocator.nextPharmacyOrderCode());
+        assertEquals("OTC-20250630-2", allocator.nextOtcOrderCode());
+    }
+
+    @Test
+    void newDayStartsANewSequence() {
+        OrderCodeAllocator allocator = allocator(10);
+        allocator.nextPharmacyOrderCode();
+        allocator.nextPharmacyOrderCode();
+
+        clock.set(DAY_TWO);
+
+        assertEquals("ORD-20250701-1", allocator.nextPharmacyOrderCode());
+    }
+
+    @Test
+    void concurrentCallersNeverGetTheSameCode() throws Exception {
+        Set<String> codes = run(allocator(5), 16, 2_000, null);
+
+        assertEquals(16 * 2_000, codes.size());
+        assertNumbersUnique(codes);
+    }
+
+    @Test
+    void concurrentCallersAcrossMidnightNeverGetTheSameCode() throws Exception {
+        Set<String> codes = run(allocator(7), 16, 2_000, () -> clock.set(DAY_TWO));
+
+        assertEquals(16 * 2_000, codes.size());
+        assertNumbersUnique(codes);
+        assertTrue(codes.stream().anyMatch(c -> c.contains("-20250630-")));
+        assertTrue(codes.stream().anyMatch(c -> c.contains("-20250701-")));
+    }
+
+    private OrderCodeAllocator allocator(int blockSize) {
+        return new OrderCodeAllocator(counterRepository, new NoOpTransactionManager(), blockSize, clock);
+    }
+
+    // Runs threads * perThread allocations; midway, midnight runs (when given) while the others keep going
+    private Set<String> run(OrderCodeAllocator allocator, int threads, int perThread, Runnable midnight) throws Exception {
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger issued = new AtomicInteger();
+        int total = threads * perThread;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                boolean otc = t % 2 == 1;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        if (midnight != null && issued.incrementAndGet() == total / 2) {
+                            midnight.run();
+                        }
+                        String code = otc ? allocator.nextOtcOrderCode() : allocator.nextPharmacyOrderCode();
+                        if (!codes.add(code)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0, duplicates.get());
+        return codes;
+    }
+
+    // ORD and OTC draw from one sequence, so (day, N) must be unique across both prefixes
+    private static void assertNumbersUnique(Set<String> codes) {
+        Set<String> dayAndNumber = new HashSet<>();
+        for (String code : codes) {
+            assertTrue(dayAndNumber.add(code.substring(code.indexOf('-') + 1)), "number reused: " + code);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant instant) {
+            now = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    // The reservation runs in REQUIRES_NEW; here only the callback matters
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.CustomerOrder;
+import com.leo.pillpathbackend.entity.OtcStockReservation;
+import com.leo.pillpathbackend.entity.PharmacyOrder;
+import com.leo.pillpathbackend.entity.enums.PaymentStatus;
+import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
+import com.leo.pillpathbackend.repository.CustomerOrderRepository;
+import com.leo.pillpathbackend.repository.OtcStockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OtcStockServiceTest {
+
+    private static final Long ORDER_ID = 100L;
+    private static final Long PRODUCT_A = 1L;
+    private static final Long PRODUCT_B = 2L;
+
+    private JdbcTemplate jdbcTemplate;
+    private OtcStockReservationRepository reservationRepository;
+    private CustomerOrderRepository customerOrderRepository;
+    private PharmacyOrderStateMachine stateMachine;
+    private OtcStockService service;
+
+    // The otc.stock column and otc_stock_reservations rows as the statements would leave them
+    private final Map<Long, Integer> stock = new HashMap<>();
+    private final List<OtcStockReservation> reservations = new ArrayList<>();
+    private final Map<Long, CustomerOrder> orders = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        reservationRepository = mock(OtcStockReservationRepository.class);
+        customerOrderRepository = mock(CustomerOrderRepository.class);
+        stateMachine = mock(PharmacyOrderStateMachine.class);
+        service = new OtcStockService(jdbcTemplate, reservationRepository, customerOrderRepository, stateMachine,
+                mock(PlatformTransactionManager.class), 15, 200);
+
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            List<Object[]> args = invocation.getArgument(1);
+            return sql.contains("stock = stock - ?") ? take(args) : restore(args);
+        });
+        when(reservationRepository.lockExpired(any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            return reservations.stream()
+                    .filter(r -> OtcStockReservation.STATUS_ACTIVE.equals(r.getStatus()) && r.getExpiresAt().isBefore(now))
+                    .toList();
+        });
+        when(reservationRepository.confirmActive(anyLong())).thenAnswer(invocation -> {
+            Long orderId = invocation.getArgument(0);
+            int n = 0;
+            for (OtcStockReservation r : reservations) {
+                if (r.getCustomerOrderId().equals(orderId) && OtcStockReservation.STATUS_ACTIVE.equals(r.getStatus())) {
+                    r.setStatus(OtcStockReservation.STATUS_CONFIRMED);
+                    n++;
+                }
+            }
+            return n;
+        });
+        when(reservationRepository.existsByCustomerOrderIdAndStatus(anyLong(), anyString())).thenAnswer(invocation ->
+                reservations.stream().anyMatch(r -> r.getCustomerOrderId().equals(invocation.getArgument(0))
+                        && r.getStatus().equals(invocation.getArgument(1))));
+        when(customerOrderRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(orders::get).filter(Objects::nonNull).toList();
+        });
+    }
+
+    @Test
+    void shortProductFailsTheWholeOrder() {
+        stock.put(PRODUCT_A, 5);
+        stock.put(PRODUCT_B, 1);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> service.take(quantities(PRODUCT_B, 2, PRODUCT_A, 3)));
+
+        assertTrue(e.getMessage().contains("product " + PRODUCT_B), e.getMessage());
+    }
+
+    @Test
+    void takeSendsOneBatchInProductIdOrder() {
+        stock.put(PRODUCT_A, 5);
+        stock.put(PRODUCT_B, 5);
+
+        service.take(quantities(PRODUCT_B, 2, PRODUCT_A, 3));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), args.capture());
+        assertArrayEquals(new Object[]{3, 3, 3, PRODUCT_A, 3}, args.getValue().get(0));
+        assertArrayEquals(new Object[]{2, 2, 2, PRODUCT_B, 2}, args.getValue().get(1));
+        assertEquals(2, stock.get(PRODUCT_A));
+        assertEquals(3, stock.get(PRODUCT_B));
+    }
+
+    @Test
+    void concurrentOrdersNeverOversell() throws Exception {
+        stock.put(PRODUCT_A, 20);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        service.take(quantities(PRODUCT_A, 1));
+                        sold.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(20, sold.get());
+        assertEquals(30, refused.get());
+        assertEquals(0, stock.get(PRODUCT_A));
+    }
+
+    @Test
+    void confirmAfterTheSweeperReleasedThrows() {
+        stock.put(PRODUCT_A, 7);
+        CustomerOrder order = order(PaymentStatus.PENDING);
+        reserve(PRODUCT_A, 3);
+
+        service.releaseExpired();
+
+        assertEquals(10, stock.get(PRODUCT_A));
+        assertEquals(OtcStockReservation.STATUS_RELEASED, reservations.get(0).getStatus());
+        verify(stateMachine).transition(order.getPharmacyOrders(), PharmacyOrderStatus.CANCELLED);
+        assertThrows(IllegalStateException.class, () -> service.confirm(ORDER_ID));
+    }
+
+    @Test
+    void confirmBeforeTheSweeperKeepsTheStockSold() {
+        stock.put(PRODUCT_A, 7);
+        order(PaymentStatus.PENDING);
+        reserve(PRODUCT_A, 3);
+
+        service.confirm(ORDER_ID);
+        service.releaseExpired();
+
+        assertEquals(7, stock.get(PRODUCT_A));
+        assertEquals(OtcStockReservation.STATUS_CONFIRMED, reservations.get(0).getStatus());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void sweeperConfirmsReservationsOfPaidOrdersWithoutRestoringStock() {
+        stock.put(PRODUCT_A, 7);
+        stock.put(PRODUCT_B, 4);
+        order(PaymentStatus.PAID);
+        reserve(PRODUCT_A, 3);
+        reserve(PRODUCT_B, 1);
+
+        service.releaseExpired();
+
+        assertEquals(7, stock.get(PRODUCT_A));
+        assertEquals(4, stock.get(PRODUCT_B));
+        assertTrue(reservations.stream().allMatch(r -> OtcStockReservation.STATUS_CONFIRMED.equals(r.getStatus())));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(stateMachine, never()).transition(anyList(), eq(PharmacyOrderStatus.CANCELLED));
+        // Payment that arrives afterwards finds nothing released
+        service.confirm(ORDER_ID);
+    }
+
+    // UPDATE otc SET stock = stock - q ... WHERE id = ? AND stock >= q, one row at a time like the database
+    private int[] take(List<Object[]> args) {
+        int[] counts = new int[args.size()];
+        synchronized (stock) {
+            for (int i = 0; i < args.size(); i++) {
+                int q = (Integer) args.get(i)[0];
+                Long id = (Long) args.get(i)[3];
+                int current = stock.getOrDefault(id, 0);
+                if (current >= q) {
+                    stock.put(id, current - q);
+                    counts[i] = 1;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private int[] restore(List<Object[]> args) {
+        synchronized (stock) {
+            for (Object[] row : args) {
+                stock.merge((Long) row[3], (Integer) row[0], Integer::sum);
+            }
+        }
+        int[] counts = new int[args.size()];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+    private CustomerOrder order(PaymentStatus paymentStatus) {
+        CustomerOrder order = new CustomerOrder();
+        order.setId(ORDER_ID);
+        order.setOrderCode("OTC-20250630-1");
+        order.setPaymentStatus(paymentStatus);
+        PharmacyOrder slice = new PharmacyOrder();
+        slice.setId(10L);
+        slice.setStatus(PharmacyOrderStatus.RECEIVED);
+        slice.setCustomerOrder(order);
+        order.setPharmacyOrders(new ArrayList<>(List.of(slice)));
+        orders.put(ORDER_ID, order);
+        return order;
+    }
+
+    // An expired reservation of ORDER_ID
+    private void reserve(Long productId, int quantity) {
+        reservations.add(OtcStockReservation.builder()
+                .id((long) reservations.size() + 1)
+                .otcId(productId)
+                .customerOrderId(ORDER_ID)
+                .quantity(quantity)
+                .status(OtcStockReservation.STATUS_ACTIVE)
+                .expiresAt(LocalDateTime.now().minusMinutes(1))
+                .createdAt(LocalDateTime.now().minusMinutes(16))
+                .build());
+    }
+
+    private static SortedMap<Long, Integer> quantities(Object... productAndQuantity) {
+        SortedMap<Long, Integer> map = new TreeMap<>();
+        for (int i = 0; i < productAndQuantity.length; i += 2) {
+            map.put((Long) productAndQuantity[i], (Integer) productAndQuantity[i + 1]);
+        }
+        return map;
+    }
+}
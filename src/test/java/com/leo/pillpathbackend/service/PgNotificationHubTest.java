@@ -0,0 +1,84 @@
+package com.leo.pillpathbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PgNotificationHubTest {
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private Savepoint savepoint;
+    private PgNotificationHub hub;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        savepoint = mock(Savepoint.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation ->
+                ((ConnectionCallback<?>) invocation.getArgument(0)).doInConnection(connection));
+        hub = new PgNotificationHub(mock(DataSource.class), jdbcTemplate, true, 500);
+    }
+
+    @Test
+    void insideATransactionNotifiesWithinASavepoint() throws SQLException {
+        when(connection.getAutoCommit()).thenReturn(false);
+
+        hub.publish("chan", "node|1");
+
+        verify(statement).setString(1, "chan");
+        verify(statement).setString(2, "node|1");
+        verify(connection).releaseSavepoint(savepoint);
+        verify(connection, never()).rollback(any(Savepoint.class));
+    }
+
+    @Test
+    void failedNotifyRollsBackToTheSavepointAndDoesNotThrow() throws SQLException {
+        when(connection.getAutoCommit()).thenReturn(false);
+        when(statement.execute()).thenThrow(new SQLException("payload string too long"));
+
+        hub.publish("chan", "node|1");
+
+        verify(connection).rollback(savepoint);
+        verify(connection, never()).releaseSavepoint(any());
+    }
+
+    @Test
+    void outsideATransactionNeedsNoSavepoint() throws SQLException {
+        when(connection.getAutoCommit()).thenReturn(true);
+
+        hub.publish("chan", "node|1");
+
+        verify(statement).execute();
+        verify(connection, never()).setSavepoint();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void disabledHubDoesNothing() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        new PgNotificationHub(mock(DataSource.class), jdbcTemplate, false, 500).publish("chan", "node|1");
+
+        verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+    }
+}
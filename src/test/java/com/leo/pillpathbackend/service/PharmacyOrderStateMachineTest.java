@@ -0,0 +1,191 @@
+package com.leo.pillpathbackend.service;
+
+import com.leo.pillpathbackend.entity.CustomerOrder;
+import com.leo.pillpathbackend.entity.PharmacyOrder;
+import com.leo.pillpathbackend.entity.Prescription;
+import com.leo.pillpathbackend.entity.enums.CustomerOrderStatus;
+import com.leo.pillpathbackend.entity.enums.PharmacyOrderStatus;
+import com.leo.pillpathbackend.entity.enums.PrescriptionStatus;
+import com.leo.pillpathbackend.repository.CustomerOrderRepository;
+import com.leo.pillpathbackend.repository.PharmacyOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PharmacyOrderStateMachineTest {
+
+    private static final Long PARENT_ID = 1L;
+
+    @Mock
+    private CustomerOrderRepository customerOrderRepository;
+    @Mock
+    private PharmacyOrderRepository pharmacyOrderRepository;
+    @Mock
+    private WalletSettingsService walletSettingsService;
+    @Mock
+    private DailyMetricsService dailyMetricsService;
+
+    private PharmacyOrderStateMachine stateMachine;
+    private CustomerOrder parent;
+    private Prescription prescription;
+
+    @BeforeEach
+    void setUp() {
+        stateMachine = new PharmacyOrderStateMachine(customerOrderRepository, pharmacyOrderRepository,
+                walletSettingsService, dailyMetricsService);
+        prescription = new Prescription();
+        parent = new CustomerOrder();
+        parent.setId(PARENT_ID);
+        parent.setStatus(CustomerOrderStatus.PENDING);
+        parent.setPrescription(prescription);
+    }
+
+    @Test
+    void movesOneCountBetweenBuckets() {
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.RECEIVED);
+        slice(11L, PharmacyOrderStatus.RECEIVED);
+        lockedCounters(2, 0, 0, 0, 0);
+        lockedStatuses(new Object[]{10L, "RECEIVED"});
+
+        stateMachine.transition(a, PharmacyOrderStatus.PREPARING);
+
+        assertCounters(1, 1, 0, 0, 0);
+        assertEquals(PharmacyOrderStatus.PREPARING, a.getStatus());
+        assertEquals(CustomerOrderStatus.PENDING, parent.getStatus());
+        assertEquals(PrescriptionStatus.IN_PROGRESS, prescription.getStatus());
+    }
+
+    @Test
+    void countersStartFromTheLockedRowNotTheLoadedEntity() {
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.PREPARING);
+        // Stale values loaded before another transaction committed
+        parent.setReceivedSlices(2);
+        lockedCounters(0, 1, 1, 0, 0);
+        lockedStatuses(new Object[]{10L, "PREPARING"});
+
+        stateMachine.transition(a, PharmacyOrderStatus.READY_FOR_PICKUP);
+
+        assertCounters(0, 0, 2, 0, 0);
+        assertEquals(PrescriptionStatus.READY_FOR_PICKUP, prescription.getStatus());
+    }
+
+    @Test
+    void deltaUsesTheLockedSliceStatus() {
+        // Loaded as RECEIVED, but a concurrent transition already moved it to PREPARING
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.RECEIVED);
+        slice(11L, PharmacyOrderStatus.RECEIVED);
+        lockedCounters(1, 1, 0, 0, 0);
+        lockedStatuses(new Object[]{10L, "PREPARING"});
+
+        stateMachine.transition(a, PharmacyOrderStatus.READY_FOR_PICKUP);
+
+        assertCounters(1, 0, 1, 0, 0);
+    }
+
+    @Test
+    void transitionInvalidUnderLockChangesNothing() {
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.READY_FOR_PICKUP);
+        lockedCounters(0, 0, 0, 1, 0);
+        lockedStatuses(new Object[]{10L, "HANDED_OVER"});
+
+        assertThrows(IllegalStateException.class,
+                () -> stateMachine.transition(a, PharmacyOrderStatus.CANCELLED));
+
+        assertCounters(0, 0, 0, 1, 0);
+        assertEquals(PharmacyOrderStatus.HANDED_OVER, a.getStatus());
+    }
+
+    @Test
+    void bulkTransitionCompletesTheParentOnce() {
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.READY_FOR_PICKUP);
+        PharmacyOrder b = slice(11L, PharmacyOrderStatus.READY_FOR_PICKUP);
+        lockedCounters(0, 0, 2, 0, 0);
+        lockedStatuses(new Object[]{10L, "READY_FOR_PICKUP"}, new Object[]{11L, "READY_FOR_PICKUP"});
+
+        stateMachine.transition(List.of(a, b), PharmacyOrderStatus.HANDED_OVER);
+
+        assertCounters(0, 0, 0, 2, 0);
+        assertEquals(CustomerOrderStatus.COMPLETED, parent.getStatus());
+        assertEquals(PrescriptionStatus.COMPLETED, prescription.getStatus());
+        verify(dailyMetricsService).orderStatusChanged(parent, CustomerOrderStatus.PENDING, CustomerOrderStatus.COMPLETED);
+    }
+
+    @Test
+    void cancellingEverySliceCancelsTheParent() {
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.RECEIVED);
+        lockedCounters(1, 0, 0, 0, 0);
+        lockedStatuses(new Object[]{10L, "RECEIVED"});
+
+        stateMachine.transition(a, PharmacyOrderStatus.CANCELLED);
+
+        assertCounters(0, 0, 0, 0, 1);
+        assertEquals(CustomerOrderStatus.CANCELLED, parent.getStatus());
+        assertEquals(PrescriptionStatus.CANCELLED, prescription.getStatus());
+    }
+
+    @Test
+    void emptyCountersAreRebuiltBeforeTheDelta() {
+        PharmacyOrder a = slice(10L, PharmacyOrderStatus.RECEIVED);
+        lockedCounters(0, 0, 0, 0, 0);
+        when(pharmacyOrderRepository.countStatusesByCustomerOrderId(PARENT_ID)).thenReturn(List.<Object[]>of(
+                new Object[]{PharmacyOrderStatus.RECEIVED, 2L},
+                new Object[]{PharmacyOrderStatus.CANCELLED, 1L}));
+        lockedStatuses(new Object[]{10L, "RECEIVED"});
+
+        stateMachine.transition(a, PharmacyOrderStatus.PREPARING);
+
+        assertCounters(1, 1, 0, 0, 1);
+    }
+
+    @Test
+    void recountRebuildsFromAttachedSlices() {
+        slice(10L, PharmacyOrderStatus.RECEIVED);
+        slice(11L, PharmacyOrderStatus.RECEIVED);
+        slice(12L, PharmacyOrderStatus.CANCELLED);
+        parent.setHandedOverSlices(5);
+
+        stateMachine.recount(parent);
+
+        assertCounters(2, 0, 0, 0, 1);
+    }
+
+    private PharmacyOrder slice(Long id, PharmacyOrderStatus status) {
+        PharmacyOrder slice = new PharmacyOrder();
+        slice.setId(id);
+        slice.setOrderCode("PO-" + id);
+        slice.setStatus(status);
+        slice.setCustomerOrder(parent);
+        if (parent.getPharmacyOrders() == null) {
+            parent.setPharmacyOrders(new ArrayList<>());
+        }
+        parent.getPharmacyOrders().add(slice);
+        return slice;
+    }
+
+    private void lockedCounters(int received, int preparing, int ready, int handedOver, int cancelled) {
+        when(customerOrderRepository.lockSliceCounters(any())).thenReturn(List.<Object[]>of(
+                new Object[]{PARENT_ID, received, preparing, ready, handedOver, cancelled}));
+    }
+
+    private void lockedStatuses(Object[]... rows) {
+        when(pharmacyOrderRepository.lockStatuses(any())).thenReturn(List.of(rows));
+    }
+
+    private void assertCounters(int received, int preparing, int ready, int handedOver, int cancelled) {
+        assertEquals(List.of(received, preparing, ready, handedOver, cancelled), List.of(
+                parent.getReceivedSlices(), parent.getPreparingSlices(), parent.getReadySlices(),
+                parent.getHandedOverSlices(), parent.getCancelledSlices()));
+    }
+}
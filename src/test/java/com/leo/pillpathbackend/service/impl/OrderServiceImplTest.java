@@ -1 +1,179 @@
+package com.leo.pillpathbackend.service.impl;
 
+import com.leo.pillpathbackend.dto.order.CustomerOrderDTO;
+import com.leo.pillpathbackend.dto.order.PharmacyOrderItemSelectionDTO;
+import com.leo.pillpathbackend.dto.order.PharmacyOrderSelectionDTO;
+import com.leo.pillpathbackend.dto.order.PlaceOrderRequestDTO;
+import com.leo.pillpathbackend.entity.Customer;
+import com.leo.pillpathbackend.entity.CustomerOrder;
+import com.leo.pillpathbackend.entity.Pharmacy;
+import com.leo.pillpathbackend.entity.Prescription;
+import com.leo.pillpathbackend.entity.PrescriptionSubmission;
+import com.leo.pillpathbackend.entity.PrescriptionSubmissionItem;
+import com.leo.pillpathbackend.entity.enums.PrescriptionStatus;
+import com.leo.pillpathbackend.repository.CustomerOrderRepository;
+import com.leo.pillpathbackend.repository.PharmacyOrderRepository;
+import com.leo.pillpathbackend.repository.PrescriptionRepository;
+import com.leo.pillpathbackend.repository.PrescriptionSubmissionRepository;
+import com.leo.pillpathbackend.repository.UserRepository;
+import com.leo.pillpathbackend.service.NotificationService;
+import com.leo.pillpathbackend.service.OrderCodeAllocator;
+import com.leo.pillpathbackend.service.PharmacyOrderStateMachine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    private static final Long CUSTOMER_ID = 900L;
+    private static final Long PRESCRIPTION_ID = 70L;
+    private static final Long DECLINED_PHARMACY = 6L;
+    private static final Long EMPTY_PHARMACY = 7L;
+
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+    @Mock
+    private PrescriptionSubmissionRepository submissionRepository;
+    @Mock
+    private CustomerOrderRepository customerOrderRepository;
+    @Mock
+    private PharmacyOrderRepository pharmacyOrderRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private OrderCodeAllocator orderCodeAllocator;
+    @Mock
+    private PharmacyOrderStateMachine pharmacyOrderStateMachine;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    private Prescription prescription;
+    private final List<PrescriptionSubmission> submissions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = new Customer();
+        customer.setId(CUSTOMER_ID);
+        customer.setFullName("Nimal Perera");
+        prescription = Prescription.builder()
+                .id(PRESCRIPTION_ID)
+                .code("RX-1")
+                .customer(customer)
+                .status(PrescriptionStatus.PENDING_REVIEW)
+                .build();
+
+        // Pharmacies 1-5 quote 4 items each, 6 quotes but is not chosen, 7 never quoted
+        for (long pharmacyId = 1; pharmacyId <= 6; pharmacyId++) {
+            submissions.add(submission(pharmacyId, 4));
+        }
+        submissions.add(submission(EMPTY_PHARMACY, 0));
+
+        when(prescriptionRepository.findByCode("RX-1")).thenReturn(Optional.of(prescription));
+        when(submissionRepository.findWithPharmacyAndItemsByPrescriptionId(PRESCRIPTION_ID)).thenReturn(submissions);
+        when(customerOrderRepository.save(any(CustomerOrder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.findPharmacistIdsGroupedByPharmacy(any())).thenCallRealMethod();
+        when(userRepository.findPharmacistIdsByPharmacyIdIn(any())).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                rows.add(new Object[]{id, 100L + (Long) id});
+            }
+            return rows;
+        });
+    }
+
+    @Test
+    void fivePharmacyTwentyItemOrderUsesSetBasedStatements() {
+        CustomerOrderDTO dto = orderService.placeOrder(CUSTOMER_ID, request(1L, 2L, 3L, 4L, 5L));
+
+        assertEquals(5, dto.getPharmacyOrders().size());
+        assertEquals(20, dto.getPharmacyOrders().stream().mapToInt(po -> po.getItems().size()).sum());
+
+        // One fetch-joined load, one bulk status update, one bulk delete, no per-submission saves
+        verify(submissionRepository).findWithPharmacyAndItemsByPrescriptionId(PRESCRIPTION_ID);
+        verify(submissionRepository).updateStatusByIdIn(List.of(11L, 12L, 13L, 14L, 15L), PrescriptionStatus.ORDER_PLACED);
+        verify(submissionRepository).deleteEmptyByIdIn(List.of(10L + EMPTY_PHARMACY));
+        verifyNoMoreInteractions(submissionRepository);
+
+        // Pharmacists of the five chosen pharmacies and the declined one in a single IN query
+        verify(userRepository).findPharmacistIdsByPharmacyIdIn(new HashSet<>(List.of(1L, 2L, 3L, 4L, 5L, DECLINED_PHARMACY)));
+        verify(userRepository, never()).findPharmacistIdsByPharmacyId(anyLong());
+
+        // Items are inserted through the cascade from the single order save
+        verify(customerOrderRepository, times(1)).save(any(CustomerOrder.class));
+        verifyNoInteractions(pharmacyOrderRepository);
+        assertEquals(PrescriptionStatus.ORDER_PLACED, prescription.getStatus());
+
+        verify(notificationService, times(5)).createOrderConfirmedNotification(any(), anyLong(), anyList(), anyString());
+        verify(notificationService).createOrderDeclinedNotification(eq(10L + DECLINED_PHARMACY), eq(DECLINED_PHARMACY),
+                eq(List.of(100L + DECLINED_PHARMACY)), anyString(), anyString());
+    }
+
+    // Submission id is 10 + pharmacy id, item ids are submission id * 100 + n
+    private static PrescriptionSubmission submission(long pharmacyId, int itemCount) {
+        Pharmacy pharmacy = new Pharmacy();
+        pharmacy.setId(pharmacyId);
+        pharmacy.setAddress("Pharmacy " + pharmacyId);
+        PrescriptionSubmission submission = PrescriptionSubmission.builder()
+                .id(10L + pharmacyId)
+                .pharmacy(pharmacy)
+                .status(PrescriptionStatus.PENDING_REVIEW)
+                .items(new ArrayList<>())
+                .build();
+        for (int n = 1; n <= itemCount; n++) {
+            submission.getItems().add(PrescriptionSubmissionItem.builder()
+                    .id(submission.getId() * 100 + n)
+                    .submission(submission)
+                    .medicineName("Medicine " + n)
+                    .quantity(2)
+                    .unitPrice(new BigDecimal("150.00"))
+                    .build());
+        }
+        return submission;
+    }
+
+    private PlaceOrderRequestDTO request(Long... pharmacyIds) {
+        List<PharmacyOrderSelectionDTO> selections = new ArrayList<>();
+        for (Long pharmacyId : pharmacyIds) {
+            PharmacyOrderSelectionDTO selection = new PharmacyOrderSelectionDTO();
+            selection.setPharmacyId(pharmacyId);
+            List<PharmacyOrderItemSelectionDTO> items = new ArrayList<>();
+            for (PrescriptionSubmissionItem item : submissions.get((int) (pharmacyId - 1)).getItems()) {
+                PharmacyOrderItemSelectionDTO itemSelection = new PharmacyOrderItemSelectionDTO();
+                itemSelection.setSubmissionId(item.getId());
+                items.add(itemSelection);
+            }
+            selection.setItems(items);
+            selections.add(selection);
+        }
+        PlaceOrderRequestDTO request = new PlaceOrderRequestDTO();
+        request.setPrescriptionCode("RX-1");
+        request.setPharmacies(selections);
+        return request;
+    }
+}
@@ -0,0 +1,66 @@
+package com.leo.pillpathbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 3, 9, 14, 5, 7, 123_456_000);
+
+    @Test
+    void roundTripsNumericId() {
+        KeysetCursor cursor = new KeysetCursor(CREATED_AT, "42");
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+        assertEquals(42L, decoded.longId());
+    }
+
+    @Test
+    void roundTripsStringIdContainingSeparator() {
+        KeysetCursor cursor = new KeysetCursor(CREATED_AT, "a|b-c");
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void roundTripsWholeSecondTimestamp() {
+        // LocalDateTime.toString drops zero seconds, which parse must still accept
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2025, 3, 9, 14, 5), "1");
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodingIsUrlSafe() {
+        String encoded = new KeysetCursor(CREATED_AT, "??>>~~").encode();
+
+        assertFalse(encoded.contains("+") || encoded.contains("/") || encoded.contains("="));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encodeRaw("no-separator")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encodeRaw("yesterday|1")));
+    }
+
+    @Test
+    void longIdRejectsNonNumericId() {
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor(CREATED_AT, "abc").encode());
+
+        assertThrows(IllegalArgumentException.class, cursor::longId);
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,153 @@
+package com.leo.pillpathbackend.ws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchRegistryTest {
+
+    private static final WatchRegistry.Watcher PHARMACIST = new WatchRegistry.Watcher("pharmacist", 7L);
+
+    private SimpleMeterRegistry meterRegistry;
+    private WatchRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new WatchRegistry(meterRegistry);
+    }
+
+    @Test
+    void watcherStaysUntilLastSessionUnwatches() {
+        registry.registerSession("s1", "PHARMACIST", 7L);
+        registry.registerSession("s2", "PHARMACIST", 7L);
+        registry.watch("s1", 100L);
+        registry.watch("s2", 100L);
+
+        registry.unwatch("s1", 100L);
+        assertEquals(Set.of(PHARMACIST), registry.getWatchers(100L));
+
+        registry.unwatch("s2", 100L);
+        assertTrue(registry.getWatchers(100L).isEmpty());
+        assertEquals(0, gauge("ws_watch.watched_customers"));
+    }
+
+    @Test
+    void repeatedWatchFromOneSessionCountsOnce() {
+        registry.registerSession("s1", "pharmacist", 7L);
+        registry.watch("s1", 100L);
+        registry.watch("s1", 100L);
+
+        registry.unwatch("s1", 100L);
+
+        assertTrue(registry.getWatchers(100L).isEmpty());
+        assertEquals(0, gauge("ws_watch.watches"));
+    }
+
+    @Test
+    void disconnectReleasesOnlyThatSessionsWatches() {
+        registry.registerSession("s1", "pharmacist", 7L);
+        registry.registerSession("s2", "pharmacist", 7L);
+        registry.watch("s1", 100L);
+        registry.watch("s1", 200L);
+        registry.watch("s2", 200L);
+
+        registry.unregisterSession("s1");
+
+        assertTrue(registry.getWatchers(100L).isEmpty());
+        assertEquals(Set.of(PHARMACIST), registry.getWatchers(200L));
+        assertEquals(1, gauge("ws_watch.sessions"));
+        assertEquals(1, gauge("ws_watch.watches"));
+    }
+
+    @Test
+    void userWatchReachesEveryLiveSession() {
+        registry.registerSession("s1", "pharmacist", 7L);
+        registry.registerSession("s2", "pharmacist", 7L);
+
+        registry.watch("PHARMACIST", 7L, 100L);
+        assertEquals(2, gauge("ws_watch.watches"));
+
+        registry.unregisterSession("s1");
+        assertEquals(Set.of(PHARMACIST), registry.getWatchers(100L));
+        registry.unregisterSession("s2");
+        assertTrue(registry.getWatchers(100L).isEmpty());
+    }
+
+    @Test
+    void reRegisteringASessionDropsItsOldWatches() {
+        registry.registerSession("s1", "pharmacist", 7L);
+        registry.watch("s1", 100L);
+
+        registry.registerSession("s1", "pharmacist", 8L);
+
+        assertTrue(registry.getWatchers(100L).isEmpty());
+        assertEquals(0, gauge("ws_watch.watches"));
+    }
+
+    @Test
+    void watchAfterDisconnectIsIgnored() {
+        registry.registerSession("s1", "pharmacist", 7L);
+        registry.unregisterSession("s1");
+
+        registry.watch("s1", 100L);
+        registry.unwatch("s1", 100L);
+
+        assertTrue(registry.getWatchers(100L).isEmpty());
+        assertEquals(0, gauge("ws_watch.watches"));
+    }
+
+    @Test
+    void concurrentWatchAndDisconnectLeaveNoEntries() throws Exception {
+        int sessions = 32;
+        for (int i = 0; i < sessions; i++) {
+            registry.registerSession("s" + i, "pharmacist", 7L);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < sessions; i++) {
+                String sessionId = "s" + i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (long customer = 0; customer < 50; customer++) {
+                        registry.watch(sessionId, customer);
+                        registry.watch("pharmacist", 7L, customer);
+                    }
+                    registry.unregisterSession(sessionId);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (long customer = 0; customer < 50; customer++) {
+            assertTrue(registry.getWatchers(customer).isEmpty());
+        }
+        assertEquals(0, gauge("ws_watch.sessions"));
+        assertEquals(0, gauge("ws_watch.watched_customers"));
+        assertEquals(0, gauge("ws_watch.watches"));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+}